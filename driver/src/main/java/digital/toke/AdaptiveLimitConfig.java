@@ -0,0 +1,167 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Input parameters for the adaptive concurrency limit. Off unless enabled.</p>
+ * 
+ * <p>Rather than a fixed number of requests in flight, the limit is discovered: it grows while latency stays flat
+ * and is cut back when latency rises or vault pushes back with a 429, a 503 or a timeout. Three algorithms are 
+ * available:</p>
+ * 
+ * <ul>
+ * <li>AIMD - additive increase, multiplicative decrease on a 429/503/timeout only, ignores latency</li>
+ * <li>VEGAS - estimates the queue building up at the server from the current latency against the lowest seen, 
+ * and keeps it between small bounds (TCP Vegas)</li>
+ * <li>GRADIENT - scales the limit by the ratio of long-term to current latency, growing only while the two are close</li>
+ * </ul>
+ * 
+ * <p>A call over the limit waits in a queue for up to queueTimeout and then fails with a LimitExceededException; 
+ * with a queueTimeout of 0 it fails at once.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see digital.toke.net.AdaptiveLimiter
+ */
+public class AdaptiveLimitConfig {
+
+	public enum Algorithm {
+		AIMD, VEGAS, GRADIENT;
+	}
+
+	boolean enabled;
+	Algorithm algorithm;
+	int initialLimit;
+	int minLimit;
+	int maxLimit;
+	
+	// in milliseconds, 0 to reject at once
+	long queueTimeout;
+	int maxQueued;
+
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * @return a config with the limiter off
+	 */
+	public static AdaptiveLimitConfig none() {
+		return new Builder().build();
+	}
+
+	public static class Builder {
+
+		boolean enabled;
+		Algorithm algorithm;
+		int initialLimit;
+		int minLimit;
+		int maxLimit;
+		long queueTimeout;
+		int maxQueued;
+
+		/**
+		 * Has sane defaults: off; when enabled, the gradient algorithm starting at 20 in flight, kept between 1 and 
+		 * 200, and calls over the limit queue for up to 5 seconds with at most 1000 waiting
+		 */
+		public Builder() {
+			enabled = false;
+			algorithm = Algorithm.GRADIENT;
+			initialLimit = 20;
+			minLimit = 1;
+			maxLimit = 200;
+			queueTimeout = 5000;
+			maxQueued = 1000;
+		}
+
+		public Builder enabled(boolean val) {
+			enabled = val;
+			return this;
+		}
+
+		public Builder algorithm(Algorithm val) {
+			algorithm = val;
+			return this;
+		}
+
+		public Builder initialLimit(int val) {
+			initialLimit = val;
+			return this;
+		}
+
+		public Builder limits(int min, int max) {
+			minLimit = min;
+			maxLimit = max;
+			return this;
+		}
+
+		/**
+		 * @param val how long a call may wait for the limit, 0 to fail at once
+		 * @param unit
+		 * @return
+		 */
+		public Builder queueTimeout(long val, TimeUnit unit) {
+			queueTimeout = unit.toMillis(val);
+			return this;
+		}
+
+		public Builder maxQueued(int val) {
+			maxQueued = val;
+			return this;
+		}
+
+		public AdaptiveLimitConfig build() {
+			if(minLimit < 1 || maxLimit < minLimit) throw new IllegalArgumentException("need 1 <= minLimit <= maxLimit");
+			AdaptiveLimitConfig config = new AdaptiveLimitConfig();
+			config.enabled = this.enabled;
+			config.algorithm = this.algorithm == null ? Algorithm.GRADIENT : this.algorithm;
+			config.initialLimit = Math.max(minLimit, Math.min(maxLimit, this.initialLimit));
+			config.minLimit = this.minLimit;
+			config.maxLimit = this.maxLimit;
+			config.queueTimeout = this.queueTimeout;
+			config.maxQueued = this.maxQueued;
+			return config;
+		}
+	}
+
+	private AdaptiveLimitConfig() {}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public Algorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	public int getInitialLimit() {
+		return initialLimit;
+	}
+
+	public int getMinLimit() {
+		return minLimit;
+	}
+
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	public long getQueueTimeout() {
+		return queueTimeout;
+	}
+
+	public int getMaxQueued() {
+		return maxQueued;
+	}
+
+	@Override
+	public String toString() {
+		return "AdaptiveLimitConfig [enabled=" + enabled + ", algorithm=" + algorithm + ", initialLimit="
+				+ initialLimit + ", minLimit=" + minLimit + ", maxLimit=" + maxLimit + ", queueTimeout="
+				+ queueTimeout + ", maxQueued=" + maxQueued + "]";
+	}
+
+}
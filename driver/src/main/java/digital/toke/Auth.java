@@ -6,6 +6,7 @@ package digital.toke;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -80,6 +81,31 @@ public class Auth {
 		return lookupSelf(newToken);
 	}
 
+	/**
+	 * Non-blocking renew-self. The future completes with the renewed and looked-up Token, or exceptionally 
+	 * with a WriteException (renewal failed) or ReadException (lookup failed)
+	 * 
+	 * @param token
+	 * @return
+	 */
+	public CompletableFuture<Token> renewSelfAsync(Token token) {
+		String url = config.authTokenRenewSelf();
+		logger.debug("Using: " + url);
+		JSONObject json = new JSONObject().put("increment", "1h"); // TODO make configurable
+
+		CompletableFuture<Token> renewed = new CompletableFuture<Token>();
+		client.postAsync(url, json.toString()).whenComplete((toke, x) -> {
+			if (x != null) {
+				renewed.completeExceptionally(new WriteException(ServiceBase.unwrap(x)));
+			} else if (!toke.successful) {
+				renewed.completeExceptionally(new WriteException("Failed to renew token with accessor " + token.accessor()));
+			} else {
+				renewed.complete(new Token(token.loginConfig, new JSONObject(toke.response), toke.successful));
+			}
+		});
+		return renewed.thenCompose(this::lookupSelfAsync);
+	}
+
 	// requires permission on auth/token/renew
 	public Token renewPeriodic(Token token) throws WriteException, ReadException {
 		String url = config.authTokenRenew();
@@ -356,6 +382,32 @@ public class Auth {
 
 	}
 
+	/**
+	 * Non-blocking lookupSelf(). The future completes exceptionally with a ReadException
+	 * 
+	 * @param t
+	 * @return
+	 */
+	public CompletableFuture<Token> lookupSelfAsync(Token t) {
+
+		String url = config.authTokenLookupSelf();
+		logger.debug("using url = " + url);
+
+		CompletableFuture<Token> result = new CompletableFuture<Token>();
+		client.getAsync(url).whenComplete((toke, x) -> {
+			if (x != null) {
+				result.completeExceptionally(new ReadException(ServiceBase.unwrap(x)));
+			} else if (!toke.successful) {
+				result.completeExceptionally(new ReadException("Failed to perform lookup: " + toke.toString()));
+			} else if (toke.response == null || toke.response.contains("errors")) {
+				result.completeExceptionally(new ReadException("Errors on token lookup: " + toke.response));
+			} else {
+				result.complete(new Token(t.loginConfig, t.getJson(), t.fromSuccessfulLoginRequest, new JSONObject(toke.response)));
+			}
+		});
+		return result;
+	}
+
 	public Token lookup(Token t) throws ReadException {
 
 		String url = config.authTokenLookup();
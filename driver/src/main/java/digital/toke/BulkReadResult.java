@@ -0,0 +1,84 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import digital.toke.accessor.Toke;
+import digital.toke.exception.ReadException;
+
+/**
+ * <p>The outcome of a kvReadAll(): for each requested path either a response or the ReadException which a
+ * kvRead() of that path would have thrown. A path which could not be read before the deadline has an error
+ * saying so. One failed path never affects the others.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see KV#kvReadAll(java.util.Collection, int, long, java.util.concurrent.TimeUnit)
+ */
+public class BulkReadResult {
+
+	final Map<String, Toke> results;
+	final Map<String, ReadException> errors;
+	volatile long elapsedMillis;
+
+	BulkReadResult(int size) {
+		results = new ConcurrentHashMap<String, Toke>(size);
+		errors = new ConcurrentHashMap<String, ReadException>();
+	}
+
+	// first outcome wins, a late completion racing the deadline cannot flip a path
+	void succeeded(String path, Toke toke) {
+		if(!errors.containsKey(path)) results.putIfAbsent(path, toke);
+	}
+
+	void failed(String path, ReadException x) {
+		if(!results.containsKey(path)) errors.putIfAbsent(path, x);
+	}
+
+	/**
+	 * @return the successful reads, keyed by path
+	 */
+	public Map<String, Toke> results() {
+		return Collections.unmodifiableMap(results);
+	}
+
+	/**
+	 * @return the failed reads, keyed by path
+	 */
+	public Map<String, ReadException> errors() {
+		return Collections.unmodifiableMap(errors);
+	}
+
+	/**
+	 * @return the response for this path, or null if it failed (see error()) or was not requested
+	 */
+	public Toke get(String path) {
+		return results.get(path);
+	}
+
+	public ReadException error(String path) {
+		return errors.get(path);
+	}
+
+	public boolean hasErrors() {
+		return !errors.isEmpty();
+	}
+
+	/**
+	 * @return wall clock time for the whole batch
+	 */
+	public long elapsedMillis() {
+		return elapsedMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "BulkReadResult [succeeded=" + results.size() + ", failed=" + errors.size() + ", elapsedMillis="
+				+ elapsedMillis + "]";
+	}
+
+}
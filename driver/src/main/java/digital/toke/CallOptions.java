@@ -0,0 +1,199 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A deadline and/or a Cancellation for the calls made with these options. The deadline covers the whole call:
+ * waiting for the driver to be ready (ServiceBase.latch()), queueing for a rate limit, concurrency limit or host
+ * slot, retries and their backoff, and the HTTP exchange itself. Whatever is left of it when a stage starts is all
+ * that stage gets, and a call which runs out fails with a DeadlineExceededException (as the cause of the usual 
+ * ReadException or WriteException).</p>
+ * 
+ * <p>The clock starts when the options are built. Every service method honours options bound to the calling 
+ * thread; they are read when the request is built, so async calls started inside the scope carry them too:</p>
+ * 
+ * <pre>
+ * CallOptions options = CallOptions.timeout(Duration.ofMillis(500));
+ * Toke toke = options.call(() -&gt; kv2.kvRead(path));
+ * 
+ * try (CallOptions.Scope scope = options.bind()) {
+ *     kv2.kvRead(path);
+ *     sys.capabilitiesSelf(paths);
+ * }
+ * </pre>
+ * 
+ * <p>kvReadAll() and kvWalk() also stop when the deadline passes or the Cancellation is cancelled, and cancel the 
+ * calls they have in flight.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see Cancellation
+ */
+public class CallOptions {
+
+	private static final ThreadLocal<CallOptions> bound = new ThreadLocal<CallOptions>();
+
+	// System.nanoTime(), only meaningful if hasDeadline
+	final long deadline;
+	final boolean hasDeadline;
+	final Cancellation cancellation;
+
+	public interface Scope extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	/**
+	 * A body which throws the service method's own exception
+	 */
+	public interface Body<T, X extends Exception> {
+		T call() throws X;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @param timeout
+	 * @return options with a deadline this far from now
+	 */
+	public static CallOptions timeout(Duration timeout) {
+		return new Builder().timeout(timeout).build();
+	}
+
+	public static CallOptions timeout(long val, TimeUnit unit) {
+		return new Builder().timeout(val, unit).build();
+	}
+
+	public static class Builder {
+
+		long timeout;
+		Cancellation cancellation;
+
+		/**
+		 * Has sane defaults: no deadline and no cancellation
+		 */
+		public Builder() {
+			timeout = -1;
+		}
+
+		public Builder timeout(Duration val) {
+			timeout = val.toNanos();
+			return this;
+		}
+
+		public Builder timeout(long val, TimeUnit unit) {
+			timeout = unit.toNanos(val);
+			return this;
+		}
+
+		public Builder cancellation(Cancellation val) {
+			cancellation = val;
+			return this;
+		}
+
+		public CallOptions build() {
+			return new CallOptions(timeout, cancellation);
+		}
+	}
+
+	private CallOptions(long timeoutNanos, Cancellation cancellation) {
+		this.hasDeadline = timeoutNanos >= 0;
+		this.deadline = hasDeadline ? System.nanoTime() + timeoutNanos : 0;
+		this.cancellation = cancellation;
+	}
+
+	/**
+	 * @return a scope in which the calls made on this thread use these options, until it is closed
+	 */
+	public Scope bind() {
+		final CallOptions previous = bound.get();
+		bound.set(this);
+		return () -> {
+			if(previous == null) bound.remove();
+			else bound.set(previous);
+		};
+	}
+
+	/**
+	 * Run the body with these options bound
+	 * 
+	 * @param body such as () -&gt; kv2.kvRead(path)
+	 * @return what the body returns
+	 * @throws X what the body throws
+	 */
+	public <T, X extends Exception> T call(Body<T, X> body) throws X {
+		try (Scope scope = bind()) {
+			return body.call();
+		}
+	}
+
+	/**
+	 * @return the options bound to the calling thread, or null
+	 */
+	public static CallOptions current() {
+		return bound.get();
+	}
+
+	public boolean hasDeadline() {
+		return hasDeadline;
+	}
+
+	/**
+	 * @return the nanos left before the deadline, 0 if it has passed, Long.MAX_VALUE if there is none
+	 */
+	public long remainingNanos() {
+		if(!hasDeadline) return Long.MAX_VALUE;
+		return Math.max(0, deadline - System.nanoTime());
+	}
+
+	/**
+	 * @return the millis left, rounded up so that a little time left is not 0
+	 */
+	public long remainingMillis() {
+		long nanos = remainingNanos();
+		if(nanos == Long.MAX_VALUE) return Long.MAX_VALUE;
+		return (nanos + 999999) / 1000000;
+	}
+
+	/**
+	 * @return true once the deadline has passed
+	 */
+	public boolean isExpired() {
+		return hasDeadline && deadline - System.nanoTime() <= 0;
+	}
+
+	/**
+	 * @return the cancellation, or null
+	 */
+	public Cancellation cancellation() {
+		return cancellation;
+	}
+
+	public boolean isCancelled() {
+		return cancellation != null && cancellation.isCancelled();
+	}
+
+	/**
+	 * For a wait in the driver which must end when the call is cancelled
+	 * 
+	 * @param listener run once on cancel(), at once if already cancelled
+	 * @return closing it removes the listener, does nothing if there is no cancellation
+	 */
+	public Cancellation.Registration onCancel(Runnable listener) {
+		if(cancellation == null) return () -> {};
+		return cancellation.onCancel(listener);
+	}
+
+	@Override
+	public String toString() {
+		return "CallOptions [remainingMillis=" + (hasDeadline ? String.valueOf(remainingMillis()) : "none")
+				+ ", cancelled=" + isCancelled() + "]";
+	}
+
+}
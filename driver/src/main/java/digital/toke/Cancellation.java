@@ -0,0 +1,84 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import okhttp3.Call;
+
+/**
+ * <p>Cancels the calls made with a CallOptions which carries it. cancel() aborts the HTTP calls in flight (so 
+ * vault stops working on them as soon as it notices the closed connection), fails the calls queued in the 
+ * driver for a host slot, the concurrency limit or a rate limit token (waits which register with onCancel()), 
+ * and stops any kvReadAll() or kvWalk() running with it. A call pausing before a retry fails when the pause 
+ * ends. Calls made with it afterwards fail at once. One Cancellation can be shared by any number of calls, 
+ * typically everything done for one upstream request.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see CallOptions
+ */
+public class Cancellation {
+
+	private static final Logger logger = LogManager.getLogger(Cancellation.class);
+
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+	private final Set<Call> calls = ConcurrentHashMap.newKeySet();
+	private final Set<Runnable> listeners = ConcurrentHashMap.newKeySet();
+
+	public interface Registration extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	public void cancel() {
+		if(!cancelled.compareAndSet(false, true)) return;
+		logger.debug("Cancelling "+calls.size()+" calls in flight");
+		for(Call call : calls) call.cancel();
+		for(Runnable listener : listeners) {
+			// onCancel() may be running it too, whoever removes it runs it
+			if(!listeners.remove(listener)) continue;
+			try {
+				listener.run();
+			} catch (RuntimeException e) {
+				logger.error("A cancellation listener failed", e);
+			}
+		}
+	}
+
+	public boolean isCancelled() {
+		return cancelled.get();
+	}
+
+	/**
+	 * @param listener run once on cancel(), at once if already cancelled
+	 * @return closing it removes the listener
+	 */
+	public Registration onCancel(Runnable listener) {
+		listeners.add(listener);
+		if(cancelled.get() && listeners.remove(listener)) listener.run();
+		return () -> listeners.remove(listener);
+	}
+
+	void register(Call call) {
+		calls.add(call);
+		// cancel() may have missed it
+		if(cancelled.get()) call.cancel();
+	}
+
+	void unregister(Call call) {
+		calls.remove(call);
+	}
+
+	@Override
+	public String toString() {
+		return "Cancellation [cancelled=" + cancelled + ", inFlight=" + calls.size() + "]";
+	}
+
+}
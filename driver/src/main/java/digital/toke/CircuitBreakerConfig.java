@@ -0,0 +1,167 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Input parameters for the circuit breakers, one per endpoint class (auth, sys, and each mount).</p>
+ * 
+ * <p>A breaker watches the last windowSize calls. Once it has seen at least minimumCalls, it opens if the share 
+ * of failures (transport errors and 5xx responses) or of slow calls reaches its threshold. While open, calls fail
+ * at once with a CircuitOpenException. After openDuration it lets halfOpenProbes calls through: if they all succeed
+ * it closes again, if any fails it re-opens.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see digital.toke.net.CircuitBreaker
+ */
+public class CircuitBreakerConfig {
+
+	boolean enabled;
+	int windowSize;
+	int minimumCalls;
+	double failureRateThreshold;
+	
+	// a call taking longer than this (in milliseconds) counts as slow
+	long slowCallDuration;
+	double slowCallRateThreshold;
+	
+	// how long to stay open before probing, in milliseconds
+	long openDuration;
+	int halfOpenProbes;
+
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * @return a config with the breakers turned off
+	 */
+	public static CircuitBreakerConfig disabled() {
+		return new Builder().enabled(false).build();
+	}
+
+	public static class Builder {
+
+		boolean enabled;
+		int windowSize;
+		int minimumCalls;
+		double failureRateThreshold;
+		long slowCallDuration;
+		double slowCallRateThreshold;
+		long openDuration;
+		int halfOpenProbes;
+
+		/**
+		 * Has sane defaults: looks at the last 50 calls (once there have been 20), opens at 50% failures or 80% of
+		 * calls slower than 5 seconds, stays open for 10 seconds, then probes with 3 calls
+		 */
+		public Builder() {
+			enabled = true;
+			windowSize = 50;
+			minimumCalls = 20;
+			failureRateThreshold = 0.5;
+			slowCallDuration = 5000;
+			slowCallRateThreshold = 0.8;
+			openDuration = 10000;
+			halfOpenProbes = 3;
+		}
+
+		public Builder enabled(boolean val) {
+			enabled = val;
+			return this;
+		}
+
+		public Builder windowSize(int val) {
+			windowSize = val;
+			return this;
+		}
+
+		public Builder minimumCalls(int val) {
+			minimumCalls = val;
+			return this;
+		}
+
+		public Builder failureRateThreshold(double val) {
+			failureRateThreshold = val;
+			return this;
+		}
+
+		public Builder slowCall(long duration, TimeUnit unit, double rateThreshold) {
+			slowCallDuration = unit.toMillis(duration);
+			slowCallRateThreshold = rateThreshold;
+			return this;
+		}
+
+		public Builder openDuration(long val, TimeUnit unit) {
+			openDuration = unit.toMillis(val);
+			return this;
+		}
+
+		public Builder halfOpenProbes(int val) {
+			halfOpenProbes = val;
+			return this;
+		}
+
+		public CircuitBreakerConfig build() {
+			if(windowSize < 1 || minimumCalls < 1 || halfOpenProbes < 1) {
+				throw new IllegalArgumentException("windowSize, minimumCalls and halfOpenProbes must be at least 1");
+			}
+			CircuitBreakerConfig config = new CircuitBreakerConfig();
+			config.enabled = this.enabled;
+			config.windowSize = this.windowSize;
+			config.minimumCalls = Math.min(this.minimumCalls, this.windowSize);
+			config.failureRateThreshold = this.failureRateThreshold;
+			config.slowCallDuration = this.slowCallDuration;
+			config.slowCallRateThreshold = this.slowCallRateThreshold;
+			config.openDuration = this.openDuration;
+			config.halfOpenProbes = this.halfOpenProbes;
+			return config;
+		}
+	}
+
+	private CircuitBreakerConfig() {}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	public int getMinimumCalls() {
+		return minimumCalls;
+	}
+
+	public double getFailureRateThreshold() {
+		return failureRateThreshold;
+	}
+
+	public long getSlowCallDuration() {
+		return slowCallDuration;
+	}
+
+	public double getSlowCallRateThreshold() {
+		return slowCallRateThreshold;
+	}
+
+	public long getOpenDuration() {
+		return openDuration;
+	}
+
+	public int getHalfOpenProbes() {
+		return halfOpenProbes;
+	}
+
+	@Override
+	public String toString() {
+		return "CircuitBreakerConfig [enabled=" + enabled + ", windowSize=" + windowSize + ", minimumCalls="
+				+ minimumCalls + ", failureRateThreshold=" + failureRateThreshold + ", slowCallDuration="
+				+ slowCallDuration + ", slowCallRateThreshold=" + slowCallRateThreshold + ", openDuration="
+				+ openDuration + ", halfOpenProbes=" + halfOpenProbes + "]";
+	}
+
+}
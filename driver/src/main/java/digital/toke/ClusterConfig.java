@@ -0,0 +1,233 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+
+/**
+ * <p>Input parameters for talking to a vault cluster (HA) rather than a single server.</p>
+ * 
+ * <p>Given the base url of each node, the driver finds the active node by asking each one for sys/health (and 
+ * sys/leader if none says it is active) and sends calls there, whatever host the request url names. When the active
+ * node stops answering the driver re-probes the cluster and moves over to the new active node. The topology is also
+ * refreshed in the background on the housekeeping scheduler.</p>
+ * 
+ * <p>With readRouting on, read-only calls (GETs and LISTs outside auth/, and sys/capabilities) are spread over the
+ * performance standbys (and the active node, unless readsOnActive is off). Of two nodes picked at random the one
+ * with the lower moving average latency, weighted by its calls in flight, gets the call. Writes and token 
+ * operations always go to the active node.</p>
+ * 
+ * <p>Reads from a standby can miss a write made moments before. With a consistency mode other than NONE, the 
+ * X-Vault-Index returned by each write is attached to later reads (of the same ReplicationState session, or of the
+ * whole driver) so a standby either waits until it has caught up or forwards the read, see ConsistencyMode.</p>
+ * 
+ * <p>With no endpoints (the default) the driver talks to the host, proto and port set on TokeDriverConfig.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see digital.toke.net.VaultCluster
+ */
+public class ClusterConfig {
+
+	// base urls of the nodes, e.g. https://vault-1:8200
+	List<HttpUrl> endpoints;
+	
+	// how often housekeeping re-probes the cluster, in milliseconds
+	long refreshInterval;
+	
+	// connect and read timeout for a probe, in milliseconds
+	long probeTimeout;
+	
+	// send read-only calls to performance standbys
+	boolean readRouting;
+	boolean readsOnActive;
+	
+	// weight of the newest sample in each node's moving average latency, 0 to 1
+	double latencyWeight;
+	
+	// read-after-write consistency when reads can reach a standby
+	ConsistencyMode consistency;
+	long maxIndexWait; // in WAIT mode, how long to retry a 412 before forwarding, in milliseconds
+
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * @return a config for a single server
+	 */
+	public static ClusterConfig none() {
+		return new Builder().build();
+	}
+
+	public static class Builder {
+
+		List<HttpUrl> endpoints;
+		long refreshInterval;
+		long probeTimeout;
+		boolean readRouting;
+		boolean readsOnActive;
+		double latencyWeight;
+		ConsistencyMode consistency;
+		long maxIndexWait;
+
+		/**
+		 * Has sane defaults: no endpoints, the topology is refreshed every 10 seconds and a node which does not 
+		 * answer a probe within 2 seconds is considered down. Read routing is off; when on, the active node takes
+		 * a share of reads and the latency average gives the newest sample a weight of 0.2. Consistency is 
+		 * NONE; in WAIT mode a read waits up to 2 seconds for a standby to catch up
+		 */
+		public Builder() {
+			endpoints = new ArrayList<HttpUrl>();
+			refreshInterval = 10000;
+			probeTimeout = 2000;
+			readRouting = false;
+			readsOnActive = true;
+			latencyWeight = 0.2;
+			consistency = ConsistencyMode.NONE;
+			maxIndexWait = 2000;
+		}
+
+		/**
+		 * @param url the base url of a node, such as https://vault-1:8200
+		 * @return
+		 */
+		public Builder endpoint(String url) {
+			HttpUrl parsed = HttpUrl.parse(url);
+			if(parsed == null) throw new IllegalArgumentException("Not a valid url: "+url);
+			endpoints.add(parsed);
+			return this;
+		}
+
+		public Builder endpoints(String... urls) {
+			for(String url : urls) {
+				endpoint(url);
+			}
+			return this;
+		}
+
+		public Builder refreshInterval(long val, TimeUnit unit) {
+			refreshInterval = unit.toMillis(val);
+			return this;
+		}
+
+		public Builder probeTimeout(long val, TimeUnit unit) {
+			probeTimeout = unit.toMillis(val);
+			return this;
+		}
+
+		/**
+		 * Spread read-only calls over the performance standbys (a Vault Enterprise feature)
+		 * 
+		 * @param val
+		 * @return
+		 */
+		public Builder readRouting(boolean val) {
+			readRouting = val;
+			return this;
+		}
+
+		/**
+		 * If false, reads only go to the active node when no performance standby is up
+		 * 
+		 * @param val
+		 * @return
+		 */
+		public Builder readsOnActive(boolean val) {
+			readsOnActive = val;
+			return this;
+		}
+
+		public Builder latencyWeight(double val) {
+			latencyWeight = val;
+			return this;
+		}
+
+		/**
+		 * Make reads see this driver's earlier writes, even on a standby
+		 * 
+		 * @param val
+		 * @return
+		 */
+		public Builder consistency(ConsistencyMode val) {
+			consistency = val;
+			return this;
+		}
+
+		public Builder maxIndexWait(long val, TimeUnit unit) {
+			maxIndexWait = unit.toMillis(val);
+			return this;
+		}
+
+		public ClusterConfig build() {
+			if(latencyWeight <= 0 || latencyWeight > 1) {
+				throw new IllegalArgumentException("latencyWeight must be greater than 0 and at most 1");
+			}
+			ClusterConfig config = new ClusterConfig();
+			config.endpoints = Collections.unmodifiableList(new ArrayList<HttpUrl>(this.endpoints));
+			config.refreshInterval = this.refreshInterval;
+			config.probeTimeout = this.probeTimeout;
+			config.readRouting = this.readRouting;
+			config.readsOnActive = this.readsOnActive;
+			config.latencyWeight = this.latencyWeight;
+			config.consistency = this.consistency == null ? ConsistencyMode.NONE : this.consistency;
+			config.maxIndexWait = this.maxIndexWait;
+			return config;
+		}
+	}
+
+	private ClusterConfig() {}
+
+	/**
+	 * @return true if endpoints were configured
+	 */
+	public boolean isEnabled() {
+		return !endpoints.isEmpty();
+	}
+
+	public List<HttpUrl> getEndpoints() {
+		return endpoints;
+	}
+
+	public long getRefreshInterval() {
+		return refreshInterval;
+	}
+
+	public long getProbeTimeout() {
+		return probeTimeout;
+	}
+
+	public boolean isReadRouting() {
+		return readRouting;
+	}
+
+	public boolean isReadsOnActive() {
+		return readsOnActive;
+	}
+
+	public double getLatencyWeight() {
+		return latencyWeight;
+	}
+
+	public ConsistencyMode getConsistency() {
+		return consistency;
+	}
+
+	public long getMaxIndexWait() {
+		return maxIndexWait;
+	}
+
+	@Override
+	public String toString() {
+		return "ClusterConfig [endpoints=" + endpoints + ", refreshInterval=" + refreshInterval + ", probeTimeout="
+				+ probeTimeout + ", readRouting=" + readRouting + ", readsOnActive=" + readsOnActive + ", latencyWeight="
+				+ latencyWeight + ", consistency=" + consistency + ", maxIndexWait=" + maxIndexWait + "]";
+	}
+
+}
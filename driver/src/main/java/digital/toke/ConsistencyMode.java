@@ -0,0 +1,24 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+/**
+ * <p>What a read does when it may reach a node which has not yet caught up with our last write, see 
+ * ClusterConfig.Builder.consistency().</p>
+ * 
+ * <ul>
+ * <li>NONE - reads carry no index, a standby may answer with older data</li>
+ * <li>WAIT - reads carry the X-Vault-Index of our last write; a standby which is behind answers 412 and the read 
+ * is repeated after a short pause, up to the configured wait, after which it is forwarded to the active node</li>
+ * <li>FORWARD - reads carry the index and ask a standby which is behind to forward them to the active node 
+ * (X-Vault-Inconsistent: forward-active-node)</li>
+ * </ul>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public enum ConsistencyMode {
+	NONE, WAIT, FORWARD;
+}
@@ -32,7 +32,11 @@ public class DefaultHousekeepingImpl extends HousekeepingBase {
 		logger.debug("Starting housekeeping run...");
 		
 		if(this.config.testReachable) {
-			if(!tokenManager.getAuth().hostIsReachable()) {
+			Object event = FlightEvents.beginHousekeeping();
+			boolean reachable = tokenManager.getAuth().hostIsReachable();
+			FlightEvents.endHousekeeping(event, "reachable");
+			if(!reachable) {
+				health().reachable(false);
 				logger.error("Host not reachable...bailing out of housekeeping.");
 				return;
 			}else {
@@ -43,7 +47,11 @@ public class DefaultHousekeepingImpl extends HousekeepingBase {
 		}
 		
 		if(this.config.pingHost) {
-			if(!tokenManager.getAuth().pingHost()) {
+			Object event = FlightEvents.beginHousekeeping();
+			boolean answered = tokenManager.getAuth().pingHost();
+			FlightEvents.endHousekeeping(event, "ping");
+			if(!answered) {
+				health().reachable(false);
 				logger.error("Socket probe failed...bailing out of housekeeping.");
 				return;
 			}else {
@@ -55,20 +63,22 @@ public class DefaultHousekeepingImpl extends HousekeepingBase {
 		
 		// 0.9 if init is set to true, attempt to create a new vault instance, write unseal keys, and put root token into 'token' field in config.
 		
-	    initVault();
+		phase("init", this::initVault);
 		
 		// 1.0 - see if unseal requested or needed to get our vault back up and running
-		unseal();
+		phase("unseal", this::unseal);
 		
 		// 1.1 - check for cached tokens, if we have some, validate and load them
-		loadCachedTokens();
+		phase("load-cached-tokens", this::loadCachedTokens);
 		
 		// 1.2 - if a login is required to get a new token, do that
-		autologin();
+		phase("autologin", this::autologin);
 		
 		// 1.3 - this is needed because updates to the set must be synchronized
+		Object event = FlightEvents.beginHousekeeping();
 		List<TokenRenewal> renewals = renew();
 		tokenManager.updateManagedTokens(renewals); // this also fires event, sends list
+		FlightEvents.endHousekeeping(event, "renew");
 		
 		logger.debug("Completed housekeeping run...");
 		logger.debug("Token manager has "+tokenManager.getTokens().size()+" tokens");
@@ -78,5 +88,16 @@ public class DefaultHousekeepingImpl extends HousekeepingBase {
 		
 	}
 	
+	/**
+	 * Run one step of the housekeeping, as a flight recorder event if those are being recorded
+	 */
+	private void phase(String name, Runnable step) {
+		Object event = FlightEvents.beginHousekeeping();
+		try {
+			step.run();
+		} finally {
+			FlightEvents.endHousekeeping(event, name);
+		}
+	}
 	
 }
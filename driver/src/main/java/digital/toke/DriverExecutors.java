@@ -0,0 +1,86 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved 
+ */
+package digital.toke;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <p>Creates the executors the driver runs its own work on, according to the ExecutionMode.</p>
+ * 
+ * <p>Note for code running on these executors: blocking while inside a synchronized block pins a virtual thread 
+ * to its carrier. The driver's own blocking paths use java.util.concurrent locks and semaphores only, keep it that way.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see ExecutionMode
+ */
+public final class DriverExecutors {
+
+	private static final Logger logger = LogManager.getLogger(DriverExecutors.class);
+	
+	private DriverExecutors() {}
+	
+	/**
+	 * @return true if this JVM (and this build of the jar) can run the driver on virtual threads
+	 */
+	public static boolean virtualThreadsAvailable() {
+		return VirtualThreads.available();
+	}
+
+	/**
+	 * An executor for driver work. In VIRTUAL mode on JDK 21+ this is a virtual-thread-per-task executor, otherwise 
+	 * a pool of at most platformThreads daemon threads with an unbounded queue.
+	 * 
+	 * @param mode
+	 * @param platformThreads the bound on the platform pool
+	 * @param name prefix for thread names
+	 * @return
+	 */
+	public static ExecutorService newExecutor(ExecutionMode mode, int platformThreads, String name) {
+		if(mode == ExecutionMode.VIRTUAL) {
+			if(VirtualThreads.available()) {
+				logger.info("Running "+name+" on virtual threads");
+				return VirtualThreads.newExecutor(name);
+			}
+			logger.info("Virtual threads not available on this JVM, falling back to "+platformThreads+" platform threads for "+name);
+		}
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(platformThreads, platformThreads, 60L, TimeUnit.SECONDS, 
+				new LinkedBlockingQueue<Runnable>(), daemonFactory(name));
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+	
+	/**
+	 * A ThreadFactory for scheduled (housekeeping) work and the bulk helpers' own pools: virtual threads in VIRTUAL 
+	 * mode on JDK 21+, otherwise daemon platform threads. Either way the threads are named after name
+	 * 
+	 * @param mode
+	 * @param name prefix for thread names
+	 * @return
+	 */
+	public static ThreadFactory threadFactory(ExecutionMode mode, String name) {
+		if(mode == ExecutionMode.VIRTUAL && VirtualThreads.available()) {
+			return VirtualThreads.factory(name);
+		}
+		return daemonFactory(name);
+	}
+	
+	static ThreadFactory daemonFactory(String name) {
+		final AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+	
+}
@@ -0,0 +1,18 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved 
+ */
+package digital.toke;
+
+/**
+ * How the driver runs its own work - async call dispatch, bulk helpers and housekeeping. 
+ * 
+ * VIRTUAL uses a virtual-thread-per-task executor when the driver jar runs on JDK 21 or later (the 
+ * multi-release part of the jar), and falls back to a bounded pool of platform threads elsewhere. 
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public enum ExecutionMode {
+	PLATFORM, VIRTUAL;
+}
@@ -0,0 +1,51 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import okhttp3.Interceptor;
+
+/**
+ * Java 8 version - records nothing. The JDK 21 version of this class lives under src/main/java21, is packaged
+ * into META-INF/versions/21 of the multi-release jar, and emits Java Flight Recorder events.
+ *
+ * A begin method returns the event being timed, or null when its type is not being recorded; the matching end
+ * method takes that back and does nothing with a null.
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see Networking
+ * @see HousekeepingBase
+ */
+final class FlightEvents {
+
+	private FlightEvents() {}
+
+	/**
+	 * @return an interceptor recording each HTTP exchange, or null if there is nothing to record with
+	 */
+	static Interceptor interceptor() {
+		return null;
+	}
+
+	static Object beginToken() {
+		return null;
+	}
+
+	/**
+	 * @param kind login, lookup-self, renew-self or renew-periodic
+	 */
+	static void endToken(Object event, String kind, String handle, AuthType authType, boolean succeeded) {}
+
+	static Object beginHousekeeping() {
+		return null;
+	}
+
+	static void endHousekeeping(Object event, String phase) {}
+
+	static Object beginLatch() {
+		return null;
+	}
+
+	static void endLatch(Object event, String service, boolean ready) {}
+}
@@ -0,0 +1,152 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Input parameters for hedged reads. Off unless enabled.</p>
+ * 
+ * <p>A GET or LIST which has not completed after the given percentile of recent read latency gets a second,
+ * identical attempt - to another node if read routing is on - and whichever answers first is used, the other is 
+ * cancelled. Hedges are limited to a fraction of reads by a budget, so a slow server does not see its load 
+ * doubled.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see digital.toke.net.Hedger
+ */
+public class HedgeConfig {
+
+	boolean enabled;
+	
+	// hedge after this percentile of recent read latency, 0 to 1
+	double percentile;
+	
+	// never hedge sooner than this, in milliseconds
+	long minDelay;
+	
+	// how many recent latencies the percentile is taken over, and how many are needed before hedging starts
+	int window;
+	int minSamples;
+	
+	// hedges may be at most this fraction of reads over time, with bursts of up to budgetBurst
+	double budgetRatio;
+	int budgetBurst;
+
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * @return a config which never hedges
+	 */
+	public static HedgeConfig none() {
+		return new Builder().build();
+	}
+
+	public static class Builder {
+
+		boolean enabled;
+		double percentile;
+		long minDelay;
+		int window;
+		int minSamples;
+		double budgetRatio;
+		int budgetBurst;
+
+		/**
+		 * Has sane defaults: off; when enabled, a read is hedged once it has taken longer than 95% of the last 1000
+		 * reads (at least 5ms, and only after 100 reads have been seen), and at most 5% of reads are hedged (bursts of 10)
+		 */
+		public Builder() {
+			enabled = false;
+			percentile = 0.95;
+			minDelay = 5;
+			window = 1000;
+			minSamples = 100;
+			budgetRatio = 0.05;
+			budgetBurst = 10;
+		}
+
+		public Builder enabled(boolean val) {
+			enabled = val;
+			return this;
+		}
+
+		public Builder percentile(double val) {
+			percentile = val;
+			return this;
+		}
+
+		public Builder minDelay(long val, TimeUnit unit) {
+			minDelay = unit.toMillis(val);
+			return this;
+		}
+
+		public Builder window(int size, int minSamples) {
+			this.window = size;
+			this.minSamples = minSamples;
+			return this;
+		}
+
+		public Builder budget(double ratio, int burst) {
+			budgetRatio = ratio;
+			budgetBurst = burst;
+			return this;
+		}
+
+		public HedgeConfig build() {
+			if(percentile <= 0 || percentile >= 1) throw new IllegalArgumentException("percentile must be between 0 and 1");
+			if(window < 1) throw new IllegalArgumentException("window must be at least 1");
+			HedgeConfig config = new HedgeConfig();
+			config.enabled = this.enabled;
+			config.percentile = this.percentile;
+			config.minDelay = this.minDelay;
+			config.window = this.window;
+			config.minSamples = Math.min(this.minSamples, this.window);
+			config.budgetRatio = this.budgetRatio;
+			config.budgetBurst = this.budgetBurst;
+			return config;
+		}
+	}
+
+	private HedgeConfig() {}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public double getPercentile() {
+		return percentile;
+	}
+
+	public long getMinDelay() {
+		return minDelay;
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	public int getMinSamples() {
+		return minSamples;
+	}
+
+	public double getBudgetRatio() {
+		return budgetRatio;
+	}
+
+	public int getBudgetBurst() {
+		return budgetBurst;
+	}
+
+	@Override
+	public String toString() {
+		return "HedgeConfig [enabled=" + enabled + ", percentile=" + percentile + ", minDelay=" + minDelay
+				+ ", window=" + window + ", minSamples=" + minSamples + ", budgetRatio=" + budgetRatio
+				+ ", budgetBurst=" + budgetBurst + "]";
+	}
+
+}
@@ -104,6 +104,8 @@ public abstract class HousekeepingBase implements Runnable {
 		try {
 			Toke response = auth.checkSealStatus();
 			SealStatusResponseDecorator vaultInstance = new SealStatusResponseDecorator(response);
+			health().reachable(true);
+			health().sealed(vaultInstance.isSealed());
 			if (vaultInstance.isSealed()) {
 				logger.info("Notice: vault is sealed and we will attempt to unseal if the conditions for that have been met");
 				// check to see if we should attempt unsealing
@@ -122,6 +124,7 @@ public abstract class HousekeepingBase implements Runnable {
 							logger.error("expected to unseal, but failed..." + vaultInstance.json().toString());
 						} else {
 							logger.info("Unsealed successfully..." + vaultInstance.json().toString());
+							health().sealed(false);
 						}
 					}else {
 						logger.error("Bad response?");
@@ -134,6 +137,8 @@ public abstract class HousekeepingBase implements Runnable {
 				logger.info("Vault instance appears to be unsealed  - good. Exiting this method.");
 			}
 		} catch (ReadException e1) {
+			// could not get to sys/seal-status at all
+			health().reachable(false);
 			logger.error(e1);
 		}catch(NullPointerException z) {
 			z.printStackTrace();
@@ -141,6 +146,15 @@ public abstract class HousekeepingBase implements Runnable {
 		}
 	}
 
+	/**
+	 * Shared with the service classes, which use it to decide whether to serve cached data rather than call vault
+	 * 
+	 * @return the health signals housekeeping keeps up to date
+	 */
+	protected VaultHealth health() {
+		return tokenManager.getAuth().client.health();
+	}
+
 	/**
 	 * This method needs to return immediately if useCachedTokens is not set
 	 */
@@ -168,12 +182,16 @@ public abstract class HousekeepingBase implements Runnable {
 			logger.info("Zero managed tokens found, trying to login to get one using auth creds...");
 
 			Token token = null;
+			AuthType authType = tokenManager.getDriverConfig().loginConfig.authType;
+			Object event = FlightEvents.beginToken();
 			try {
 				token = auth.login();
+				FlightEvents.endToken(event, "login", "root", authType, true);
 				
 				// needed for setting header on next call
 				tokenManager.fireLoginEvent(token);
 			} catch (LoginFailedException e) {
+				FlightEvents.endToken(event, "login", "root", authType, false);
 				logger.error(e);
 				return;
 			}
@@ -181,13 +199,16 @@ public abstract class HousekeepingBase implements Runnable {
 			// enrich the Token's info with additional data from a lookup
 			// requires read permission on /auth/token/lookup-self
 			// the token will have the special tokenHandle "root"
+			event = FlightEvents.beginToken();
 			try {
 				token = auth.lookupSelf(token);
+				FlightEvents.endToken(event, "lookup-self", "root", authType, true);
 				logger.debug("updated token with lookup data " + token.lookupData.toString());
 				tokens.put("root", token);
 				tokenManager.fireLoginEvent(token);
 				return; // exit at this point - we are logged in and lookup complete
 			} catch (ReadException e) {
+				FlightEvents.endToken(event, "lookup-self", "root", authType, false);
 				// maybe we didn't have permission
 				logger.error("Does this user have permission to read auth/token/lookup-self?", e);
 				return;
@@ -216,10 +237,13 @@ public abstract class HousekeepingBase implements Runnable {
 			Token oldToken = tokens.get(handle);
 			
 			if (oldToken.isPeriodic()) {
+				Object event = FlightEvents.beginToken();
 				try {
 					Token newToken = auth.renewPeriodic(oldToken);
+					FlightEvents.endToken(event, "renew-periodic", handle, null, true);
 					renewals.add(new TokenRenewal(handle, PERIODIC, oldToken,newToken));
 				} catch (Exception x) {
+					FlightEvents.endToken(event, "renew-periodic", handle, null, false);
 					logger.warn("Renew Periodic has failed for "+handle, x);
 					// TODO login again
 				}
@@ -240,10 +264,13 @@ public abstract class HousekeepingBase implements Runnable {
 						if (config.min_ttl > count) {
 							logger.debug("OK, looks like should renew now");
 							// ok, try to do renewal
+							Object event = FlightEvents.beginToken();
 							try {
 								Token newToken = auth.renewSelf(oldToken);
+								FlightEvents.endToken(event, "renew-self", handle, null, true);
 								renewals.add(new TokenRenewal(handle,SELF,oldToken,newToken));
 							} catch (Exception e) {
+								FlightEvents.endToken(event, "renew-self", handle, null, false);
 								e.printStackTrace();
 								logger.info("Renew of non-periodic token has failed for "+handle, e);
 								// TODO login again
@@ -4,13 +4,32 @@
  */
 package digital.toke;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import digital.toke.accessor.Toke;
 import digital.toke.event.EventEnum;
 import digital.toke.event.RenewalTokenEvent;
 import digital.toke.event.TokenEvent;
 import digital.toke.event.TokenListener;
+import digital.toke.exception.ReadException;
+import digital.toke.exception.WriteException;
+import okhttp3.HttpUrl;
 
 /**
  * Base class for shared code in KV implementations
@@ -22,6 +41,9 @@ public abstract class KV extends ServiceBase implements TokenListener {
 
 	private static final Logger logger = LogManager.getLogger(KV.class);
 	
+	public static final int DEFAULT_BULK_CONCURRENCY = 16;
+	public static final long DEFAULT_BULK_TIMEOUT_SECONDS = 60;
+	
 	protected TokeDriverConfig config;
 	protected Token token;
 	protected Networking client;
@@ -32,6 +54,224 @@ public abstract class KV extends ServiceBase implements TokenListener {
 		this.client = client;
 	}
 	
+	/**
+	 * @return how the driver runs its own work, for helpers which start threads of their own
+	 */
+	public ExecutionMode executionMode() {
+		return config == null ? ExecutionMode.PLATFORM : config.executionMode;
+	}
+	
+	/**
+	 * Read the (most recent version of the) secret on this path
+	 * 
+	 * @param path
+	 * @return
+	 * @throws ReadException
+	 */
+	public abstract Toke kvRead(String path) throws ReadException;
+	
+	/**
+	 * Create or over-write the secret on this path
+	 * 
+	 * @param path
+	 * @param data
+	 * @return
+	 * @throws WriteException
+	 */
+	public abstract Toke kvWrite(String path, Map<String,Object> data) throws WriteException;
+	
+	/**
+	 * Non-blocking read of the (most recent version of the) secret on this path
+	 * 
+	 * @param path
+	 * @return
+	 */
+	public abstract CompletableFuture<Toke> kvReadAsync(String path);
+	
+	/**
+	 * kvRead() within a deadline, covering the wait for the driver to be ready, any queueing and retries
+	 * 
+	 * @param path
+	 * @param timeout
+	 * @return
+	 * @throws ReadException with a DeadlineExceededException as the cause if the deadline passed
+	 */
+	public Toke kvRead(String path, Duration timeout) throws ReadException {
+		return kvRead(path, CallOptions.timeout(timeout));
+	}
+	
+	/**
+	 * kvRead() with a deadline and/or cancellation, see CallOptions
+	 * 
+	 * @param path
+	 * @param options
+	 * @return
+	 * @throws ReadException
+	 */
+	public Toke kvRead(String path, CallOptions options) throws ReadException {
+		return options.call(() -> kvRead(path));
+	}
+	
+	/**
+	 * kvWrite() with a deadline and/or cancellation, see CallOptions
+	 * 
+	 * @param path
+	 * @param data
+	 * @param options
+	 * @return
+	 * @throws WriteException
+	 */
+	public Toke kvWrite(String path, Map<String,Object> data, CallOptions options) throws WriteException {
+		return options.call(() -> kvWrite(path, data));
+	}
+	
+	/**
+	 * Read many paths with the default concurrency and deadline
+	 * 
+	 * @param paths
+	 * @return
+	 */
+	public BulkReadResult kvReadAll(Collection<String> paths) {
+		return kvReadAll(paths, DEFAULT_BULK_CONCURRENCY, DEFAULT_BULK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * <p>Read many paths in parallel, with at most concurrency reads in flight at once. Blocks until every path
+	 * has an outcome or the deadline passes; reads still outstanding at the deadline are cancelled and reported
+	 * as errors, reads not yet started are not sent.</p>
+	 * 
+	 * <p>A failure on one path (a 404, say) is recorded against that path only and does not stop the batch. The
+	 * reads go in the BULK lane.</p>
+	 * 
+	 * <p>With CallOptions bound, the batch also stops at their deadline if that comes first, and cancelling 
+	 * their Cancellation cancels the reads in flight and fails the rest.</p>
+	 * 
+	 * @param paths duplicates are read once
+	 * @param concurrency maximum number of reads in flight
+	 * @param timeout overall deadline for the batch
+	 * @param unit
+	 * @return a result or an error for every path
+	 */
+	public BulkReadResult kvReadAll(Collection<String> paths, int concurrency, long timeout, TimeUnit unit) {
+		
+		if(concurrency < 1) throw new IllegalArgumentException("concurrency must be at least 1");
+		
+		latch();
+		
+		long start = System.nanoTime();
+		CallOptions options = CallOptions.current();
+		long deadline = start + Math.min(unit.toNanos(timeout), options == null ? Long.MAX_VALUE : options.remainingNanos());
+		Semaphore permits = new Semaphore(concurrency);
+		BulkReadResult result = new BulkReadResult(paths.size());
+		List<CompletableFuture<Toke>> calls = new ArrayList<CompletableFuture<Toke>>();
+		List<CompletableFuture<Void>> recorded = new ArrayList<CompletableFuture<Void>>();
+		
+		for(String path : new LinkedHashSet<String>(paths)) {
+			if(options != null && options.isCancelled()) {
+				result.failed(path, new ReadException("Cancelled before the read of "+path+" could start"));
+				continue;
+			}
+			try {
+				long remaining = deadline - System.nanoTime();
+				if(remaining <= 0 || !permits.tryAcquire(remaining, TimeUnit.NANOSECONDS)) {
+					result.failed(path, new ReadException("Deadline passed before the read of "+path+" could start"));
+					continue;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				result.failed(path, new ReadException("Interrupted before the read of "+path+" could start"));
+				continue;
+			}
+			
+			CompletableFuture<Toke> call;
+			try (Lane.Scope scope = Lane.BULK.bind()) {
+				call = kvReadAsync(path);
+			}
+			calls.add(call);
+			recorded.add(call.handle((toke, x) -> {
+				permits.release();
+				if(x == null) result.succeeded(path, toke);
+				else result.failed(path, bulkReadException(path, x));
+				return null;
+			}));
+		}
+		
+		CompletableFuture<Void> all = CompletableFuture.allOf(recorded.toArray(new CompletableFuture[0]));
+		try {
+			all.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException | InterruptedException e) {
+			if(e instanceof InterruptedException) Thread.currentThread().interrupt();
+			for(CompletableFuture<Toke> call : calls) {
+				call.cancel(true);
+			}
+			// every call is now done, so this only waits for the last outcomes to be recorded
+			all.join();
+		} catch (ExecutionException e) {
+			// can't happen, outcomes are recorded per path by handle()
+		}
+		
+		result.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		logger.debug("Bulk read of "+paths.size()+" paths: "+result);
+		return result;
+	}
+	
+	/**
+	 * @param path
+	 * @return the LIST url for this path on the engine's mount
+	 */
+	protected abstract HttpUrl listUrl(String path);
+	
+	/**
+	 * Walk the whole mount with the default concurrency and deadline
+	 * 
+	 * @param prefix
+	 * @param leaves called once for each leaf path found, concurrently - must be thread-safe
+	 * @return
+	 */
+	public TreeWalk kvWalk(String prefix, Consumer<String> leaves) {
+		return kvWalk(prefix, leaves, DEFAULT_BULK_CONCURRENCY, DEFAULT_BULK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * Recursively list everything under prefix (use "" for the whole mount), handing each leaf path to the 
+	 * consumer as it is found. Sub-directories are listed in parallel, at most concurrency at once. Blocks until
+	 * the walk is finished or the deadline passes
+	 * 
+	 * @param prefix
+	 * @param leaves called once for each leaf path found, concurrently - must be thread-safe
+	 * @param concurrency maximum number of list calls in flight
+	 * @param timeout overall deadline for the walk
+	 * @param unit
+	 * @return counts and per-directory errors
+	 */
+	public TreeWalk kvWalk(String prefix, Consumer<String> leaves, int concurrency, long timeout, TimeUnit unit) {
+		return kvWalk(prefix, leaves, concurrency, null, timeout, unit);
+	}
+	
+	/**
+	 * As above, but no new list calls are started while paused returns true. For a consumer which passes the leaves
+	 * on to a queue: the walk waits for the queue to drain, instead of the consumer blocking the driver's threads
+	 * 
+	 * @param prefix
+	 * @param leaves called once for each leaf path found, concurrently - must be thread-safe and must not block
+	 * @param concurrency maximum number of list calls in flight
+	 * @param paused checked before each list call, may be null
+	 * @param timeout overall deadline for the walk
+	 * @param unit
+	 * @return counts and per-directory errors
+	 */
+	public TreeWalk kvWalk(String prefix, Consumer<String> leaves, int concurrency, BooleanSupplier paused, long timeout, TimeUnit unit) {
+		latch();
+		return new TreeWalk(this, leaves, concurrency, paused).run(prefix, timeout, unit);
+	}
+	
+	private static ReadException bulkReadException(String path, Throwable x) {
+		Throwable cause = unwrap(x);
+		if(cause instanceof ReadException) return (ReadException) cause;
+		if(cause instanceof CancellationException) return new ReadException("Deadline passed while reading "+path);
+		return new ReadException(cause);
+	}
+	
 	@Override
 	public void tokenEvent(TokenEvent evt) {
 		
@@ -9,12 +9,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.JSONObject;
 
 import digital.toke.accessor.DataResponseDecorator;
+import digital.toke.accessor.SecretsResponseDecorator;
 import digital.toke.accessor.Toke;
 import digital.toke.exception.ReadException;
 import digital.toke.exception.WriteException;
@@ -32,6 +34,7 @@ public class KVv1 extends KV {
 
 	public KVv1(TokeDriverConfig config, Networking client) {
 		super(config,client);
+		if(config != null && client != null) client.metrics().kvMount(config.kv1Mount(), 1);
 		logger.info("Initialized KVv1 driver instance");
 	}
 	
@@ -207,10 +210,15 @@ public class KVv1 extends KV {
 		}
     	
     	if(t != null && t.successful) {
-    		 t.accessor().json().getJSONObject("data").getJSONArray("keys").toList();
+    		return new SecretsResponseDecorator(t).secrets();
     	}
     	
-    	return null;
+    	return keys;
+	}
+	
+	@Override
+	protected HttpUrl listUrl(String path) {
+		return config.kv1List(path);
 	}
 
 
@@ -240,4 +248,56 @@ public class KVv1 extends KV {
 		return response;
 	}
 	
+	// ************ Non-blocking variants ************ //
+	
+	/**
+	 * Non-blocking read. The future completes exceptionally with a ReadException on the 
+	 * same conditions kvRead() throws one
+	 * 
+	 * @param path
+	 * @return
+	 */
+	public CompletableFuture<Toke> kvReadAsync(String path) {
+		
+		if(token == null) return failed(new ReadException("Token not set"));
+		
+		String url = config.kv1Path(path);
+		// we expect a 200 per the documentation
+		return readAsync(client.getAsync(url), 200);
+	}
+	
+	/**
+	 * Non-blocking create or over-write of a path. The future completes exceptionally with a WriteException
+	 * 
+	 * @param path
+	 * @param map
+	 * @return
+	 */
+	public CompletableFuture<Toke> kvWriteAsync(String path, Map<String,Object> map) {
+		
+		if(token == null) return failed(new WriteException("Token not set"));
+		
+		String url = config.kv1Path(path);
+		JSONObject obj = new JSONObject(map);
+		// we expect a 204 per the documentation
+		return writeAsync(client.postAsync(url, obj.toString()), 204);
+	}
+	
+	public CompletableFuture<Toke> kvListAsync(String path) {
+		
+		if(token == null) return failed(new ReadException("Token not set"));
+		
+		// we expect a 200 per the documentation
+		return readAsync(client.listAsync(config.kv1List(path)), 200);
+	}
+	
+	public CompletableFuture<Toke> kvDeleteAsync(String path) {
+		
+		if(token == null) return failed(new WriteException("Token not set"));
+		
+		String url = config.kv1Path(path);
+		// we expect a 204 per the documentation
+		return writeAsync(client.deleteAsync(url), 204);
+	}
+	
 }
@@ -8,15 +8,18 @@ import static digital.toke.TokeDriverConfig.*;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.JSONObject;
 
 import digital.toke.accessor.Toke;
+import digital.toke.cache.SecretCache;
 import digital.toke.exception.ConfigureException;
 import digital.toke.exception.ReadException;
 import digital.toke.exception.WriteException;
+import okhttp3.HttpUrl;
 
 /**
  * Implement the RESTful interface calls to KVv2 secrets engine
@@ -28,8 +31,13 @@ public class KVv2 extends KV {
 
 	private static final Logger logger = LogManager.getLogger(KVv2.class);
 	
+	// null unless opted in with TokeDriverConfig.Builder.kv2Cache()
+	protected final SecretCache cache;
+	
 	public KVv2(TokeDriverConfig config, Networking client) {
 		super(config,client);
+		cache = config.kv2CacheConfig == null ? null : new SecretCache(config.kv2CacheConfig);
+		if(client != null) client.metrics().kvMount(config.kv2Mount(), 2);
 		logger.info("Initialized KVv2 driver instance");
 	}
 	
@@ -48,6 +56,9 @@ public class KVv2 extends KV {
 	/**
 	 * Read a given version of this path
 	 * 
+	 * If the cache is configured with a maxStale, a read which finds vault unavailable (transport failure, 5xx, 
+	 * or housekeeping reports it sealed or unreachable) returns the last known good value with Toke.stale set
+	 * 
 	 * @param path
 	 * @param version
 	 * @return
@@ -59,22 +70,98 @@ public class KVv2 extends KV {
 		
 		if(token == null) throw new ReadException("Token not set");
 		
-		String url = config.kv2Path(KVv2DATA, path);
-		if(version != -1) {
-			url+="?version="+version;
+		long epoch = 0;
+		SecretCache.Entry stale = null;
+		if(cache != null) {
+			SecretCache.Entry hit = cache.get(mount(), path, version);
+			if(hit != null) {
+				// a negative entry holds the original 404, which throws here just as it did the first time
+				client.tracer().record("kv2 cache hit", path);
+				readExceptionExcept(hit.toke(), 200);
+				refreshAhead(path, version, hit);
+				return hit.toke();
+			}
+			stale = cache.getStale(mount(), path, version);
+			if(stale != null && !client.health().isAvailable()) {
+				// don't add to the pile of requests against a server we know is down
+				logger.debug("Vault unavailable, serving stale "+path);
+				client.tracer().record("kv2 stale cache hit", path);
+				return cache.serveStale(stale);
+			}
+			epoch = cache.epoch();
 		}
+		
 		Toke response = null;
 		try {
-			response = client.get(url);
+			response = client.get(dataUrl(path, version));
+			if(stale != null && response.code >= 500) {
+				logger.warn("Vault returned "+response.code+", serving stale "+path);
+				client.tracer().record("kv2 stale cache hit", path);
+				return cache.serveStale(stale);
+			}
+			cacheResult(path, version, response, epoch);
 			// we expect a 200 per the documentation
 			this.readExceptionExcept(response, 200);
 		} catch (IOException e) {
+			if(stale != null) {
+				logger.warn("Vault call failed, serving stale "+path, e);
+				client.tracer().record("kv2 stale cache hit", path);
+				return cache.serveStale(stale);
+			}
 			throw new ReadException(e);
 		}
 		
 		return response;
 	}
 	
+	/**
+	 * @return the read cache, for its hit-rate and eviction statistics, or null if caching is not configured
+	 */
+	public SecretCache cache() {
+		return cache;
+	}
+	
+	/**
+	 * @return the mount this instance currently talks to
+	 */
+	String mount() {
+		return config.kv2Name == null ? config.defaultKVv2Name : config.kv2Name;
+	}
+	
+	private String dataUrl(String path, int version) {
+		String url = config.kv2Path(KVv2DATA, path);
+		if(version != -1) {
+			url+="?version="+version;
+		}
+		return url;
+	}
+	
+	/**
+	 * Re-read a hot entry in the background if it is due, so callers keep hitting the cache
+	 */
+	private void refreshAhead(String path, int version, SecretCache.Entry hit) {
+		if(!cache.claimRefresh(hit)) return;
+		if(!client.health().isAvailable()) {
+			cache.refreshDone(hit);
+			return;
+		}
+		long epoch = cache.epoch();
+		client.getAsync(dataUrl(path, version)).whenComplete((response, x) -> {
+			if(response != null) cacheResult(path, version, response, epoch);
+			cache.refreshDone(hit);
+		});
+	}
+	
+	private void cacheResult(String path, int version, Toke response, long epoch) {
+		if(cache == null) return;
+		if(response.code == 200) cache.put(mount(), path, version, response, epoch);
+		else if(response.code == 404) cache.putNotFound(mount(), path, version, response, epoch);
+	}
+	
+	private void invalidate(String path) {
+		if(cache != null) cache.invalidate(mount(), path);
+	}
+	
 	/**
 	 * Configure the max versions and if cas (Check and Set) is to be required on calls.
 	 * 
@@ -210,6 +297,9 @@ public class KVv2 extends KV {
 		return response;
 		} catch (IOException e) {
 			throw new WriteException(e);
+		} finally {
+			// even a failed write may have landed
+			invalidate(path);
 		}
 	}
 	
@@ -239,6 +329,11 @@ public class KVv2 extends KV {
 		return response;
 	}
 	
+	@Override
+	protected HttpUrl listUrl(String path) {
+		return config.kv2List(path);
+	}
+	
 	public Toke kvReadMetadata(String path) throws ReadException {
 		
 		latch();
@@ -284,6 +379,8 @@ public class KVv2 extends KV {
 			writeExceptionExcept(response, 204);
 			} catch (IOException e) {
 			throw new WriteException(e);
+		} finally {
+			invalidate(path);
 		}
 		
 		return response;
@@ -311,6 +408,8 @@ public class KVv2 extends KV {
 			writeExceptionExcept(response, 204);
 		} catch (IOException e) {
 			throw new WriteException(e);
+		} finally {
+			invalidate(path);
 		}
 		
 		return response;
@@ -341,6 +440,8 @@ public class KVv2 extends KV {
 			writeExceptionExcept(response, 200);
 		} catch (IOException e) {
 			throw new WriteException(e);
+		} finally {
+			invalidate(path);
 		}
 		
 		return response;
@@ -371,9 +472,127 @@ public class KVv2 extends KV {
 			writeExceptionExcept(response, 204);
 		} catch (IOException e) {
 			throw new WriteException(e);
+		} finally {
+			invalidate(path);
 		}
 		
 		return response;
 	}
 
+	
+	// ************ Non-blocking variants ************ //
+	
+	/**
+	 * Non-blocking read of the most recent version on this path. The future completes exceptionally 
+	 * with a ReadException on the same conditions kvRead() throws one
+	 * 
+	 * @param path
+	 * @return
+	 */
+	public CompletableFuture<Toke> kvReadAsync(String path) {
+		return kvReadAsync(path, -1);
+	}
+	
+	/**
+	 * Non-blocking read of a given version of this path
+	 * 
+	 * @param path
+	 * @param version
+	 * @return
+	 */
+	public CompletableFuture<Toke> kvReadAsync(String path, int version) {
+		
+		if(token == null) return failed(new ReadException("Token not set"));
+		
+		if(cache == null) {
+			// we expect a 200 per the documentation
+			return readAsync(client.getAsync(dataUrl(path, version)), 200);
+		}
+		
+		SecretCache.Entry hit = cache.get(mount(), path, version);
+		if(hit != null) {
+			if(hit.isNegative()) return readAsync(CompletableFuture.completedFuture(hit.toke()), 200);
+			refreshAhead(path, version, hit);
+			return CompletableFuture.completedFuture(hit.toke());
+		}
+		SecretCache.Entry stale = cache.getStale(mount(), path, version);
+		if(stale != null && !client.health().isAvailable()) {
+			return CompletableFuture.completedFuture(cache.serveStale(stale));
+		}
+		
+		long epoch = cache.epoch();
+		CompletableFuture<Toke> call = client.getAsync(dataUrl(path, version));
+		call.thenAccept(response -> cacheResult(path, version, response, epoch));
+		if(stale == null) {
+			return readAsync(call, 200);
+		}
+		// fall back to the last known good value on a transport failure or a 5xx
+		CompletableFuture<Toke> served = call.handle((response, x) -> 
+			response == null || response.code >= 500 ? cache.serveStale(stale) : response);
+		cancelWith(served, call);
+		return readAsync(served, 200);
+	}
+	
+	/**
+	 * Non-blocking write regardless (no check and set)
+	 * 
+	 * @param path
+	 * @param data
+	 * @return
+	 */
+	public CompletableFuture<Toke> kvWriteAsync(String path, Map<String,Object> data) {
+		JSONObject top = new JSONObject().put("data", data);
+		return kvCreateUpdateAsync(path, top.toString());
+	}
+	
+	/**
+	 * Non-blocking counterpart to kvCreateUpdate(). The future completes exceptionally with a WriteException
+	 * 
+	 * @param path
+	 * @param jsonData
+	 * @return
+	 */
+	public CompletableFuture<Toke> kvCreateUpdateAsync(String path, String jsonData) {
+		
+		if(token == null) return failed(new WriteException("Token not set"));
+		
+		String url = config.kv2Path(KVv2DATA, path);
+		// we expect a 200 per the documentation
+		CompletableFuture<Toke> call = client.postAsync(url, jsonData);
+		// invalidate before the caller sees the result, so a read after the write goes to vault
+		CompletableFuture<Toke> written = call.whenComplete((response, x) -> invalidate(path));
+		cancelWith(written, call);
+		return writeAsync(written, 200);
+	}
+	
+	public CompletableFuture<Toke> kvListAsync(String path) {
+		
+		if(token == null) return failed(new ReadException("Token not set"));
+		
+		// we expect a 200 per the documentation
+		return readAsync(client.listAsync(config.kv2List(path)), 200);
+	}
+	
+	public CompletableFuture<Toke> kvReadMetadataAsync(String path) {
+		
+		if(token == null) return failed(new ReadException("Token not set"));
+		
+		String url = config.kv2Path(KVv2METADATA, path);
+		// we expect a 200 per the documentation
+		return readAsync(client.getAsync(url), 200);
+	}
+	
+	public CompletableFuture<Toke> kvDeleteAsync(String path) {
+		
+		if(token == null) return failed(new WriteException("Token not set"));
+		
+		String url = config.kv2Path(KVv2DATA, path);
+		// we expect a 204 per the documentation
+		CompletableFuture<Toke> call = client.deleteAsync(url);
+		// invalidate before the caller sees the result, so a read after the write goes to vault
+		CompletableFuture<Toke> written = call.whenComplete((response, x) -> invalidate(path));
+		cancelWith(written, call);
+		return writeAsync(written, 204);
+	}
+
 }
@@ -0,0 +1,56 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+/**
+ * <p>The priority class of a call, see PriorityConfig. In order of priority:</p>
+ * 
+ * <ul>
+ * <li>AUTH - logins, token renewal and lookups: everything under an auth path. Always in this lane</li>
+ * <li>INTERACTIVE - the default for everything else</li>
+ * <li>BULK - calls made by kvReadAll(), kvWalk(), the Exporter and the Importer, or inside a bind() scope</li>
+ * </ul>
+ * 
+ * <p>Like a ReplicationState, a lane is bound to the calling thread and read when the request is built, so async
+ * calls started inside the scope carry it too:</p>
+ * 
+ * <pre>
+ * try (Lane.Scope scope = Lane.BULK.bind()) {
+ *     for(String path : paths) kv2.kvReadAsync(path);
+ * }
+ * </pre>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public enum Lane {
+	AUTH, INTERACTIVE, BULK;
+
+	private static final ThreadLocal<Lane> bound = new ThreadLocal<Lane>();
+
+	public interface Scope extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	/**
+	 * @return a scope which puts the calls made on this thread in this lane until it is closed
+	 */
+	public Scope bind() {
+		final Lane previous = bound.get();
+		bound.set(this);
+		return () -> {
+			if(previous == null) bound.remove();
+			else bound.set(previous);
+		};
+	}
+
+	/**
+	 * @return the lane bound to the calling thread, or null
+	 */
+	public static Lane current() {
+		return bound.get();
+	}
+}
@@ -5,21 +5,54 @@
 package digital.toke;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import digital.toke.accessor.Toke;
+import digital.toke.event.CircuitBreakerListener;
 import digital.toke.event.EventEnum;
 import digital.toke.event.RenewalTokenEvent;
 import digital.toke.event.TokenEvent;
 import digital.toke.event.TokenListener;
+import digital.toke.exception.DeadlineExceededException;
+import digital.toke.exception.RejectedCallException;
+import digital.toke.metrics.MetricsInterceptor;
+import digital.toke.metrics.PhaseListener;
+import digital.toke.metrics.PhaseTimings;
+import digital.toke.metrics.VaultMetrics;
+import digital.toke.net.AdaptiveLimiter;
+import digital.toke.net.AsyncWait;
+import digital.toke.net.CircuitBreakerInterceptor;
+import digital.toke.net.ConsistencyInterceptor;
+import digital.toke.net.Hedger;
+import digital.toke.net.HostConcurrencyInterceptor;
+import digital.toke.net.RateLimiter;
+import digital.toke.net.ReplicationState;
+import digital.toke.net.RetryInterceptor;
+import digital.toke.net.RouteHint;
+import digital.toke.net.RoutingInterceptor;
+import digital.toke.net.SingleFlight;
+import digital.toke.net.VaultCluster;
+import digital.toke.trace.Span;
+import digital.toke.trace.Tracer;
+import digital.toke.trace.TracingInterceptor;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -29,21 +62,117 @@ import okhttp3.Response;
 /**
  * Thread-safe wrapper on the HTTP calls, we are using the delightful OKHttp. 
  * 
+ * There is no global lock - calls run concurrently and share OkHttp's connection pool and dispatcher. The 
+ * number of requests in flight is bounded per host by the settings in NetworkingConfig. The token is held 
+ * in a volatile field and read exactly once per request, so a renewal is never seen half-way through a call.
+ * 
+ * Each verb also has a non-blocking *Async variant returning a CompletableFuture, so a handful of threads can 
+ * keep many requests in flight. Their retries, rate limit waits and waits for a standby run on a dispatcher 
+ * thread and are kept to NetworkingConfig's maxAsyncWait.
+ * 
  * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
  * @see Toke
+ * @see NetworkingConfig
  *
  */
-public class Networking implements TokenListener {
+public class Networking implements TokenListener, AutoCloseable {
 
 	private static final Logger logger = LogManager.getLogger(Networking.class);
 	public static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
-	protected final Lock lock = new ReentrantLock();
+	public static final String X_VAULT_TOKEN = "X-Vault-Token";
+	protected final NetworkingConfig config;
+	protected final ExecutorService executor;
 	protected final OkHttpClient client;
-	protected Token token;
+	protected final SingleFlight<Toke> coalescer = new SingleFlight<Toke>();
+	protected final VaultHealth health = new VaultHealth();
+	protected final VaultMetrics metrics = new VaultMetrics();
+	protected final RetryInterceptor retrier;
+	protected final CircuitBreakerInterceptor breakers;
+	protected final VaultCluster cluster;
+	protected final ConsistencyInterceptor consistency;
+	protected final Hedger hedger;
+	protected final AdaptiveLimiter limiter;
+	protected final RateLimiter rateLimiter;
+	protected final HostConcurrencyInterceptor hostSlots;
+	protected final Tracer tracer;
+	protected final AsyncWait asyncWait;
+	// the X-Vault-Index of this driver's writes, used unless a ReplicationState is bound to the calling thread
+	protected final ReplicationState replicationState = new ReplicationState();
+	protected volatile Token token;
 
 	public Networking() {
-		client = new OkHttpClient();
-		logger.info("Initialized a networking instance");
+		this(NetworkingConfig.builder().build());
+	}
+	
+	public Networking(NetworkingConfig config) {
+		this(config, DriverExecutors.newExecutor(ExecutionMode.PLATFORM, config.maxRequests, "toke-worker"));
+	}
+	
+	/**
+	 * The executor runs OkHttp's async calls and their completions, and is shared with the bulk helpers
+	 * 
+	 * @param config
+	 * @param executor
+	 */
+	public Networking(NetworkingConfig config, ExecutorService executor) {
+		this.config = config;
+		this.executor = executor;
+		
+		Dispatcher dispatcher = new Dispatcher(executor);
+		dispatcher.setMaxRequests(config.maxRequests);
+		dispatcher.setMaxRequestsPerHost(config.maxRequestsPerHost);
+		
+		retrier = new RetryInterceptor(config.retryConfig);
+		breakers = new CircuitBreakerInterceptor(config.circuitBreakerConfig);
+		ConnectionPool pool = new ConnectionPool(config.maxIdleConnections, config.keepAliveSeconds, TimeUnit.SECONDS);
+		
+		// cluster probes bypass the interceptors, they must reach the node they name
+		OkHttpClient probeClient = new OkHttpClient.Builder()
+				.connectionPool(pool)
+				.connectTimeout(config.clusterConfig.getProbeTimeout(), TimeUnit.MILLISECONDS)
+				.readTimeout(config.clusterConfig.getProbeTimeout(), TimeUnit.MILLISECONDS)
+				.build();
+		cluster = new VaultCluster(config.clusterConfig, probeClient, executor);
+		consistency = new ConsistencyInterceptor(config.clusterConfig.getConsistency(), config.clusterConfig.getMaxIndexWait());
+		ScheduledThreadPoolExecutor hedgeTimer = null;
+		if(config.hedgeConfig.isEnabled()) {
+			hedgeTimer = new ScheduledThreadPoolExecutor(1, DriverExecutors.daemonFactory("toke-hedge"));
+			hedgeTimer.setRemoveOnCancelPolicy(true);
+		}
+		hedger = new Hedger(config.hedgeConfig, hedgeTimer);
+		limiter = new AdaptiveLimiter(config.adaptiveLimitConfig);
+		rateLimiter = new RateLimiter(config.rateLimitConfig);
+		hostSlots = new HostConcurrencyInterceptor(config.maxRequestsPerHost, config.priorityConfig);
+		tracer = new Tracer(config.traceConfig);
+		asyncWait = new AsyncWait(config.maxAsyncWait);
+		
+		OkHttpClient.Builder builder = new OkHttpClient.Builder();
+		// a span per call around everything else, and one per attempt next to the wire
+		if(tracer.isEnabled()) builder.addInterceptor(TracingInterceptor.call(tracer, metrics));
+		builder
+				.dispatcher(dispatcher)
+				.connectionPool(pool)
+				.connectTimeout(config.connectTimeout, TimeUnit.MILLISECONDS)
+				.readTimeout(config.readTimeout, TimeUnit.MILLISECONDS)
+				.writeTimeout(config.writeTimeout, TimeUnit.MILLISECONDS)
+				.eventListenerFactory(PhaseListener.factory(metrics))
+				// outermost first: an open breaker fails before any retry, a call waiting to retry does not hold a host slot.
+				// The metrics see what the caller sees, the adaptive limiter's latencies do not include waiting for a slot
+				.addInterceptor(new MetricsInterceptor(metrics))
+				.addInterceptor(breakers)
+				.addInterceptor(retrier)
+				.addInterceptor(consistency)
+				.addInterceptor(new RoutingInterceptor(cluster))
+				.addInterceptor(rateLimiter)
+				.addInterceptor(hostSlots)
+				.addInterceptor(limiter);
+		if(tracer.isEnabled()) builder.addInterceptor(TracingInterceptor.attempt(tracer));
+		// innermost, each exchange as a flight recorder event on JDK 21+
+		Interceptor flightRecorder = FlightEvents.interceptor();
+		if(flightRecorder != null) builder.addInterceptor(flightRecorder);
+		client = builder.build();
+		
+		logger.info("Initialized a networking instance: "+config);
 	}
 	
 	public boolean pingHost(String host, int port, int timeout) {
@@ -79,56 +208,11 @@ public class Networking implements TokenListener {
 	}
 	
 	public Toke get(String url, boolean withXVaultToken) throws IOException {
-		lock.lock();
-		try {
-			Request request = null;
-			
-			if(withXVaultToken) {
-				request = new Request.Builder()
-					.url(url)
-					.header("X-Vault-Token", token.clientToken())
-					.build();
-			}else {
-				request = new Request.Builder()
-						.url(url)
-						.build();
-			}
-			
-			int code; boolean success; String result;
-			try (Response response = client.newCall(request).execute()){
-				 result = response.body().string();
-				 code = response.code();
-				 success = response.isSuccessful();
-			}
-			
-			return new Toke(code, success, result);
-			
-		} finally {
-			lock.unlock();
-		}
+		return executeRead(getRequest(url, withXVaultToken));
 	}
 	
 	public Toke delete(String url) throws IOException {
-		lock.lock();
-		try {
-			Request request = new Request.Builder()
-					.delete()
-					.url(url)
-					.header("X-Vault-Token", token.clientToken())
-					.build();
-			
-			int code; boolean success; String result;
-			try (Response response = client.newCall(request).execute()){
-				 result = response.body().string();
-				 code = response.code();
-				 success = response.isSuccessful();
-			}
-			
-			return new Toke(code, success, result);
-			
-		} finally {
-			lock.unlock();
-		}
+		return execute(deleteRequest(url));
 	}
 	
 	/**
@@ -139,28 +223,9 @@ public class Networking implements TokenListener {
 	 * @throws IOException
 	 */
 	public Toke list(HttpUrl url) throws IOException {
-		lock.lock();
-		try {
-			
-			Request request = new Request.Builder()
-					.url(url)
-					.header("X-Vault-Token", token.clientToken())
-					.build();
-			
-			logger.debug(request.toString());
-			
-			int code; boolean success; String result;
-			try (Response response = client.newCall(request).execute()){
-				 result = response.body().string();
-				 code = response.code();
-				 success = response.isSuccessful();
-			}
-			
-			return new Toke(code, success, result);
-			
-		} finally {
-			lock.unlock();
-		}
+		Request request = listRequest(url);
+		logger.debug(request.toString());
+		return executeRead(request);
 	}
 	
 	/**
@@ -172,16 +237,9 @@ public class Networking implements TokenListener {
 	 * @throws IOException
 	 */
 	public Toke login(String url, String json) throws IOException {
-		lock.lock();
-		try {
-			RequestBody body = RequestBody.create(JSON, json);
-			Request request = new Request.Builder().url(url).post(body).build();
-			try (Response response = client.newCall(request).execute()) {
-				return new Toke(response.code(), response.isSuccessful(), response.body().string());
-			}
-		} finally {
-			lock.unlock();
-		}
+		RequestBody body = RequestBody.create(JSON, json);
+		Request request = new Request.Builder().url(url).post(body).build();
+		return execute(request);
 	}
 	
 	/**
@@ -193,20 +251,13 @@ public class Networking implements TokenListener {
 	 * @throws IOException
 	 */
 	public Toke loginToken(String url, String json, String clientToken) throws IOException {
-		lock.lock();
-		try {
-			RequestBody body = RequestBody.create(JSON, json);
-			Request request = new Request.Builder()
-					.url(url)
-					.post(body)
-					.header("X-Vault-Token", clientToken)
-					.build();
-			try (Response response = client.newCall(request).execute()) {
-				return new Toke(response.code(), response.isSuccessful(), response.body().string());
-			}
-		} finally {
-			lock.unlock();
-		}
+		RequestBody body = RequestBody.create(JSON, json);
+		Request request = new Request.Builder()
+				.url(url)
+				.post(body)
+				.header(X_VAULT_TOKEN, clientToken)
+				.build();
+		return execute(request);
 	}
 	
 
@@ -219,20 +270,7 @@ public class Networking implements TokenListener {
 	 * @throws IOException
 	 */
 	public Toke post(String url, String json) throws IOException {
-		lock.lock();
-		try {
-			RequestBody body = RequestBody.create(JSON, json);
-			Request request = new Request.Builder()
-					.url(url)
-					.post(body)
-					.header("X-Vault-Token", token.clientToken())
-					.build();
-			try (Response response = client.newCall(request).execute()) {
-				return new Toke(response.code(), response.isSuccessful(), response.body().string());
-			}
-		} finally {
-			lock.unlock();
-		}
+		return execute(postRequest(url, json));
 	}
 	
 	/**
@@ -246,29 +284,439 @@ public class Networking implements TokenListener {
 	 * @throws IOException
 	 */
 	public Toke put(String url, String json, boolean withXVaultToken) throws IOException {
-		lock.lock();
+		return execute(putRequest(url, json, withXVaultToken));
+	}
+	
+	// Non-blocking variants. These are built on OkHttp's Call.enqueue() and complete on a dispatcher thread, 
+	// a failure to build the request or to talk to vault completes the future exceptionally with the IOException
+	
+	public CompletableFuture<Toke> getAsync(String url) {
 		try {
-			RequestBody body = RequestBody.create(JSON, json);
-			Request request = null;
-			
-			if(withXVaultToken) request = new Request.Builder()
-					.url(url)
-					.put(body)
-					.header("X-Vault-Token", token.clientToken())
-					.build();
-			else request = new Request.Builder()
-					.url(url)
-					.put(body)
-					.build();
-			
-			
-			try (Response response = client.newCall(request).execute()) {
-				return new Toke(response.code(), response.isSuccessful(), response.body().string());
+			return executeReadAsync(getRequest(url, true));
+		} catch (IOException e) {
+			return ServiceBase.failed(e);
+		}
+	}
+	
+	public CompletableFuture<Toke> deleteAsync(String url) {
+		try {
+			return executeAsync(deleteRequest(url));
+		} catch (IOException e) {
+			return ServiceBase.failed(e);
+		}
+	}
+	
+	public CompletableFuture<Toke> listAsync(HttpUrl url) {
+		try {
+			return executeReadAsync(listRequest(url));
+		} catch (IOException e) {
+			return ServiceBase.failed(e);
+		}
+	}
+	
+	public CompletableFuture<Toke> postAsync(String url, String json) {
+		try {
+			return executeAsync(postRequest(url, json));
+		} catch (IOException e) {
+			return ServiceBase.failed(e);
+		}
+	}
+	
+	public CompletableFuture<Toke> putAsync(String url, String json, boolean withXVaultToken) {
+		try {
+			return executeAsync(putRequest(url, json, withXVaultToken));
+		} catch (IOException e) {
+			return ServiceBase.failed(e);
+		}
+	}
+	
+	protected Request getRequest(String url, boolean withXVaultToken) throws IOException {
+		Request.Builder builder = new Request.Builder().url(url);
+		if(withXVaultToken) {
+			builder.header(X_VAULT_TOKEN, clientToken());
+		}
+		return builder.build();
+	}
+	
+	protected Request deleteRequest(String url) throws IOException {
+		return new Request.Builder()
+				.delete()
+				.url(url)
+				.header(X_VAULT_TOKEN, clientToken())
+				.build();
+	}
+	
+	protected Request listRequest(HttpUrl url) throws IOException {
+		return new Request.Builder()
+				.url(url)
+				.header(X_VAULT_TOKEN, clientToken())
+				.build();
+	}
+	
+	protected Request postRequest(String url, String json) throws IOException {
+		RequestBody body = RequestBody.create(JSON, json);
+		return new Request.Builder()
+				.url(url)
+				.post(body)
+				.header(X_VAULT_TOKEN, clientToken())
+				.build();
+	}
+	
+	protected Request putRequest(String url, String json, boolean withXVaultToken) throws IOException {
+		RequestBody body = RequestBody.create(JSON, json);
+		Request.Builder builder = new Request.Builder().url(url).put(body);
+		if(withXVaultToken) {
+			builder.header(X_VAULT_TOKEN, clientToken());
+		}
+		return builder.build();
+	}
+	
+	/**
+	 * GET and LIST go through the coalescer (if enabled) so identical concurrent reads share one request. The key 
+	 * includes the token, callers with different tokens never see each other's results, and the priority lane. 
+	 * With a consistency mode it also includes the X-Vault-Index values required, so a read started after a write 
+	 * never shares a response with one sent before it. Reads in a session bound with ReplicationState.bind() are 
+	 * not coalesced, as they may need indexes the driver's other reads do not
+	 * 
+	 * @param request
+	 * @return a response containing a code, success flag, and the body as a String
+	 * @throws IOException
+	 */
+	protected Toke executeRead(Request request) throws IOException {
+		// a caller with a deadline or cancellation of its own must not end up waiting on someone else's call
+		if(!config.coalesceReads || CallOptions.current() != null) return executeHedged(request);
+		Request tagged = withCallerContext(request);
+		ReplicationState state = tagged.tag(ReplicationState.class);
+		if(state != null && state != replicationState) return executeHedged(tagged);
+		// an interactive read must not end up waiting on a bulk one queued for a host slot
+		String key = request.method() + " " + request.url() + " " + request.header(X_VAULT_TOKEN) + " "
+				+ HostConcurrencyInterceptor.lane(tagged);
+		if(consistency.isEnabled()) key += " " + replicationState.headers();
+		if(!tracer.isEnabled()) return coalescer.execute(key, () -> executeHedged(tagged));
+		
+		// the leader's call span goes under this one, a follower's has none and is marked as having waited
+		Span span = tracer.start("coalesce", tagged.tag(Span.class));
+		Request traced = tagged.newBuilder().tag(Span.class, span).build();
+		try {
+			Toke toke = coalescer.execute(key, () -> {
+				span.attribute("coalesce.leader", true);
+				return executeHedged(traced);
+			});
+			if(span.attribute("coalesce.leader") == null) {
+				span.attribute("coalesce.leader", false).annotate("coalesced", "shared the response of an identical call in flight");
 			}
+			return toke;
+		} catch (IOException | RuntimeException e) {
+			span.error(e);
+			throw e;
 		} finally {
-			lock.unlock();
+			span.end();
 		}
 	}
+	
+	/**
+	 * A read, hedged if so configured. Blocks for the result
+	 */
+	protected Toke executeHedged(Request request) throws IOException {
+		if(!hedger.isEnabled()) return execute(request);
+		CompletableFuture<Toke> future = executeReadAsync(request);
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting on a hedged read");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new IOException(cause);
+		}
+	}
+	
+	/**
+	 * A non-blocking read, hedged if so configured: after the configured percentile of recent latency a second 
+	 * attempt is sent (to another node if read routing is on) and the first answer wins
+	 */
+	protected CompletableFuture<Toke> executeReadAsync(Request request) {
+		if(!hedger.isEnabled()) return executeAsync(request);
+		// tag on the calling thread, the hedge is started from the timer thread
+		Request tagged = withCallerContext(request);
+		return hedger.execute(hint -> executeAsync(tagged.newBuilder().tag(RouteHint.class, hint).build()));
+	}
+	
+	/**
+	 * Tag the request, on the calling thread, with what is bound to that thread: its ReplicationState (or the 
+	 * driver's) if a consistency mode is configured, its Lane and CallOptions if bound, and its Span if tracing
+	 */
+	protected Request withCallerContext(Request request) {
+		Request.Builder builder = null;
+		if(consistency.isEnabled() && request.tag(ReplicationState.class) == null) {
+			ReplicationState state = ReplicationState.current();
+			builder = request.newBuilder().tag(ReplicationState.class, state == null ? replicationState : state);
+		}
+		Lane lane = Lane.current();
+		if(lane != null && request.tag(Lane.class) == null) {
+			if(builder == null) builder = request.newBuilder();
+			builder.tag(Lane.class, lane);
+		}
+		CallOptions options = CallOptions.current();
+		if(options != null && request.tag(CallOptions.class) == null) {
+			if(builder == null) builder = request.newBuilder();
+			builder.tag(CallOptions.class, options);
+		}
+		Span span = tracer.isEnabled() ? Span.current() : null;
+		if(span != null && request.tag(Span.class) == null) {
+			if(builder == null) builder = request.newBuilder();
+			builder.tag(Span.class, span);
+		}
+		return builder == null ? request : builder.build();
+	}
+	
+	/**
+	 * The call for a tagged request. With CallOptions, what is left of the deadline becomes the OkHttp call 
+	 * timeout and the call is registered with the Cancellation. A sampled call gets a PhaseTimings for its Toke
+	 * 
+	 * @param request
+	 * @return the call, not yet started
+	 * @throws IOException if the options are already cancelled or past their deadline
+	 */
+	protected Call newCall(Request request) throws IOException {
+		if(config.timingSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < config.timingSampleRate) {
+			request = request.newBuilder().tag(PhaseTimings.class, new PhaseTimings()).build();
+		}
+		CallOptions options = request.tag(CallOptions.class);
+		if(options == null) return client.newCall(request);
+		if(options.isCancelled()) throw new IOException("Canceled");
+		if(options.isExpired()) throw new DeadlineExceededException("Deadline passed before "+request.method()+" "+request.url().encodedPath()+" was sent");
+		Call call = client.newCall(request);
+		if(options.hasDeadline()) call.timeout().timeout(options.remainingNanos(), TimeUnit.NANOSECONDS);
+		if(options.cancellation() != null) options.cancellation().register(call);
+		return call;
+	}
+	
+	/**
+	 * Unregister the call, and report an IOException which came after the deadline as the deadline passing
+	 */
+	protected IOException finished(Call call, IOException x) {
+		CallOptions options = call.request().tag(CallOptions.class);
+		if(options == null) return x;
+		if(options.cancellation() != null) options.cancellation().unregister(call);
+		if(x == null || x instanceof DeadlineExceededException || !options.isExpired()) return x;
+		return new DeadlineExceededException("Deadline passed during "+call.request().method()+" "+call.request().url().encodedPath(), x);
+	}
+	
+	/**
+	 * All the verbs end up here. No lock is held, OkHttp's connection pool is safe for concurrent use
+	 * 
+	 * @param request
+	 * @return a response containing a code, success flag, and the body as a String
+	 * @throws IOException
+	 */
+	protected Toke execute(Request request) throws IOException {
+		Call call = newCall(withCallerContext(request));
+		try (Response response = call.execute()) {
+			health.response(response.code());
+			Toke toke = toke(call, response);
+			finished(call, null);
+			return toke;
+		} catch (RejectedCallException | DeadlineExceededException e) {
+			// we never talked to the server, or gave up on it: that tells us nothing new
+			finished(call, e);
+			throw e;
+		} catch (IOException e) {
+			IOException x = finished(call, e);
+			if(!call.isCanceled() && !(x instanceof DeadlineExceededException)) health.callFailed();
+			throw x;
+		}
+	}
+	
+	/**
+	 * Enqueue the call rather than blocking on it. Cancelling the returned future cancels the HTTP call
+	 * 
+	 * @param request
+	 * @return a future which completes with the response, or exceptionally with an IOException
+	 */
+	protected CompletableFuture<Toke> executeAsync(Request request) {
+		final CompletableFuture<Toke> future = new CompletableFuture<Toke>();
+		final Call call;
+		try {
+			Request tagged = withCallerContext(request);
+			if(tagged.tag(AsyncWait.class) == null) tagged = tagged.newBuilder().tag(AsyncWait.class, asyncWait).build();
+			call = newCall(tagged);
+		} catch (IOException e) {
+			future.completeExceptionally(e);
+			return future;
+		}
+		call.enqueue(new Callback() {
+			@Override
+			public void onFailure(Call call, IOException e) {
+				IOException x = finished(call, e);
+				if(!call.isCanceled() && !(x instanceof RejectedCallException) && !(x instanceof DeadlineExceededException)) {
+					health.callFailed();
+				}
+				future.completeExceptionally(x);
+			}
+
+			@Override
+			public void onResponse(Call call, Response response) {
+				try (Response r = response) {
+					health.response(r.code());
+					future.complete(toke(call, r));
+					finished(call, null);
+				} catch (IOException e) {
+					future.completeExceptionally(finished(call, e));
+				}
+			}
+		});
+		future.whenComplete((toke, x) -> {
+			if(future.isCancelled()) call.cancel();
+		});
+		return future;
+	}
+	
+	/**
+	 * Reads the body, which completes the call's PhaseTimings if it has them
+	 */
+	protected static Toke toke(Call call, Response response) throws IOException {
+		String body = response.body().string();
+		return new Toke(response.code(), response.isSuccessful(), body, false, call.request().tag(PhaseTimings.class));
+	}
+	
+	/**
+	 * Read the volatile token field once so a concurrent renewal cannot be observed half-way 
+	 * 
+	 * @return the client token of the current Token
+	 * @throws IOException if no token has been set yet
+	 */
+	protected String clientToken() throws IOException {
+		Token current = token;
+		if(current == null) throw new IOException("No token has been set on the Networking instance - not logged in yet?");
+		return current.clientToken();
+	}
+	
+	public NetworkingConfig getConfig() {
+		return config;
+	}
+	
+	/**
+	 * @return the read coalescer, for its calls/executions/merged counters
+	 */
+	public SingleFlight<Toke> coalescer() {
+		return coalescer;
+	}
+	
+	/**
+	 * @return the retry interceptor, for its retry and budget counters
+	 */
+	public RetryInterceptor retrier() {
+		return retrier;
+	}
+	
+	/**
+	 * @return the per-endpoint circuit breakers
+	 */
+	public CircuitBreakerInterceptor breakers() {
+		return breakers;
+	}
+	
+	/**
+	 * @return the nodes of the cluster and which is active, disabled unless endpoints were configured
+	 */
+	public VaultCluster cluster() {
+		return cluster;
+	}
+	
+	/**
+	 * @return the hedger, for its hedge counts and win rate
+	 */
+	public Hedger hedger() {
+		return hedger;
+	}
+	
+	/**
+	 * @return the adaptive concurrency limiter, for its current limit and counters
+	 */
+	public AdaptiveLimiter limiter() {
+		return limiter;
+	}
+	
+	/**
+	 * @return the client-side rate limits, to take tokens directly or read their counts
+	 */
+	public RateLimiter rateLimiter() {
+		return rateLimiter;
+	}
+	
+	/**
+	 * @return the per-host request slots, for the queue depth and wait times of each priority lane
+	 */
+	public HostConcurrencyInterceptor lanes() {
+		return hostSlots;
+	}
+	
+	/**
+	 * @return the read-after-write consistency interceptor, for its wait and forward counters
+	 */
+	public ConsistencyInterceptor consistency() {
+		return consistency;
+	}
+	
+	/**
+	 * @return the X-Vault-Index of this driver's writes, shared by all threads without a ReplicationState bound
+	 */
+	public ReplicationState replicationState() {
+		return replicationState;
+	}
+	
+	/**
+	 * Be told when a circuit breaker opens, half-opens or closes, e.g. to shed load early
+	 * 
+	 * @param listener
+	 */
+	public void addCircuitBreakerListener(CircuitBreakerListener listener) {
+		breakers.addListener(listener);
+	}
+	
+	/**
+	 * @return latency, counts and in-flight calls by operation and status class
+	 */
+	public VaultMetrics metrics() {
+		return metrics;
+	}
+	
+	/**
+	 * @return starts the spans of calls, and the application's own if it likes
+	 */
+	public Tracer tracer() {
+		return tracer;
+	}
+	
+	/**
+	 * @return what we know of the server's health, fed by every call and by housekeeping
+	 */
+	public VaultHealth health() {
+		return health;
+	}
+	
+	/**
+	 * @return the executor driver work runs on
+	 */
+	public ExecutorService executor() {
+		return executor;
+	}
+
+	/**
+	 * Shut down the executor (including one passed to the constructor), the hedge timer and the idle connections. 
+	 * Calls already running are left to finish, new ones are rejected
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+		hedger.close();
+		client.connectionPool().evictAll();
+		logger.info("Closed a networking instance");
+	}
 
 	/**
 	 * This class is downstream from the service classes, so no need to latch
@@ -278,9 +726,10 @@ public class Networking implements TokenListener {
 		
 		if(evt.getType().equals(EventEnum.RENEWAL)) {
 			RenewalTokenEvent thisEvt = (RenewalTokenEvent) evt;
-		    if(thisEvt.getRenewal().oldToken.tokenHandle.equals(this.token.tokenHandle)){
+			Token current = this.token;
+		    if(current != null && thisEvt.getRenewal().oldToken.tokenHandle.equals(current.tokenHandle)){
 			   this.token = thisEvt.getRenewal().newToken;
-			   logger.info("Token with handle "+token.tokenHandle+" updated on Networking instance");
+			   logger.info("Token with handle "+thisEvt.getRenewal().newToken.tokenHandle+" updated on Networking instance");
 		    }
 			
 			return;
@@ -289,7 +738,7 @@ public class Networking implements TokenListener {
 		
 		if(evt.getType().equals(EventEnum.LOGIN)) {
 			token = evt.getToken();
-			logger.info("Token with accessor "+token.accessor()+" set on Networking instance");
+			logger.info("Token with accessor "+evt.getToken().accessor()+" set on Networking instance");
 			return;
 		}
 		
@@ -0,0 +1,387 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+/**
+ * Input parameters for the HTTP transport (connection pool, dispatcher and concurrency limits)
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see Networking
+ */
+public class NetworkingConfig {
+
+	// the maximum number of requests in flight across all hosts
+	int maxRequests;
+
+	// the maximum number of requests in flight against any one vault host
+	int maxRequestsPerHost;
+
+	// connection pool settings
+	int maxIdleConnections;
+	long keepAliveSeconds;
+
+	// OkHttp timeouts, in milliseconds
+	long connectTimeout;
+	long readTimeout;
+	long writeTimeout;
+
+	// concurrent identical GET/LIST calls share one request
+	boolean coalesceReads;
+	
+	// the share of calls, 0 to 1, whose per-phase timings are attached to their Toke
+	double timingSampleRate;
+	
+	// the longest an enqueued call may wait on a dispatcher thread for a retry, a rate limit token or a standby, in milliseconds
+	long maxAsyncWait;
+	
+	// how failed calls are retried
+	RetryConfig retryConfig;
+	
+	// when to stop calling a failing endpoint for a while
+	CircuitBreakerConfig circuitBreakerConfig;
+	
+	// the nodes of an HA cluster, if there is more than one server
+	ClusterConfig clusterConfig;
+	
+	// second attempts for slow reads
+	HedgeConfig hedgeConfig;
+	
+	// an adaptive limit on calls in flight, on top of the fixed ones above
+	AdaptiveLimitConfig adaptiveLimitConfig;
+	
+	// token buckets per mount, auth path and operation, to stay under vault's quotas
+	RateLimitConfig rateLimitConfig;
+	
+	// which calls get a free host slot first
+	PriorityConfig priorityConfig;
+	
+	// spans per call, handed to an exporter
+	TraceConfig traceConfig;
+
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * @param base
+	 * @return a builder starting from the settings in base
+	 */
+	public static Builder builder(NetworkingConfig base) {
+		Builder builder = new Builder();
+		builder.maxRequests = base.maxRequests;
+		builder.maxRequestsPerHost = base.maxRequestsPerHost;
+		builder.maxIdleConnections = base.maxIdleConnections;
+		builder.keepAliveSeconds = base.keepAliveSeconds;
+		builder.connectTimeout = base.connectTimeout;
+		builder.readTimeout = base.readTimeout;
+		builder.writeTimeout = base.writeTimeout;
+		builder.coalesceReads = base.coalesceReads;
+		builder.timingSampleRate = base.timingSampleRate;
+		builder.maxAsyncWait = base.maxAsyncWait;
+		builder.retryConfig = base.retryConfig;
+		builder.circuitBreakerConfig = base.circuitBreakerConfig;
+		builder.clusterConfig = base.clusterConfig;
+		builder.hedgeConfig = base.hedgeConfig;
+		builder.adaptiveLimitConfig = base.adaptiveLimitConfig;
+		builder.rateLimitConfig = base.rateLimitConfig;
+		builder.priorityConfig = base.priorityConfig;
+		builder.traceConfig = base.traceConfig;
+		return builder;
+	}
+
+	public static class Builder {
+
+		int maxRequests;
+		int maxRequestsPerHost;
+		int maxIdleConnections;
+		long keepAliveSeconds;
+		long connectTimeout;
+		long readTimeout;
+		long writeTimeout;
+		boolean coalesceReads;
+		double timingSampleRate;
+		long maxAsyncWait;
+		RetryConfig retryConfig;
+		CircuitBreakerConfig circuitBreakerConfig;
+		ClusterConfig clusterConfig;
+		HedgeConfig hedgeConfig;
+		AdaptiveLimitConfig adaptiveLimitConfig;
+		RateLimitConfig rateLimitConfig;
+		PriorityConfig priorityConfig;
+		TraceConfig traceConfig;
+
+		/**
+		 * Has sane defaults: 128 requests in flight, 64 of them to any one host, and a pool of 64 idle connections
+		 * kept alive for 5 minutes. Timeouts are the OkHttp defaults of 10 seconds. Read coalescing is on, no call 
+		 * carries its phase timings (they are still aggregated in the metrics). An enqueued call waits at most a second 
+		 * at a time on its dispatcher thread. Retries
+		 * and circuit breakers use the RetryConfig and CircuitBreakerConfig defaults, reads are not hedged and there is no 
+		 * adaptive limit or rate limit. Host slots are handed out by priority lane, see PriorityConfig. Tracing is off.
+		 */
+		public Builder() {
+			maxRequests = 128;
+			maxRequestsPerHost = 64;
+			maxIdleConnections = 64;
+			keepAliveSeconds = 300;
+			connectTimeout = 10000;
+			readTimeout = 10000;
+			writeTimeout = 10000;
+			coalesceReads = true;
+			timingSampleRate = 0;
+			maxAsyncWait = 1000;
+			retryConfig = RetryConfig.builder().build();
+			circuitBreakerConfig = CircuitBreakerConfig.builder().build();
+			clusterConfig = ClusterConfig.none();
+			hedgeConfig = HedgeConfig.none();
+			adaptiveLimitConfig = AdaptiveLimitConfig.none();
+			rateLimitConfig = RateLimitConfig.none();
+			priorityConfig = PriorityConfig.builder().build();
+			traceConfig = TraceConfig.none();
+		}
+
+		public Builder maxRequests(int val) {
+			maxRequests = val;
+			return this;
+		}
+
+		public Builder maxRequestsPerHost(int val) {
+			maxRequestsPerHost = val;
+			return this;
+		}
+
+		public Builder maxIdleConnections(int val) {
+			maxIdleConnections = val;
+			return this;
+		}
+
+		public Builder keepAliveSeconds(long val) {
+			keepAliveSeconds = val;
+			return this;
+		}
+
+		public Builder connectTimeout(long millis) {
+			connectTimeout = millis;
+			return this;
+		}
+
+		public Builder readTimeout(long millis) {
+			readTimeout = millis;
+			return this;
+		}
+
+		public Builder writeTimeout(long millis) {
+			writeTimeout = millis;
+			return this;
+		}
+
+		/**
+		 * If true, concurrent GET or LIST calls for the same url and token share one in-flight request and its response
+		 * 
+		 * @param val
+		 * @return
+		 */
+		public Builder coalesceReads(boolean val) {
+			coalesceReads = val;
+			return this;
+		}
+
+		/**
+		 * The share of calls, from 0 to 1, whose DNS/connect/TLS/TTFB/body timings are attached to their Toke (see 
+		 * Toke.timings). Every call's timings go into the metrics regardless
+		 * 
+		 * @param val
+		 * @return
+		 */
+		public Builder timingSampleRate(double val) {
+			timingSampleRate = val;
+			return this;
+		}
+
+		/**
+		 * The longest an enqueued (async) call may wait inside the driver, as each wait parks one of the dispatcher 
+		 * threads: a retry needing a longer pause (say for a Retry-After header) is not made, a rate limit token due 
+		 * later fails the call with a RateLimitedException, and a read waiting for a standby to catch up is forwarded 
+		 * to the active node sooner. Blocking calls wait on the caller's thread and are not affected
+		 * 
+		 * @param millis
+		 * @return
+		 */
+		public Builder maxAsyncWait(long millis) {
+			maxAsyncWait = millis;
+			return this;
+		}
+
+		/**
+		 * How failed calls are retried, RetryConfig.none() turns retries off
+		 * 
+		 * @param val
+		 * @return
+		 */
+		public Builder retry(RetryConfig val) {
+			retryConfig = val;
+			return this;
+		}
+
+		/**
+		 * When the per-endpoint circuit breakers open, CircuitBreakerConfig.disabled() turns them off
+		 * 
+		 * @param val
+		 * @return
+		 */
+		public Builder circuitBreaker(CircuitBreakerConfig val) {
+			circuitBreakerConfig = val;
+			return this;
+		}
+
+		/**
+		 * The nodes of an HA cluster; calls go to whichever is active
+		 * 
+		 * @param val
+		 * @return
+		 */
+		public Builder cluster(ClusterConfig val) {
+			clusterConfig = val;
+			return this;
+		}
+
+		/**
+		 * Send a second attempt for reads which are slower than most
+		 * 
+		 * @param val
+		 * @return
+		 */
+		public Builder hedge(HedgeConfig val) {
+			hedgeConfig = val;
+			return this;
+		}
+
+		/**
+		 * Discover how many calls vault can take in flight rather than fixing it
+		 * 
+		 * @param val
+		 * @return
+		 */
+		public Builder adaptiveLimit(AdaptiveLimitConfig val) {
+			adaptiveLimitConfig = val;
+			return this;
+		}
+
+		/**
+		 * Client-side rate limits per mount, auth path and operation
+		 * 
+		 * @param val
+		 * @return
+		 */
+		public Builder rateLimit(RateLimitConfig val) {
+			rateLimitConfig = val;
+			return this;
+		}
+
+		/**
+		 * Priority lanes and their reserved slots, PriorityConfig.none() makes every call equal
+		 * 
+		 * @param val
+		 * @return
+		 */
+		public Builder priorities(PriorityConfig val) {
+			priorityConfig = val;
+			return this;
+		}
+
+		/**
+		 * Tracing, on once the TraceConfig has an exporter
+		 * 
+		 * @param val
+		 * @return
+		 */
+		public Builder tracing(TraceConfig val) {
+			traceConfig = val;
+			return this;
+		}
+
+		public NetworkingConfig build() {
+			if(maxRequests < 1 || maxRequestsPerHost < 1) {
+				throw new IllegalArgumentException("maxRequests and maxRequestsPerHost must be at least 1");
+			}
+			NetworkingConfig config = new NetworkingConfig();
+			config.maxRequests = this.maxRequests;
+			config.maxRequestsPerHost = Math.min(this.maxRequestsPerHost, this.maxRequests);
+			config.maxIdleConnections = this.maxIdleConnections;
+			config.keepAliveSeconds = this.keepAliveSeconds;
+			config.connectTimeout = this.connectTimeout;
+			config.readTimeout = this.readTimeout;
+			config.writeTimeout = this.writeTimeout;
+			config.coalesceReads = this.coalesceReads;
+			config.timingSampleRate = Math.max(0, Math.min(1, this.timingSampleRate));
+			config.maxAsyncWait = Math.max(0, this.maxAsyncWait);
+			config.retryConfig = this.retryConfig == null ? RetryConfig.none() : this.retryConfig;
+			config.circuitBreakerConfig = this.circuitBreakerConfig == null ? CircuitBreakerConfig.disabled() : this.circuitBreakerConfig;
+			config.clusterConfig = this.clusterConfig == null ? ClusterConfig.none() : this.clusterConfig;
+			config.hedgeConfig = this.hedgeConfig == null ? HedgeConfig.none() : this.hedgeConfig;
+			config.adaptiveLimitConfig = this.adaptiveLimitConfig == null ? AdaptiveLimitConfig.none() : this.adaptiveLimitConfig;
+			config.rateLimitConfig = this.rateLimitConfig == null ? RateLimitConfig.none() : this.rateLimitConfig;
+			config.priorityConfig = this.priorityConfig == null ? PriorityConfig.none() : this.priorityConfig;
+			config.traceConfig = this.traceConfig == null ? TraceConfig.none() : this.traceConfig;
+			return config;
+		}
+	}
+
+	private NetworkingConfig() {}
+
+	public int getMaxRequests() {
+		return maxRequests;
+	}
+
+	public int getMaxRequestsPerHost() {
+		return maxRequestsPerHost;
+	}
+
+	public double getTimingSampleRate() {
+		return timingSampleRate;
+	}
+
+	public long getMaxAsyncWait() {
+		return maxAsyncWait;
+	}
+
+	public RetryConfig getRetryConfig() {
+		return retryConfig;
+	}
+
+	public CircuitBreakerConfig getCircuitBreakerConfig() {
+		return circuitBreakerConfig;
+	}
+
+	public ClusterConfig getClusterConfig() {
+		return clusterConfig;
+	}
+
+	public HedgeConfig getHedgeConfig() {
+		return hedgeConfig;
+	}
+
+	public AdaptiveLimitConfig getAdaptiveLimitConfig() {
+		return adaptiveLimitConfig;
+	}
+
+	public RateLimitConfig getRateLimitConfig() {
+		return rateLimitConfig;
+	}
+
+	public PriorityConfig getPriorityConfig() {
+		return priorityConfig;
+	}
+
+	public TraceConfig getTraceConfig() {
+		return traceConfig;
+	}
+
+	@Override
+	public String toString() {
+		return "NetworkingConfig [maxRequests=" + maxRequests + ", maxRequestsPerHost=" + maxRequestsPerHost
+				+ ", maxIdleConnections=" + maxIdleConnections + ", keepAliveSeconds=" + keepAliveSeconds + ", coalesceReads=" + coalesceReads + ", timingSampleRate=" + timingSampleRate + ", maxAsyncWait=" + maxAsyncWait + ", retryConfig=" + retryConfig + ", circuitBreakerConfig=" + circuitBreakerConfig + ", clusterConfig=" + clusterConfig + ", hedgeConfig=" + hedgeConfig + ", adaptiveLimitConfig=" + adaptiveLimitConfig + ", rateLimitConfig=" + rateLimitConfig + ", priorityConfig=" + priorityConfig + ", traceConfig=" + traceConfig + "]";
+	}
+
+}
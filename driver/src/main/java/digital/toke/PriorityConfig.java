@@ -0,0 +1,98 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * <p>Input parameters for the priority lanes. The slots each vault host gets (NetworkingConfig.maxRequestsPerHost)
+ * are shared by three lanes - AUTH, INTERACTIVE and BULK, see Lane - and when they are all taken, a freed slot
+ * goes to the highest priority lane with a call waiting. Each lane can also have slots reserved which no other
+ * lane may use, so a token renewal finds one free even while a bulk export holds everything else.</p>
+ * 
+ * <p>Reservations are cut back, lowest priority first, if they would leave fewer than one shared slot.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see digital.toke.net.HostConcurrencyInterceptor
+ */
+public class PriorityConfig {
+
+	boolean enabled;
+	Map<Lane, Integer> reserved;
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return a config with every lane equal and nothing reserved, slots go first come first served
+	 */
+	public static PriorityConfig none() {
+		return new Builder().enabled(false).build();
+	}
+
+	public static class Builder {
+
+		boolean enabled;
+		Map<Lane, Integer> reserved;
+
+		/**
+		 * Has sane defaults: on, with 2 slots per host reserved for AUTH and 8 for INTERACTIVE
+		 */
+		public Builder() {
+			enabled = true;
+			reserved = new EnumMap<Lane, Integer>(Lane.class);
+			reserved.put(Lane.AUTH, 2);
+			reserved.put(Lane.INTERACTIVE, 8);
+			reserved.put(Lane.BULK, 0);
+		}
+
+		public Builder enabled(boolean val) {
+			enabled = val;
+			return this;
+		}
+
+		/**
+		 * @param lane
+		 * @param slots the slots per host only this lane may use
+		 * @return
+		 */
+		public Builder reserve(Lane lane, int slots) {
+			if(slots < 0) throw new IllegalArgumentException("slots must not be negative");
+			reserved.put(lane, slots);
+			return this;
+		}
+
+		public PriorityConfig build() {
+			PriorityConfig config = new PriorityConfig();
+			config.enabled = this.enabled;
+			config.reserved = new EnumMap<Lane, Integer>(this.reserved);
+			return config;
+		}
+	}
+
+	private PriorityConfig() {}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param lane
+	 * @return the slots reserved for the lane, 0 when not enabled
+	 */
+	public int getReserved(Lane lane) {
+		if(!enabled) return 0;
+		Integer slots = reserved.get(lane);
+		return slots == null ? 0 : slots;
+	}
+
+	@Override
+	public String toString() {
+		return "PriorityConfig [enabled=" + enabled + ", reserved=" + reserved + "]";
+	}
+
+}
@@ -0,0 +1,196 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Input parameters for client-side rate limiting, to stay under vault's rate limit quotas rather than run into
+ * a storm of 429s. Off unless at least one limit is added.</p>
+ * 
+ * <p>Each limit is a token bucket for a path prefix - a secrets mount such as "secret", or an auth path such as 
+ * "auth/approle" - and optionally one kind of operation. A call takes a token from every bucket it matches:</p>
+ * 
+ * <pre>
+ * RateLimitConfig.builder()
+ *     .limit("secret", Operation.WRITE, 50, 50)   // bulk writes wait for a token
+ *     .limit("secret", Operation.READ, 200, 400, 0, TimeUnit.MILLISECONDS) // reads never wait
+ *     .limit("auth", Operation.LOGIN, 1, 5)
+ *     .build();
+ * </pre>
+ * 
+ * <p>A call which finds a bucket empty waits for a token up to the limit's maxWait; if it would have to wait longer 
+ * it fails at once with a RateLimitedException. A maxWait of 0 never waits.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see digital.toke.net.RateLimiter
+ */
+public class RateLimitConfig {
+
+	/**
+	 * What a call does, as far as rate limits are concerned. A LIST is a GET with list=true, a LOGIN is a POST to 
+	 * a login endpoint, WRITE covers every other POST, PUT and DELETE
+	 */
+	public enum Operation {
+		READ, WRITE, LIST, LOGIN;
+	}
+
+	/**
+	 * One token bucket
+	 */
+	public static class Rule {
+
+		final String path;
+		final Operation operation;
+		final double permitsPerSecond;
+		final int burst;
+		final long maxWait;
+
+		Rule(String path, Operation operation, double permitsPerSecond, int burst, long maxWait) {
+			this.path = path;
+			this.operation = operation;
+			this.permitsPerSecond = permitsPerSecond;
+			this.burst = burst;
+			this.maxWait = maxWait;
+		}
+
+		/**
+		 * @return the path prefix without leading or trailing slashes, "" for every path
+		 */
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * @return the operation limited, or null for all of them
+		 */
+		public Operation getOperation() {
+			return operation;
+		}
+
+		public double getPermitsPerSecond() {
+			return permitsPerSecond;
+		}
+
+		public int getBurst() {
+			return burst;
+		}
+
+		/**
+		 * @return in milliseconds
+		 */
+		public long getMaxWait() {
+			return maxWait;
+		}
+
+		@Override
+		public String toString() {
+			return "Rule [path=" + path + ", operation=" + operation + ", permitsPerSecond=" + permitsPerSecond
+					+ ", burst=" + burst + ", maxWait=" + maxWait + "]";
+		}
+	}
+
+	List<Rule> rules;
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return a config without limits
+	 */
+	public static RateLimitConfig none() {
+		return new Builder().build();
+	}
+
+	public static class Builder {
+
+		List<Rule> rules;
+		long maxWait;
+
+		/**
+		 * Has sane defaults: no limits; limits added without a maxWait wait up to 5 seconds for a token
+		 */
+		public Builder() {
+			rules = new ArrayList<Rule>();
+			maxWait = 5000;
+		}
+
+		/**
+		 * The maxWait of limits added after this call which don't give their own
+		 * 
+		 * @param val
+		 * @param unit
+		 * @return
+		 */
+		public Builder maxWait(long val, TimeUnit unit) {
+			maxWait = unit.toMillis(val);
+			return this;
+		}
+
+		/**
+		 * @param path a mount or auth path, such as "secret" or "auth/approle". "" limits every call
+		 * @param operation the operation limited, null for all of them
+		 * @param permitsPerSecond the sustained rate
+		 * @param burst how many calls can go at once after a quiet spell
+		 * @return
+		 */
+		public Builder limit(String path, Operation operation, double permitsPerSecond, int burst) {
+			return limit(path, operation, permitsPerSecond, burst, maxWait, TimeUnit.MILLISECONDS);
+		}
+
+		/**
+		 * @param path a mount or auth path, such as "secret" or "auth/approle". "" limits every call
+		 * @param operation the operation limited, null for all of them
+		 * @param permitsPerSecond the sustained rate
+		 * @param burst how many calls can go at once after a quiet spell
+		 * @param maxWait how long a call may wait for a token, 0 to fail at once
+		 * @param unit
+		 * @return
+		 */
+		public Builder limit(String path, Operation operation, double permitsPerSecond, int burst, long maxWait, TimeUnit unit) {
+			if(permitsPerSecond <= 0 || burst < 1) throw new IllegalArgumentException("need permitsPerSecond > 0 and burst >= 1");
+			rules.add(new Rule(normalize(path), operation, permitsPerSecond, burst, unit.toMillis(maxWait)));
+			return this;
+		}
+
+		public RateLimitConfig build() {
+			RateLimitConfig config = new RateLimitConfig();
+			config.rules = Collections.unmodifiableList(new ArrayList<Rule>(this.rules));
+			return config;
+		}
+	}
+
+	/**
+	 * @param path
+	 * @return the path without leading or trailing slashes, as limits are matched
+	 */
+	public static String normalize(String path) {
+		if(path == null) return "";
+		int from = 0, to = path.length();
+		while(from < to && path.charAt(from) == '/') from++;
+		while(to > from && path.charAt(to - 1) == '/') to--;
+		return path.substring(from, to);
+	}
+
+	private RateLimitConfig() {}
+
+	public boolean isEnabled() {
+		return !rules.isEmpty();
+	}
+
+	public List<Rule> getRules() {
+		return rules;
+	}
+
+	@Override
+	public String toString() {
+		return "RateLimitConfig [rules=" + rules + "]";
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Input parameters for retrying failed calls to vault.</p>
+ * 
+ * <p>Reads (GET, LIST) and DELETE are idempotent and are retried on a transport failure or a retryable status. 
+ * Writes (POST, PUT - which includes check-and-set writes and logins) are only retried when the connection could
+ * not be made at all, so the request cannot have reached vault.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see digital.toke.net.RetryInterceptor
+ */
+public class RetryConfig {
+
+	// total attempts including the first, 1 turns retries off
+	int maxAttempts;
+	
+	// full jitter exponential backoff: attempt n sleeps a random time in [0, min(maxDelay, baseDelay * 2^n)), in milliseconds
+	long baseDelay;
+	long maxDelay;
+	
+	// a Retry-After longer than this is not waited for, the response is returned instead. In milliseconds
+	long maxRetryAfter;
+	
+	// retries may be at most this fraction of requests over time, with bursts of up to budgetBurst retries
+	double budgetRatio;
+	int budgetBurst;
+	
+	// responses with these codes are retried (if the method allows it)
+	int [] retryOn;
+
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * @return a config which never retries
+	 */
+	public static RetryConfig none() {
+		return new Builder().maxAttempts(1).build();
+	}
+
+	public static class Builder {
+
+		int maxAttempts;
+		long baseDelay;
+		long maxDelay;
+		long maxRetryAfter;
+		double budgetRatio;
+		int budgetBurst;
+		int [] retryOn;
+
+		/**
+		 * Has sane defaults: 3 attempts, backoff from 100ms up to 2 seconds, Retry-After honoured up to 30 seconds, 
+		 * retries limited to 20% of requests (bursts of 10), and 429, 502, 503 and 504 are retryable
+		 */
+		public Builder() {
+			maxAttempts = 3;
+			baseDelay = 100;
+			maxDelay = 2000;
+			maxRetryAfter = 30000;
+			budgetRatio = 0.2;
+			budgetBurst = 10;
+			retryOn = new int[] {429, 502, 503, 504};
+		}
+
+		public Builder maxAttempts(int val) {
+			maxAttempts = val;
+			return this;
+		}
+
+		public Builder baseDelay(long val, TimeUnit unit) {
+			baseDelay = unit.toMillis(val);
+			return this;
+		}
+
+		public Builder maxDelay(long val, TimeUnit unit) {
+			maxDelay = unit.toMillis(val);
+			return this;
+		}
+
+		public Builder maxRetryAfter(long val, TimeUnit unit) {
+			maxRetryAfter = unit.toMillis(val);
+			return this;
+		}
+
+		/**
+		 * @param ratio retries allowed per request, e.g. 0.2
+		 * @param burst retries allowed in a burst before the ratio applies
+		 * @return
+		 */
+		public Builder budget(double ratio, int burst) {
+			budgetRatio = ratio;
+			budgetBurst = burst;
+			return this;
+		}
+
+		public Builder retryOn(int... codes) {
+			retryOn = codes.clone();
+			return this;
+		}
+
+		public RetryConfig build() {
+			if(maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be at least 1");
+			if(budgetRatio < 0 || budgetBurst < 0) throw new IllegalArgumentException("the retry budget must not be negative");
+			RetryConfig config = new RetryConfig();
+			config.maxAttempts = this.maxAttempts;
+			config.baseDelay = this.baseDelay;
+			config.maxDelay = this.maxDelay;
+			config.maxRetryAfter = this.maxRetryAfter;
+			config.budgetRatio = this.budgetRatio;
+			config.budgetBurst = this.budgetBurst;
+			config.retryOn = this.retryOn.clone();
+			return config;
+		}
+	}
+
+	private RetryConfig() {}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	public long getBaseDelay() {
+		return baseDelay;
+	}
+
+	public long getMaxDelay() {
+		return maxDelay;
+	}
+
+	public long getMaxRetryAfter() {
+		return maxRetryAfter;
+	}
+
+	public double getBudgetRatio() {
+		return budgetRatio;
+	}
+
+	public int getBudgetBurst() {
+		return budgetBurst;
+	}
+
+	public boolean isRetryable(int code) {
+		for(int c : retryOn) {
+			if(c == code) return true;
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "RetryConfig [maxAttempts=" + maxAttempts + ", baseDelay=" + baseDelay + ", maxDelay=" + maxDelay
+				+ ", maxRetryAfter=" + maxRetryAfter + ", budgetRatio=" + budgetRatio + ", budgetBurst=" + budgetBurst
+				+ ", retryOn=" + Arrays.toString(retryOn) + "]";
+	}
+
+}
@@ -4,9 +4,14 @@
  */
 package digital.toke;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 import digital.toke.accessor.Toke;
 import digital.toke.exception.ConfigureException;
 import digital.toke.exception.ReadException;
@@ -20,15 +25,34 @@ import digital.toke.exception.WriteException;
  */
 public class ServiceBase {
 
+	private static final Logger logger = LogManager.getLogger(ServiceBase.class);
+	
+	// how long a call waits for the driver to be ready, unless its CallOptions have less time left
+	public static final long LATCH_MILLIS = 10000;
+
 	protected CountDownLatch countDownLatch = new CountDownLatch(1);
 	
 	public ServiceBase() {}
 	
+	/**
+	 * Wait until the driver is ready (logged in) for up to LATCH_MILLIS, or what is left of the deadline of the 
+	 * CallOptions bound to this thread. If it is still not ready the call goes ahead anyway, and fails on its own
+	 */
 	protected void latch() {
+		long wait = TimeUnit.MILLISECONDS.toNanos(LATCH_MILLIS);
+		CallOptions options = CallOptions.current();
+		if(options != null) wait = Math.min(wait, options.remainingNanos());
+		Object event = FlightEvents.beginLatch();
+		boolean ready = false;
 		try {
-			countDownLatch.await(10L,TimeUnit.SECONDS);
+			ready = countDownLatch.await(wait, TimeUnit.NANOSECONDS);
+			if(!ready) {
+				logger.warn("Driver not ready after "+TimeUnit.NANOSECONDS.toMillis(wait)+"ms, making the call anyway");
+			}
 		} catch (InterruptedException e1) {
-			e1.printStackTrace();
+			Thread.currentThread().interrupt();
+		} finally {
+			FlightEvents.endLatch(event, getClass().getSimpleName(), ready);
 		}
 	}
 	
@@ -42,22 +66,24 @@ public class ServiceBase {
 	
 	protected void readExceptionExcept(Toke response, int val) throws ReadException {
 		if(response.code == val) return;
-		if(response.code==404) throw new ReadException("Http 404 - this is usually a problem with the path.");
+		if(response.code==404) throw new ReadException("Http 404 - this is usually a problem with the path.", 404);
 	//	if(response.code==400) throw new ReadException("Http 400 - this is usually a permissions issue.");
-		if(response.code==403) throw new ReadException("Http 403 - this is usually a permissions issue.");
+		if(response.code==403) throw new ReadException("Http 403 - this is usually a permissions issue.", 403);
+		if(response.code==429) throw new ReadException("Http 429 - a vault rate limit quota was exceeded, see RateLimitConfig.", 429);
 
-		  throw new ReadException("Unexpected HTTP Response Code: "+response.code);
+		  throw new ReadException("Unexpected HTTP Response Code: "+response.code, response.code);
 
 	}
 	
 	protected void writeExceptionExcept(Toke response, int val) throws WriteException {
 		if(response.code == val) return;
 		//System.err.println(response.response);
-		if(response.code==400) throw new WriteException("Http 400 - in kv2 this may be a check-and-set issue.");
-		if(response.code==404) throw new WriteException("Http 404 - this is usually a problem with the path.");
-		if(response.code==403) throw new WriteException("Http 403 - this is usually a permissions issue.");
+		if(response.code==400) throw new WriteException("Http 400 - in kv2 this may be a check-and-set issue.", 400);
+		if(response.code==404) throw new WriteException("Http 404 - this is usually a problem with the path.", 404);
+		if(response.code==403) throw new WriteException("Http 403 - this is usually a permissions issue.", 403);
+		if(response.code==429) throw new WriteException("Http 429 - a vault rate limit quota was exceeded, see RateLimitConfig.", 429);
 
-		  throw new WriteException("Unexpected HTTP Response Code: "+response.code);
+		  throw new WriteException("Unexpected HTTP Response Code: "+response.code, response.code);
 
 	}
 	
@@ -70,4 +96,79 @@ public class ServiceBase {
 
 	}
 	
+	/**
+	 * Async counterpart to readExceptionExcept: applies the same status checks once the call completes. The returned 
+	 * future completes exceptionally with a ReadException, either from the checks or wrapping the transport failure
+	 * 
+	 * @param call
+	 * @param val the expected response code
+	 * @return
+	 */
+	protected CompletableFuture<Toke> readAsync(CompletableFuture<Toke> call, int val) {
+		CompletableFuture<Toke> result = new CompletableFuture<Toke>();
+		call.whenComplete((response, x) -> {
+			if(x != null) {
+				Throwable cause = unwrap(x);
+				result.completeExceptionally(cause instanceof ReadException ? cause : new ReadException(cause));
+				return;
+			}
+			try {
+				readExceptionExcept(response, val);
+				result.complete(response);
+			} catch (ReadException e) {
+				result.completeExceptionally(e);
+			}
+		});
+		cancelWith(result, call);
+		return result;
+	}
+	
+	/**
+	 * Async counterpart to writeExceptionExcept. The returned future completes exceptionally with a WriteException
+	 * 
+	 * @param call
+	 * @param val the expected response code
+	 * @return
+	 */
+	protected CompletableFuture<Toke> writeAsync(CompletableFuture<Toke> call, int val) {
+		CompletableFuture<Toke> result = new CompletableFuture<Toke>();
+		call.whenComplete((response, x) -> {
+			if(x != null) {
+				Throwable cause = unwrap(x);
+				result.completeExceptionally(cause instanceof WriteException ? cause : new WriteException(cause));
+				return;
+			}
+			try {
+				writeExceptionExcept(response, val);
+				result.complete(response);
+			} catch (WriteException e) {
+				result.completeExceptionally(e);
+			}
+		});
+		cancelWith(result, call);
+		return result;
+	}
+	
+	protected static <T> CompletableFuture<T> failed(Throwable x) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(x);
+		return future;
+	}
+	
+	/**
+	 * Cancelling what we hand back to the caller should cancel the underlying HTTP call
+	 */
+	static void cancelWith(CompletableFuture<?> result, CompletableFuture<?> call) {
+		result.whenComplete((t, x) -> {
+			if(result.isCancelled()) call.cancel(true);
+		});
+	}
+	
+	static Throwable unwrap(Throwable x) {
+		while(x instanceof CompletionException && x.getCause() != null) {
+			x = x.getCause();
+		}
+		return x;
+	}
+	
 }
@@ -10,6 +10,7 @@ import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -328,6 +329,28 @@ public class Sys extends ServiceBase implements TokenListener {
 		}
 	}
 
+	/**
+	 * Non-blocking call to sys/capabilities. The future completes exceptionally with a ReadException
+	 * 
+	 * @param token
+	 * @param paths
+	 * @return
+	 */
+	public CompletableFuture<Toke> capabilitiesAsync(String token, List<String> paths) {
+		String url = config.baseURL().append("/sys/capabilities").toString();
+		JSONObject json = new JSONObject().put("token", token).put("paths", new JSONArray(paths));
+		// we expect a 200 per the documentation
+		return readAsync(client.postAsync(url, json.toString()), 200);
+	}
+	
+	public CompletableFuture<Toke> capabilitiesSelfAsync(List<String> paths) {
+		if(token == null) return failed(new ReadException("Token not set"));
+		String url = config.baseURL().append("/sys/capabilities-self").toString();
+		JSONObject json = new JSONObject().put("paths", new JSONArray(paths));
+		// we expect a 200 per the documentation
+		return readAsync(client.postAsync(url, json.toString()), 200);
+	}
+
 	// TODO, parameters and HEAD
 	public Toke health() throws ReadException {
 
@@ -340,6 +363,26 @@ public class Sys extends ServiceBase implements TokenListener {
 		}
 	}
 	
+	/**
+	 * Unauthenticated, reports whether HA is enabled and the address of the active node
+	 * 
+	 * @return
+	 * @throws ReadException
+	 */
+	public Toke leader() throws ReadException {
+
+		String url = config.baseURL().append("/sys/leader").toString();
+
+		try {
+			Toke response = client.get(url, false);
+			// we expect a 200 per the documentation
+			if(response.code != 200) throw new ReadException("Failed to get a 200 response on /sys/leader", response.code);
+			return response;
+		} catch (IOException e) {
+			throw new ReadException(e);
+		}
+	}
+	
 	public Toke sealStatus() throws ReadException {
 
 		String url = config.baseURL().append("/sys/seal-status").toString();
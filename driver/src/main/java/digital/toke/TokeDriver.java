@@ -7,13 +7,15 @@ package digital.toke;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import digital.toke.metrics.VaultMetrics;
+
 /**
  * Entry point. You can instantiate multiple instances of this class if required. 
  * 
  * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
  *
  */
-public final class TokeDriver {
+public final class TokeDriver implements AutoCloseable {
 
 	private static final Logger logger = LogManager.getLogger(TokeDriver.class);
 	
@@ -33,7 +35,8 @@ public final class TokeDriver {
 	public TokeDriver(TokeDriverConfig config) {
 		super();
 		this.config = config;
-		httpClient = new Networking();
+		NetworkingConfig nc = config.networkingConfig == null ? NetworkingConfig.builder().build() : config.networkingConfig;
+		httpClient = new Networking(nc, DriverExecutors.newExecutor(config.executionMode, config.workerThreads, "toke-worker"));
 		
 		auth = new Auth(config, httpClient);
 		
@@ -64,6 +67,8 @@ public final class TokeDriver {
 	public boolean isReady() {
 		
 		if(!ready) {
+			// find the active node before the first login
+			if(httpClient.cluster().isEnabled()) httpClient.cluster().refresh();
 			DefaultHousekeepingImpl impl = new DefaultHousekeepingImpl(this.tokenManager);
 			impl.run(); // initial
 			tokenManager.initScheduler(impl);
@@ -88,6 +93,35 @@ public final class TokeDriver {
 		return kvv2;
 	}
 	
+	/**
+	 * The shared transport, e.g., for its statistics
+	 * 
+	 * @return
+	 */
+	public Networking networking() {
+		return httpClient;
+	}
+	
+	/**
+	 * Latency, request counts and in-flight gauges of the calls to vault, by operation and status class. 
+	 * metrics().prometheus() has them in the Prometheus text format
+	 * 
+	 * @return
+	 */
+	public VaultMetrics metrics() {
+		return httpClient.metrics();
+	}
+	
+	/**
+	 * Stop housekeeping and shut down the driver's threads and connections. The driver cannot be used afterwards
+	 */
+	@Override
+	public void close() {
+		tokenManager.close();
+		httpClient.close();
+		logger.info("Driver instance "+this.getClass().hashCode() +" closed");
+	}
+
 	@Override
 	public String toString() {
 		return super.toString();
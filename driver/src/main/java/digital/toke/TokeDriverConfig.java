@@ -11,6 +11,7 @@ import java.util.Objects;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import digital.toke.cache.SecretCacheConfig;
 import okhttp3.HttpUrl;
 
 /**
@@ -27,6 +28,14 @@ public class TokeDriverConfig {
 
 	LoginConfig loginConfig;
 	HousekeepingConfig housekeepingConfig;
+	NetworkingConfig networkingConfig;
+	
+	// where the driver runs its own work, see ExecutionMode
+	ExecutionMode executionMode;
+	int workerThreads; // bound on the platform thread pool
+	
+	// if set, KVv2 reads are cached client-side
+	SecretCacheConfig kv2CacheConfig;
 
 	// pathing stuff
 	String host; // e.g., localhost
@@ -65,11 +74,26 @@ public class TokeDriverConfig {
 			authPath = "/auth";
 			
 			loginConfig = new LoginConfig(AuthType.TOKEN); // this is used for autologin situations
+			networkingConfig = NetworkingConfig.builder().build();
+			executionMode = ExecutionMode.PLATFORM;
+			workerThreads = 64;
 			
 		}
 
 		HousekeepingConfig housekeepingConfig;
 		LoginConfig loginConfig;
+		NetworkingConfig networkingConfig;
+		ExecutionMode executionMode;
+		int workerThreads;
+		SecretCacheConfig kv2CacheConfig;
+		RetryConfig retryConfig;
+		CircuitBreakerConfig circuitBreakerConfig;
+		ClusterConfig clusterConfig;
+		HedgeConfig hedgeConfig;
+		AdaptiveLimitConfig adaptiveLimitConfig;
+		RateLimitConfig rateLimitConfig;
+		PriorityConfig priorityConfig;
+		TraceConfig traceConfig;
 
 		// pathing stuff
 		String host; // e.g., localhost
@@ -141,9 +165,35 @@ public class TokeDriverConfig {
 			TokeDriverConfig config = new TokeDriverConfig();
 			config.housekeepingConfig = this.housekeepingConfig;
 			config.loginConfig = this.loginConfig;
+			config.networkingConfig = this.networkingConfig;
+			if(retryConfig != null || circuitBreakerConfig != null || clusterConfig != null || hedgeConfig != null
+					|| adaptiveLimitConfig != null || rateLimitConfig != null
+					|| priorityConfig != null || traceConfig != null) {
+				NetworkingConfig base = networkingConfig == null ? NetworkingConfig.builder().build() : networkingConfig;
+				NetworkingConfig.Builder nb = NetworkingConfig.builder(base);
+				if(retryConfig != null) nb.retry(retryConfig);
+				if(circuitBreakerConfig != null) nb.circuitBreaker(circuitBreakerConfig);
+				if(clusterConfig != null) nb.cluster(clusterConfig);
+				if(hedgeConfig != null) nb.hedge(hedgeConfig);
+				if(adaptiveLimitConfig != null) nb.adaptiveLimit(adaptiveLimitConfig);
+				if(rateLimitConfig != null) nb.rateLimit(rateLimitConfig);
+				if(priorityConfig != null) nb.priorities(priorityConfig);
+				if(traceConfig != null) nb.tracing(traceConfig);
+				config.networkingConfig = nb.build();
+			}
+			config.executionMode = this.executionMode;
+			config.workerThreads = this.workerThreads;
+			config.kv2CacheConfig = this.kv2CacheConfig;
 			config.host = this.host;
 			config.proto = this.proto;
 			config.port = this.port;
+			if(clusterConfig != null && clusterConfig.isEnabled()) {
+				// urls are built against the first node, Networking re-routes them to the active one
+				HttpUrl first = clusterConfig.getEndpoints().get(0);
+				config.host = first.host();
+				config.proto = first.scheme();
+				config.port = first.port();
+			}
 			config.vaultApiPrefix = this.vaultApiPrefix;
 			config.defaultKVv1Name = this.defaultKVv1Name;
 			config.defaultKVv2Name = this.defaultKVv2Name;
@@ -164,6 +214,132 @@ public class TokeDriverConfig {
 			this.loginConfig = loginConfig;
 			return this;
 		}
+		
+		public Builder networkingConfig(NetworkingConfig networkingConfig) {
+			this.networkingConfig = networkingConfig;
+			return this;
+		}
+		
+		/**
+		 * VIRTUAL runs driver work on virtual threads on JDK 21+, PLATFORM (the default) on a bounded thread pool
+		 * 
+		 * @param mode
+		 * @return
+		 */
+		public Builder executionMode(ExecutionMode mode) {
+			this.executionMode = mode;
+			return this;
+		}
+		
+		/**
+		 * The size of the platform thread pool, used in PLATFORM mode or as the fallback when virtual threads are not available
+		 * 
+		 * @param val
+		 * @return
+		 */
+		public Builder workerThreads(int val) {
+			this.workerThreads = val;
+			return this;
+		}
+		
+		/**
+		 * Opt in to client-side caching of KVv2 reads. Writes made through this driver invalidate the affected paths
+		 * 
+		 * @param cacheConfig
+		 * @return
+		 */
+		public Builder kv2Cache(SecretCacheConfig cacheConfig) {
+			this.kv2CacheConfig = cacheConfig;
+			return this;
+		}
+		
+		/**
+		 * How failed calls are retried, overrides the retry setting of the NetworkingConfig
+		 * 
+		 * @param retryConfig
+		 * @return
+		 */
+		public Builder retry(RetryConfig retryConfig) {
+			this.retryConfig = retryConfig;
+			return this;
+		}
+		
+		/**
+		 * When the per-endpoint circuit breakers open, overrides the setting of the NetworkingConfig
+		 * 
+		 * @param circuitBreakerConfig
+		 * @return
+		 */
+		public Builder circuitBreaker(CircuitBreakerConfig circuitBreakerConfig) {
+			this.circuitBreakerConfig = circuitBreakerConfig;
+			return this;
+		}
+		
+		/**
+		 * The nodes of an HA cluster, overrides host, proto and port and the cluster setting of the NetworkingConfig
+		 * 
+		 * @param clusterConfig
+		 * @return
+		 */
+		public Builder cluster(ClusterConfig clusterConfig) {
+			this.clusterConfig = clusterConfig;
+			return this;
+		}
+		
+		/**
+		 * Hedged reads, overrides the hedge setting of the NetworkingConfig
+		 * 
+		 * @param hedgeConfig
+		 * @return
+		 */
+		public Builder hedge(HedgeConfig hedgeConfig) {
+			this.hedgeConfig = hedgeConfig;
+			return this;
+		}
+		
+		/**
+		 * Adaptive concurrency limit, overrides the setting of the NetworkingConfig
+		 * 
+		 * @param adaptiveLimitConfig
+		 * @return
+		 */
+		public Builder adaptiveLimit(AdaptiveLimitConfig adaptiveLimitConfig) {
+			this.adaptiveLimitConfig = adaptiveLimitConfig;
+			return this;
+		}
+		
+		/**
+		 * Client-side rate limits, overrides the setting of the NetworkingConfig
+		 * 
+		 * @param rateLimitConfig
+		 * @return
+		 */
+		public Builder rateLimit(RateLimitConfig rateLimitConfig) {
+			this.rateLimitConfig = rateLimitConfig;
+			return this;
+		}
+		
+		/**
+		 * Priority lanes, overrides the setting of the NetworkingConfig
+		 * 
+		 * @param priorityConfig
+		 * @return
+		 */
+		public Builder priorities(PriorityConfig priorityConfig) {
+			this.priorityConfig = priorityConfig;
+			return this;
+		}
+		
+		/**
+		 * Tracing, overrides the setting of the NetworkingConfig
+		 * 
+		 * @param traceConfig
+		 * @return
+		 */
+		public Builder tracing(TraceConfig traceConfig) {
+			this.traceConfig = traceConfig;
+			return this;
+		}
 
 	}
 
@@ -277,7 +453,7 @@ public class TokeDriverConfig {
 		}
 		buf.append(verb);
 
-		if (path != null) {
+		if (path != null && path.length() > 0) {
 			if (path.charAt(0) != '/') {
 				buf.append("/");
 			}
@@ -306,7 +482,7 @@ public class TokeDriverConfig {
 
 		segments.append(KVv2METADATA);
 
-		if (path != null) {
+		if (path != null && path.length() > 0) {
 			if (path.charAt(0) != '/') {
 				segments.append("/");
 			}
@@ -319,6 +495,20 @@ public class TokeDriverConfig {
 		return url;
 	}
 
+	/**
+	 * @return the KVv1 mount calls go to, such as /secret
+	 */
+	public String kv1Mount() {
+		return kv1Name == null ? defaultKVv1Name : kv1Name;
+	}
+
+	/**
+	 * @return the KVv2 mount calls go to, such as /secret
+	 */
+	public String kv2Mount() {
+		return kv2Name == null ? defaultKVv2Name : kv2Name;
+	}
+
 	// KVv1
 
 	public String kv1Path(String path) {
@@ -332,7 +522,7 @@ public class TokeDriverConfig {
 			buf.append(kv1Name);
 		}
 
-		if (path != null) {
+		if (path != null && path.length() > 0) {
 			if (path.charAt(0) != '/') {
 				buf.append("/");
 			}
@@ -353,7 +543,7 @@ public class TokeDriverConfig {
 			segments.append(kv1Name);
 		}
 
-		if (path != null) {
+		if (path != null && path.length() > 0) {
 			if (path.charAt(0) != '/') {
 				segments.append("/");
 			}
@@ -370,7 +560,7 @@ public class TokeDriverConfig {
 
 		StringBuffer segments = new StringBuffer("v1");
 
-		if (path != null) {
+		if (path != null && path.length() > 0) {
 			if (path.charAt(0) != '/') {
 				segments.append("/");
 			}
@@ -415,6 +605,14 @@ public class TokeDriverConfig {
 		return housekeepingConfig;
 	}
 
+	public NetworkingConfig getNetworkingConfig() {
+		return networkingConfig;
+	}
+
+	public ExecutionMode getExecutionMode() {
+		return executionMode;
+	}
+
 	@Override
 	public String toString() {
 		return super.toString();
@@ -422,8 +620,8 @@ public class TokeDriverConfig {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(authPath, defaultKVv1Name, defaultKVv2Name, host, housekeepingConfig, kv1Name, kv2Name,
-				loginConfig, port, proto, renewable, vaultApiPrefix);
+		return Objects.hash(authPath, defaultKVv1Name, defaultKVv2Name, executionMode, host, housekeepingConfig, kv1Name, kv2Name,
+				loginConfig, port, proto, renewable, vaultApiPrefix, workerThreads);
 	}
 
 	@Override
@@ -442,9 +640,11 @@ public class TokeDriverConfig {
 				&& Objects.equals(defaultKVv2Name, other.defaultKVv2Name) && Objects.equals(host, other.host)
 				&& Objects.equals(housekeepingConfig, other.housekeepingConfig)
 				&& Objects.equals(kv1Name, other.kv1Name) && Objects.equals(kv2Name, other.kv2Name)
-				&& Objects.equals(loginConfig, other.loginConfig) && port == other.port
+				&& Objects.equals(loginConfig, other.loginConfig)
+				&& port == other.port
 				&& Objects.equals(proto, other.proto) && renewable == other.renewable
-				&& Objects.equals(vaultApiPrefix, other.vaultApiPrefix);
+				&& Objects.equals(vaultApiPrefix, other.vaultApiPrefix)
+				&& executionMode == other.executionMode && workerThreads == other.workerThreads;
 	}
 
 	
@@ -19,6 +19,7 @@ import digital.toke.event.EventEnum;
 import digital.toke.event.RenewalTokenEvent;
 import digital.toke.event.TokenEvent;
 import digital.toke.event.TokenListener;
+import digital.toke.net.VaultCluster;
 
 
 /**
@@ -57,13 +58,20 @@ public class TokenManager {
 	}
 
 	public void initScheduler(DefaultHousekeepingImpl impl) {
-		// one background thread
-		scheduledPool = Executors.newScheduledThreadPool(1);
+		// one background thread, virtual if so configured
+		scheduledPool = Executors.newScheduledThreadPool(1, 
+				DriverExecutors.threadFactory(driverConfig.executionMode, "toke-housekeeping"));
 
 
 		// fires initially, and then again every 30 seconds
 		logger.info("Initializing scheduler...");
 		scheduledPool.scheduleWithFixedDelay(impl, 0, 30, TimeUnit.SECONDS);
+		
+		// keep track of which node of an HA cluster is active
+		VaultCluster cluster = auth.client.cluster();
+		if(cluster.isEnabled()) {
+			scheduledPool.scheduleWithFixedDelay(cluster::refresh, cluster.refreshInterval(), cluster.refreshInterval(), TimeUnit.MILLISECONDS);
+		}
 
 		logger.info("Initialized a TokenManager instance");
 	}
@@ -113,6 +121,13 @@ public class TokenManager {
 		return driverConfig;
 	}
 
+	/**
+	 * Stop housekeeping
+	 */
+	public void close() {
+		if(scheduledPool != null) scheduledPool.shutdownNow();
+	}
+
 	Map<String, Token> getTokens() {
 		return tokens;
 	}
@@ -0,0 +1,111 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import digital.toke.trace.SpanExporter;
+
+/**
+ * <p>Input parameters for tracing. With an exporter set, every call to vault is a span - with a child span per
+ * HTTP attempt, and retries, coalesced waits and cache hits as annotations - handed to the exporter when it
+ * ends. Spans started by the application and bound to the calling thread become the parents of the driver's.</p>
+ *
+ * <p>Each request carries the call span's id in a request id header, and its trace context in a W3C traceparent
+ * header. Configure vault to audit that header (sys/config/auditing/request-headers) to find a span's requests
+ * in the audit log; the other way round, the request_id vault returns is recorded on the span.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see digital.toke.trace.Tracer
+ */
+public class TraceConfig {
+
+	SpanExporter exporter;
+	String requestIdHeader;
+	boolean traceparent;
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return a config with tracing off
+	 */
+	public static TraceConfig none() {
+		return new Builder().build();
+	}
+
+	public static class Builder {
+
+		SpanExporter exporter;
+		String requestIdHeader;
+		boolean traceparent;
+
+		/**
+		 * Has sane defaults: no exporter, which means tracing is off. Once on, the request id goes in X-Request-Id
+		 * and a traceparent header is sent
+		 */
+		public Builder() {
+			requestIdHeader = "X-Request-Id";
+			traceparent = true;
+		}
+
+		/**
+		 * Where finished spans go, e.g. an InMemorySpanExporter, or an adapter to your tracing system
+		 *
+		 * @param val
+		 * @return
+		 */
+		public Builder exporter(SpanExporter val) {
+			exporter = val;
+			return this;
+		}
+
+		/**
+		 * @param val the header to put the call span's id in, null for none
+		 * @return
+		 */
+		public Builder requestIdHeader(String val) {
+			requestIdHeader = val;
+			return this;
+		}
+
+		public Builder traceparent(boolean val) {
+			traceparent = val;
+			return this;
+		}
+
+		public TraceConfig build() {
+			TraceConfig config = new TraceConfig();
+			config.exporter = this.exporter;
+			config.requestIdHeader = this.requestIdHeader;
+			config.traceparent = this.traceparent;
+			return config;
+		}
+	}
+
+	private TraceConfig() {}
+
+	public boolean isEnabled() {
+		return exporter != null;
+	}
+
+	public SpanExporter getExporter() {
+		return exporter;
+	}
+
+	public String getRequestIdHeader() {
+		return requestIdHeader;
+	}
+
+	public boolean isTraceparent() {
+		return traceparent;
+	}
+
+	@Override
+	public String toString() {
+		return "TraceConfig [enabled=" + isEnabled() + ", requestIdHeader=" + requestIdHeader + ", traceparent="
+				+ traceparent + "]";
+	}
+
+}
@@ -0,0 +1,282 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import digital.toke.accessor.SecretsResponseDecorator;
+import digital.toke.accessor.Toke;
+import digital.toke.exception.ReadException;
+
+/**
+ * <p>A recursive walk of a KV mount: lists a prefix, hands each leaf path to a consumer as soon as it is seen,
+ * and lists each sub-directory (a key ending in "/") in turn, with a bounded number of list calls in flight.</p>
+ *
+ * <p>Only the directories still to be listed are held in memory, never the set of leaves, so the walk is fine on
+ * mounts with hundreds of thousands of keys. Directories are taken depth-first, which keeps that frontier small.
+ * Whichever list call completes frees its slot for the next directory, so no one slow branch holds up the rest.</p>
+ *
+ * <p>The consumer is called from the driver's worker threads, concurrently, and must be thread-safe. A failed
+ * list is recorded against its directory and the rest of the walk carries on, as is a leaf the consumer throws
+ * on. List calls go in the BULK lane.</p>
+ * 
+ * <p>A consumer which hands the leaves on to a bounded queue can give the walk a paused check (see KV.kvWalk) 
+ * rather than block: while it is true no new list calls are started, so the walk waits for the queue to drain
+ * without tying up the threads the consumer is called on.</p>
+ * 
+ * <p>CallOptions bound when the walk starts apply to every list call, their deadline ends the walk if it comes 
+ * first, and cancelling their Cancellation stops it.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see KV#kvWalk(String, Consumer, int, long, TimeUnit)
+ */
+public class TreeWalk {
+
+	private static final Logger logger = LogManager.getLogger(TreeWalk.class);
+
+	// how often a paused walk looks again, see await()
+	private static final long RESUME_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+	final KV kv;
+	final Consumer<String> leafConsumer;
+	final int concurrency;
+	// while true no new list calls are started; may be null
+	final BooleanSupplier paused;
+
+	private final Deque<String> pending = new ConcurrentLinkedDeque<String>();
+	private final Map<String, CompletableFuture<Toke>> inFlightCalls = new ConcurrentHashMap<String, CompletableFuture<Toke>>();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	// calls to pump() not yet served; only the thread which takes it from zero fills the slots, see pump()
+	private final AtomicInteger pumps = new AtomicInteger();
+	// directories queued or being listed; the walk is over when this reaches zero
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final CompletableFuture<Void> done = new CompletableFuture<Void>();
+
+	private final AtomicLong leaves = new AtomicLong();
+	private final AtomicLong directories = new AtomicLong();
+	private final Map<String, ReadException> errors = new ConcurrentHashMap<String, ReadException>();
+	private volatile boolean complete;
+	private volatile long elapsedMillis;
+	// the caller's, bound again around each list call since those are started from the worker threads
+	private final CallOptions options;
+
+	TreeWalk(KV kv, Consumer<String> leafConsumer, int concurrency) {
+		this(kv, leafConsumer, concurrency, null);
+	}
+
+	TreeWalk(KV kv, Consumer<String> leafConsumer, int concurrency, BooleanSupplier paused) {
+		if(concurrency < 1) throw new IllegalArgumentException("concurrency must be at least 1");
+		this.kv = kv;
+		this.leafConsumer = leafConsumer;
+		this.concurrency = concurrency;
+		this.paused = paused;
+		this.options = CallOptions.current();
+	}
+
+	/**
+	 * Walk everything under the prefix, blocking until done or the deadline passes
+	 */
+	TreeWalk run(String prefix, long timeout, TimeUnit unit) {
+		long start = System.nanoTime();
+		long wait = Math.min(unit.toNanos(timeout), options == null ? Long.MAX_VALUE : options.remainingNanos());
+		Cancellation cancellation = options == null ? null : options.cancellation();
+		Cancellation.Registration registration = cancellation == null ? null : cancellation.onCancel(this::stop);
+		push(directory(prefix));
+		pump();
+		try {
+			await(wait);
+			complete = cancellation == null || !cancellation.isCancelled();
+			if(!complete) logger.warn("Walk of "+prefix+" cancelled, "+outstanding.get()+" directories not listed");
+		} catch (TimeoutException e) {
+			logger.warn("Deadline passed walking "+prefix+", "+outstanding.get()+" directories not listed");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// can't happen, done only ever completes normally
+		}
+		if(registration != null) registration.close();
+		if(!complete) stop();
+		elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		logger.debug("Walked "+prefix+": "+this);
+		return this;
+	}
+
+	/**
+	 * Wait for the walk to finish. A paused walk with no calls in flight has nothing to pump it when it is 
+	 * unpaused, so in that case the waiting thread looks again every RESUME_NANOS
+	 */
+	private void await(long wait) throws InterruptedException, ExecutionException, TimeoutException {
+		if(paused == null) {
+			done.get(wait, TimeUnit.NANOSECONDS);
+			return;
+		}
+		long start = System.nanoTime();
+		while(true) {
+			long left = wait - (System.nanoTime() - start);
+			if(left <= 0) throw new TimeoutException();
+			try {
+				done.get(Math.min(left, RESUME_NANOS), TimeUnit.NANOSECONDS);
+				return;
+			} catch (TimeoutException e) {
+				pump();
+			}
+		}
+	}
+
+	private void push(String dir) {
+		outstanding.incrementAndGet();
+		pending.addLast(dir);
+	}
+
+	/**
+	 * Start list calls until the concurrency limit is reached or there is nothing left to list. A list call 
+	 * which completes at once (e.g. rejected before it was sent) calls back in here from inside fill(), so rather
+	 * than recurse, a call made while another thread (or this one) is filling just asks it to go round again
+	 */
+	private void pump() {
+		if(pumps.getAndIncrement() != 0) return;
+		int missed = 1;
+		do {
+			fill();
+			missed = pumps.addAndGet(-missed);
+		} while(missed != 0);
+	}
+
+	private void fill() {
+		while(!done.isDone()) {
+			if(paused != null && paused.getAsBoolean()) return;
+			int n = inFlight.get();
+			if(n >= concurrency) return;
+			if(!inFlight.compareAndSet(n, n + 1)) continue;
+			String dir = pending.pollLast();
+			if(dir == null) {
+				inFlight.decrementAndGet();
+				// another thread may have queued work while we held the slot, in which case its own pump()
+				// could have seen us at the limit and returned
+				if(pending.isEmpty()) return;
+				continue;
+			}
+			list(dir);
+		}
+	}
+
+	private void list(String dir) {
+		CompletableFuture<Toke> call;
+		try (Lane.Scope scope = Lane.BULK.bind(); CallOptions.Scope bound = options == null ? null : options.bind()) {
+			call = kv.client.listAsync(kv.listUrl(dir));
+		}
+		inFlightCalls.put(dir, call);
+		call.whenComplete((toke, x) -> {
+			inFlightCalls.remove(dir);
+			try {
+				if(x != null) {
+					Throwable cause = ServiceBase.unwrap(x);
+					errors.put(dir, cause instanceof ReadException ? (ReadException) cause : new ReadException(cause));
+				} else {
+					children(dir, toke);
+				}
+			} catch (RuntimeException e) {
+				// a bad response body
+				errors.put(dir, new ReadException(e));
+			} finally {
+				inFlight.decrementAndGet();
+				if(outstanding.decrementAndGet() == 0) done.complete(null);
+				else pump();
+			}
+		});
+	}
+
+	private void children(String dir, Toke toke) {
+		directories.incrementAndGet();
+		// vault answers 404 when listing an empty or non-existent path
+		if(toke.code == 404) return;
+		if(toke.code != 200) {
+			errors.put(dir, new ReadException("Unexpected response code listing "+dir+": "+toke.code+", "+toke.response));
+			return;
+		}
+		for(String key : new SecretsResponseDecorator(toke).secrets()) {
+			if(done.isDone()) return;
+			if(key.endsWith("/")) {
+				push(dir + key);
+			} else {
+				leaves.incrementAndGet();
+				try {
+					leafConsumer.accept(dir + key);
+				} catch (RuntimeException e) {
+					// recorded against the leaf, the rest of the directory carries on
+					errors.put(dir + key, new ReadException(e));
+				}
+			}
+		}
+	}
+
+	private void stop() {
+		done.complete(null);
+		pending.clear();
+		for(CompletableFuture<Toke> call : inFlightCalls.values()) {
+			call.cancel(true);
+		}
+	}
+
+	private static String directory(String prefix) {
+		if(prefix == null || prefix.length() == 0 || prefix.equals("/")) return "";
+		String dir = prefix.startsWith("/") ? prefix.substring(1) : prefix;
+		return dir.endsWith("/") ? dir : dir + "/";
+	}
+
+	/**
+	 * @return the number of leaf paths handed to the consumer
+	 */
+	public long leaves() {
+		return leaves.get();
+	}
+
+	/**
+	 * @return the number of directories listed
+	 */
+	public long directories() {
+		return directories.get();
+	}
+
+	/**
+	 * @return failed list calls keyed by directory, and leaves the consumer threw on keyed by path
+	 */
+	public Map<String, ReadException> errors() {
+		return Collections.unmodifiableMap(errors);
+	}
+
+	/**
+	 * @return true if every directory was listed before the deadline (some may still have failed, see errors())
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	public long elapsedMillis() {
+		return elapsedMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "TreeWalk [leaves=" + leaves + ", directories=" + directories + ", errors=" + errors.size()
+				+ ", complete=" + complete + ", elapsedMillis=" + elapsedMillis + "]";
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <p>What we currently believe about the vault server: is it reachable, is it sealed, did the last call fail.</p>
+ *
+ * <p>The reachability and seal status come from the housekeeping run (see DefaultHousekeepingImpl), which
+ * checks both every cycle. In between, every call through Networking reports its outcome - a transport failure
+ * or a 502/503/504 marks the server unavailable for a short hold-off, the next good response clears it. Callers
+ * which have something else to serve (such as a cached secret) use isAvailable() to avoid piling up requests
+ * against a dead server.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see Networking#health()
+ */
+public class VaultHealth {
+
+	private static final Logger logger = LogManager.getLogger(VaultHealth.class);
+
+	// after a failed call, how long to consider the server unavailable if nothing else tells us otherwise
+	public static final long FAILURE_HOLD_MILLIS = 5000;
+
+	private volatile boolean reachable = true;
+	private volatile boolean sealed;
+	private volatile long lastFailure; // System.nanoTime(), 0 if the last call succeeded
+
+	private final AtomicLong failures = new AtomicLong();
+
+	/**
+	 * Called by housekeeping with the result of its reachability checks
+	 */
+	public void reachable(boolean val) {
+		if(reachable != val) logger.info("Vault host is now "+(val ? "reachable" : "unreachable"));
+		reachable = val;
+		if(val) lastFailure = 0;
+	}
+
+	/**
+	 * Called by housekeeping with the result of sys/seal-status
+	 */
+	public void sealed(boolean val) {
+		if(sealed != val) logger.info("Vault is now "+(val ? "sealed" : "unsealed"));
+		sealed = val;
+	}
+
+	public void callSucceeded() {
+		lastFailure = 0;
+	}
+
+	public void callFailed() {
+		failures.incrementAndGet();
+		lastFailure = System.nanoTime();
+	}
+
+	/**
+	 * Feed a response code, only the gateway/unavailable family counts against the server
+	 */
+	public void response(int code) {
+		if(code == 502 || code == 503 || code == 504) callFailed();
+		else callSucceeded();
+	}
+
+	/**
+	 * @return false if the server is known to be unreachable or sealed, or a call failed within the hold-off
+	 */
+	public boolean isAvailable() {
+		if(!reachable || sealed) return false;
+		long failed = lastFailure;
+		return failed == 0 || System.nanoTime() - failed > TimeUnit.MILLISECONDS.toNanos(FAILURE_HOLD_MILLIS);
+	}
+
+	public boolean isReachable() {
+		return reachable;
+	}
+
+	public boolean isSealed() {
+		return sealed;
+	}
+
+	/**
+	 * @return the number of failed calls seen
+	 */
+	public long failures() {
+		return failures.get();
+	}
+
+	@Override
+	public String toString() {
+		return "VaultHealth [reachable=" + reachable + ", sealed=" + sealed + ", available=" + isAvailable()
+				+ ", failures=" + failures + "]";
+	}
+
+}
@@ -0,0 +1,32 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved 
+ */
+package digital.toke;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Java 8 version - there are no virtual threads. The JDK 21 version of this class lives under 
+ * src/main/java21 and is packaged into META-INF/versions/21 of the multi-release jar.
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see DriverExecutors
+ */
+final class VirtualThreads {
+	
+	private VirtualThreads() {}
+
+	static boolean available() {
+		return false;
+	}
+
+	static ThreadFactory factory(String name) {
+		throw new UnsupportedOperationException("Virtual threads require JDK 21 or later");
+	}
+
+	static ExecutorService newExecutor(String name) {
+		throw new UnsupportedOperationException("Virtual threads require JDK 21 or later");
+	}
+}
@@ -20,15 +20,20 @@ public class Accessor {
 	private static final Logger logger = LogManager.getLogger(Accessor.class);
 
 	public final Toke toke;
-	private JSONObject object;
+	// volatile because a Toke can be shared between threads, e.g., by read coalescing
+	private volatile JSONObject object;
 
 	public Accessor(Toke resp) {
 		this.toke = resp;
 	}
 	
 	public JSONObject json() {
-		if(object == null) object = new JSONObject(toke.response);
-		return object;
+		JSONObject parsed = object;
+		if(parsed == null) {
+			parsed = new JSONObject(toke.response);
+			object = parsed;
+		}
+		return parsed;
 	}
 	
 	public String toString() {
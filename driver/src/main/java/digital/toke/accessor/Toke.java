@@ -4,6 +4,8 @@
  */
 package digital.toke.accessor;
 
+import digital.toke.metrics.PhaseTimings;
+
 /**
  * A "toke" is a simple wrapper on the response out of OKHTTP with HTTPResponse code, success flag, and message body.
  * 
@@ -31,10 +33,28 @@ public class Toke {
 	// this will contain vault standard error object if successful is false, but
 	// should at least always be valid json
 	public final String response;
+	
+	// true if this is a last known good response served from the client-side cache because vault could 
+	// not be reached, or was failing, and the cached entry had already passed its ttl
+	public final boolean stale;
+	
+	// where the time of the HTTP exchange went, for the calls sampled by NetworkingConfig's timingSampleRate; 
+	// otherwise null
+	public final PhaseTimings timings;
 
 	public Toke(int code, boolean successful, String response) {
+		this(code, successful, response, false);
+	}
+	
+	public Toke(int code, boolean successful, String response, boolean stale) {
+		this(code, successful, response, stale, null);
+	}
+	
+	public Toke(int code, boolean successful, String response, boolean stale, PhaseTimings timings) {
 	
 		this.code = code;
+		this.stale = stale;
+		this.timings = timings;
 		this.successful = successful;
 
 		// if not successful, body probably looks something like this:
@@ -54,5 +74,12 @@ public class Toke {
 	public Accessor accessor() {
 		return accessor;
 	}
+	
+	/**
+	 * @return a copy of this response flagged as stale
+	 */
+	public Toke asStale() {
+		return stale ? this : new Toke(code, successful, response, true, timings);
+	}
 
 }
@@ -0,0 +1,91 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.bulk;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input parameters for an NDJSON export
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see Exporter
+ */
+public class ExportConfig {
+
+	// number of secrets being read at once
+	int concurrency;
+	
+	// paths found by the walk but not yet read, bounds memory on very wide mounts
+	int queueDepth;
+	
+	// gzip the output stream
+	boolean gzip;
+	
+	// deadline for the whole export, in milliseconds
+	long timeout;
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static class Builder {
+
+		int concurrency;
+		int queueDepth;
+		boolean gzip;
+		long timeout;
+
+		/**
+		 * Has sane defaults: 16 concurrent reads, up to 1000 paths queued, plain (not gzipped) output, 
+		 * and one hour to finish
+		 */
+		public Builder() {
+			concurrency = 16;
+			queueDepth = 1000;
+			gzip = false;
+			timeout = TimeUnit.HOURS.toMillis(1);
+		}
+
+		public Builder concurrency(int val) {
+			concurrency = val;
+			return this;
+		}
+
+		public Builder queueDepth(int val) {
+			queueDepth = val;
+			return this;
+		}
+
+		public Builder gzip(boolean val) {
+			gzip = val;
+			return this;
+		}
+
+		public Builder timeout(long val, TimeUnit unit) {
+			timeout = unit.toMillis(val);
+			return this;
+		}
+
+		public ExportConfig build() {
+			if(concurrency < 1) throw new IllegalArgumentException("concurrency must be at least 1");
+			if(queueDepth < 1) throw new IllegalArgumentException("queueDepth must be at least 1");
+			ExportConfig config = new ExportConfig();
+			config.concurrency = this.concurrency;
+			config.queueDepth = this.queueDepth;
+			config.gzip = this.gzip;
+			config.timeout = this.timeout;
+			return config;
+		}
+	}
+
+	private ExportConfig() {}
+
+	@Override
+	public String toString() {
+		return "ExportConfig [concurrency=" + concurrency + ", queueDepth=" + queueDepth + ", gzip=" + gzip
+				+ ", timeout=" + timeout + "]";
+	}
+
+}
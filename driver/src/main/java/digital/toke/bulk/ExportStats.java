@@ -0,0 +1,73 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.bulk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts for a finished (or abandoned) export
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see Exporter
+ */
+public class ExportStats {
+
+	final AtomicLong found = new AtomicLong();
+	final AtomicLong exported = new AtomicLong();
+	final AtomicLong failed = new AtomicLong();
+	volatile long walkErrors;
+	volatile boolean complete;
+	volatile long elapsedMillis;
+
+	/**
+	 * @return the number of leaf paths the walk found
+	 */
+	public long found() {
+		return found.get();
+	}
+
+	/**
+	 * @return the number of secrets written to the output
+	 */
+	public long exported() {
+		return exported.get();
+	}
+
+	/**
+	 * @return the number of secrets which could not be read (deleted versions, permission denied, ...)
+	 */
+	public long failed() {
+		return failed.get();
+	}
+
+	/**
+	 * @return the number of directories which could not be listed, their contents are missing from the output
+	 */
+	public long walkErrors() {
+		return walkErrors;
+	}
+
+	/**
+	 * @return true if the export ran to the end before the deadline
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	public long elapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public double secretsPerSecond() {
+		return elapsedMillis == 0 ? 0 : exported.get() * 1000.0 / elapsedMillis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ExportStats [found=%d, exported=%d, failed=%d, walkErrors=%d, complete=%s, elapsedMillis=%d, secretsPerSecond=%.1f]", 
+				found.get(), exported.get(), failed.get(), walkErrors, complete, elapsedMillis, secretsPerSecond());
+	}
+
+}
@@ -0,0 +1,246 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.bulk;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+import digital.toke.DriverExecutors;
+import digital.toke.KV;
+import digital.toke.Lane;
+import digital.toke.TreeWalk;
+import digital.toke.accessor.Toke;
+import digital.toke.exception.ReadException;
+
+/**
+ * <p>Streams every secret under a prefix to NDJSON - one line per secret, written as soon as it is read:</p>
+ *
+ * <pre>
+ * {"path":"app/db","version":3,"metadata":{"created_time":"...","version":3,...},"data":{"user":"...",...}}
+ * </pre>
+ *
+ * <p>For KVv1 mounts version is null and metadata is empty.</p>
+ *
+ * <p>The prefix is walked with KV.kvWalk(), and the paths it finds are read by a fixed number of reader threads.
+ * Between the two sits a queue, and while queueDepth paths are waiting the walk starts no new list calls, so when 
+ * reading falls behind the walk simply waits: memory use depends on the configured concurrency, queue depth and
+ * the size of a directory listing, not on the size of the mount. The walk's threads never block on the queue.
+ * All calls go in the BULK lane. The output stream is flushed (and the gzip trailer written) at the end, but not
+ * closed.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see ExportConfig
+ */
+public class Exporter {
+
+	private static final Logger logger = LogManager.getLogger(Exporter.class);
+
+	// tells a reader there is nothing more to read
+	private static final String END = new String("END");
+
+	final KV kv;
+	final ExportConfig config;
+
+	public Exporter(KV kv, ExportConfig config) {
+		this.kv = kv;
+		this.config = config;
+	}
+
+	public ExportStats export(String prefix, WritableByteChannel channel) throws IOException {
+		return export(prefix, Channels.newOutputStream(channel));
+	}
+
+	/**
+	 * Blocks until the export is done, the deadline passes, or writing fails
+	 *
+	 * @param prefix where to start, "" for the whole mount
+	 * @param out receives the NDJSON, left open
+	 * @return counts and throughput
+	 * @throws IOException if writing to the output failed
+	 */
+	public ExportStats export(String prefix, OutputStream out) throws IOException {
+
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(config.timeout);
+		ExportStats stats = new ExportStats();
+
+		GZIPOutputStream gzip = config.gzip ? new GZIPOutputStream(new LeaveOpen(out), 64 * 1024) : null;
+		Writer writer = new BufferedWriter(new OutputStreamWriter(gzip != null ? gzip : new LeaveOpen(out),
+				StandardCharsets.UTF_8), 64 * 1024);
+
+		Run run = new Run(writer, stats, deadline);
+		ExecutorService readers = Executors.newFixedThreadPool(config.concurrency,
+				DriverExecutors.threadFactory(kv.executionMode(), "toke-export"));
+		try {
+			for(int i = 0; i < config.concurrency; i++) {
+				readers.execute(run::read);
+			}
+
+			TreeWalk walk = kv.kvWalk(prefix, run::found, config.concurrency, run::paused,
+					Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			stats.walkErrors = walk.errors().size();
+			for(String dir : walk.errors().keySet()) {
+				logger.warn("Could not list "+dir+", its secrets are not in the export", walk.errors().get(dir));
+			}
+
+			for(int i = 0; i < config.concurrency; i++) {
+				run.queue.add(END);
+			}
+			readers.shutdown();
+			if(!readers.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+				run.abort(null);
+			}
+			stats.complete = walk.isComplete() && !run.aborted;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			run.abort(null);
+		} finally {
+			readers.shutdownNow();
+		}
+
+		if(run.failure != null) throw run.failure;
+		writer.flush();
+		if(gzip != null) gzip.finish();
+		out.flush();
+
+		stats.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		logger.info("Exported "+prefix+": "+stats);
+		return stats;
+	}
+
+	/**
+	 * State shared between the walk and the readers for one export
+	 */
+	private class Run {
+
+		// unbounded, but the walk starts no new list calls while queueDepth paths are waiting, see paused()
+		final BlockingQueue<String> queue = new LinkedBlockingQueue<String>();
+		final ReentrantLock writeLock = new ReentrantLock();
+		final Writer writer;
+		final ExportStats stats;
+		final long deadline;
+		volatile boolean aborted;
+		volatile IOException failure;
+
+		Run(Writer writer, ExportStats stats, long deadline) {
+			this.writer = writer;
+			this.stats = stats;
+			this.deadline = deadline;
+		}
+
+		// the walk's leaf consumer, called on the driver's worker threads so it must not block
+		void found(String path) {
+			stats.found.incrementAndGet();
+			if(!aborted) queue.add(path);
+		}
+
+		boolean paused() {
+			return !aborted && queue.size() >= config.queueDepth;
+		}
+
+		void abort(IOException x) {
+			if(x != null && failure == null) failure = x;
+			aborted = true;
+		}
+
+		void read() {
+			try (Lane.Scope scope = Lane.BULK.bind()) {
+				while(!aborted) {
+					String path = queue.poll(100, TimeUnit.MILLISECONDS);
+					if(path == END) return;
+					if(path == null) {
+						if(System.nanoTime() > deadline) abort(null);
+						continue;
+					}
+					export(path);
+				}
+			} catch (InterruptedException e) {
+				// shut down
+			}
+		}
+
+		void export(String path) {
+			Toke toke;
+			try {
+				toke = kv.kvRead(path);
+			} catch (ReadException e) {
+				stats.failed.incrementAndGet();
+				logger.warn("Could not read "+path+", it is not in the export", e);
+				return;
+			}
+			String line = line(path, toke);
+			writeLock.lock();
+			try {
+				if(aborted) return;
+				writer.write(line);
+				writer.write('\n');
+				stats.exported.incrementAndGet();
+			} catch (IOException e) {
+				logger.error("Writing the export failed, giving up", e);
+				abort(e);
+			} finally {
+				writeLock.unlock();
+			}
+		}
+	}
+
+	static String line(String path, Toke toke) {
+		JSONObject body = toke.accessor().json().optJSONObject("data");
+		if(body == null) body = new JSONObject();
+		JSONObject data = body;
+		JSONObject metadata = new JSONObject();
+		Object version = JSONObject.NULL;
+		// KVv2 nests the secret under data.data next to data.metadata
+		if(body.optJSONObject("data") != null && body.has("metadata")) {
+			data = body.getJSONObject("data");
+			metadata = body.optJSONObject("metadata") == null ? metadata : body.getJSONObject("metadata");
+			version = metadata.opt("version") == null ? JSONObject.NULL : metadata.get("version");
+		}
+		return new JSONObject()
+				.put("path", path)
+				.put("version", version)
+				.put("metadata", metadata)
+				.put("data", data)
+				.toString();
+	}
+
+	/**
+	 * Keeps the caller's stream open when our writer and gzip stream are done with it
+	 */
+	private static class LeaveOpen extends FilterOutputStream {
+		LeaveOpen(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+
+}
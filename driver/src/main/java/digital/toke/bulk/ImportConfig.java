@@ -0,0 +1,102 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.bulk;
+
+import java.nio.file.Path;
+
+/**
+ * Input parameters for an NDJSON import
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see Importer
+ */
+public class ImportConfig {
+
+	// number of writes in flight at once
+	int writers;
+	
+	// maximum writes per second across all writers, 0 for no limit
+	double ratePerSecond;
+	
+	// only create secrets which don't exist yet, never overwrite (kvWriteIfKeyDoesntExist semantics)
+	boolean cas;
+	
+	// if set, progress is recorded here and a re-run with the same input resumes from it
+	Path checkpoint;
+	
+	// how many completed records between checkpoint writes
+	int checkpointEvery;
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static class Builder {
+
+		int writers;
+		double ratePerSecond;
+		boolean cas;
+		Path checkpoint;
+		int checkpointEvery;
+
+		/**
+		 * Has sane defaults: 16 writers, no rate limit, overwrite existing secrets, no checkpoint file 
+		 * (checkpointing every 500 records once one is set)
+		 */
+		public Builder() {
+			writers = 16;
+			ratePerSecond = 0;
+			cas = false;
+			checkpointEvery = 500;
+		}
+
+		public Builder writers(int val) {
+			writers = val;
+			return this;
+		}
+
+		public Builder ratePerSecond(double val) {
+			ratePerSecond = val;
+			return this;
+		}
+
+		public Builder cas(boolean val) {
+			cas = val;
+			return this;
+		}
+
+		public Builder checkpoint(Path val) {
+			checkpoint = val;
+			return this;
+		}
+
+		public Builder checkpointEvery(int val) {
+			checkpointEvery = val;
+			return this;
+		}
+
+		public ImportConfig build() {
+			if(writers < 1) throw new IllegalArgumentException("writers must be at least 1");
+			if(ratePerSecond < 0) throw new IllegalArgumentException("ratePerSecond must not be negative");
+			if(checkpointEvery < 1) throw new IllegalArgumentException("checkpointEvery must be at least 1");
+			ImportConfig config = new ImportConfig();
+			config.writers = this.writers;
+			config.ratePerSecond = this.ratePerSecond;
+			config.cas = this.cas;
+			config.checkpoint = this.checkpoint;
+			config.checkpointEvery = this.checkpointEvery;
+			return config;
+		}
+	}
+
+	private ImportConfig() {}
+
+	@Override
+	public String toString() {
+		return "ImportConfig [writers=" + writers + ", ratePerSecond=" + ratePerSecond + ", cas=" + cas
+				+ ", checkpoint=" + checkpoint + ", checkpointEvery=" + checkpointEvery + "]";
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.bulk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts for a finished (or interrupted) import
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see Importer
+ */
+public class ImportStats {
+
+	final AtomicLong written = new AtomicLong();
+	final AtomicLong existing = new AtomicLong();
+	final AtomicLong failed = new AtomicLong();
+	final AtomicLong invalid = new AtomicLong();
+	volatile long resumedAfter;
+	volatile long checkpoint;
+	volatile long elapsedMillis;
+
+	/**
+	 * @return the number of secrets written
+	 */
+	public long written() {
+		return written.get();
+	}
+
+	/**
+	 * @return with cas on, the number of records skipped because the secret already existed
+	 */
+	public long existing() {
+		return existing.get();
+	}
+
+	/**
+	 * @return the number of writes which failed, see the log for why
+	 */
+	public long failed() {
+		return failed.get();
+	}
+
+	/**
+	 * @return the number of lines which were not a valid record (no path, or not JSON)
+	 */
+	public long invalid() {
+		return invalid.get();
+	}
+
+	/**
+	 * @return the number of records skipped at the start because a previous run's checkpoint covered them
+	 */
+	public long resumedAfter() {
+		return resumedAfter;
+	}
+
+	/**
+	 * @return every record up to and including this one (counting from 1) is done. A re-run resumes after it
+	 */
+	public long checkpoint() {
+		return checkpoint;
+	}
+
+	public long elapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public double secretsPerSecond() {
+		return elapsedMillis == 0 ? 0 : written.get() * 1000.0 / elapsedMillis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ImportStats [written=%d, existing=%d, failed=%d, invalid=%d, resumedAfter=%d, checkpoint=%d, elapsedMillis=%d, secretsPerSecond=%.1f]",
+				written.get(), existing.get(), failed.get(), invalid.get(), resumedAfter, checkpoint, elapsedMillis, secretsPerSecond());
+	}
+
+}
@@ -0,0 +1,368 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.bulk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import digital.toke.DriverExecutors;
+import digital.toke.KV;
+import digital.toke.KVv2;
+import digital.toke.Lane;
+import digital.toke.exception.ReadException;
+import digital.toke.exception.WriteException;
+
+/**
+ * <p>Writes NDJSON records into a KVv1 or KVv2 mount. Each line needs a path and a data object; anything else on
+ * the line (such as the version and metadata written by Exporter) is ignored:</p>
+ *
+ * <pre>
+ * {"path":"app/db","data":{"user":"...","password":"..."}}
+ * </pre>
+ *
+ * <p>Lines are read in order and written by a fixed number of writer threads, optionally paced to a maximum
+ * rate, in the BULK lane. Gzipped input is detected and unpacked.</p>
+ *
+ * <p>With cas on, a secret is only created if it does not exist yet: on KVv2 this is kvWriteIfKeyDoesntExist(),
+ * on KVv1 (which has no check-and-set) a read before the write, which is not atomic.</p>
+ *
+ * <p>With a checkpoint file, the importer records the line number up to which every record is done. Running again
+ * with the same input skips those lines. Writes complete out of order, so a few records past the checkpoint may be
+ * written again on a resume; a failed write holds the checkpoint back so it is retried. The checkpoint also holds a
+ * hash of the lines it covers, and a resume whose input does not start with those same lines is refused.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see ImportConfig
+ */
+public class Importer {
+
+	private static final Logger logger = LogManager.getLogger(Importer.class);
+
+	final KV kv;
+	final ImportConfig config;
+
+	public Importer(KV kv, ImportConfig config) {
+		this.kv = kv;
+		this.config = config;
+	}
+
+	public ImportStats importFrom(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			return importFrom(in);
+		}
+	}
+
+	public ImportStats importFrom(ReadableByteChannel channel) throws IOException {
+		return importFrom(Channels.newInputStream(channel));
+	}
+
+	/**
+	 * Blocks until every record has been written (or has failed)
+	 *
+	 * @param in NDJSON, optionally gzipped. Not closed
+	 * @return counts and throughput
+	 * @throws IOException if the input or the checkpoint file could not be read or written
+	 */
+	public ImportStats importFrom(InputStream in) throws IOException {
+
+		long start = System.nanoTime();
+		ImportStats stats = new ImportStats();
+		Checkpoint resume = readCheckpoint();
+		long resumeAfter = resume.line;
+		stats.resumedAfter = resumeAfter;
+		if(resumeAfter > 0) logger.info("Resuming import after line "+resumeAfter);
+
+		Progress progress = new Progress(resume, stats);
+		Pacer pacer = new Pacer(config.ratePerSecond);
+		Semaphore permits = new Semaphore(config.writers);
+		ExecutorService writers = Executors.newFixedThreadPool(config.writers,
+				DriverExecutors.threadFactory(kv.executionMode(), "toke-import"));
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(gunzipIfNeeded(in), StandardCharsets.UTF_8));
+		try {
+			long lineNo = 0;
+			long hash = Checkpoint.START;
+			String line;
+			while((line = reader.readLine()) != null) {
+				lineNo++;
+				hash = Checkpoint.hash(hash, line);
+				if(lineNo < resumeAfter) continue;
+				if(lineNo == resumeAfter) {
+					if(hash != resume.hash) throw resume.mismatch(config.checkpoint);
+					continue;
+				}
+				progress.read(lineNo, hash);
+				if(line.trim().length() == 0) {
+					progress.done(lineNo, true);
+					continue;
+				}
+				permits.acquire();
+				pacer.await();
+				final long n = lineNo;
+				final String record = line;
+				writers.execute(() -> {
+					boolean ok = false;
+					try (Lane.Scope scope = Lane.BULK.bind()) {
+						ok = write(n, record, stats);
+					} catch (RuntimeException e) {
+						stats.failed.incrementAndGet();
+						logger.warn("Line "+n+": writing failed", e);
+					} finally {
+						progress.done(n, ok);
+						permits.release();
+					}
+				});
+			}
+			if(lineNo < resumeAfter) throw resume.mismatch(config.checkpoint);
+			writers.shutdown();
+			writers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.warn("Import interrupted, the checkpoint records how far it got");
+		} finally {
+			writers.shutdownNow();
+			progress.save();
+		}
+
+		stats.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		logger.info("Import finished: "+stats);
+		return stats;
+	}
+
+	/**
+	 * @return true if the record is done with (written, already there, or unusable), false if it should be retried
+	 */
+	boolean write(long lineNo, String line, ImportStats stats) {
+		JSONObject record;
+		try {
+			record = new JSONObject(line);
+		} catch (JSONException e) {
+			stats.invalid.incrementAndGet();
+			logger.warn("Line "+lineNo+" is not a JSON object, skipping it");
+			return true;
+		}
+		String path = record.optString("path", null);
+		JSONObject data = record.optJSONObject("data");
+		if(path == null || data == null) {
+			stats.invalid.incrementAndGet();
+			logger.warn("Line "+lineNo+" has no path or no data, skipping it");
+			return true;
+		}
+
+		Map<String,Object> map = data.toMap();
+		try {
+			if(config.cas) {
+				if(!create(path, map)) {
+					stats.existing.incrementAndGet();
+					return true;
+				}
+			} else {
+				kv.kvWrite(path, map);
+			}
+			stats.written.incrementAndGet();
+			return true;
+		} catch (WriteException | ReadException e) {
+			stats.failed.incrementAndGet();
+			logger.warn("Line "+lineNo+": writing "+path+" failed", e);
+			return false;
+		}
+	}
+
+	/**
+	 * @return false if the secret already exists
+	 */
+	private boolean create(String path, Map<String,Object> map) throws WriteException, ReadException {
+		if(kv instanceof KVv2) {
+			try {
+				((KVv2) kv).kvWriteIfKeyDoesntExist(path, map);
+				return true;
+			} catch (WriteException e) {
+				// vault answers a failed check-and-set with a 400
+				if(e.getCode() == 400) return false;
+				throw e;
+			}
+		}
+		try {
+			kv.kvRead(path);
+			return false;
+		} catch (ReadException e) {
+			if(e.getCode() != 404) throw e;
+		}
+		kv.kvWrite(path, map);
+		return true;
+	}
+
+	private Checkpoint readCheckpoint() throws IOException {
+		if(config.checkpoint == null || !Files.exists(config.checkpoint)) return new Checkpoint(0, Checkpoint.START);
+		String text = new String(Files.readAllBytes(config.checkpoint), StandardCharsets.UTF_8);
+		try {
+			JSONObject json = new JSONObject(text);
+			return new Checkpoint(json.getLong("line"), json.getLong("hash"));
+		} catch (JSONException e) {
+			throw new IOException("Checkpoint file "+config.checkpoint+" is not readable: "+text, e);
+		}
+	}
+
+	private static InputStream gunzipIfNeeded(InputStream in) throws IOException {
+		PushbackInputStream pushback = new PushbackInputStream(in, 2);
+		byte[] magic = new byte[2];
+		int n = pushback.read(magic);
+		if(n > 0) pushback.unread(magic, 0, n);
+		if(n == 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+			return new GZIPInputStream(pushback, 64 * 1024);
+		}
+		return pushback;
+	}
+
+	/**
+	 * The line up to which every record is done, and a hash of the input up to and including it
+	 */
+	private static class Checkpoint {
+
+		// FNV-1a, 64 bit
+		static final long START = 0xcbf29ce484222325L;
+		static final long PRIME = 0x100000001b3L;
+
+		final long line;
+		final long hash;
+
+		Checkpoint(long line, long hash) {
+			this.line = line;
+			this.hash = hash;
+		}
+
+		static long hash(long hash, String line) {
+			for(int i = 0; i < line.length(); i++) {
+				hash = (hash ^ line.charAt(i)) * PRIME;
+			}
+			return (hash ^ '\n') * PRIME;
+		}
+
+		IOException mismatch(Path file) {
+			return new IOException("Checkpoint file "+file+" was written for other input: its first "+line
+					+" lines differ. Remove the checkpoint to import this input from the start");
+		}
+	}
+
+	/**
+	 * Tracks the line up to which every record is done. Records complete out of order; the ones past the mark are
+	 * remembered until the gap closes, along with the input hash of each line read but not yet passed by the mark.
+	 * After a failure the mark cannot pass it, so later lines need not be kept
+	 */
+	private class Progress {
+
+		final ReentrantLock lock = new ReentrantLock();
+		final TreeSet<Long> ahead = new TreeSet<Long>();
+		final TreeMap<Long,Long> hashes = new TreeMap<Long,Long>();
+		final ImportStats stats;
+		long mark;
+		long markHash;
+		long firstFailure = Long.MAX_VALUE;
+		long sinceSave;
+
+		Progress(Checkpoint start, ImportStats stats) {
+			this.mark = start.line;
+			this.markHash = start.hash;
+			this.stats = stats;
+			stats.checkpoint = mark;
+		}
+
+		/**
+		 * Called by the reading thread before the line is handed to a writer
+		 */
+		void read(long lineNo, long hash) {
+			lock.lock();
+			try {
+				if(lineNo < firstFailure) hashes.put(lineNo, hash);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void done(long lineNo, boolean ok) {
+			lock.lock();
+			try {
+				if(!ok) {
+					firstFailure = Math.min(firstFailure, lineNo);
+					ahead.tailSet(firstFailure).clear();
+					hashes.tailMap(firstFailure).clear();
+					return;
+				}
+				if(lineNo > firstFailure) return;
+				ahead.add(lineNo);
+				while(!ahead.isEmpty() && ahead.first() == mark + 1) {
+					mark = ahead.pollFirst();
+					markHash = hashes.remove(mark);
+					sinceSave++;
+				}
+				stats.checkpoint = mark;
+				if(sinceSave >= config.checkpointEvery) save();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void save() {
+			if(config.checkpoint == null) return;
+			lock.lock();
+			try {
+				sinceSave = 0;
+				Path tmp = config.checkpoint.resolveSibling(config.checkpoint.getFileName() + ".tmp");
+				Files.write(tmp, new JSONObject().put("line", mark).put("hash", markHash).toString().getBytes(StandardCharsets.UTF_8));
+				Files.move(tmp, config.checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				logger.error("Could not write checkpoint "+config.checkpoint, e);
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Spaces out writes to the configured rate. Only the reading thread calls it
+	 */
+	private static class Pacer {
+
+		final long interval;
+		long next;
+
+		Pacer(double ratePerSecond) {
+			interval = ratePerSecond <= 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+		}
+
+		void await() throws InterruptedException {
+			if(interval == 0) return;
+			long now = System.nanoTime();
+			if(next < now) next = now;
+			long wait = next - now;
+			next += interval;
+			if(wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+		}
+	}
+
+}
@@ -0,0 +1,400 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import digital.toke.accessor.Toke;
+
+/**
+ * <p>A bounded, LRU client-side cache of secret reads, keyed by mount + path + version.</p>
+ *
+ * <p>Entries for one mount and path are kept together, so a write to a path invalidates every cached version of
+ * it in one step, and eviction drops the least recently used path as a whole. Reads of the latest version live
+ * for the configured ttl; reads of an explicit version are immutable on the server and never expire (but can
+ * still be evicted or invalidated). A 404 can be cached for a short while as a "negative" entry.</p>
+ *
+ * <p>Optionally, an entry of the latest version which is read late in its ttl is handed out for refresh 
+ * (claimRefresh()), so hot secrets are re-read in the background before they expire. Expired entries can also
+ * be kept for a further maxStale and served, flagged stale, when vault cannot answer (getStale()).</p>
+ *
+ * <p>Thread-safe. The lock is only ever held for map operations, never across a call to vault.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see SecretCacheConfig
+ */
+public class SecretCache {
+
+	public static final int LATEST = -1;
+
+	/**
+	 * A cached read: either a Toke, or a negative (not found) result
+	 */
+	public static final class Entry {
+
+		final Toke toke;
+		final boolean negative;
+		final long storedAt;
+		final long expiresAt;
+		final long staleUntil;
+		final long refreshAt;
+		final AtomicBoolean refreshing = new AtomicBoolean();
+		final long bytes;
+
+		Entry(Toke toke, boolean negative, long storedAt, long expiresAt, long staleUntil, long refreshAt) {
+			this.toke = toke;
+			this.negative = negative;
+			this.storedAt = storedAt;
+			this.expiresAt = expiresAt;
+			this.staleUntil = staleUntil;
+			this.refreshAt = refreshAt;
+			this.bytes = toke.response == null ? 16 : 2L * toke.response.length();
+		}
+
+		/**
+		 * @return the cached response - for a negative entry, the original 404 response
+		 */
+		public Toke toke() {
+			return toke;
+		}
+
+		public boolean isNegative() {
+			return negative;
+		}
+
+		/**
+		 * @return when this entry was stored, in the cache's clock (milliseconds)
+		 */
+		public long storedAt() {
+			return storedAt;
+		}
+	}
+
+	private static final class Node {
+		final Map<Integer, Entry> versions = new HashMap<Integer, Entry>(4);
+		long bytes;
+	}
+
+	private final SecretCacheConfig config;
+	private final LongSupplier clock;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final LinkedHashMap<String, Node> nodes = new LinkedHashMap<String, Node>(64, 0.75f, true);
+	private int entries;
+	private long bytes;
+	
+	// bumped by every invalidation, see epoch(). Each stripe of keys remembers the sequence number of its latest
+	// invalidation, so a write only discards the reads in flight for its own keys (bar the odd stripe collision)
+	private static final int STRIPES = 1024;
+	private final AtomicLong sequence = new AtomicLong();
+	private final long[] invalidated = new long[STRIPES];
+	private long cleared;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong negativeHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+	private final AtomicLong refreshes = new AtomicLong();
+	private final AtomicLong staleHits = new AtomicLong();
+
+	public SecretCache(SecretCacheConfig config) {
+		this(config, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+	}
+
+	SecretCache(SecretCacheConfig config, LongSupplier clock) {
+		this.config = config;
+		this.clock = clock;
+	}
+
+	/**
+	 * @param mount
+	 * @param path
+	 * @param version a version number or LATEST
+	 * @return the live entry, or null on a miss
+	 */
+	public Entry get(String mount, String path, int version) {
+		long now = clock.getAsLong();
+		lock.lock();
+		try {
+			Node node = nodes.get(key(mount, path));
+			Entry entry = node == null ? null : node.versions.get(version);
+			if(entry == null) {
+				misses.incrementAndGet();
+				return null;
+			}
+			if(entry.expiresAt <= now) {
+				// past the ttl, but kept around as a fallback while within maxStale
+				if(entry.staleUntil <= now) {
+					removeEntry(key(mount, path), node, version);
+					expirations.incrementAndGet();
+				}
+				misses.incrementAndGet();
+				return null;
+			}
+			if(entry.isNegative()) negativeHits.incrementAndGet();
+			else hits.incrementAndGet();
+			return entry;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return an expired but still servable (within maxStale) successful read, or null
+	 */
+	public Entry getStale(String mount, String path, int version) {
+		if(config.maxStale <= 0) return null;
+		long now = clock.getAsLong();
+		lock.lock();
+		try {
+			Node node = nodes.get(key(mount, path));
+			Entry entry = node == null ? null : node.versions.get(version);
+			if(entry == null || entry.negative || entry.staleUntil <= now) return null;
+			return entry;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the entry's response flagged as stale, counted in the statistics
+	 */
+	public Toke serveStale(Entry entry) {
+		staleHits.incrementAndGet();
+		return entry.toke.asStale();
+	}
+
+	/**
+	 * At most one caller gets true per entry, and should then re-read it and put() the result
+	 * 
+	 * @return true if the entry is due for a refresh-ahead and no refresh is already running
+	 */
+	public boolean claimRefresh(Entry entry) {
+		if(entry.negative || clock.getAsLong() < entry.refreshAt) return false;
+		if(!entry.refreshing.compareAndSet(false, true)) return false;
+		refreshes.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Release a claim once its refresh has completed. If the refresh failed and did not replace the entry, 
+	 * a later read can then try again
+	 */
+	public void refreshDone(Entry entry) {
+		entry.refreshing.set(false);
+	}
+
+	/**
+	 * Take this before sending a read and hand it to put(). If the path is invalidated while the read 
+	 * is in flight, the (possibly pre-write) result is not cached. Invalidations of other paths do not matter
+	 * 
+	 * @return the current invalidation epoch
+	 */
+	public long epoch() {
+		return sequence.get();
+	}
+
+	/**
+	 * Cache a successful read. Explicit versions never expire, LATEST lives for the configured ttl
+	 */
+	public void put(String mount, String path, int version, Toke toke, long epoch) {
+		long now = clock.getAsLong();
+		Entry entry;
+		if(version == LATEST) {
+			long refreshAt = config.refreshAhead > 0 ? now + (long) (config.ttl * config.refreshAhead) : Long.MAX_VALUE;
+			entry = new Entry(toke, false, now, now + config.ttl, now + config.ttl + config.maxStale, refreshAt);
+		} else {
+			entry = new Entry(toke, false, now, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+		}
+		store(mount, path, entry, version, epoch);
+	}
+
+	/**
+	 * Cache a 404 response for the configured negative ttl
+	 */
+	public void putNotFound(String mount, String path, int version, Toke notFound, long epoch) {
+		if(config.negativeTtl <= 0) return;
+		long now = clock.getAsLong();
+		long expiresAt = now + config.negativeTtl;
+		store(mount, path, new Entry(notFound, true, now, expiresAt, expiresAt, Long.MAX_VALUE), version, epoch);
+	}
+
+	/**
+	 * Drop every cached version of this path, used after a write, delete, destroy or undelete
+	 */
+	public void invalidate(String mount, String path) {
+		String key = key(mount, path);
+		lock.lock();
+		try {
+			invalidated[stripe(key)] = sequence.incrementAndGet();
+			Node node = nodes.remove(key);
+			if(node != null) {
+				entries -= node.versions.size();
+				bytes -= node.bytes;
+				invalidations.incrementAndGet();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void clear() {
+		lock.lock();
+		try {
+			cleared = sequence.incrementAndGet();
+			nodes.clear();
+			entries = 0;
+			bytes = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void store(String mount, String path, Entry entry, int version, long readEpoch) {
+		if(entry.bytes > config.maxBytes) return; // would evict everything else and still not fit
+		String key = key(mount, path);
+		lock.lock();
+		try {
+			if(invalidated[stripe(key)] > readEpoch || cleared > readEpoch) return; // raced with a write
+			Node node = nodes.get(key);
+			if(node == null) {
+				node = new Node();
+				nodes.put(key, node);
+			}
+			Entry old = node.versions.put(version, entry);
+			if(old != null) {
+				entries--;
+				node.bytes -= old.bytes;
+				bytes -= old.bytes;
+			}
+			entries++;
+			node.bytes += entry.bytes;
+			bytes += entry.bytes;
+
+			// evict least recently used paths, but never the one just written
+			Iterator<Map.Entry<String, Node>> iter = nodes.entrySet().iterator();
+			while((entries > config.maxEntries || bytes > config.maxBytes) && iter.hasNext()) {
+				Map.Entry<String, Node> eldest = iter.next();
+				if(eldest.getValue() == node) continue;
+				iter.remove();
+				entries -= eldest.getValue().versions.size();
+				bytes -= eldest.getValue().bytes;
+				evictions.addAndGet(eldest.getValue().versions.size());
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void removeEntry(String key, Node node, int version) {
+		Entry removed = node.versions.remove(version);
+		if(removed == null) return;
+		entries--;
+		node.bytes -= removed.bytes;
+		bytes -= removed.bytes;
+		if(node.versions.isEmpty()) nodes.remove(key);
+	}
+
+	static String key(String mount, String path) {
+		return trim(mount) + ":" + trim(path);
+	}
+
+	private static int stripe(String key) {
+		int h = key.hashCode();
+		return (h ^ (h >>> 16)) & (STRIPES - 1);
+	}
+
+	private static String trim(String s) {
+		if(s == null) return "";
+		int start = 0, end = s.length();
+		while(start < end && s.charAt(start) == '/') start++;
+		while(end > start && s.charAt(end - 1) == '/') end--;
+		return s.substring(start, end);
+	}
+
+	// ******** statistics ******** //
+
+	public long hits() {
+		return hits.get();
+	}
+
+	public long negativeHits() {
+		return negativeHits.get();
+	}
+
+	public long misses() {
+		return misses.get();
+	}
+
+	public long expirations() {
+		return expirations.get();
+	}
+
+	public long evictions() {
+		return evictions.get();
+	}
+
+	public long invalidations() {
+		return invalidations.get();
+	}
+
+	/**
+	 * @return the number of refresh-aheads handed out
+	 */
+	public long refreshes() {
+		return refreshes.get();
+	}
+
+	/**
+	 * @return the number of stale responses served
+	 */
+	public long staleHits() {
+		return staleHits.get();
+	}
+
+	/**
+	 * @return hits (including negative hits) over all lookups, or 0 if there have been none
+	 */
+	public double hitRate() {
+		long h = hits.get() + negativeHits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	public int size() {
+		lock.lock();
+		try {
+			return entries;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long bytes() {
+		lock.lock();
+		try {
+			return bytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SecretCache [size=" + size() + ", bytes=" + bytes() + ", hits=" + hits + ", negativeHits=" + negativeHits
+				+ ", misses=" + misses + ", evictions=" + evictions + ", expirations=" + expirations
+				+ ", invalidations=" + invalidations + ", refreshes=" + refreshes + ", staleHits=" + staleHits + "]";
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved 
+ */
+package digital.toke.cache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input parameters for the client-side secret cache
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see SecretCache
+ */
+public class SecretCacheConfig {
+
+	// bounds, whichever is reached first triggers LRU eviction
+	int maxEntries;
+	long maxBytes;
+	
+	// time to live of a read of the latest version, in milliseconds. Reads of an explicit version never expire
+	long ttl;
+	
+	// time to live of a "not found" (404) result, in milliseconds. 0 turns off negative caching
+	long negativeTtl;
+	
+	// fraction of the ttl after which a read of the latest version triggers a background refresh. 0 turns it off
+	double refreshAhead;
+	
+	// how long past its ttl a read of the latest version may still be served, flagged stale, when vault is 
+	// unavailable or failing, in milliseconds. 0 turns off stale serving
+	long maxStale;
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static class Builder {
+
+		int maxEntries;
+		long maxBytes;
+		long ttl;
+		long negativeTtl;
+		double refreshAhead;
+		long maxStale;
+
+		/**
+		 * Has sane defaults: 10,000 entries or 32MB of response bodies, latest versions live for 60 seconds, 
+		 * and 404s for 5 seconds. No refresh-ahead and no stale serving
+		 */
+		public Builder() {
+			maxEntries = 10000;
+			maxBytes = 32L * 1024 * 1024;
+			ttl = 60000;
+			negativeTtl = 5000;
+		}
+
+		public Builder maxEntries(int val) {
+			maxEntries = val;
+			return this;
+		}
+
+		public Builder maxBytes(long val) {
+			maxBytes = val;
+			return this;
+		}
+
+		public Builder ttl(long val, TimeUnit unit) {
+			ttl = unit.toMillis(val);
+			return this;
+		}
+
+		public Builder negativeTtl(long val, TimeUnit unit) {
+			negativeTtl = unit.toMillis(val);
+			return this;
+		}
+
+		/**
+		 * Refresh a hot entry in the background once it is this far through its ttl, e.g. 0.8
+		 */
+		public Builder refreshAhead(double fractionOfTtl) {
+			refreshAhead = fractionOfTtl;
+			return this;
+		}
+
+		/**
+		 * Serve the last known good value for up to this long past its ttl while vault is unavailable
+		 */
+		public Builder maxStale(long val, TimeUnit unit) {
+			maxStale = unit.toMillis(val);
+			return this;
+		}
+
+		public SecretCacheConfig build() {
+			if(maxEntries < 1) throw new IllegalArgumentException("maxEntries must be at least 1");
+			if(refreshAhead < 0 || refreshAhead >= 1) throw new IllegalArgumentException("refreshAhead must be in [0, 1)");
+			SecretCacheConfig config = new SecretCacheConfig();
+			config.maxEntries = this.maxEntries;
+			config.maxBytes = this.maxBytes;
+			config.ttl = this.ttl;
+			config.negativeTtl = this.negativeTtl;
+			config.refreshAhead = this.refreshAhead;
+			config.maxStale = this.maxStale;
+			return config;
+		}
+	}
+
+	private SecretCacheConfig() {}
+
+	@Override
+	public String toString() {
+		return "SecretCacheConfig [maxEntries=" + maxEntries + ", maxBytes=" + maxBytes + ", ttl=" + ttl
+				+ ", negativeTtl=" + negativeTtl + ", refreshAhead=" + refreshAhead + ", maxStale=" + maxStale + "]";
+	}
+
+}
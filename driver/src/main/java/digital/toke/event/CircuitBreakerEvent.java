@@ -0,0 +1,52 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.event;
+
+import java.util.EventObject;
+
+import digital.toke.net.CircuitBreaker.State;
+
+/**
+ * A circuit breaker changed state
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class CircuitBreakerEvent extends EventObject {
+
+	private static final long serialVersionUID = 1L;
+	
+	final String endpoint;
+	final State from;
+	final State to;
+
+	public CircuitBreakerEvent(Object source, String endpoint, State from, State to) {
+		super(source);
+		this.endpoint = endpoint;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * @return the endpoint class: "auth", "sys" or a mount name
+	 */
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	public State getFrom() {
+		return from;
+	}
+
+	public State getTo() {
+		return to;
+	}
+
+	@Override
+	public String toString() {
+		return "CircuitBreakerEvent [endpoint=" + endpoint + ", from=" + from + ", to=" + to + "]";
+	}
+
+}
@@ -0,0 +1,17 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.event;
+
+/**
+ * Receives circuit breaker state changes, see Networking.addCircuitBreakerListener(). Called on the thread 
+ * which caused the transition, so implementations should return quickly
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public interface CircuitBreakerListener {
+
+	public void circuitBreakerEvent(CircuitBreakerEvent evt);
+}
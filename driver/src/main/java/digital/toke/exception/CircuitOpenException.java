@@ -0,0 +1,41 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.exception;
+
+/**
+ * Thrown instead of making a call when the circuit breaker for its endpoint is open. Reaches callers as the 
+ * cause of a ReadException or WriteException, like any other transport failure
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class CircuitOpenException extends RejectedCallException {
+
+	private static final long serialVersionUID = 1L;
+	
+	private final String endpoint;
+	private final long retryAfterMillis;
+
+	public CircuitOpenException(String endpoint, long retryAfterMillis) {
+		super("Circuit breaker for "+endpoint+" is open, failing fast. Probing again in "+retryAfterMillis+"ms");
+		this.endpoint = endpoint;
+		this.retryAfterMillis = retryAfterMillis;
+	}
+
+	/**
+	 * @return the endpoint class: "auth", "sys" or a mount name
+	 */
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	/**
+	 * @return roughly how long until the breaker lets a probe through
+	 */
+	public long getRetryAfterMillis() {
+		return retryAfterMillis;
+	}
+
+}
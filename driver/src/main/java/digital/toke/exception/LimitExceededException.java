@@ -0,0 +1,32 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.exception;
+
+/**
+ * Thrown when the adaptive concurrency limit is reached and the call could not be queued, or waited in the queue
+ * past its deadline
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class LimitExceededException extends RejectedCallException {
+
+	private static final long serialVersionUID = 1L;
+	
+	private final int limit;
+
+	public LimitExceededException(String message, int limit) {
+		super(message);
+		this.limit = limit;
+	}
+
+	/**
+	 * @return the concurrency limit at the time
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+}
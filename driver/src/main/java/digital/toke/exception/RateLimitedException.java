@@ -0,0 +1,40 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.exception;
+
+/**
+ * Thrown when a client-side rate limit has no token for the call within its maxWait
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class RateLimitedException extends RejectedCallException {
+
+	private static final long serialVersionUID = 1L;
+	
+	private final String path;
+	private final long retryAfterMillis;
+
+	public RateLimitedException(String message, String path, long retryAfterMillis) {
+		super(message);
+		this.path = path;
+		this.retryAfterMillis = retryAfterMillis;
+	}
+
+	/**
+	 * @return the path of the limit which turned the call away
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return roughly when the limit would have a token for this call
+	 */
+	public long getRetryAfterMillis() {
+		return retryAfterMillis;
+	}
+
+}
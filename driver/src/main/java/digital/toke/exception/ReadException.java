@@ -13,6 +13,9 @@ package digital.toke.exception;
 public class ReadException extends TokeException {
 
 	private static final long serialVersionUID = 1L;
+	
+	// the HTTP response code behind this exception, -1 if there was no response (e.g., a transport failure)
+	private int code = -1;
 
 	public ReadException() {}
 
@@ -23,6 +26,15 @@ public class ReadException extends TokeException {
 	public ReadException(Throwable arg0) {
 		super(arg0);
 	}
+	
+	public ReadException(String arg0, int code) {
+		super(arg0);
+		this.code = code;
+	}
+	
+	public int getCode() {
+		return code;
+	}
 
 
 }
@@ -0,0 +1,24 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.exception;
+
+import java.io.IOException;
+
+/**
+ * The driver shed this call without sending it, to protect vault (or itself). Nothing was sent, so nothing is 
+ * learnt about the server's health and the call is not retried
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class RejectedCallException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public RejectedCallException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A lock-free latency histogram with HdrHistogram-style log-linear buckets: each power of two of microseconds
+ * is split into 32 equal buckets, so a recorded value is known to within about 3% whatever its size. Values of
+ * 2^27 microseconds (a little over two minutes) and more share the last bucket.</p>
+ *
+ * <p>Recording is a few atomic adds and allocates nothing. Reading walks the buckets, which may be updated at
+ * the same time; the figures are then a close approximation, never torn.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see OperationMetrics
+ */
+public class LatencyHistogram {
+
+	static final int SUB_BITS = 5;
+	static final int SUB_COUNT = 1 << SUB_BITS;
+	static final int MAX_BITS = 27;
+	static final int BUCKETS = (MAX_BITS - SUB_BITS + 1) * SUB_COUNT;
+
+	final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	final LongAdder count = new LongAdder();
+	final LongAdder sumMicros = new LongAdder();
+	final AtomicLong maxMicros = new AtomicLong();
+
+	public void record(long nanos) {
+		long micros = nanos <= 0 ? 0 : nanos / 1000;
+		counts.incrementAndGet(index(micros));
+		count.increment();
+		sumMicros.add(micros);
+		long max;
+		while(micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros));
+	}
+
+	static int index(long micros) {
+		if(micros < SUB_COUNT) return (int) micros;
+		int msb = 63 - Long.numberOfLeadingZeros(micros);
+		if(msb >= MAX_BITS) return BUCKETS - 1;
+		int shift = msb - SUB_BITS;
+		return (shift + 1) * SUB_COUNT + (int) (micros >>> shift) - SUB_COUNT;
+	}
+
+	/**
+	 * @return the smallest value, in microseconds, which lands in this bucket
+	 */
+	static long lowest(int index) {
+		int octave = index >>> SUB_BITS;
+		if(octave == 0) return index;
+		return (long) ((index & (SUB_COUNT - 1)) + SUB_COUNT) << (octave - 1);
+	}
+
+	/**
+	 * @return the largest value, in microseconds, which lands in this bucket
+	 */
+	static long highest(int index) {
+		return index == BUCKETS - 1 ? Long.MAX_VALUE : lowest(index + 1) - 1;
+	}
+
+	public long count() {
+		return count.sum();
+	}
+
+	public double sumMillis() {
+		return sumMicros.sum() / 1000.0;
+	}
+
+	public double meanMillis() {
+		long n = count.sum();
+		return n == 0 ? 0 : sumMicros.sum() / 1000.0 / n;
+	}
+
+	public double maxMillis() {
+		return maxMicros.get() / 1000.0;
+	}
+
+	/**
+	 * @param percentile e.g. 99.9
+	 * @return the latency which that share of the recorded calls did not exceed, to within a bucket; 0 if none
+	 * were recorded
+	 */
+	public double percentileMillis(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if(total == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100.0 * total));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if(seen >= rank) return Math.min(highest(i), maxMicros.get()) / 1000.0;
+		}
+		return maxMillis();
+	}
+
+	/**
+	 * Cumulative counts at each bound, as the Prometheus histogram buckets want them. A bucket straddling a bound
+	 * is counted above it
+	 *
+	 * @param boundsMicros ascending
+	 */
+	long[] cumulative(long[] boundsMicros) {
+		long[] cumulative = new long[boundsMicros.length];
+		int bound = 0;
+		for(int i = 0; i < BUCKETS && bound < boundsMicros.length; i++) {
+			while(bound < boundsMicros.length && highest(i) > boundsMicros[bound]) bound++;
+			if(bound < boundsMicros.length) cumulative[bound] += counts.get(i);
+		}
+		for(int i = 1; i < cumulative.length; i++) {
+			cumulative[i] += cumulative[i - 1];
+		}
+		return cumulative;
+	}
+
+	void add(LatencyHistogram other) {
+		for(int i = 0; i < BUCKETS; i++) {
+			long n = other.counts.get(i);
+			if(n > 0) counts.addAndGet(i, n);
+		}
+		count.add(other.count.sum());
+		sumMicros.add(other.sumMicros.sum());
+		long micros = other.maxMicros.get();
+		long max;
+		while(micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros));
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram [count=" + count() + ", meanMillis=" + meanMillis() + ", p50=" + percentileMillis(50)
+				+ ", p99=" + percentileMillis(99) + ", maxMillis=" + maxMillis() + "]";
+	}
+
+}
@@ -0,0 +1,47 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.metrics;
+
+import java.io.IOException;
+
+import digital.toke.exception.RejectedCallException;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Records each call in VaultMetrics. Outermost in the chain, so the latency is what the caller sees - retries,
+ * waits for a slot and all - up to the response headers
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see VaultMetrics
+ */
+public class MetricsInterceptor implements Interceptor {
+
+	final VaultMetrics metrics;
+
+	public MetricsInterceptor(VaultMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		OperationMetrics operation = metrics.metrics(metrics.operationName(chain.request()));
+		long start = System.nanoTime();
+		operation.started();
+		try {
+			Response response = chain.proceed(chain.request());
+			operation.finished(StatusClass.of(response.code()), System.nanoTime() - start);
+			return response;
+		} catch (RejectedCallException e) {
+			operation.finished(StatusClass.REJECTED, System.nanoTime() - start);
+			throw e;
+		} catch (IOException | RuntimeException e) {
+			operation.finished(chain.call().isCanceled() ? StatusClass.CANCELLED : StatusClass.IO_ERROR,
+					System.nanoTime() - start);
+			throw e;
+		}
+	}
+
+}
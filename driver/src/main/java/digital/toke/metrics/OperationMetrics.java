@@ -0,0 +1,107 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The calls of one operation, such as kv2.read: a latency histogram per status class (which also counts the
+ * calls) and a gauge of calls in flight. A status class gets its histogram the first time it is seen
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see VaultMetrics
+ */
+public class OperationMetrics {
+
+	final String name;
+	final AtomicInteger inFlight = new AtomicInteger();
+	final AtomicReferenceArray<LatencyHistogram> latency = new AtomicReferenceArray<LatencyHistogram>(StatusClass.ALL.length);
+
+	OperationMetrics(String name) {
+		this.name = name;
+	}
+
+	void started() {
+		inFlight.incrementAndGet();
+	}
+
+	void finished(StatusClass status, long nanos) {
+		inFlight.decrementAndGet();
+		histogram(status).record(nanos);
+	}
+
+	private LatencyHistogram histogram(StatusClass status) {
+		LatencyHistogram histogram = latency.get(status.ordinal());
+		if(histogram != null) return histogram;
+		latency.compareAndSet(status.ordinal(), null, new LatencyHistogram());
+		return latency.get(status.ordinal());
+	}
+
+	public String name() {
+		return name;
+	}
+
+	/**
+	 * @return calls of this operation in flight now
+	 */
+	public int inFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return calls finished, in any status class
+	 */
+	public long requests() {
+		long n = 0;
+		for(StatusClass status : StatusClass.ALL) {
+			n += requests(status);
+		}
+		return n;
+	}
+
+	public long requests(StatusClass status) {
+		LatencyHistogram histogram = latency.get(status.ordinal());
+		return histogram == null ? 0 : histogram.count();
+	}
+
+	/**
+	 * @return calls which ended in an error status class
+	 * @see StatusClass#isError()
+	 */
+	public long errors() {
+		long n = 0;
+		for(StatusClass status : StatusClass.ALL) {
+			if(status.isError()) n += requests(status);
+		}
+		return n;
+	}
+
+	/**
+	 * @return the latency of the calls which ended in this status class, null if there were none
+	 */
+	public LatencyHistogram latency(StatusClass status) {
+		return latency.get(status.ordinal());
+	}
+
+	/**
+	 * @return a copy merging every status class
+	 */
+	public LatencyHistogram latency() {
+		LatencyHistogram merged = new LatencyHistogram();
+		for(StatusClass status : StatusClass.ALL) {
+			LatencyHistogram histogram = latency.get(status.ordinal());
+			if(histogram != null) merged.add(histogram);
+		}
+		return merged;
+	}
+
+	@Override
+	public String toString() {
+		return "OperationMetrics [name=" + name + ", requests=" + requests() + ", errors=" + errors() + ", inFlight="
+				+ inFlight + ", latency=" + latency() + "]";
+	}
+
+}
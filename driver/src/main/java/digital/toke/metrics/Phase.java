@@ -0,0 +1,36 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.metrics;
+
+/**
+ * Where the time of an HTTP exchange goes. DNS, CONNECT and TLS only happen when a new connection is opened
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see PhaseListener
+ */
+public enum Phase {
+
+	DNS("dns"),
+	// the TCP connect, without the TLS handshake
+	CONNECT("connect"),
+	TLS("tls"),
+	// from the request being sent to the response headers arriving, mostly vault's own processing
+	TTFB("ttfb"),
+	// reading the response body
+	BODY("body");
+
+	static final Phase[] ALL = values();
+
+	final String label;
+
+	Phase(String label) {
+		this.label = label;
+	}
+
+	public String label() {
+		return label;
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.metrics;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * <p>Times the phases of one call from OkHttp's events - DNS, TCP connect, TLS handshake, time to first byte
+ * and body - into the per-phase histograms of VaultMetrics, and counts whether each connection came from the
+ * pool. If the request carries a PhaseTimings tag, the call's own breakdown is written there too.</p>
+ *
+ * <p>OkHttp makes one listener per call and delivers its events one after another, so no field needs
+ * guarding.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see Phase
+ */
+public class PhaseListener extends EventListener {
+
+	final VaultMetrics metrics;
+	final PhaseTimings timings;
+
+	long dnsStart;
+	long connectStart;
+	long secureStart;
+	long requestEnd;
+	long bodyStart;
+	// a connection was opened since the last one was acquired
+	boolean opened;
+
+	PhaseListener(VaultMetrics metrics, PhaseTimings timings) {
+		this.metrics = metrics;
+		this.timings = timings;
+	}
+
+	public static EventListener.Factory factory(VaultMetrics metrics) {
+		return call -> new PhaseListener(metrics, call.request().tag(PhaseTimings.class));
+	}
+
+	private void record(Phase phase, long start) {
+		long elapsed = System.nanoTime() - start;
+		metrics.phase(phase).record(elapsed);
+		if(timings != null) timings.add(phase, elapsed);
+	}
+
+	@Override
+	public void dnsStart(Call call, String domainName) {
+		dnsStart = System.nanoTime();
+	}
+
+	@Override
+	public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+		record(Phase.DNS, dnsStart);
+	}
+
+	@Override
+	public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+		connectStart = System.nanoTime();
+		secureStart = 0;
+		opened = true;
+	}
+
+	@Override
+	public void secureConnectStart(Call call) {
+		secureStart = System.nanoTime();
+		record(Phase.CONNECT, connectStart);
+	}
+
+	@Override
+	public void secureConnectEnd(Call call, Handshake handshake) {
+		record(Phase.TLS, secureStart);
+	}
+
+	@Override
+	public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+		// with TLS the connect phase ended when the handshake began
+		if(secureStart == 0) record(Phase.CONNECT, connectStart);
+	}
+
+	@Override
+	public void connectionAcquired(Call call, Connection connection) {
+		metrics.connectionAcquired(!opened);
+		if(timings != null) {
+			timings.connections++;
+			if(!opened) timings.reused++;
+		}
+		opened = false;
+	}
+
+	@Override
+	public void requestHeadersEnd(Call call, Request request) {
+		requestEnd = System.nanoTime();
+	}
+
+	@Override
+	public void requestBodyEnd(Call call, long byteCount) {
+		requestEnd = System.nanoTime();
+	}
+
+	@Override
+	public void responseHeadersEnd(Call call, Response response) {
+		record(Phase.TTFB, requestEnd);
+	}
+
+	@Override
+	public void responseBodyStart(Call call) {
+		bodyStart = System.nanoTime();
+	}
+
+	@Override
+	public void responseBodyEnd(Call call, long byteCount) {
+		record(Phase.BODY, bodyStart);
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-phase breakdown of one sampled call. If the call was retried or re-routed, each phase is the sum over
+ * its attempts. Filled in by the call's PhaseListener, complete once the response body has been read
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see digital.toke.NetworkingConfig.Builder#timingSampleRate(double)
+ */
+public class PhaseTimings {
+
+	final long[] nanos = new long[Phase.ALL.length];
+	// the events of a call come one after another, and the Toke is handed over after the last of them
+	int connections;
+	int reused;
+
+	void add(Phase phase, long elapsed) {
+		nanos[phase.ordinal()] += elapsed;
+	}
+
+	public double millis(Phase phase) {
+		return nanos[phase.ordinal()] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	public long nanos(Phase phase) {
+		return nanos[phase.ordinal()];
+	}
+
+	/**
+	 * @return connections the call used, one unless it was retried
+	 */
+	public int connections() {
+		return connections;
+	}
+
+	/**
+	 * @return true if every connection the call used came from the pool
+	 */
+	public boolean isConnectionReused() {
+		return connections > 0 && reused == connections;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder("PhaseTimings [");
+		for(Phase phase : Phase.ALL) {
+			buf.append(phase.label).append("Millis=").append(millis(phase)).append(", ");
+		}
+		return buf.append("connectionReused=").append(isConnectionReused()).append("]").toString();
+	}
+
+}
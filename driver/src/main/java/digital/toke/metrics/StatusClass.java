@@ -0,0 +1,52 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.metrics;
+
+/**
+ * How a call ended, the status label of its metrics
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public enum StatusClass {
+
+	SUCCESS("2xx"),
+	REDIRECT("3xx"),
+	CLIENT_ERROR("4xx"),
+	SERVER_ERROR("5xx"),
+	// a transport failure or a deadline passing
+	IO_ERROR("error"),
+	// shed by a breaker or limit without being sent
+	REJECTED("rejected"),
+	// cancelled by the caller, or the losing attempt of a hedged read
+	CANCELLED("cancelled");
+
+	static final StatusClass[] ALL = values();
+
+	final String label;
+
+	StatusClass(String label) {
+		this.label = label;
+	}
+
+	public static StatusClass of(int code) {
+		if(code < 300) return SUCCESS;
+		if(code < 400) return REDIRECT;
+		if(code < 500) return CLIENT_ERROR;
+		return SERVER_ERROR;
+	}
+
+	/**
+	 * @return true for the outcomes counted as errors: 4xx, 5xx, transport failures and rejections
+	 */
+	public boolean isError() {
+		return this == CLIENT_ERROR || this == SERVER_ERROR || this == IO_ERROR || this == REJECTED;
+	}
+
+	public String label() {
+		return label;
+	}
+
+}
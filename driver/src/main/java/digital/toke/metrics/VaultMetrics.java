@@ -0,0 +1,351 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.metrics;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import okhttp3.Request;
+
+/**
+ * <p>Latency, request counts and in-flight gauges of the calls made through Networking, by operation and status
+ * class. The operation is worked out from the request:</p>
+ *
+ * <ul>
+ * <li>sys/... is sys.&lt;endpoint&gt;, e.g. sys.capabilities or sys.health</li>
+ * <li>auth/token/... is auth.&lt;endpoint&gt;, e.g. auth.renew-self or auth.lookup-self</li>
+ * <li>a login is auth.&lt;method&gt;.login, e.g. auth.userpass.login</li>
+ * <li>on a KVv2 mount, kv2.read, kv2.write, kv2.delete, kv2.list, kv2.read-metadata and so on</li>
+ * <li>on a KVv1 mount, kv1.read, kv1.write, kv1.delete or kv1.list</li>
+ * </ul>
+ *
+ * <p>KVv1 and KVv2 register the mounts they are configured with, see kvMount(). On a mount nobody registered (or
+ * registered as both versions) a path whose second segment is data, metadata, delete, undelete, destroy or config
+ * is taken for KVv2, anything else for KVv1.</p>
+ *
+ * <p>Operation names and their metrics are created once, after which recording a call allocates nothing.</p>
+ *
+ * <p>Alongside, the time every HTTP exchange spends in each Phase - DNS, connect, TLS, time to first byte and
+ * body - and how many connections came from the pool, recorded by PhaseListener.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see MetricsInterceptor
+ */
+public class VaultMetrics {
+
+	// a bad caller could make up endpoints without end, past this many they share one name
+	static final int MAX_NAMES = 256;
+
+	// upper bounds of the exported Prometheus histogram buckets
+	static final long[] BOUNDS_MICROS = { 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 500000,
+			1000000, 2500000, 5000000, 10000000 };
+	static final String[] BOUNDS_LABELS = { "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1",
+			"0.25", "0.5", "1", "2.5", "5", "10" };
+
+	private static final Map<String, String> SYS = new ConcurrentHashMap<String, String>();
+	private static final Map<String, String> TOKEN = new ConcurrentHashMap<String, String>();
+	private static final Map<String, String> LOGIN = new ConcurrentHashMap<String, String>();
+	private static final Map<String, String> AUTH = new ConcurrentHashMap<String, String>();
+
+	final Map<String, OperationMetrics> operations = new ConcurrentHashMap<String, OperationMetrics>();
+	final LatencyHistogram[] phases = new LatencyHistogram[Phase.ALL.length];
+	final LongAdder connectionsReused = new LongAdder();
+	final LongAdder connectionsOpened = new LongAdder();
+
+	private static final String[][] NO_MOUNTS = {};
+
+	// registered KV mounts, each as its path segments; copied on write, read on every call
+	private final ReentrantLock mountsLock = new ReentrantLock();
+	private volatile String[][] kv1Mounts = NO_MOUNTS;
+	private volatile String[][] kv2Mounts = NO_MOUNTS;
+
+	public VaultMetrics() {
+		for(Phase phase : Phase.ALL) {
+			phases[phase.ordinal()] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * @return the metrics of this operation, created if it has not been seen yet
+	 */
+	OperationMetrics metrics(String operation) {
+		OperationMetrics metrics = operations.get(operation);
+		if(metrics != null) return metrics;
+		return operations.computeIfAbsent(operation, OperationMetrics::new);
+	}
+
+	/**
+	 * @return the metrics of this operation, or null if no call of it has been made
+	 */
+	public OperationMetrics operation(String name) {
+		return operations.get(name);
+	}
+
+	/**
+	 * @return every operation seen so far, by name
+	 */
+	public Map<String, OperationMetrics> operations() {
+		return Collections.unmodifiableMap(new TreeMap<String, OperationMetrics>(operations));
+	}
+
+	/**
+	 * @return calls finished, over all operations
+	 */
+	public long requests() {
+		long n = 0;
+		for(OperationMetrics metrics : operations.values()) {
+			n += metrics.requests();
+		}
+		return n;
+	}
+
+	public long errors() {
+		long n = 0;
+		for(OperationMetrics metrics : operations.values()) {
+			n += metrics.errors();
+		}
+		return n;
+	}
+
+	public int inFlight() {
+		int n = 0;
+		for(OperationMetrics metrics : operations.values()) {
+			n += metrics.inFlight();
+		}
+		return n;
+	}
+
+	/**
+	 * @return the time spent in this phase, over every HTTP exchange
+	 */
+	public LatencyHistogram phase(Phase phase) {
+		return phases[phase.ordinal()];
+	}
+
+	void connectionAcquired(boolean reused) {
+		if(reused) connectionsReused.increment();
+		else connectionsOpened.increment();
+	}
+
+	/**
+	 * @return exchanges which used a pooled connection
+	 */
+	public long connectionsReused() {
+		return connectionsReused.sum();
+	}
+
+	/**
+	 * @return exchanges which had to open a connection
+	 */
+	public long connectionsOpened() {
+		return connectionsOpened.sum();
+	}
+
+	/**
+	 * @return the share of exchanges, 0 to 1, which used a pooled connection. A low ratio under steady load 
+	 * points at the pool being too small or keep-alive too short
+	 */
+	public double connectionReuseRatio() {
+		long reused = connectionsReused.sum();
+		long total = reused + connectionsOpened.sum();
+		return total == 0 ? 0 : reused / (double) total;
+	}
+
+	/**
+	 * Name the calls to a KV mount after its version rather than guess it from their paths
+	 *
+	 * @param mount such as "secret" or "/team/kv"
+	 * @param version 1 or 2
+	 */
+	public void kvMount(String mount, int version) {
+		if(mount == null) return;
+		String trimmed = mount.replaceAll("^/+|/+$", "");
+		if(trimmed.length() == 0) return;
+		String[] segments = trimmed.split("/+");
+		mountsLock.lock();
+		try {
+			String[][] mounts = version == 2 ? kv2Mounts : kv1Mounts;
+			if(mountLength(Arrays.asList(segments), 0, mounts) == segments.length) return;
+			String[][] added = Arrays.copyOf(mounts, mounts.length + 1);
+			added[mounts.length] = segments;
+			if(version == 2) kv2Mounts = added;
+			else kv1Mounts = added;
+		} finally {
+			mountsLock.unlock();
+		}
+	}
+
+	/**
+	 * The operation name of a request, see above
+	 */
+	public String operationName(Request request) {
+		return operation(request, kv1Mounts, kv2Mounts);
+	}
+
+	/**
+	 * The operation name of a request, guessing the version of every KV mount
+	 */
+	public static String operation(Request request) {
+		return operation(request, NO_MOUNTS, NO_MOUNTS);
+	}
+
+	private static String operation(Request request, String[][] kv1, String[][] kv2) {
+		List<String> segments = request.url().pathSegments();
+		int i = segments.size() > 1 && "v1".equals(segments.get(0)) ? 1 : 0;
+		String first = segment(segments, i);
+		String method = request.method();
+		String second = segment(segments, i + 1);
+
+		if(first.equals("sys")) return name(SYS, second, "sys.", "");
+		if(first.equals("auth")) {
+			if(second.equals("token")) return name(TOKEN, segment(segments, i + 2), "auth.", "");
+			if(segments.contains("login")) return name(LOGIN, second, "auth.", ".login");
+			return name(AUTH, second, "auth.", "");
+		}
+
+		boolean list = "LIST".equals(method) || ("GET".equals(method) && "true".equals(request.url().queryParameter("list")));
+		boolean get = "GET".equals(method);
+		boolean delete = "DELETE".equals(method);
+		int v1 = mountLength(segments, i, kv1);
+		int v2 = mountLength(segments, i, kv2);
+		if(v1 > 0 && v2 == 0) return list ? "kv1.list" : get ? "kv1.read" : delete ? "kv1.delete" : "kv1.write";
+		if(v2 > 0 && v1 == 0) second = segment(segments, i + v2);
+		switch(second) {
+		case "data":
+			return get ? "kv2.read" : delete ? "kv2.delete" : "kv2.write";
+		case "metadata":
+			return list ? "kv2.list" : get ? "kv2.read-metadata" : delete ? "kv2.delete-metadata" : "kv2.write-metadata";
+		case "delete":
+			return "kv2.delete";
+		case "undelete":
+			return "kv2.undelete";
+		case "destroy":
+			return "kv2.destroy";
+		case "config":
+			return get ? "kv2.read-config" : "kv2.write-config";
+		default:
+			return list ? "kv1.list" : get ? "kv1.read" : delete ? "kv1.delete" : "kv1.write";
+		}
+	}
+
+	/**
+	 * @return the number of segments of the first of the mounts the path starts with at from, 0 if none
+	 */
+	private static int mountLength(List<String> segments, int from, String[][] mounts) {
+		for(String[] mount : mounts) {
+			if(segments.size() - from < mount.length) continue;
+			int n = 0;
+			while(n < mount.length && mount[n].equals(segments.get(from + n))) n++;
+			if(n == mount.length) return n;
+		}
+		return 0;
+	}
+
+	private static String segment(List<String> segments, int i) {
+		return i < segments.size() ? segments.get(i) : "";
+	}
+
+	private static String name(Map<String, String> names, String endpoint, String prefix, String suffix) {
+		String name = names.get(endpoint);
+		if(name != null) return name;
+		if(names.size() >= MAX_NAMES) return prefix + "other" + suffix;
+		return names.computeIfAbsent(endpoint, key -> prefix + (key.length() == 0 ? "root" : key) + suffix);
+	}
+
+	/**
+	 * @return the metrics in the Prometheus text exposition format, version 0.0.4
+	 */
+	public String prometheus() {
+		StringBuilder buf = new StringBuilder();
+		try {
+			writePrometheus(buf);
+		} catch (IOException e) {
+			// a StringBuilder does not throw
+		}
+		return buf.toString();
+	}
+
+	public void writePrometheus(Appendable out) throws IOException {
+		Map<String, OperationMetrics> sorted = new TreeMap<String, OperationMetrics>(operations);
+
+		out.append("# HELP toke_requests_total Vault calls finished, by operation and status class\n");
+		out.append("# TYPE toke_requests_total counter\n");
+		for(OperationMetrics metrics : sorted.values()) {
+			for(StatusClass status : StatusClass.ALL) {
+				if(metrics.latency(status) == null) continue;
+				out.append("toke_requests_total{operation=\"").append(escape(metrics.name)).append("\",status=\"")
+						.append(status.label).append("\"} ").append(Long.toString(metrics.requests(status))).append('\n');
+			}
+		}
+
+		out.append("# HELP toke_request_errors_total Vault calls which ended in a 4xx, 5xx, transport failure or rejection\n");
+		out.append("# TYPE toke_request_errors_total counter\n");
+		for(OperationMetrics metrics : sorted.values()) {
+			out.append("toke_request_errors_total{operation=\"").append(escape(metrics.name)).append("\"} ")
+					.append(Long.toString(metrics.errors())).append('\n');
+		}
+
+		out.append("# HELP toke_requests_in_flight Vault calls in flight\n");
+		out.append("# TYPE toke_requests_in_flight gauge\n");
+		for(OperationMetrics metrics : sorted.values()) {
+			out.append("toke_requests_in_flight{operation=\"").append(escape(metrics.name)).append("\"} ")
+					.append(Integer.toString(metrics.inFlight())).append('\n');
+		}
+
+		out.append("# HELP toke_request_duration_seconds Latency of Vault calls, to the response headers\n");
+		out.append("# TYPE toke_request_duration_seconds histogram\n");
+		for(OperationMetrics metrics : sorted.values()) {
+			for(StatusClass status : StatusClass.ALL) {
+				LatencyHistogram histogram = metrics.latency(status);
+				if(histogram == null) continue;
+				writeHistogram(out, "toke_request_duration_seconds",
+						"operation=\"" + escape(metrics.name) + "\",status=\"" + status.label + "\"", histogram);
+			}
+		}
+
+		out.append("# HELP toke_http_phase_seconds Time HTTP exchanges spent in DNS, connect, TLS, time to first byte and body\n");
+		out.append("# TYPE toke_http_phase_seconds histogram\n");
+		for(Phase phase : Phase.ALL) {
+			writeHistogram(out, "toke_http_phase_seconds", "phase=\"" + phase.label + "\"", phase(phase));
+		}
+
+		out.append("# HELP toke_http_connections_total HTTP exchanges by whether their connection came from the pool\n");
+		out.append("# TYPE toke_http_connections_total counter\n");
+		out.append("toke_http_connections_total{reused=\"true\"} ").append(Long.toString(connectionsReused())).append('\n');
+		out.append("toke_http_connections_total{reused=\"false\"} ").append(Long.toString(connectionsOpened())).append('\n');
+	}
+
+	private static void writeHistogram(Appendable out, String name, String labels, LatencyHistogram histogram) throws IOException {
+		long count = histogram.count();
+		long[] cumulative = histogram.cumulative(BOUNDS_MICROS);
+		for(int i = 0; i < BOUNDS_MICROS.length; i++) {
+			out.append(name).append("_bucket{").append(labels).append(",le=\"").append(BOUNDS_LABELS[i]).append("\"} ")
+					.append(Long.toString(Math.min(cumulative[i], count))).append('\n');
+		}
+		out.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(Long.toString(count)).append('\n');
+		out.append(name).append("_sum{").append(labels).append("} ")
+				.append(Double.toString(histogram.sumMillis() / 1000.0)).append('\n');
+		out.append(name).append("_count{").append(labels).append("} ").append(Long.toString(count)).append('\n');
+	}
+
+	static String escape(String label) {
+		if(label.indexOf('\\') < 0 && label.indexOf('"') < 0 && label.indexOf('\n') < 0) return label;
+		return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	@Override
+	public String toString() {
+		return "VaultMetrics [operations=" + operations.size() + ", requests=" + requests() + ", errors=" + errors()
+				+ ", inFlight=" + inFlight() + ", connectionReuseRatio=" + connectionReuseRatio() + "]";
+	}
+
+}
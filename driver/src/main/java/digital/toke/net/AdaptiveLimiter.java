@@ -0,0 +1,229 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import digital.toke.AdaptiveLimitConfig;
+import digital.toke.CallOptions;
+import digital.toke.Cancellation;
+import digital.toke.Lane;
+import digital.toke.exception.DeadlineExceededException;
+import digital.toke.exception.LimitExceededException;
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * <p>An adaptive limit on the calls in flight from this driver, see AdaptiveLimitConfig.</p>
+ * 
+ * <p>Sits inside the host slots (see HostConcurrencyInterceptor), so every attempt (retries and hedges included) 
+ * takes a slot and feeds its latency to the algorithm, and that latency does not include the wait for a host slot. 
+ * A 429 or 503 answer, or a read timeout, counts as a drop. A call over the limit waits in a FIFO-ish queue (a 
+ * Condition) until a slot frees or its queue timeout passes. Auth calls (see Lane) never wait here, they take a 
+ * slot even over the limit. A call cancelled while it waits fails at once. Note an async call waiting here holds 
+ * one of the Dispatcher's threads.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see Limit
+ */
+public class AdaptiveLimiter implements Interceptor {
+
+	private static final Logger logger = LogManager.getLogger(AdaptiveLimiter.class);
+
+	private final AdaptiveLimitConfig config;
+	private final Limit limit;
+
+	private final ReentrantLock lock = new ReentrantLock(true);
+	private final Condition available = lock.newCondition();
+	private int inFlight;
+	private int queued;
+	private volatile int currentLimit;
+
+	private final AtomicLong accepted = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong queuedCalls = new AtomicLong();
+
+	public AdaptiveLimiter(AdaptiveLimitConfig config) {
+		this.config = config;
+		this.limit = Limit.create(config);
+		this.currentLimit = limit.current();
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		if(!config.isEnabled()) return chain.proceed(chain.request());
+
+		acquire(HostConcurrencyInterceptor.lane(chain.request()) == Lane.AUTH, chain.request().tag(CallOptions.class), chain.call());
+		long start = System.nanoTime();
+		boolean sample = true;
+		boolean drop = false;
+		try {
+			Response response = chain.proceed(chain.request());
+			drop = response.code() == 429 || response.code() == 503;
+			return response;
+		} catch (SocketTimeoutException e) {
+			drop = true;
+			throw e;
+		} catch (IOException | RuntimeException e) {
+			// a cancelled or failed call tells us nothing about the server's queue
+			sample = false;
+			throw e;
+		} finally {
+			release(System.nanoTime() - start, sample, drop);
+		}
+	}
+
+	/**
+	 * @param exempt true to take a slot even over the limit, for auth calls which must not wait behind others
+	 * @param options the call's deadline, which may be shorter than the queue timeout, and its cancellation
+	 * @param call given up on if it is cancelled while waiting
+	 */
+	private void acquire(boolean exempt, CallOptions options, Call call) throws IOException {
+		lock.lock();
+		try {
+			if(exempt || inFlight < currentLimit) {
+				inFlight++;
+				accepted.incrementAndGet();
+				return;
+			}
+			if(config.getQueueTimeout() <= 0 || queued >= config.getMaxQueued()) {
+				throw reject();
+			}
+			queued++;
+			queuedCalls.incrementAndGet();
+			Cancellation.Registration wake = options == null ? null : options.onCancel(this::wakeAll);
+			try {
+				long nanos = TimeUnit.MILLISECONDS.toNanos(config.getQueueTimeout());
+				if(options != null) nanos = Math.min(nanos, options.remainingNanos());
+				while(inFlight >= currentLimit) {
+					if(call.isCanceled()) {
+						// we may have been the one signalled for a free slot
+						available.signal();
+						throw new IOException("Canceled");
+					}
+					if(nanos <= 0) {
+						if(options != null && options.isExpired()) {
+							throw new DeadlineExceededException("Deadline passed waiting for the concurrency limit");
+						}
+						throw reject();
+					}
+					nanos = available.awaitNanos(nanos);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the concurrency limit");
+			} finally {
+				queued--;
+				if(wake != null) wake.close();
+			}
+			inFlight++;
+			accepted.incrementAndGet();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// so that waiters whose calls were cancelled give up
+	private void wakeAll() {
+		lock.lock();
+		try {
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private LimitExceededException reject() {
+		rejected.incrementAndGet();
+		return new LimitExceededException("Concurrency limit of "+currentLimit+" reached, "+queued+" calls queued", currentLimit);
+	}
+
+	private void release(long rttNanos, boolean sample, boolean drop) {
+		lock.lock();
+		try {
+			int before = currentLimit;
+			if(sample) {
+				if(drop) dropped.incrementAndGet();
+				currentLimit = limit.update(rttNanos, inFlight, drop);
+				if(currentLimit != before && logger.isDebugEnabled()) {
+					logger.debug("Concurrency limit "+before+" -> "+currentLimit);
+				}
+			}
+			inFlight--;
+			if(currentLimit > before) available.signalAll();
+			else available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the current limit
+	 */
+	public int limit() {
+		return currentLimit;
+	}
+
+	public int inFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int queued() {
+		lock.lock();
+		try {
+			return queued;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long accepted() {
+		return accepted.get();
+	}
+
+	/**
+	 * @return the number of calls turned away with a LimitExceededException
+	 */
+	public long rejected() {
+		return rejected.get();
+	}
+
+	/**
+	 * @return the number of calls which had to wait for a slot
+	 */
+	public long queuedCalls() {
+		return queuedCalls.get();
+	}
+
+	/**
+	 * @return the number of 429s, 503s and timeouts seen
+	 */
+	public long dropped() {
+		return dropped.get();
+	}
+
+	@Override
+	public String toString() {
+		return "AdaptiveLimiter [algorithm=" + config.getAlgorithm() + ", limit=" + currentLimit + ", accepted="
+				+ accepted + ", rejected=" + rejected + ", queuedCalls=" + queuedCalls + ", dropped=" + dropped + "]";
+	}
+
+}
@@ -0,0 +1,45 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import digital.toke.AdaptiveLimitConfig;
+
+/**
+ * Additive increase, multiplicative decrease: +1 per successful call while at least half the limit is in use, 
+ * times 0.9 on a drop. Latency is ignored
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class AimdLimit implements Limit {
+
+	static final double BACKOFF = 0.9;
+
+	private final int min;
+	private final int max;
+	private int limit;
+
+	public AimdLimit(AdaptiveLimitConfig config) {
+		this.min = config.getMinLimit();
+		this.max = config.getMaxLimit();
+		this.limit = config.getInitialLimit();
+	}
+
+	@Override
+	public int update(long rttNanos, int inFlight, boolean dropped) {
+		if(dropped) {
+			limit = Math.max(min, (int) (limit * BACKOFF));
+		} else if(inFlight * 2 >= limit) {
+			limit = Math.min(max, limit + 1);
+		}
+		return limit;
+	}
+
+	@Override
+	public int current() {
+		return limit;
+	}
+
+}
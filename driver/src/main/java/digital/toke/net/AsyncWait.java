@@ -0,0 +1,38 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+
+/**
+ * <p>Request tag on enqueued calls. Their interceptors run on a dispatcher thread, which stays parked for as long 
+ * as they wait, so waits are capped at NetworkingConfig's maxAsyncWait: RetryInterceptor does not make a retry 
+ * which needs a longer pause, RateLimiter turns the call away with a RateLimitedException rather than wait longer 
+ * for a token, and ConsistencyInterceptor forwards a read to the active node once it has waited that long.</p>
+ * 
+ * <p>Blocking calls wait on the caller's own thread and are not tagged.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ */
+public class AsyncWait {
+
+	final long maxNanos;
+
+	public AsyncWait(long maxMillis) {
+		this.maxNanos = TimeUnit.MILLISECONDS.toNanos(maxMillis);
+	}
+
+	/**
+	 * @param request
+	 * @return the longest the request's interceptors may wait, Long.MAX_VALUE if it was not enqueued
+	 */
+	public static long maxNanos(Request request) {
+		AsyncWait wait = request.tag(AsyncWait.class);
+		return wait == null ? Long.MAX_VALUE : wait.maxNanos;
+	}
+
+}
@@ -0,0 +1,198 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import digital.toke.CircuitBreakerConfig;
+
+/**
+ * <p>The state machine behind one endpoint's breaker. Callers ask acquire() before making a call and report the
+ * outcome with record() (or release() if the call never completed, e.g. it was canceled).</p>
+ *
+ * <p>Outcomes are kept in a fixed ring of the last windowSize calls, so the rates are over recent calls only and
+ * memory does not grow. State changes are handed to the onTransition callback after the lock is released, so
+ * no listener ever runs under it.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see CircuitBreakerInterceptor
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN;
+	}
+
+	private final CircuitBreakerConfig config;
+	private final BiConsumer<State, State> onTransition;
+	private final ReentrantLock lock = new ReentrantLock();
+
+	// ring of recent outcomes
+	private final boolean[] failed;
+	private final boolean[] slow;
+	private int next;
+	private int count;
+	private int failures;
+	private int slowCalls;
+
+	private volatile State state = State.CLOSED;
+	private long openedAt; // System.nanoTime()
+	private int probesAdmitted;
+	private int probesSucceeded;
+
+	/**
+	 * @param config
+	 * @param onTransition called with (from, to) on every state change, may be null
+	 */
+	public CircuitBreaker(CircuitBreakerConfig config, BiConsumer<State, State> onTransition) {
+		this.config = config;
+		this.onTransition = onTransition;
+		this.failed = new boolean[config.getWindowSize()];
+		this.slow = new boolean[config.getWindowSize()];
+	}
+
+	/**
+	 * @return the state the call is admitted in, or null if it must not be made
+	 */
+	public State acquire() {
+		// the common case, no need to lock
+		if(state == State.CLOSED) return State.CLOSED;
+		State from = null;
+		State admitted;
+		lock.lock();
+		try {
+			if(state == State.OPEN && remainingOpenMillis() == 0) {
+				from = State.OPEN;
+				state = State.HALF_OPEN;
+				probesAdmitted = 0;
+				probesSucceeded = 0;
+			}
+			if(state == State.OPEN) {
+				admitted = null;
+			} else if(state == State.HALF_OPEN) {
+				admitted = probesAdmitted < config.getHalfOpenProbes() ? State.HALF_OPEN : null;
+				if(admitted != null) probesAdmitted++;
+			} else {
+				admitted = State.CLOSED;
+			}
+		} finally {
+			lock.unlock();
+		}
+		if(from != null) publish(from, State.HALF_OPEN);
+		return admitted;
+	}
+
+	/**
+	 * @param admittedIn what acquire() returned for this call
+	 * @param callFailed a transport failure or a server error
+	 * @param millis how long the call took
+	 */
+	public void record(State admittedIn, boolean callFailed, long millis) {
+		boolean callSlow = millis >= config.getSlowCallDuration();
+		State from = null;
+		State to = null;
+		lock.lock();
+		try {
+			if(admittedIn == State.HALF_OPEN) {
+				if(state != State.HALF_OPEN) return;
+				from = State.HALF_OPEN;
+				if(callFailed || callSlow) {
+					to = open();
+				} else if(++probesSucceeded >= config.getHalfOpenProbes()) {
+					reset();
+					state = to = State.CLOSED;
+				}
+				return;
+			}
+			
+			// a late result from before the breaker opened says nothing about now
+			if(state != State.CLOSED) return;
+			if(count == failed.length) {
+				if(failed[next]) failures--;
+				if(slow[next]) slowCalls--;
+			} else {
+				count++;
+			}
+			failed[next] = callFailed;
+			slow[next] = callSlow;
+			if(callFailed) failures++;
+			if(callSlow) slowCalls++;
+			next = (next + 1) % failed.length;
+			
+			if(count < config.getMinimumCalls()) return;
+			if(failures >= config.getFailureRateThreshold() * count 
+					|| slowCalls >= config.getSlowCallRateThreshold() * count) {
+				from = State.CLOSED;
+				to = open();
+			}
+		} finally {
+			lock.unlock();
+			if(to != null) publish(from, to);
+		}
+	}
+
+	/**
+	 * A call admitted but never completed, so as not to use up a probe slot for good
+	 */
+	public void release(State admittedIn) {
+		if(admittedIn != State.HALF_OPEN) return;
+		lock.lock();
+		try {
+			if(state == State.HALF_OPEN && probesAdmitted > 0) probesAdmitted--;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// call holding the lock
+	private State open() {
+		reset();
+		state = State.OPEN;
+		openedAt = System.nanoTime();
+		return State.OPEN;
+	}
+
+	private void publish(State from, State to) {
+		if(onTransition != null) onTransition.accept(from, to);
+	}
+
+	private void reset() {
+		next = 0;
+		count = 0;
+		failures = 0;
+		slowCalls = 0;
+		for(int i = 0; i < failed.length; i++) {
+			failed[i] = false;
+			slow[i] = false;
+		}
+	}
+
+	/**
+	 * @return how long until an open breaker lets a probe through, 0 if not open
+	 */
+	public long remainingOpenMillis() {
+		if(state != State.OPEN) return 0;
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - openedAt);
+		return Math.max(0, config.getOpenDuration() - elapsed);
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	@Override
+	public String toString() {
+		lock.lock();
+		try {
+			return "CircuitBreaker [state=" + state + ", calls=" + count + ", failures=" + failures + ", slowCalls="
+					+ slowCalls + "]";
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import digital.toke.CircuitBreakerConfig;
+import digital.toke.event.CircuitBreakerEvent;
+import digital.toke.event.CircuitBreakerListener;
+import digital.toke.exception.CircuitOpenException;
+import digital.toke.exception.DeadlineExceededException;
+import digital.toke.exception.RejectedCallException;
+import digital.toke.net.CircuitBreaker.State;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * <p>One circuit breaker per endpoint class - "auth", "sys", and each secrets mount by name - so a struggling
+ * mount or auth backend does not take the rest of the driver down with it.</p>
+ *
+ * <p>Sits outside the retry interceptor: a logical call and all its retries are one sample, and an open breaker
+ * fails the call before any retry is attempted. A transport failure or a 500/502/503/504 counts as a failure;
+ * 4xx answers (including 429) mean the server is up and count as successes. While open, calls fail at once with
+ * a CircuitOpenException.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see CircuitBreakerConfig
+ */
+public class CircuitBreakerInterceptor implements Interceptor {
+
+	private static final Logger logger = LogManager.getLogger(CircuitBreakerInterceptor.class);
+
+	private final CircuitBreakerConfig config;
+	private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+	private final List<CircuitBreakerListener> listeners = new CopyOnWriteArrayList<CircuitBreakerListener>();
+
+	public CircuitBreakerInterceptor(CircuitBreakerConfig config) {
+		this.config = config;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		if(!config.isEnabled()) return chain.proceed(chain.request());
+
+		String endpoint = endpoint(chain.request().url());
+		CircuitBreaker breaker = breaker(endpoint);
+		State admittedIn = breaker.acquire();
+		if(admittedIn == null) {
+			throw new CircuitOpenException(endpoint, breaker.remainingOpenMillis());
+		}
+
+		long start = System.nanoTime();
+		Response response;
+		try {
+			response = chain.proceed(chain.request());
+		} catch (IOException e) {
+			// a call shed further in (e.g. by the concurrency limiter), or whose caller's deadline passed while it 
+			// was queued, says nothing about the endpoint
+			if(chain.call().isCanceled() || e instanceof RejectedCallException || e instanceof DeadlineExceededException) {
+				breaker.release(admittedIn);
+			} else {
+				breaker.record(admittedIn, true, elapsed(start));
+			}
+			throw e;
+		} catch (RuntimeException e) {
+			breaker.release(admittedIn);
+			throw e;
+		}
+		breaker.record(admittedIn, isFailure(response.code()), elapsed(start));
+		return response;
+	}
+
+	static boolean isFailure(int code) {
+		return code == 500 || code == 502 || code == 503 || code == 504;
+	}
+
+	/**
+	 * The first path segment after the API version: /v1/auth/..., /v1/sys/..., /v1/{mount}/...
+	 */
+	static String endpoint(HttpUrl url) {
+		List<String> segments = url.pathSegments();
+		int i = segments.size() > 1 && segments.get(0).matches("v\\d+") ? 1 : 0;
+		return segments.size() > i && segments.get(i).length() > 0 ? segments.get(i) : "/";
+	}
+
+	private CircuitBreaker breaker(String endpoint) {
+		CircuitBreaker breaker = breakers.get(endpoint);
+		if(breaker != null) return breaker;
+		return breakers.computeIfAbsent(endpoint, e -> new CircuitBreaker(config, (from, to) -> publish(e, from, to)));
+	}
+
+	private void publish(String endpoint, State from, State to) {
+		if(to == State.OPEN) logger.warn("Circuit breaker for "+endpoint+" opened ("+from+" -> "+to+")");
+		else logger.info("Circuit breaker for "+endpoint+": "+from+" -> "+to);
+		CircuitBreakerEvent evt = new CircuitBreakerEvent(this, endpoint, from, to);
+		for(CircuitBreakerListener l : listeners) {
+			try {
+				l.circuitBreakerEvent(evt);
+			} catch (RuntimeException x) {
+				logger.error("Circuit breaker listener failed", x);
+			}
+		}
+	}
+
+	private static long elapsed(long start) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	public void addListener(CircuitBreakerListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(CircuitBreakerListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return the state of an endpoint's breaker, CLOSED if it has not been used yet
+	 */
+	public State state(String endpoint) {
+		CircuitBreaker breaker = breakers.get(endpoint);
+		return breaker == null ? State.CLOSED : breaker.getState();
+	}
+
+	/**
+	 * @return the breakers created so far, keyed by endpoint class
+	 */
+	public Map<String, CircuitBreaker> breakers() {
+		return Collections.unmodifiableMap(breakers);
+	}
+
+	@Override
+	public String toString() {
+		return "CircuitBreakerInterceptor [breakers=" + breakers + "]";
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import digital.toke.CallOptions;
+import digital.toke.ConsistencyMode;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * <p>Read-after-write consistency across a cluster. Successful writes record the X-Vault-Index they return in the
+ * request's ReplicationState; read-only calls send the indexes recorded so far, so a standby serving them has 
+ * seen our writes.</p>
+ * 
+ * <p>In WAIT mode a standby which is behind answers 412 Precondition Failed; the read is repeated with a short 
+ * growing pause (each attempt routed afresh), and once maxWait has passed it is sent with 
+ * X-Vault-Inconsistent: forward-active-node so the active node answers. An enqueued call pauses on a dispatcher 
+ * thread, so it is forwarded after at most its AsyncWait, when that is shorter than maxWait. In FORWARD mode the
+ * header is sent from the start.</p>
+ * 
+ * <p>Sits inside the retry interceptor and outside the routing interceptor.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see ReplicationState
+ * @see ConsistencyMode
+ */
+public class ConsistencyInterceptor implements Interceptor {
+
+	private static final Logger logger = LogManager.getLogger(ConsistencyInterceptor.class);
+
+	public static final String X_VAULT_INDEX = "X-Vault-Index";
+	public static final String X_VAULT_INCONSISTENT = "X-Vault-Inconsistent";
+	public static final String FORWARD_ACTIVE_NODE = "forward-active-node";
+
+	static final long FIRST_PAUSE = 10;
+	static final long MAX_PAUSE = 250;
+
+	private final ConsistencyMode mode;
+	private final long maxWait;
+
+	private final AtomicLong waits = new AtomicLong();
+	private final AtomicLong forwarded = new AtomicLong();
+
+	public ConsistencyInterceptor(ConsistencyMode mode, long maxWait) {
+		this.mode = mode;
+		this.maxWait = maxWait;
+	}
+
+	public boolean isEnabled() {
+		return mode != ConsistencyMode.NONE;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		ReplicationState state = request.tag(ReplicationState.class);
+		if(mode == ConsistencyMode.NONE || state == null) return chain.proceed(request);
+
+		if(!RoutingInterceptor.isReadOnly(request)) {
+			Response response = chain.proceed(request);
+			if(response.isSuccessful()) state.record(response.headers(X_VAULT_INDEX));
+			return response;
+		}
+
+		List<String> required = state.headers();
+		if(required.isEmpty()) return chain.proceed(request);
+		Request.Builder builder = request.newBuilder();
+		for(String index : required) {
+			builder.addHeader(X_VAULT_INDEX, index);
+		}
+		if(mode == ConsistencyMode.FORWARD) {
+			return chain.proceed(builder.header(X_VAULT_INCONSISTENT, FORWARD_ACTIVE_NODE).build());
+		}
+
+		Request withIndex = builder.build();
+		CallOptions options = request.tag(CallOptions.class);
+		long wait = Math.min(TimeUnit.MILLISECONDS.toNanos(maxWait), options == null ? Long.MAX_VALUE : options.remainingNanos());
+		wait = Math.min(wait, AsyncWait.maxNanos(request));
+		long deadline = System.nanoTime() + wait;
+		long pause = FIRST_PAUSE;
+		for(;;) {
+			Response response = chain.proceed(withIndex);
+			if(response.code() != 412) return response;
+			response.close();
+			if(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pause) > deadline) {
+				forwarded.incrementAndGet();
+				logger.debug("Standby still behind after "+TimeUnit.NANOSECONDS.toMillis(wait)+"ms, forwarding "+request.url()+" to the active node");
+				return chain.proceed(withIndex.newBuilder().header(X_VAULT_INCONSISTENT, FORWARD_ACTIVE_NODE).build());
+			}
+			waits.incrementAndGet();
+			sleep(pause, chain);
+			pause = Math.min(pause * 2, MAX_PAUSE);
+		}
+	}
+
+	private static void sleep(long millis, Chain chain) throws IOException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a standby to catch up");
+		}
+		if(chain.call().isCanceled()) throw new IOException("Canceled");
+	}
+
+	/**
+	 * @return the number of times a read was repeated because the node was behind
+	 */
+	public long waits() {
+		return waits.get();
+	}
+
+	/**
+	 * @return the number of reads forwarded to the active node after waiting in vain
+	 */
+	public long forwarded() {
+		return forwarded.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ConsistencyInterceptor [mode=" + mode + ", waits=" + waits + ", forwarded=" + forwarded + "]";
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import digital.toke.AdaptiveLimitConfig;
+
+/**
+ * <p>Compares a slow moving average of latency (the long term) with a fast one (now). Their ratio, the gradient, 
+ * is 1 while latency is flat and falls below 1 as a queue builds at the server. The new limit is the old one times
+ * the gradient plus a headroom of sqrt(limit), smoothed; so it grows while the gradient is near 1 and shrinks 
+ * once latency rises by more than the tolerance. A drop counts as a gradient of 0.5.</p>
+ * 
+ * <p>When latency has been high for long enough to drag the long-term average up, the long-term average is 
+ * pulled back towards the current one so the limit can recover.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class GradientLimit implements Limit {
+
+	// latency may rise this much over the long-term average before the limit shrinks
+	static final double TOLERANCE = 1.5;
+	static final double LONG_WEIGHT = 0.01;
+	static final double SHORT_WEIGHT = 0.2;
+	static final double SMOOTHING = 0.2;
+
+	private final int min;
+	private final int max;
+	private double limit;
+	private double longRtt;
+	private double shortRtt;
+
+	public GradientLimit(AdaptiveLimitConfig config) {
+		this.min = config.getMinLimit();
+		this.max = config.getMaxLimit();
+		this.limit = config.getInitialLimit();
+	}
+
+	@Override
+	public int update(long rttNanos, int inFlight, boolean dropped) {
+		if(longRtt == 0) {
+			longRtt = rttNanos;
+			shortRtt = rttNanos;
+		} else {
+			longRtt += LONG_WEIGHT * (rttNanos - longRtt);
+			shortRtt += SHORT_WEIGHT * (rttNanos - shortRtt);
+		}
+		// the server has been slower for a while, don't let that become the new normal too fast
+		if(longRtt > 2 * shortRtt) longRtt *= 0.95;
+
+		// little to learn while most of the limit is unused
+		if(!dropped && inFlight * 2 < limit) return (int) limit;
+
+		double gradient = dropped ? 0.5 : Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / Math.max(shortRtt, 1)));
+		double target = limit * gradient + Math.sqrt(limit);
+		limit = limit * (1 - SMOOTHING) + target * SMOOTHING;
+		limit = Math.max(min, Math.min(max, limit));
+		return (int) limit;
+	}
+
+	@Override
+	public int current() {
+		return (int) limit;
+	}
+
+}
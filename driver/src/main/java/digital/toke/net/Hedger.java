@@ -0,0 +1,222 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import digital.toke.HedgeConfig;
+
+/**
+ * <p>Hedged reads: start an attempt, and if it has not completed after the configured percentile of recent 
+ * latency, start a second one. The first to succeed is the result and the other is cancelled; if one fails the 
+ * other is waited for.</p>
+ * 
+ * <p>Latencies of successful attempts go into a fixed ring of the last window of them. The percentile is recomputed from a copy every 
+ * so often, not per call, so the common path is a couple of atomic updates. Hedges are paid for from a budget 
+ * filled by every read (see RetryBudget).</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see HedgeConfig
+ */
+public class Hedger {
+
+	private final HedgeConfig config;
+	private final ScheduledExecutorService timer;
+	private final RetryBudget budget;
+
+	private final AtomicLongArray latencies;
+	final AtomicLong recorded = new AtomicLong();
+	private final int recomputeEvery;
+	private final ReentrantLock recomputeLock = new ReentrantLock();
+	private volatile long percentileNanos;
+
+	private final AtomicLong reads = new AtomicLong();
+	private final AtomicLong hedges = new AtomicLong();
+	private final AtomicLong hedgeWins = new AtomicLong();
+	private final AtomicLong budgetExhausted = new AtomicLong();
+
+	/**
+	 * @param config
+	 * @param timer fires the hedges, may be null if hedging is disabled
+	 */
+	public Hedger(HedgeConfig config, ScheduledExecutorService timer) {
+		this.config = config;
+		this.timer = timer;
+		this.budget = new RetryBudget(config.getBudgetRatio(), config.getBudgetBurst());
+		this.latencies = new AtomicLongArray(config.getWindow());
+		this.recomputeEvery = Math.max(16, config.getWindow() / 16);
+	}
+
+	public boolean isEnabled() {
+		return config.isEnabled() && timer != null;
+	}
+
+	/**
+	 * Stop the timer. Hedges not yet fired never will be
+	 */
+	public void close() {
+		if(timer != null) timer.shutdownNow();
+	}
+
+	/**
+	 * @param attempt starts one attempt, routed according to the hint it is given
+	 * @return the first successful attempt's result. Cancelling it cancels both attempts
+	 */
+	public <T> CompletableFuture<T> execute(Function<RouteHint, CompletableFuture<T>> attempt) {
+		reads.incrementAndGet();
+		budget.deposit();
+		Race<T> race = new Race<T>(attempt);
+		race.start();
+		return race.result;
+	}
+
+	/**
+	 * @return how long to wait before hedging, or -1 if not enough latencies have been seen yet
+	 */
+	public long delayNanos() {
+		if(recorded.get() < config.getMinSamples()) return -1;
+		return Math.max(TimeUnit.MILLISECONDS.toNanos(config.getMinDelay()), percentileNanos);
+	}
+
+	void record(long nanos) {
+		long n = recorded.getAndIncrement();
+		latencies.set((int) (n % latencies.length()), nanos);
+		if((n + 1) % recomputeEvery == 0 || n + 1 == config.getMinSamples()) recompute();
+	}
+
+	private void recompute() {
+		if(!recomputeLock.tryLock()) return;
+		try {
+			int size = (int) Math.min(recorded.get(), latencies.length());
+			if(size == 0) return;
+			long[] copy = new long[size];
+			for(int i = 0; i < size; i++) {
+				copy[i] = latencies.get(i);
+			}
+			Arrays.sort(copy);
+			percentileNanos = copy[Math.min(size - 1, (int) (config.getPercentile() * size))];
+		} finally {
+			recomputeLock.unlock();
+		}
+	}
+
+	/**
+	 * The attempts of one read
+	 */
+	private class Race<T> {
+
+		final Function<RouteHint, CompletableFuture<T>> attempt;
+		final CompletableFuture<T> result = new CompletableFuture<T>();
+		// attempts which may still succeed; a hedge is only started while the primary is outstanding
+		final AtomicInteger outstanding = new AtomicInteger(1);
+		final RouteHint primaryHint = new RouteHint();
+		volatile CompletableFuture<T> primary;
+		volatile CompletableFuture<T> hedge;
+		volatile ScheduledFuture<?> timeout;
+
+		Race(Function<RouteHint, CompletableFuture<T>> attempt) {
+			this.attempt = attempt;
+		}
+
+		void start() {
+			primary = watch(attempt.apply(primaryHint), false);
+			long delay = delayNanos();
+			if(delay >= 0 && !result.isDone()) {
+				timeout = timer.schedule(this::hedge, delay, TimeUnit.NANOSECONDS);
+			}
+			result.whenComplete((v, x) -> {
+				ScheduledFuture<?> t = timeout;
+				if(t != null) t.cancel(false);
+				// the loser, or both if the caller cancelled
+				primary.cancel(true);
+				CompletableFuture<T> h = hedge;
+				if(h != null) h.cancel(true);
+			});
+		}
+
+		void hedge() {
+			if(result.isDone()) return;
+			if(!budget.withdraw()) {
+				budgetExhausted.incrementAndGet();
+				return;
+			}
+			// the primary failed meanwhile, and the read with it
+			if(!outstanding.compareAndSet(1, 2)) {
+				budget.refund();
+				return;
+			}
+			hedges.incrementAndGet();
+			hedge = watch(attempt.apply(primaryHint.next()), true);
+			if(result.isDone()) hedge.cancel(true);
+		}
+
+		CompletableFuture<T> watch(CompletableFuture<T> call, boolean isHedge) {
+			long start = System.nanoTime();
+			call.whenComplete((v, x) -> {
+				// only successes: a cancelled loser would record when it was cancelled, and a fast failure is not 
+				// how long the node takes to answer
+				if(x == null) {
+					record(System.nanoTime() - start);
+					if(result.complete(v) && isHedge) hedgeWins.incrementAndGet();
+				} else if(outstanding.decrementAndGet() == 0) {
+					result.completeExceptionally(x);
+				}
+			});
+			return call;
+		}
+	}
+
+	/**
+	 * @return the number of reads which went through the hedger
+	 */
+	public long reads() {
+		return reads.get();
+	}
+
+	/**
+	 * @return the number of second attempts made
+	 */
+	public long hedges() {
+		return hedges.get();
+	}
+
+	/**
+	 * @return the number of reads answered by the second attempt
+	 */
+	public long hedgeWins() {
+		return hedgeWins.get();
+	}
+
+	/**
+	 * @return the share of hedges which answered first, 0 if none were made
+	 */
+	public double winRate() {
+		long h = hedges.get();
+		return h == 0 ? 0 : hedgeWins.get() / (double) h;
+	}
+
+	/**
+	 * @return the number of hedges not made because the budget was used up
+	 */
+	public long budgetExhausted() {
+		return budgetExhausted.get();
+	}
+
+	@Override
+	public String toString() {
+		return "Hedger [reads=" + reads + ", hedges=" + hedges + ", hedgeWins=" + hedgeWins + ", budgetExhausted="
+				+ budgetExhausted + ", delayMillis=" + TimeUnit.NANOSECONDS.toMillis(delayNanos()) + "]";
+	}
+
+}
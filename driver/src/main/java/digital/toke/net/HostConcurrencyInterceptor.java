@@ -0,0 +1,180 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import digital.toke.CallOptions;
+import digital.toke.Cancellation;
+import digital.toke.Lane;
+import digital.toke.PriorityConfig;
+import digital.toke.exception.DeadlineExceededException;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * <p>Caps the number of requests in flight against any one host.</p>
+ *
+ * <p>OkHttp's Dispatcher only limits calls made with enqueue(); synchronous calls made with execute() are
+ * not counted. This interceptor applies the same per-host limit to both so a burst of blocking callers
+ * cannot open an unbounded number of connections to a vault node.</p>
+ * 
+ * <p>The slots are handed out by priority lane (see PriorityConfig): when they are all taken, auth calls go 
+ * first, then interactive ones, then bulk ones, and each lane can have slots reserved for it. Note async calls 
+ * beyond the Dispatcher's own per-host limit queue there first, in arrival order.</p>
+ * 
+ * <p>A slot is held until the response body is closed, so the limit covers reading the body as well. A call 
+ * cancelled while it waits for one fails at once.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class HostConcurrencyInterceptor implements Interceptor {
+
+	private final int permitsPerHost;
+	private final PriorityConfig priorities;
+	private final ConcurrentMap<String, LaneSlots> hosts = new ConcurrentHashMap<String, LaneSlots>();
+	private final Map<Lane, LaneStats> stats = new EnumMap<Lane, LaneStats>(Lane.class);
+
+	public HostConcurrencyInterceptor(int permitsPerHost) {
+		this(permitsPerHost, PriorityConfig.none());
+	}
+
+	public HostConcurrencyInterceptor(int permitsPerHost, PriorityConfig priorities) {
+		this.permitsPerHost = permitsPerHost;
+		this.priorities = priorities;
+		for(Lane lane : Lane.values()) stats.put(lane, new LaneStats(lane));
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Lane lane = lane(chain.request());
+		LaneSlots slots = slots(chain.request().url().host());
+		CallOptions options = chain.request().tag(CallOptions.class);
+		Cancellation.Registration wake = options == null ? null : options.onCancel(() -> slots.wake(lane));
+		try {
+			if(!slots.acquire(lane, options == null ? Long.MAX_VALUE : options.remainingNanos(), chain.call()::isCanceled)) {
+				if(chain.call().isCanceled()) throw new IOException("Canceled");
+				throw new DeadlineExceededException("Deadline passed waiting for a connection slot");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a connection slot");
+		} finally {
+			if(wake != null) wake.close();
+		}
+		Response response;
+		try {
+			response = chain.proceed(chain.request());
+		} catch (IOException | RuntimeException e) {
+			slots.release(lane);
+			throw e;
+		}
+		// the slot covers the body transfer too, so it goes back when the body is closed
+		if(response.body() == null) {
+			slots.release(lane);
+			return response;
+		}
+		return response.newBuilder().body(new ReleasingBody(response.body(), () -> slots.release(lane))).build();
+	}
+
+	/**
+	 * Auth paths are always in the AUTH lane, otherwise the lane the request was tagged with when built
+	 * 
+	 * @param request
+	 * @return the lane of the request
+	 */
+	public static Lane lane(Request request) {
+		List<String> segments = request.url().pathSegments();
+		int i = segments.size() > 1 && segments.get(0).matches("v\\d+") ? 1 : 0;
+		if(segments.size() > i && "auth".equals(segments.get(i))) return Lane.AUTH;
+		Lane tagged = request.tag(Lane.class);
+		return tagged == null ? Lane.INTERACTIVE : tagged;
+	}
+
+	/**
+	 * @return the number of requests currently in flight to the given host
+	 */
+	public int inFlight(String host) {
+		LaneSlots slots = hosts.get(host);
+		return slots == null ? 0 : slots.inFlight();
+	}
+
+	/**
+	 * @param lane
+	 * @return in flight and queued calls and wait times for the lane, across all hosts
+	 */
+	public LaneStats stats(Lane lane) {
+		return stats.get(lane);
+	}
+
+	public Map<Lane, LaneStats> stats() {
+		return Collections.unmodifiableMap(stats);
+	}
+
+	/**
+	 * A response body which runs its release action once, when it is closed
+	 */
+	static class ReleasingBody extends ResponseBody {
+
+		private final ResponseBody delegate;
+		private final BufferedSource source;
+
+		ReleasingBody(ResponseBody delegate, Runnable release) {
+			this.delegate = delegate;
+			final AtomicBoolean released = new AtomicBoolean();
+			this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						if(released.compareAndSet(false, true)) release.run();
+					}
+				}
+			});
+		}
+
+		@Override
+		public MediaType contentType() {
+			return delegate.contentType();
+		}
+
+		@Override
+		public long contentLength() {
+			return delegate.contentLength();
+		}
+
+		@Override
+		public BufferedSource source() {
+			return source;
+		}
+	}
+
+	private LaneSlots slots(String host) {
+		LaneSlots slots = hosts.get(host);
+		if (slots == null) {
+			LaneSlots created = new LaneSlots(permitsPerHost, priorities, stats);
+			slots = hosts.putIfAbsent(host, created);
+			if (slots == null) slots = created;
+		}
+		return slots;
+	}
+
+}
@@ -0,0 +1,163 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.function.BooleanSupplier;
+import java.util.concurrent.locks.ReentrantLock;
+
+import digital.toke.Lane;
+import digital.toke.PriorityConfig;
+
+/**
+ * <p>The request slots of one host, shared by the lanes. A lane may always use its own reserved slots; beyond 
+ * those it competes for the shared ones, and while a higher priority lane has a call waiting, a lower one does 
+ * not get a shared slot. Each lane waits on its own Condition, so a freed slot wakes only the lane it goes to.</p>
+ * 
+ * <p>A waiter gives up when its call is cancelled, once woken by wake().</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+class LaneSlots {
+
+	private static final Lane[] LANES = Lane.values();
+
+	private final int[] reserved = new int[LANES.length];
+	private final int shared;
+	private final Map<Lane, LaneStats> stats;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition[] turns = new Condition[LANES.length];
+	private final int[] inFlight = new int[LANES.length];
+	private final int[] waiting = new int[LANES.length];
+
+	LaneSlots(int capacity, PriorityConfig config, Map<Lane, LaneStats> stats) {
+		this.stats = stats;
+		// keep at least one shared slot, cutting the lower lanes' reservations first
+		int left = capacity - 1;
+		for(Lane lane : LANES) {
+			reserved[lane.ordinal()] = Math.max(0, Math.min(config.getReserved(lane), left));
+			left -= reserved[lane.ordinal()];
+		}
+		int total = 0;
+		for(int r : reserved) total += r;
+		shared = capacity - total;
+		for(int i = 0; i < turns.length; i++) turns[i] = lock.newCondition();
+	}
+
+	void acquire(Lane lane) throws InterruptedException {
+		acquire(lane, Long.MAX_VALUE, () -> false);
+	}
+
+	/**
+	 * @param lane
+	 * @param timeoutNanos Long.MAX_VALUE to wait as long as it takes
+	 * @param cancelled checked each time the waiter wakes
+	 * @return false if no slot came up in time, or the call was cancelled
+	 * @throws InterruptedException
+	 */
+	boolean acquire(Lane lane, long timeoutNanos, BooleanSupplier cancelled) throws InterruptedException {
+		int l = lane.ordinal();
+		LaneStats counts = stats.get(lane);
+		lock.lock();
+		try {
+			if(waiting[l] == 0 && admissible(l)) {
+				inFlight[l]++;
+				counts.admitted(0);
+				return true;
+			}
+			long start = System.nanoTime();
+			waiting[l]++;
+			counts.enqueued();
+			long nanos = timeoutNanos;
+			try {
+				while(!admissible(l)) {
+					if(cancelled.getAsBoolean() || (timeoutNanos != Long.MAX_VALUE && nanos <= 0)) {
+						waiting[l]--;
+						counts.queued.decrementAndGet();
+						signalNext();
+						return false;
+					}
+					if(timeoutNanos == Long.MAX_VALUE) turns[l].await();
+					else nanos = turns[l].awaitNanos(nanos);
+				}
+			} catch (InterruptedException e) {
+				// we may have been handed the slot, pass it on
+				waiting[l]--;
+				counts.queued.decrementAndGet();
+				signalNext();
+				throw e;
+			}
+			waiting[l]--;
+			counts.queued.decrementAndGet();
+			inFlight[l]++;
+			counts.admitted(System.nanoTime() - start);
+			// several slots may have freed while we were waking up
+			signalNext();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Wake the waiters of a lane to check whether their calls were cancelled
+	 */
+	void wake(Lane lane) {
+		lock.lock();
+		try {
+			turns[lane.ordinal()].signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void release(Lane lane) {
+		lock.lock();
+		try {
+			inFlight[lane.ordinal()]--;
+			stats.get(lane).inFlight.decrementAndGet();
+			signalNext();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int inFlight() {
+		lock.lock();
+		try {
+			int n = 0;
+			for(int i : inFlight) n += i;
+			return n;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// with the lock held
+	private boolean admissible(int l) {
+		if(inFlight[l] < reserved[l]) return true;
+		int sharedInUse = 0;
+		for(int i = 0; i < LANES.length; i++) sharedInUse += Math.max(0, inFlight[i] - reserved[i]);
+		if(sharedInUse >= shared) return false;
+		for(int i = 0; i < l; i++) {
+			if(waiting[i] > 0) return false;
+		}
+		return true;
+	}
+
+	// with the lock held: wake the highest priority lane which can use a slot now
+	private void signalNext() {
+		for(int i = 0; i < LANES.length; i++) {
+			if(waiting[i] > 0 && admissible(i)) {
+				turns[i].signal();
+				return;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import digital.toke.Lane;
+
+/**
+ * Counts for one priority lane, across all hosts
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see HostConcurrencyInterceptor#stats(Lane)
+ */
+public class LaneStats {
+
+	final Lane lane;
+	final AtomicInteger inFlight = new AtomicInteger();
+	final AtomicInteger queued = new AtomicInteger();
+	final AtomicInteger peakQueued = new AtomicInteger();
+	final AtomicLong admitted = new AtomicLong();
+	final AtomicLong waited = new AtomicLong();
+	final AtomicLong waitNanos = new AtomicLong();
+	final AtomicLong maxWaitNanos = new AtomicLong();
+
+	LaneStats(Lane lane) {
+		this.lane = lane;
+	}
+
+	void enqueued() {
+		int depth = queued.incrementAndGet();
+		int peak;
+		while(depth > (peak = peakQueued.get()) && !peakQueued.compareAndSet(peak, depth));
+	}
+
+	void admitted(long waitedNanos) {
+		admitted.incrementAndGet();
+		inFlight.incrementAndGet();
+		if(waitedNanos <= 0) return;
+		waited.incrementAndGet();
+		waitNanos.addAndGet(waitedNanos);
+		long max;
+		while(waitedNanos > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, waitedNanos));
+	}
+
+	public Lane lane() {
+		return lane;
+	}
+
+	/**
+	 * @return calls of this lane in flight now
+	 */
+	public int inFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return calls of this lane waiting for a slot now
+	 */
+	public int queueDepth() {
+		return queued.get();
+	}
+
+	/**
+	 * @return the deepest the queue has been
+	 */
+	public int peakQueueDepth() {
+		return peakQueued.get();
+	}
+
+	public long admitted() {
+		return admitted.get();
+	}
+
+	/**
+	 * @return calls which had to wait for a slot
+	 */
+	public long waited() {
+		return waited.get();
+	}
+
+	/**
+	 * @return the mean wait of the calls which waited
+	 */
+	public double meanWaitMillis() {
+		long n = waited.get();
+		return n == 0 ? 0 : (double) waitNanos.get() / n / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	public long maxWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+	}
+
+	@Override
+	public String toString() {
+		return "LaneStats [lane=" + lane + ", inFlight=" + inFlight + ", queueDepth=" + queued + ", peakQueueDepth="
+				+ peakQueued + ", admitted=" + admitted + ", waited=" + waited + ", meanWaitMillis="
+				+ String.format("%.2f", meanWaitMillis()) + ", maxWaitMillis=" + maxWaitMillis() + "]";
+	}
+
+}
@@ -0,0 +1,35 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import digital.toke.AdaptiveLimitConfig;
+
+/**
+ * An algorithm for the adaptive concurrency limit. Implementations are not thread-safe, AdaptiveLimiter calls 
+ * them holding its lock
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see AdaptiveLimiter
+ */
+public interface Limit {
+
+	/**
+	 * @param rttNanos how long the call took
+	 * @param inFlight calls in flight when it completed, including itself
+	 * @param dropped vault pushed back: a 429, a 503 or a timeout
+	 * @return the new limit
+	 */
+	int update(long rttNanos, int inFlight, boolean dropped);
+
+	int current();
+
+	static Limit create(AdaptiveLimitConfig config) {
+		switch(config.getAlgorithm()) {
+			case AIMD: return new AimdLimit(config);
+			case VEGAS: return new VegasLimit(config);
+			default: return new GradientLimit(config);
+		}
+	}
+}
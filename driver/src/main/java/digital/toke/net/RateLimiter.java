@@ -0,0 +1,230 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import digital.toke.CallOptions;
+import digital.toke.Cancellation;
+import digital.toke.RateLimitConfig;
+import digital.toke.RateLimitConfig.Operation;
+import digital.toke.RateLimitConfig.Rule;
+import digital.toke.exception.RateLimitedException;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * <p>Client-side rate limits, see RateLimitConfig. Every attempt sent to vault (retries and hedges included, as 
+ * vault counts them against its quotas too) takes a token from each bucket whose path and operation it matches, 
+ * waiting for it up to the limit's maxWait. A call which would wait longer fails with a RateLimitedException 
+ * before anything is sent. An enqueued call waits on a dispatcher thread, and no longer than AsyncWait allows. A 
+ * call cancelled while it waits gives its tokens back.</p>
+ * 
+ * <p>The same buckets can be used directly, for instance by a batch job pacing itself: acquire() and tryAcquire() 
+ * take a token without making a call. Calls made through the driver afterwards take their own.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see TokenBucket
+ */
+public class RateLimiter implements Interceptor {
+
+	private static final Logger logger = LogManager.getLogger(RateLimiter.class);
+
+	private final RateLimitConfig config;
+	private final Map<Rule, TokenBucket> buckets = new LinkedHashMap<Rule, TokenBucket>();
+
+	public RateLimiter(RateLimitConfig config) {
+		this.config = config;
+		for(Rule rule : config.getRules()) {
+			buckets.put(rule, new TokenBucket(rule.getPermitsPerSecond(), rule.getBurst()));
+		}
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		if(!config.isEnabled()) return chain.proceed(chain.request());
+
+		Request request = chain.request();
+		String path = path(request.url());
+		CallOptions options = request.tag(CallOptions.class);
+		long cap = Math.min(AsyncWait.maxNanos(request), options == null ? Long.MAX_VALUE : options.remainingNanos());
+		Operation operation = operation(request);
+		long wait = reserve(path, operation, -1, cap);
+		if(wait > 0) {
+			if(logger.isDebugEnabled()) logger.debug("Waiting "+TimeUnit.NANOSECONDS.toMillis(wait)+"ms for a rate limit token for "+path);
+			// a cancel() ends the wait early
+			CountDownLatch cancelled = new CountDownLatch(1);
+			Cancellation.Registration wake = options == null ? null : options.onCancel(cancelled::countDown);
+			try {
+				sleep(path, operation, wait, cancelled);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a rate limit token");
+			} finally {
+				if(wake != null) wake.close();
+			}
+			// nothing will be sent, the tokens are for someone else
+			if(chain.call().isCanceled()) {
+				refund(path, operation, null);
+				throw new IOException("Canceled");
+			}
+		}
+		return chain.proceed(request);
+	}
+
+	// the tokens are ours, hand them all back if we don't get to use them
+	private void sleep(String path, Operation operation, long nanos, CountDownLatch cancelled) throws InterruptedException {
+		if(nanos <= 0) return;
+		try {
+			if(cancelled == null) TimeUnit.NANOSECONDS.sleep(nanos);
+			else cancelled.await(nanos, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			refund(path, operation, null);
+			throw e;
+		}
+	}
+
+	/**
+	 * Take a token from every matching bucket, or from none
+	 * 
+	 * @param timeoutNanos how long the caller will wait, -1 for each limit's own maxWait
+	 * @param capNanos no wait may be longer than this, what is left of the call's deadline or the AsyncWait
+	 * @return the nanos until all the tokens are due
+	 */
+	private long reserve(String path, Operation operation, long timeoutNanos, long capNanos) throws RateLimitedException {
+		long wait = 0;
+		for(Map.Entry<Rule, TokenBucket> entry : buckets.entrySet()) {
+			Rule rule = entry.getKey();
+			if(!matches(rule, path, operation)) continue;
+			TokenBucket bucket = entry.getValue();
+			long maxWait = Math.min(capNanos, timeoutNanos < 0 ? TimeUnit.MILLISECONDS.toNanos(rule.getMaxWait()) : timeoutNanos);
+			long due = bucket.reserve(maxWait);
+			if(due < 0) {
+				refund(path, operation, rule);
+				long retryAfter = TimeUnit.NANOSECONDS.toMillis(bucket.nanosUntilAvailable());
+				throw new RateLimitedException("Rate limit of "+rule.getPermitsPerSecond()+"/s on "+display(rule)
+						+" reached, a token is due in "+retryAfter+"ms", rule.getPath(), retryAfter);
+			}
+			wait = Math.max(wait, due);
+		}
+		return wait;
+	}
+
+	// give back the tokens taken before the bucket which had none, or all of them if upTo is null
+	private void refund(String path, Operation operation, Rule upTo) {
+		for(Map.Entry<Rule, TokenBucket> entry : buckets.entrySet()) {
+			if(entry.getKey() == upTo) return;
+			if(matches(entry.getKey(), path, operation)) entry.getValue().refund();
+		}
+	}
+
+	/**
+	 * Take a token for a call to this path without making it, never waits
+	 * 
+	 * @param path a vault API path such as "secret/data/app" or "auth/approle/login"
+	 * @param operation
+	 * @return true if every matching limit had a token
+	 */
+	public boolean tryAcquire(String path, Operation operation) {
+		try {
+			return reserve(RateLimitConfig.normalize(path), operation, 0, Long.MAX_VALUE) == 0;
+		} catch (RateLimitedException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Take a token for a call to this path without making it
+	 * 
+	 * @param path a vault API path such as "secret/data/app" or "auth/approle/login"
+	 * @param operation
+	 * @param timeout
+	 * @param unit
+	 * @return true once every matching limit gave a token, false at once if one would not within the timeout
+	 * @throws InterruptedException
+	 */
+	public boolean acquire(String path, Operation operation, long timeout, TimeUnit unit) throws InterruptedException {
+		String normalized = RateLimitConfig.normalize(path);
+		long wait;
+		try {
+			wait = reserve(normalized, operation, unit.toNanos(timeout), Long.MAX_VALUE);
+		} catch (RateLimitedException e) {
+			return false;
+		}
+		sleep(normalized, operation, wait, null);
+		return true;
+	}
+
+	static boolean matches(Rule rule, String path, Operation operation) {
+		if(rule.getOperation() != null && rule.getOperation() != operation) return false;
+		String prefix = rule.getPath();
+		if(prefix.length() == 0) return true;
+		return path.startsWith(prefix) && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/');
+	}
+
+	/**
+	 * @return the path after the api version, e.g. secret/data/app for /v1/secret/data/app
+	 */
+	static String path(HttpUrl url) {
+		List<String> segments = url.pathSegments();
+		int i = segments.size() > 1 && segments.get(0).matches("v\\d+") ? 1 : 0;
+		StringBuilder buf = new StringBuilder();
+		for(; i < segments.size(); i++) {
+			if(segments.get(i).length() == 0) continue;
+			if(buf.length() > 0) buf.append('/');
+			buf.append(segments.get(i));
+		}
+		return buf.toString();
+	}
+
+	static Operation operation(Request request) {
+		if("LIST".equals(request.method())) return Operation.LIST;
+		if("GET".equals(request.method())) {
+			return "true".equals(request.url().queryParameter("list")) ? Operation.LIST : Operation.READ;
+		}
+		// a login is under auth/, a secret may well be called login
+		if(path(request.url()).startsWith("auth/") && request.url().pathSegments().contains("login")) return Operation.LOGIN;
+		return RoutingInterceptor.isReadOnly(request) ? Operation.READ : Operation.WRITE;
+	}
+
+	private static String display(Rule rule) {
+		String path = rule.getPath().length() == 0 ? "all paths" : rule.getPath();
+		return rule.getOperation() == null ? path : path + " ("+rule.getOperation()+")";
+	}
+
+	/**
+	 * @return each limit's bucket, for its counts
+	 */
+	public Map<Rule, TokenBucket> buckets() {
+		return Collections.unmodifiableMap(buckets);
+	}
+
+	/**
+	 * @return calls turned away by any limit
+	 */
+	public long rejected() {
+		long n = 0;
+		for(TokenBucket bucket : buckets.values()) n += bucket.rejected();
+		return n;
+	}
+
+	@Override
+	public String toString() {
+		return "RateLimiter [buckets=" + buckets + "]";
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>The X-Vault-Index values returned by our writes - how far a node must have replicated to have seen them.</p>
+ * 
+ * <p>A value is the base64 of "v1:cluster-id:local-index:replicated-index:hmac". We keep the newest per cluster id,
+ * so a write which completes late cannot move the requirement backwards. A value we cannot parse is kept as the 
+ * latest as-is.</p>
+ * 
+ * <p>Networking holds one for the whole driver. For a narrower scope - e.g. one user's request flow - make a new 
+ * instance and bind() it around the calls: requests made on that thread then record and require only its index.
+ * The binding is read when the request is built, so async calls made inside the scope carry it too.</p>
+ * 
+ * <pre>
+ * ReplicationState session = new ReplicationState();
+ * try (ReplicationState.Scope scope = session.bind()) {
+ *     kv2.kvCreateUpdate(path, data);
+ *     kv2.kvRead(path); // sees the write
+ * }
+ * </pre>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see ConsistencyInterceptor
+ */
+public class ReplicationState {
+
+	private static final ThreadLocal<ReplicationState> bound = new ThreadLocal<ReplicationState>();
+
+	// cluster id to the newest index seen for it, guarded by lock
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Map<String, Index> indexes = new LinkedHashMap<String, Index>();
+	private volatile List<String> headers = Collections.emptyList();
+
+	/**
+	 * Closing the scope restores whatever was bound before
+	 */
+	public interface Scope extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	public Scope bind() {
+		final ReplicationState previous = bound.get();
+		bound.set(this);
+		return () -> {
+			if(previous == null) bound.remove();
+			else bound.set(previous);
+		};
+	}
+
+	/**
+	 * @return the state bound to this thread, or null
+	 */
+	public static ReplicationState current() {
+		return bound.get();
+	}
+
+	/**
+	 * Fold in the X-Vault-Index values of a response
+	 */
+	public void record(List<String> values) {
+		if(values.isEmpty()) return;
+		lock.lock();
+		try {
+			boolean changed = false;
+			for(String value : values) {
+				Index index = Index.parse(value);
+				Index existing = indexes.get(index.clusterId);
+				if(existing == null || index.after(existing)) {
+					indexes.put(index.clusterId, index);
+					changed = true;
+				}
+			}
+			if(changed) {
+				List<String> list = new ArrayList<String>(indexes.size());
+				for(Index index : indexes.values()) {
+					list.add(index.raw);
+				}
+				headers = Collections.unmodifiableList(list);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the values to send as X-Vault-Index, empty if nothing has been written yet
+	 */
+	public List<String> headers() {
+		return headers;
+	}
+
+	public void clear() {
+		lock.lock();
+		try {
+			indexes.clear();
+			headers = Collections.emptyList();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ReplicationState [indexes=" + headers.size() + "]";
+	}
+
+	static class Index {
+		final String raw;
+		final String clusterId;
+		final long local;
+		final long replicated;
+
+		Index(String raw, String clusterId, long local, long replicated) {
+			this.raw = raw;
+			this.clusterId = clusterId;
+			this.local = local;
+			this.replicated = replicated;
+		}
+
+		static Index parse(String raw) {
+			try {
+				String[] parts = new String(Base64.getDecoder().decode(raw.trim()), StandardCharsets.UTF_8).split(":");
+				if(parts.length == 5 && "v1".equals(parts[0])) {
+					return new Index(raw, parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+				}
+			} catch (IllegalArgumentException e) {
+				// not base64 or not numbers, NumberFormatException is one of these
+			}
+			// opaque, the latest one wins
+			return new Index(raw, "", Long.MAX_VALUE, Long.MAX_VALUE);
+		}
+
+		boolean after(Index other) {
+			if(replicated != other.replicated) return replicated > other.replicated;
+			return local >= other.local;
+		}
+	}
+
+}
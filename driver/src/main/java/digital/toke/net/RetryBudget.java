@@ -0,0 +1,73 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Caps retries at a fraction of requests, so that when vault is struggling the driver does not multiply
+ * its own load.</p>
+ *
+ * <p>A token bucket: every request deposits ratio of a token, every retry withdraws a whole one. The bucket
+ * holds at most burst tokens and starts full. Tokens are kept in thousandths so the fast path is a single
+ * AtomicLong update.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class RetryBudget {
+
+	private static final long ONE = 1000;
+
+	private final long deposit;
+	private final long capacity;
+	private final AtomicLong balance;
+
+	public RetryBudget(double ratio, int burst) {
+		this.deposit = (long) (ratio * ONE);
+		this.capacity = burst * ONE;
+		this.balance = new AtomicLong(capacity);
+	}
+
+	public void deposit() {
+		if (deposit == 0) return;
+		long current;
+		do {
+			current = balance.get();
+			if (current >= capacity) return;
+		} while (!balance.compareAndSet(current, Math.min(capacity, current + deposit)));
+	}
+
+	/**
+	 * @return true if a retry may go ahead
+	 */
+	public boolean withdraw() {
+		long current;
+		do {
+			current = balance.get();
+			if (current < ONE) return false;
+		} while (!balance.compareAndSet(current, current - ONE));
+		return true;
+	}
+
+	/**
+	 * Put back a token withdrawn for a retry which was not made after all
+	 */
+	public void refund() {
+		long current;
+		do {
+			current = balance.get();
+			if (current >= capacity) return;
+		} while (!balance.compareAndSet(current, Math.min(capacity, current + ONE)));
+	}
+
+	/**
+	 * @return the number of retries which could be made right now
+	 */
+	public double available() {
+		return balance.get() / (double) ONE;
+	}
+
+}
@@ -0,0 +1,194 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import digital.toke.CallOptions;
+import digital.toke.RetryConfig;
+import digital.toke.exception.RejectedCallException;
+import digital.toke.trace.Span;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * <p>Retries failed calls with exponential backoff and full jitter, within a retry budget.</p>
+ *
+ * <p>Whether a call may be retried depends on its method. GET (and so LIST) and DELETE are idempotent and are
+ * retried after any transport failure or a retryable status code. POST and PUT are retried only if the connection
+ * could not be established, since otherwise vault may already have applied the write. A Retry-After header on
+ * the response (seconds or an HTTP date) sets the minimum wait.</p>
+ * 
+ * <p>The pause before a retry is a sleep on the thread running the call. For an enqueued call that is a 
+ * dispatcher thread, so a retry which would need a longer pause than AsyncWait allows is not made.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see RetryConfig
+ */
+public class RetryInterceptor implements Interceptor {
+
+	private static final Logger logger = LogManager.getLogger(RetryInterceptor.class);
+
+	private final RetryConfig config;
+	private final RetryBudget budget;
+
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong budgetExhausted = new AtomicLong();
+
+	public RetryInterceptor(RetryConfig config) {
+		this.config = config;
+		this.budget = new RetryBudget(config.getBudgetRatio(), config.getBudgetBurst());
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		if (config.getMaxAttempts() <= 1) return chain.proceed(request);
+
+		budget.deposit();
+		CallOptions options = request.tag(CallOptions.class);
+		long maxWait = TimeUnit.NANOSECONDS.toMillis(AsyncWait.maxNanos(request));
+		boolean idempotent = isIdempotent(request.method());
+		for (int attempt = 1;; attempt++) {
+			boolean last = attempt >= config.getMaxAttempts();
+			Response response;
+			try {
+				response = chain.proceed(request);
+			} catch (IOException e) {
+				if (last || chain.call().isCanceled() || e instanceof RejectedCallException || !(idempotent || notSent(e))) throw e;
+				long delay = backoff(attempt);
+				if (outOfTime(options, delay) || delay > maxWait || !withdraw()) throw e;
+				logger.debug("Retrying " + request.method() + " " + request.url() + " in " + delay + "ms after: " + e);
+				annotate(request, attempt, delay, e.toString());
+				sleep(delay, chain);
+				continue;
+			}
+
+			if (last || !idempotent || !config.isRetryable(response.code()) || chain.call().isCanceled()) return response;
+			long retryAfter = retryAfter(response);
+			if (retryAfter > config.getMaxRetryAfter()) return response;
+
+			long delay = Math.max(backoff(attempt), retryAfter);
+			if (outOfTime(options, delay) || delay > maxWait || !withdraw()) return response;
+			logger.debug("Retrying " + request.method() + " " + request.url() + " in " + delay + "ms after HTTP " + response.code());
+			annotate(request, attempt, delay, "HTTP " + response.code());
+			response.close();
+			sleep(delay, chain);
+		}
+	}
+
+	private static void annotate(Request request, int attempt, long delay, String reason) {
+		Span span = request.tag(Span.class);
+		if (span != null) span.annotate("retry", "attempt " + (attempt + 1) + " in " + delay + "ms after " + reason);
+	}
+
+	/**
+	 * @return true if the call's deadline would pass before a retry after this delay could even start
+	 */
+	static boolean outOfTime(CallOptions options, long delayMillis) {
+		return options != null && options.hasDeadline() && delayMillis >= options.remainingMillis();
+	}
+
+	static boolean isIdempotent(String method) {
+		return "GET".equals(method) || "HEAD".equals(method) || "DELETE".equals(method);
+	}
+
+	/**
+	 * @return true if the exception means the request never left this process
+	 */
+	static boolean notSent(IOException e) {
+		return e instanceof ConnectException || e instanceof UnknownHostException || e instanceof NoRouteToHostException
+				|| (e instanceof SocketTimeoutException && "connect timed out".equals(e.getMessage()));
+	}
+
+	private boolean withdraw() {
+		if (budget.withdraw()) {
+			retries.incrementAndGet();
+			return true;
+		}
+		budgetExhausted.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Full jitter: uniformly random in [0, min(maxDelay, baseDelay * 2^(attempt-1)))
+	 */
+	long backoff(int attempt) {
+		long ceiling = config.getBaseDelay() << Math.min(attempt - 1, 30);
+		if (ceiling <= 0 || ceiling > config.getMaxDelay()) ceiling = config.getMaxDelay();
+		return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling);
+	}
+
+	/**
+	 * @return the Retry-After header in milliseconds, 0 if absent or unparseable
+	 */
+	static long retryAfter(Response response) {
+		String value = response.header("Retry-After");
+		if (value == null) return 0;
+		value = value.trim();
+		try {
+			return Math.max(0, Long.parseLong(value) * 1000);
+		} catch (NumberFormatException e) {
+			// not delta-seconds, try an HTTP date
+		}
+		try {
+			ZonedDateTime when = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+			return Math.max(0, Duration.between(ZonedDateTime.now(when.getZone()), when).toMillis());
+		} catch (DateTimeParseException e) {
+			return 0;
+		}
+	}
+
+	private static void sleep(long millis, Chain chain) throws IOException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to retry");
+		}
+		if (chain.call().isCanceled()) throw new IOException("Canceled");
+	}
+
+	/**
+	 * @return the number of retries made
+	 */
+	public long retries() {
+		return retries.get();
+	}
+
+	/**
+	 * @return the number of retries not made because the budget was used up
+	 */
+	public long budgetExhausted() {
+		return budgetExhausted.get();
+	}
+
+	public RetryBudget budget() {
+		return budget;
+	}
+
+	@Override
+	public String toString() {
+		return "RetryInterceptor [retries=" + retries + ", budgetExhausted=" + budgetExhausted + ", budget="
+				+ budget.available() + "]";
+	}
+
+}
@@ -0,0 +1,41 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+/**
+ * Request tag linking the attempts of a hedged read: RoutingInterceptor records the node each attempt went to, 
+ * and steers an attempt away from the node named in avoid if another candidate is up
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see Hedger
+ */
+public class RouteHint {
+
+	final VaultNode avoid;
+	volatile VaultNode routed;
+
+	public RouteHint() {
+		this(null);
+	}
+
+	RouteHint(VaultNode avoid) {
+		this.avoid = avoid;
+	}
+
+	/**
+	 * @return a hint for another attempt, which should go elsewhere than this one did
+	 */
+	public RouteHint next() {
+		return new RouteHint(routed);
+	}
+
+	/**
+	 * @return the node the attempt was routed to, null if not routed (no cluster configured) or not yet sent
+	 */
+	public VaultNode routed() {
+		return routed;
+	}
+
+}
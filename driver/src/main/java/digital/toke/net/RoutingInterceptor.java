@@ -0,0 +1,82 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.io.IOException;
+import java.util.List;
+
+import digital.toke.exception.DeadlineExceededException;
+import digital.toke.exception.RejectedCallException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * <p>Sends each call to the node VaultCluster picks, by replacing the scheme, host and port of its url.</p>
+ * 
+ * <p>Sits inside the retry interceptor, so every attempt is routed afresh. If the connection to a node cannot be 
+ * made, the request never reached vault and it is safe to try the next node at once, writes included. Any other 
+ * transport failure marks the node down and is left to the retry policy.</p>
+ * 
+ * <p>With read routing on, read-only calls go to VaultCluster.routeRead() instead. A call is read-only if it is 
+ * a GET (which includes LIST) outside auth/, or a POST to sys/capabilities or sys/capabilities-self. Everything 
+ * under auth/ - logins, token lookups and renewals - stays on the active node. The latency of every call is fed 
+ * back to its node. A hedged read's second attempt (see RouteHint) is steered away from the node the first went to.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see VaultCluster
+ */
+public class RoutingInterceptor implements Interceptor {
+
+	private final VaultCluster cluster;
+
+	public RoutingInterceptor(VaultCluster cluster) {
+		this.cluster = cluster;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		if(!cluster.isEnabled()) return chain.proceed(request);
+
+		boolean read = cluster.isReadRouting() && isReadOnly(request);
+		RouteHint hint = request.tag(RouteHint.class);
+		for(int attempt = 1;; attempt++) {
+			VaultNode node = read ? cluster.routeRead(hint == null ? null : hint.avoid) : cluster.route();
+			if(hint != null) hint.routed = node;
+			Request routed = request.newBuilder().url(node.rewrite(request.url())).build();
+			long start = System.nanoTime();
+			node.started();
+			try {
+				Response response = chain.proceed(routed);
+				node.finished(System.nanoTime() - start, cluster.latencyWeight());
+				cluster.responded(node, response.code());
+				return response;
+			} catch (IOException e) {
+				node.finished(System.nanoTime() - start, cluster.latencyWeight());
+				// a call shed by a limiter inside us, or out of time while queued for a slot, never reached the node
+				if(chain.call().isCanceled() || e instanceof RejectedCallException || e instanceof DeadlineExceededException) throw e;
+				cluster.failed(node);
+				if(!RetryInterceptor.notSent(e) || attempt >= cluster.nodes().size()) throw e;
+			}
+		}
+	}
+
+	static boolean isReadOnly(Request request) {
+		List<String> segments = request.url().pathSegments();
+		// skip the api version, e.g. v1
+		int i = segments.size() > 1 && segments.get(0).matches("v\\d+") ? 1 : 0;
+		if(segments.size() <= i) return false;
+		String first = segments.get(i);
+		if("GET".equals(request.method())) return !"auth".equals(first);
+		if("POST".equals(request.method()) && "sys".equals(first) && segments.size() == i + 2) {
+			String second = segments.get(i + 1);
+			return "capabilities".equals(second) || "capabilities-self".equals(second);
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Request coalescing: concurrent calls with the same key share one execution and its result.</p>
+ *
+ * <p>The first caller for a key (the leader) runs the call, callers arriving while it is in flight wait for
+ * and receive the same result or exception. Once the call completes the key is forgotten, so this is not a
+ * cache - a caller arriving afterwards starts a new execution.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class SingleFlight<T> {
+
+	public interface Call<T> {
+		T call() throws IOException;
+	}
+
+	private final ConcurrentMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<String, CompletableFuture<T>>();
+
+	private final AtomicLong calls = new AtomicLong();
+	private final AtomicLong executions = new AtomicLong();
+	private final AtomicLong merged = new AtomicLong();
+
+	public T execute(String key, Call<T> call) throws IOException {
+
+		calls.incrementAndGet();
+
+		CompletableFuture<T> created = new CompletableFuture<T>();
+		CompletableFuture<T> existing = inFlight.putIfAbsent(key, created);
+		if (existing != null) {
+			merged.incrementAndGet();
+			return await(existing);
+		}
+
+		executions.incrementAndGet();
+		T result;
+		try {
+			result = call.call();
+		} catch (IOException | RuntimeException | Error x) {
+			inFlight.remove(key, created);
+			created.completeExceptionally(x);
+			throw x;
+		}
+		// forget the key before publishing, so late arrivals go to the server rather than get this result
+		inFlight.remove(key, created);
+		created.complete(result);
+		return result;
+	}
+
+	private T await(CompletableFuture<T> leader) throws IOException {
+		try {
+			return leader.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting on a coalesced request");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * @return the number of calls made through this instance
+	 */
+	public long calls() {
+		return calls.get();
+	}
+
+	/**
+	 * @return the number of calls which actually went to the server
+	 */
+	public long executions() {
+		return executions.get();
+	}
+
+	/**
+	 * @return the number of calls which were merged into an execution already in flight
+	 */
+	public long merged() {
+		return merged.get();
+	}
+
+	/**
+	 * @return the number of distinct keys in flight right now
+	 */
+	public int inFlight() {
+		return inFlight.size();
+	}
+
+	@Override
+	public String toString() {
+		return "SingleFlight [calls=" + calls + ", executions=" + executions + ", merged=" + merged + "]";
+	}
+
+}
@@ -0,0 +1,171 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>A token bucket: fills at a steady rate up to its burst size, and each call takes one token.</p>
+ * 
+ * <p>Tokens are reserved rather than waited for: a caller which finds the bucket empty takes the next token to 
+ * arrive (the count goes negative) and sleeps until it is due, outside the lock. Callers are therefore served in 
+ * the order they arrive, and one which would have to wait longer than it is willing to takes nothing.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see RateLimiter
+ */
+public class TokenBucket {
+
+	private final double permitsPerNano;
+	private final double burst;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private double tokens;
+	private long last;
+
+	private final AtomicLong granted = new AtomicLong();
+	private final AtomicLong waited = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * Starts full
+	 * 
+	 * @param permitsPerSecond
+	 * @param burst
+	 */
+	public TokenBucket(double permitsPerSecond, int burst) {
+		if(permitsPerSecond <= 0 || burst < 1) throw new IllegalArgumentException("need permitsPerSecond > 0 and burst >= 1");
+		this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.burst = burst;
+		this.tokens = burst;
+		this.last = System.nanoTime();
+	}
+
+	/**
+	 * Take a token, now or in the future
+	 * 
+	 * @param maxWaitNanos the longest the caller will wait
+	 * @return the nanos until the token is due (0 if it is there now), or -1 if that is longer than maxWaitNanos, 
+	 * in which case nothing was taken
+	 */
+	public long reserve(long maxWaitNanos) {
+		lock.lock();
+		try {
+			refill();
+			long wait = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / permitsPerNano);
+			if(wait > maxWaitNanos) {
+				rejected.incrementAndGet();
+				return -1;
+			}
+			tokens -= 1;
+			granted.incrementAndGet();
+			if(wait > 0) waited.incrementAndGet();
+			return wait;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Give back a reserved token which was not used
+	 */
+	public void refund() {
+		lock.lock();
+		try {
+			tokens = Math.min(burst, tokens + 1);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return true if a token was taken, never waits
+	 */
+	public boolean tryAcquire() {
+		return reserve(0) == 0;
+	}
+
+	/**
+	 * @param timeout
+	 * @param unit
+	 * @return true once a token was taken, false at once if none is due within the timeout
+	 * @throws InterruptedException
+	 */
+	public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+		long wait = reserve(unit.toNanos(timeout));
+		if(wait < 0) return false;
+		sleep(wait);
+		return true;
+	}
+
+	/**
+	 * Waits as long as it takes
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void acquire() throws InterruptedException {
+		sleep(reserve(Long.MAX_VALUE));
+	}
+
+	// the token is ours, hand it back if we don't get to use it
+	void sleep(long nanos) throws InterruptedException {
+		if(nanos <= 0) return;
+		try {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		} catch (InterruptedException e) {
+			refund();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the nanos until a token is free, 0 if there is one now
+	 */
+	public long nanosUntilAvailable() {
+		lock.lock();
+		try {
+			refill();
+			return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / permitsPerNano);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		tokens = Math.min(burst, tokens + (now - last) * permitsPerNano);
+		last = now;
+	}
+
+	/**
+	 * @return tokens taken, with or without a wait
+	 */
+	public long granted() {
+		return granted.get();
+	}
+
+	/**
+	 * @return tokens which had to be waited for
+	 */
+	public long waited() {
+		return waited.get();
+	}
+
+	/**
+	 * @return callers turned away because they would have had to wait too long
+	 */
+	public long rejected() {
+		return rejected.get();
+	}
+
+	@Override
+	public String toString() {
+		return "TokenBucket [permitsPerSecond=" + permitsPerNano * TimeUnit.SECONDS.toNanos(1) + ", burst=" + (int) burst
+				+ ", granted=" + granted + ", waited=" + waited + ", rejected=" + rejected + "]";
+	}
+
+}
@@ -0,0 +1,303 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import digital.toke.ClusterConfig;
+import digital.toke.net.VaultNode.Role;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * <p>The nodes of a vault cluster and which of them is active.</p>
+ * 
+ * <p>refresh() asks every node for sys/health: 200 means active, 429 standby, 473 performance standby, 501 not 
+ * initialized and 503 sealed (the body says the same, and is what we go by). If no node claims to be active - e.g. 
+ * during an election - the first node which answers is asked for sys/leader and the leader_address matched against
+ * the configured endpoints. Both endpoints are unauthenticated, so probing needs no token.</p>
+ * 
+ * <p>refresh() runs on the housekeeping scheduler, and straight away (on the driver's executor) whenever a call to a
+ * node fails, so a failover is noticed on the next call rather than the next housekeeping run.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see ClusterConfig
+ * @see RoutingInterceptor
+ */
+public class VaultCluster {
+
+	private static final Logger logger = LogManager.getLogger(VaultCluster.class);
+
+	// sys/health and sys/leader only exist under v1
+	static final String HEALTH = "v1/sys/health";
+	static final String LEADER = "v1/sys/leader";
+
+	private final ClusterConfig config;
+	private final OkHttpClient probeClient;
+	private final Executor executor;
+	private final List<VaultNode> nodes;
+
+	private volatile VaultNode active;
+	private VaultNode lastActive; // the last node found active, guarded by refreshLock
+	private final ReentrantLock refreshLock = new ReentrantLock();
+	private final AtomicBoolean refreshQueued = new AtomicBoolean();
+
+	private final AtomicLong refreshes = new AtomicLong();
+	private final AtomicLong failovers = new AtomicLong();
+
+	/**
+	 * @param config
+	 * @param probeClient a client without the routing interceptor, probes go to the node they name
+	 * @param executor runs the refresh after a failed call
+	 */
+	public VaultCluster(ClusterConfig config, OkHttpClient probeClient, Executor executor) {
+		this.config = config;
+		this.probeClient = probeClient;
+		this.executor = executor;
+		List<VaultNode> list = new ArrayList<VaultNode>();
+		for(HttpUrl url : config.getEndpoints()) {
+			list.add(new VaultNode(url));
+		}
+		this.nodes = Collections.unmodifiableList(list);
+	}
+
+	public boolean isEnabled() {
+		return !nodes.isEmpty();
+	}
+
+	public boolean isReadRouting() {
+		return config.isReadRouting();
+	}
+
+	double latencyWeight() {
+		return config.getLatencyWeight();
+	}
+
+	/**
+	 * @return the node a call should go to: the active node, or failing that the first node which is up (a standby 
+	 * forwards requests to the active node), or failing that the first node
+	 */
+	public VaultNode route() {
+		VaultNode current = active;
+		if(current != null && current.isUp()) return current;
+		for(VaultNode node : nodes) {
+			if(node.isUp()) return node;
+		}
+		return nodes.get(0);
+	}
+
+	public VaultNode routeRead() {
+		return routeRead(null);
+	}
+
+	/**
+	 * @param avoid a node not to pick unless it is the only candidate, may be null
+	 * @return the node a read-only call should go to: of two candidates (performance standbys which are up, and the
+	 * active node if so configured) picked at random, the one with the lower cost. Falls back to route() if there 
+	 * are no candidates
+	 */
+	public VaultNode routeRead(VaultNode avoid) {
+		VaultNode current = active;
+		boolean withActive = config.isReadsOnActive() && current != null && current.isUp();
+		VaultNode first = null, second = null;
+		int seen = 0;
+		// reservoir-pick two distinct candidates without building a list
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for(VaultNode node : nodes) {
+			boolean candidate = node.role == Role.PERF_STANDBY || (withActive && node == current);
+			if(!candidate || node == avoid) continue;
+			seen++;
+			if(seen == 1) {
+				first = node;
+			} else if(seen == 2) {
+				second = node;
+			} else {
+				int r = random.nextInt(seen);
+				if(r == 0) first = node;
+				else if(r == 1) second = node;
+			}
+		}
+		if(first == null) return avoid != null && avoid.isUp() ? avoid : route();
+		if(second == null) return first;
+		return second.cost() < first.cost() ? second : first;
+	}
+
+	/**
+	 * A call to this node failed at the transport level
+	 */
+	void failed(VaultNode node) {
+		if(node.role != Role.DOWN) logger.warn("Vault node "+node.base+" stopped responding");
+		node.role = Role.DOWN;
+		if(active == node) active = null;
+		refreshSoon();
+	}
+
+	/**
+	 * A call to this node was answered. A 503 is what a node which has just been sealed (or an active node which 
+	 * has stepped down) answers
+	 */
+	void responded(VaultNode node, int code) {
+		if(code == 503 && (active == node || node.role == Role.PERF_STANDBY)) {
+			logger.warn("Vault node "+node.base+" answered 503, re-probing the cluster");
+			node.role = Role.SEALED;
+			if(active == node) active = null;
+			refreshSoon();
+		}
+	}
+
+	/**
+	 * Probe the cluster on the executor, at most one queued at a time
+	 */
+	public void refreshSoon() {
+		if(!refreshQueued.compareAndSet(false, true)) return;
+		try {
+			executor.execute(() -> {
+				refreshQueued.set(false);
+				refresh();
+			});
+		} catch (RejectedExecutionException e) {
+			refreshQueued.set(false);
+		}
+	}
+
+	/**
+	 * Probe every node and work out which is active. Blocks for at most the probe timeout per node. A refresh 
+	 * already in progress on another thread is waited for rather than repeated
+	 */
+	public void refresh() {
+		if(!refreshLock.tryLock()) {
+			refreshLock.lock();
+			refreshLock.unlock();
+			return;
+		}
+		try {
+			refreshes.incrementAndGet();
+			VaultNode found = null;
+			for(VaultNode node : nodes) {
+				node.role = probe(node);
+				node.lastProbe = System.currentTimeMillis();
+				if(node.role == Role.ACTIVE && found == null) found = node;
+			}
+			if(found == null) found = askLeader();
+			active = found;
+			if(found == null) {
+				logger.error("No active vault node found: "+nodes);
+			} else if(found != lastActive) {
+				if(lastActive != null) failovers.incrementAndGet();
+				lastActive = found;
+				logger.info("Active vault node is now "+found.base);
+			}
+		} finally {
+			refreshLock.unlock();
+		}
+	}
+
+	Role probe(VaultNode node) {
+		Request request = new Request.Builder().url(node.base.newBuilder().addPathSegments(HEALTH).build()).build();
+		try (Response response = probeClient.newCall(request).execute()) {
+			String body = response.body() == null ? "" : response.body().string();
+			return role(response.code(), body);
+		} catch (IOException e) {
+			logger.debug("Probe of "+node.base+" failed: "+e);
+			return Role.DOWN;
+		}
+	}
+
+	static Role role(int code, String body) {
+		try {
+			JSONObject json = new JSONObject(body);
+			if(!json.optBoolean("initialized", true)) return Role.UNINITIALIZED;
+			if(json.optBoolean("sealed", false)) return Role.SEALED;
+			if(json.optBoolean("performance_standby", false)) return Role.PERF_STANDBY;
+			if(json.optBoolean("standby", false)) return Role.STANDBY;
+			if(json.has("initialized")) return Role.ACTIVE;
+		} catch (JSONException e) {
+			// fall back on the status code
+		}
+		switch(code) {
+			case 200: return Role.ACTIVE;
+			case 429: return Role.STANDBY;
+			case 473: return Role.PERF_STANDBY;
+			case 501: return Role.UNINITIALIZED;
+			case 503: return Role.SEALED;
+			default: return Role.UNKNOWN;
+		}
+	}
+
+	/**
+	 * @return the node sys/leader names as the leader, or null
+	 */
+	private VaultNode askLeader() {
+		for(VaultNode node : nodes) {
+			if(!node.isUp()) continue;
+			Request request = new Request.Builder().url(node.base.newBuilder().addPathSegments(LEADER).build()).build();
+			try (Response response = probeClient.newCall(request).execute()) {
+				if(response.code() != 200) continue;
+				JSONObject json = new JSONObject(response.body().string());
+				if(json.optBoolean("is_self", false)) return node;
+				HttpUrl leader = HttpUrl.parse(json.optString("leader_address", ""));
+				for(VaultNode candidate : nodes) {
+					if(candidate.matches(leader) && candidate.isUp()) return candidate;
+				}
+				return null;
+			} catch (IOException | JSONException e) {
+				logger.debug("sys/leader on "+node.base+" failed: "+e);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the active node, or null if it is not known
+	 */
+	public VaultNode active() {
+		return active;
+	}
+
+	public List<VaultNode> nodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return how often housekeeping should call refresh(), in milliseconds
+	 */
+	public long refreshInterval() {
+		return config.getRefreshInterval();
+	}
+
+	public long refreshes() {
+		return refreshes.get();
+	}
+
+	/**
+	 * @return the number of times the active node changed to a different one
+	 */
+	public long failovers() {
+		return failovers.get();
+	}
+
+	@Override
+	public String toString() {
+		return "VaultCluster [active=" + (active == null ? null : active.base) + ", nodes=" + nodes + ", refreshes="
+				+ refreshes + ", failovers=" + failovers + "]";
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.HttpUrl;
+
+/**
+ * One node of a vault cluster, as last seen by VaultCluster, and how fast it has been answering
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see VaultCluster
+ */
+public class VaultNode {
+
+	public enum Role {
+		ACTIVE, STANDBY, PERF_STANDBY, SEALED, UNINITIALIZED, DOWN, UNKNOWN;
+	}
+
+	final HttpUrl base;
+	volatile Role role = Role.UNKNOWN;
+	volatile long lastProbe; // System.currentTimeMillis(), 0 if never probed
+	
+	// moving average of call latency in nanoseconds, as the bits of a double so it can be updated without a lock
+	private final AtomicLong latencyBits = new AtomicLong(Double.doubleToLongBits(0));
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLong calls = new AtomicLong();
+
+	VaultNode(HttpUrl base) {
+		this.base = base;
+	}
+
+	/**
+	 * @return the url with its scheme, host and port replaced by this node's
+	 */
+	HttpUrl rewrite(HttpUrl url) {
+		if(url.host().equals(base.host()) && url.port() == base.port() && url.scheme().equals(base.scheme())) return url;
+		return url.newBuilder().scheme(base.scheme()).host(base.host()).port(base.port()).build();
+	}
+
+	void started() {
+		inFlight.incrementAndGet();
+	}
+
+	/**
+	 * A call finished, fold its latency into the moving average
+	 */
+	void finished(long nanos, double weight) {
+		inFlight.decrementAndGet();
+		calls.incrementAndGet();
+		long prev, next;
+		do {
+			prev = latencyBits.get();
+			double avg = Double.longBitsToDouble(prev);
+			next = Double.doubleToLongBits(avg == 0 ? nanos : avg + weight * (nanos - avg));
+		} while(!latencyBits.compareAndSet(prev, next));
+	}
+
+	/**
+	 * @return the expected wait for a new call: average latency scaled by the calls already in flight. A node 
+	 * we have no samples for costs nothing, so it gets tried
+	 */
+	double cost() {
+		return Double.longBitsToDouble(latencyBits.get()) * (inFlight.get() + 1);
+	}
+
+	boolean matches(HttpUrl url) {
+		return url != null && url.host().equalsIgnoreCase(base.host()) && url.port() == base.port();
+	}
+
+	/**
+	 * @return false if the node is known to be unable to serve requests
+	 */
+	public boolean isUp() {
+		Role r = role;
+		return r != Role.DOWN && r != Role.SEALED && r != Role.UNINITIALIZED;
+	}
+
+	public HttpUrl getBase() {
+		return base;
+	}
+
+	public Role getRole() {
+		return role;
+	}
+
+	public long getLastProbe() {
+		return lastProbe;
+	}
+
+	/**
+	 * @return the moving average latency of calls to this node, in milliseconds
+	 */
+	public double getLatencyMillis() {
+		return Double.longBitsToDouble(latencyBits.get()) / 1000000.0;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return the number of calls this node has answered
+	 */
+	public long getCalls() {
+		return calls.get();
+	}
+
+	@Override
+	public String toString() {
+		return "VaultNode [base=" + base + ", role=" + role + ", latencyMillis=" + String.format("%.2f", getLatencyMillis())
+				+ ", inFlight=" + inFlight + ", calls=" + calls + "]";
+	}
+
+}
@@ -0,0 +1,63 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import digital.toke.AdaptiveLimitConfig;
+
+/**
+ * <p>After TCP Vegas. The lowest latency seen is taken as the no-load latency; the calls queued at the server are 
+ * then estimated as limit * (1 - noLoad / rtt). Below alpha the limit grows, above beta it shrinks, in steps of
+ * log10(limit). A drop shrinks it too.</p>
+ * 
+ * <p>The no-load latency is forgotten every so often, so a permanent change in the server's speed is picked up.</p>
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class VegasLimit implements Limit {
+
+	// calls after which the no-load latency is measured afresh
+	static final int PROBE_EVERY = 1000;
+
+	private final int min;
+	private final int max;
+	private double limit;
+	private long noLoadRtt;
+	private int sinceProbe;
+
+	public VegasLimit(AdaptiveLimitConfig config) {
+		this.min = config.getMinLimit();
+		this.max = config.getMaxLimit();
+		this.limit = config.getInitialLimit();
+	}
+
+	@Override
+	public int update(long rttNanos, int inFlight, boolean dropped) {
+		if(++sinceProbe >= PROBE_EVERY) {
+			sinceProbe = 0;
+			noLoadRtt = 0;
+		}
+		if(rttNanos > 0 && (noLoadRtt == 0 || rttNanos < noLoadRtt)) noLoadRtt = rttNanos;
+
+		double step = Math.max(1, Math.log10(limit));
+		if(dropped) {
+			limit -= step;
+		} else if(inFlight * 2 >= limit) {
+			double queued = limit * (1 - (double) noLoadRtt / Math.max(rttNanos, 1));
+			double alpha = 3 * step;
+			double beta = 6 * step;
+			if(queued < alpha) limit += step;
+			else if(queued > beta) limit -= step;
+		}
+		limit = Math.max(min, Math.min(max, limit));
+		return (int) limit;
+	}
+
+	@Override
+	public int current() {
+		return (int) limit;
+	}
+
+}
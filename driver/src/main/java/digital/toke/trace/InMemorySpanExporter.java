@@ -0,0 +1,61 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps finished spans in memory, in the order they ended. For tests, or for looking at a few calls by hand
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class InMemorySpanExporter implements SpanExporter {
+
+	private final ConcurrentLinkedQueue<Span> spans = new ConcurrentLinkedQueue<Span>();
+
+	@Override
+	public void export(Span span) {
+		spans.add(span);
+	}
+
+	public List<Span> spans() {
+		return new ArrayList<Span>(spans);
+	}
+
+	/**
+	 * @return the spans with this name
+	 */
+	public List<Span> spans(String name) {
+		List<Span> named = new ArrayList<Span>();
+		for(Span span : spans) {
+			if(span.name().equals(name)) named.add(span);
+		}
+		return named;
+	}
+
+	/**
+	 * @return the spans whose parent is this span
+	 */
+	public List<Span> children(Span parent) {
+		List<Span> children = new ArrayList<Span>();
+		for(Span span : spans) {
+			if(parent.spanId().equals(span.parentId())) children.add(span);
+		}
+		return children;
+	}
+
+	public void clear() {
+		spans.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "InMemorySpanExporter [spans=" + spans.size() + "]";
+	}
+
+}
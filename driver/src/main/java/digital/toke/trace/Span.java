@@ -0,0 +1,269 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.trace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>A timed piece of work in a trace, with attributes and timestamped annotations. Started by a Tracer, and
+ * handed to its exporter by end(). Safe to annotate from several threads.</p>
+ *
+ * <p>Like a Lane, a span can be bound to the calling thread, which makes it the parent of the spans the driver
+ * starts for calls made on that thread (async ones included):</p>
+ *
+ * <pre>
+ * Span span = tracer.start("handle-order");
+ * try (Span.Scope scope = span.bind()) {
+ *     kv2.kvRead("orders/db");
+ * } finally {
+ *     span.end();
+ * }
+ * </pre>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see Tracer
+ */
+public class Span {
+
+	private static final ThreadLocal<Span> bound = new ThreadLocal<Span>();
+
+	public interface Scope extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	/**
+	 * A point in time within the span, such as a retry
+	 */
+	public static class Annotation {
+		final long epochMicros;
+		final String name;
+		final String detail;
+
+		Annotation(long epochMicros, String name, String detail) {
+			this.epochMicros = epochMicros;
+			this.name = name;
+			this.detail = detail;
+		}
+
+		public long epochMicros() {
+			return epochMicros;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		/**
+		 * @return more about it, or null
+		 */
+		public String detail() {
+			return detail;
+		}
+
+		@Override
+		public String toString() {
+			return detail == null ? name : name + ": " + detail;
+		}
+	}
+
+	final Tracer tracer;
+	final String traceId;
+	final String spanId;
+	final String parentId;
+	final String name;
+	final long startEpochMicros;
+	final long startNanos;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+	private final List<Annotation> annotations = new ArrayList<Annotation>();
+	private String error;
+	private long durationNanos = -1;
+
+	Span(Tracer tracer, String traceId, String spanId, String parentId, String name) {
+		this.tracer = tracer;
+		this.traceId = traceId;
+		this.spanId = spanId;
+		this.parentId = parentId;
+		this.name = name;
+		this.startEpochMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * @return a scope which makes this span the parent of the spans started on this thread until it is closed
+	 */
+	public Scope bind() {
+		final Span previous = bound.get();
+		bound.set(this);
+		return () -> {
+			if(previous == null) bound.remove();
+			else bound.set(previous);
+		};
+	}
+
+	/**
+	 * @return the span bound to the calling thread, or null
+	 */
+	public static Span current() {
+		return bound.get();
+	}
+
+	/**
+	 * @param value ignored if null
+	 */
+	public Span attribute(String key, Object value) {
+		if(value == null) return this;
+		lock.lock();
+		try {
+			attributes.put(key, value);
+		} finally {
+			lock.unlock();
+		}
+		return this;
+	}
+
+	public Span annotate(String name) {
+		return annotate(name, null);
+	}
+
+	public Span annotate(String name, String detail) {
+		long micros = startEpochMicros + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+		lock.lock();
+		try {
+			annotations.add(new Annotation(micros, name, detail));
+		} finally {
+			lock.unlock();
+		}
+		return this;
+	}
+
+	/**
+	 * Mark the span failed
+	 */
+	public Span error(Throwable x) {
+		lock.lock();
+		try {
+			error = x.getClass().getSimpleName() + ": " + x.getMessage();
+		} finally {
+			lock.unlock();
+		}
+		return this;
+	}
+
+	/**
+	 * Stop the clock and export the span. Only the first call counts
+	 */
+	public void end() {
+		lock.lock();
+		try {
+			if(durationNanos >= 0) return;
+			durationNanos = System.nanoTime() - startNanos;
+		} finally {
+			lock.unlock();
+		}
+		tracer.export(this);
+	}
+
+	public String traceId() {
+		return traceId;
+	}
+
+	public String spanId() {
+		return spanId;
+	}
+
+	/**
+	 * @return the parent's span id, null for a root span
+	 */
+	public String parentId() {
+		return parentId;
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public long startEpochMicros() {
+		return startEpochMicros;
+	}
+
+	/**
+	 * @return the duration, -1 until the span has ended
+	 */
+	public long durationNanos() {
+		lock.lock();
+		try {
+			return durationNanos;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public boolean isEnded() {
+		return durationNanos() >= 0;
+	}
+
+	public Object attribute(String key) {
+		lock.lock();
+		try {
+			return attributes.get(key);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public Map<String, Object> attributes() {
+		lock.lock();
+		try {
+			return Collections.unmodifiableMap(new LinkedHashMap<String, Object>(attributes));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public List<Annotation> annotations() {
+		lock.lock();
+		try {
+			return Collections.unmodifiableList(new ArrayList<Annotation>(annotations));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return what went wrong, or null if the span did not fail
+	 */
+	public String error() {
+		lock.lock();
+		try {
+			return error;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the W3C trace context header value naming this span as the parent
+	 */
+	public String traceparent() {
+		return "00-" + traceId + "-" + spanId + "-01";
+	}
+
+	@Override
+	public String toString() {
+		return "Span [name=" + name + ", traceId=" + traceId + ", spanId=" + spanId + ", parentId=" + parentId
+				+ ", durationNanos=" + durationNanos() + ", attributes=" + attributes() + ", annotations="
+				+ annotations() + ", error=" + error() + "]";
+	}
+
+}
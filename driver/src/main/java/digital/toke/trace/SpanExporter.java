@@ -0,0 +1,18 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.trace;
+
+/**
+ * Receives each span when it ends, on the thread which ended it - often one of the driver's workers, so an
+ * exporter must be thread-safe and should hand anything slow off to a thread of its own
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see InMemorySpanExporter
+ */
+public interface SpanExporter {
+
+	void export(Span span);
+
+}
@@ -0,0 +1,87 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.trace;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import digital.toke.TraceConfig;
+
+/**
+ * Starts spans and hands the finished ones to the configured exporter. Ids are random, 128 bits for a trace
+ * and 64 for a span, as in W3C trace context
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see TraceConfig
+ */
+public class Tracer {
+
+	private static final Logger logger = LogManager.getLogger(Tracer.class);
+
+	final TraceConfig config;
+
+	public Tracer(TraceConfig config) {
+		this.config = config;
+	}
+
+	public boolean isEnabled() {
+		return config.isEnabled();
+	}
+
+	/**
+	 * @return a new span, the child of the span bound to the calling thread if there is one
+	 */
+	public Span start(String name) {
+		return start(name, Span.current());
+	}
+
+	/**
+	 * @param parent null for a new trace
+	 */
+	public Span start(String name, Span parent) {
+		String traceId = parent == null ? id() + id() : parent.traceId;
+		return new Span(this, traceId, id(), parent == null ? null : parent.spanId, name);
+	}
+
+	/**
+	 * Note something which happened without a call of its own, such as a cache hit: as an annotation on the span
+	 * bound to the calling thread, or if there is none as a span of its own
+	 */
+	public void record(String name, String detail) {
+		if(!isEnabled()) return;
+		Span span = Span.current();
+		if(span != null) {
+			span.annotate(name, detail);
+			return;
+		}
+		start(name, null).attribute("detail", detail).end();
+	}
+
+	void export(Span span) {
+		if(!isEnabled()) return;
+		try {
+			config.getExporter().export(span);
+		} catch (RuntimeException e) {
+			logger.warn("Span exporter failed on "+span.name, e);
+		}
+	}
+
+	private static String id() {
+		String hex = Long.toHexString(ThreadLocalRandom.current().nextLong());
+		return "0000000000000000".substring(hex.length()) + hex;
+	}
+
+	public TraceConfig getConfig() {
+		return config;
+	}
+
+	@Override
+	public String toString() {
+		return "Tracer [config=" + config + "]";
+	}
+
+}
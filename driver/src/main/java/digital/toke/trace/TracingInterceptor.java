@@ -0,0 +1,109 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.trace;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import digital.toke.metrics.VaultMetrics;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * <p>Opens the spans of a call. There are two of these in the chain:</p>
+ *
+ * <ul>
+ * <li>the call interceptor, outermost, opens a span per call named after its operation (e.g. "vault kv2.read"),
+ * sends its id in the request id header and the trace context in traceparent, and records vault's request_id
+ * from the response</li>
+ * <li>the attempt interceptor, innermost, opens a child span per HTTP attempt with the node it went to, so
+ * retries and re-routes show up as siblings</li>
+ * </ul>
+ *
+ * <p>The span travels with the request as its Span tag; the interceptors in between (retries, for one)
+ * annotate it.</p>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see Tracer
+ */
+public class TracingInterceptor implements Interceptor {
+
+	// vault puts request_id first in its response body, no need to parse all of it
+	private static final Pattern REQUEST_ID = Pattern.compile("\"request_id\"\\s*:\\s*\"([^\"]+)\"");
+	private static final long PEEK_BYTES = 4096;
+
+	final Tracer tracer;
+	final boolean attempt;
+	// names the operation, with the KV mounts registered there
+	final VaultMetrics metrics;
+
+	private TracingInterceptor(Tracer tracer, boolean attempt, VaultMetrics metrics) {
+		this.tracer = tracer;
+		this.attempt = attempt;
+		this.metrics = metrics;
+	}
+
+	public static TracingInterceptor call(Tracer tracer, VaultMetrics metrics) {
+		return new TracingInterceptor(tracer, false, metrics);
+	}
+
+	public static TracingInterceptor attempt(Tracer tracer) {
+		return new TracingInterceptor(tracer, true, null);
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		if(!tracer.isEnabled()) return chain.proceed(request);
+		Span parent = request.tag(Span.class);
+		Span span;
+		Request.Builder builder = request.newBuilder();
+		if(attempt) {
+			span = tracer.start("attempt", parent);
+			span.attribute("net.peer", request.url().host() + ":" + request.url().port());
+		} else {
+			String operation = metrics.operationName(request);
+			span = tracer.start("vault " + operation, parent);
+			span.attribute("vault.operation", operation)
+					.attribute("http.method", request.method())
+					.attribute("http.path", request.url().encodedPath());
+			String header = tracer.config.getRequestIdHeader();
+			if(header != null) {
+				builder.header(header, span.spanId);
+				span.attribute("request_id.header", span.spanId);
+			}
+		}
+		if(tracer.config.isTraceparent()) builder.header("traceparent", span.traceparent());
+
+		try {
+			Response response = chain.proceed(builder.tag(Span.class, span).build());
+			span.attribute("http.status", response.code());
+			if(!attempt) span.attribute("vault.request_id", requestId(response));
+			return response;
+		} catch (IOException | RuntimeException e) {
+			span.error(e);
+			throw e;
+		} finally {
+			span.end();
+		}
+	}
+
+	/**
+	 * @return the request_id in the response body, or null
+	 */
+	static String requestId(Response response) {
+		try {
+			ResponseBody peek = response.peekBody(PEEK_BYTES);
+			Matcher m = REQUEST_ID.matcher(peek.string());
+			return m.find() ? m.group(1) : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,189 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import java.io.IOException;
+
+import digital.toke.metrics.VaultMetrics;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * JDK 21 version, packaged into META-INF/versions/21 of the multi-release jar. Emits Java Flight Recorder
+ * events, each of which is switched on or off (and given a threshold) by name in the recording's settings:
+ *
+ * <ul>
+ * <li>digital.toke.VaultCall - one HTTP exchange with vault</li>
+ * <li>digital.toke.Token - a login, lookup or renewal by housekeeping</li>
+ * <li>digital.toke.Housekeeping - one phase of a housekeeping run</li>
+ * <li>digital.toke.LatchWait - a call waiting for the driver to be ready</li>
+ * </ul>
+ *
+ * Whether a type is enabled is checked before anything is allocated, so a type not being recorded costs a
+ * volatile read.
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see Networking
+ * @see HousekeepingBase
+ */
+final class FlightEvents {
+
+	private FlightEvents() {}
+
+	@Name("digital.toke.VaultCall")
+	@Label("Vault Call")
+	@Description("An HTTP exchange with vault, from sending the request to the response headers")
+	@Category({ "Toke", "Vault" })
+	@StackTrace(false)
+	static final class VaultCallEvent extends Event {
+		@Label("Method")
+		String method;
+		@Label("Host")
+		String host;
+		@Label("Path")
+		String path;
+		@Label("Operation")
+		String operation;
+		@Label("Status")
+		@Description("The HTTP status, 0 if there was no response")
+		int status;
+		@Label("Request Bytes")
+		long requestBytes;
+		@Label("Response Bytes")
+		@Description("The Content-Length of the response, -1 if not known")
+		long responseBytes;
+		@Label("Error")
+		String error;
+	}
+
+	@Name("digital.toke.Token")
+	@Label("Token Login or Renewal")
+	@Category({ "Toke", "Housekeeping" })
+	@StackTrace(false)
+	static final class TokenEvent extends Event {
+		@Label("Kind")
+		String kind;
+		@Label("Handle")
+		String handle;
+		@Label("Auth Type")
+		String authType;
+		@Label("Succeeded")
+		boolean succeeded;
+	}
+
+	@Name("digital.toke.Housekeeping")
+	@Label("Housekeeping Phase")
+	@Category({ "Toke", "Housekeeping" })
+	@StackTrace(false)
+	static final class HousekeepingEvent extends Event {
+		@Label("Phase")
+		String phase;
+	}
+
+	@Name("digital.toke.LatchWait")
+	@Label("Latch Wait")
+	@Description("A call blocked waiting for the driver to be logged in")
+	@Category({ "Toke", "Vault" })
+	static final class LatchWaitEvent extends Event {
+		@Label("Service")
+		String service;
+		@Label("Ready")
+		@Description("False if the wait timed out and the call went ahead anyway")
+		boolean ready;
+	}
+
+	private static final EventType CALL = EventType.getEventType(VaultCallEvent.class);
+	private static final EventType TOKEN = EventType.getEventType(TokenEvent.class);
+	private static final EventType HOUSEKEEPING = EventType.getEventType(HousekeepingEvent.class);
+	private static final EventType LATCH = EventType.getEventType(LatchWaitEvent.class);
+
+	static Interceptor interceptor() {
+		return chain -> {
+			if(!CALL.isEnabled()) return chain.proceed(chain.request());
+			Request request = chain.request();
+			VaultCallEvent event = new VaultCallEvent();
+			event.begin();
+			try {
+				Response response = chain.proceed(request);
+				event.status = response.code();
+				event.responseBytes = response.body() == null ? -1 : response.body().contentLength();
+				return response;
+			} catch (IOException | RuntimeException e) {
+				event.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+				throw e;
+			} finally {
+				event.end();
+				if(event.shouldCommit()) {
+					event.method = request.method();
+					event.host = request.url().host() + ":" + request.url().port();
+					event.path = request.url().encodedPath();
+					event.operation = VaultMetrics.operation(request);
+					event.requestBytes = request.body() == null ? 0 : request.body().contentLength();
+					event.commit();
+				}
+			}
+		};
+	}
+
+	static Object beginToken() {
+		if(!TOKEN.isEnabled()) return null;
+		TokenEvent event = new TokenEvent();
+		event.begin();
+		return event;
+	}
+
+	static void endToken(Object begun, String kind, String handle, AuthType authType, boolean succeeded) {
+		if(begun == null) return;
+		TokenEvent event = (TokenEvent) begun;
+		event.end();
+		if(!event.shouldCommit()) return;
+		event.kind = kind;
+		event.handle = handle;
+		event.authType = authType == null ? null : authType.name();
+		event.succeeded = succeeded;
+		event.commit();
+	}
+
+	static Object beginHousekeeping() {
+		if(!HOUSEKEEPING.isEnabled()) return null;
+		HousekeepingEvent event = new HousekeepingEvent();
+		event.begin();
+		return event;
+	}
+
+	static void endHousekeeping(Object begun, String phase) {
+		if(begun == null) return;
+		HousekeepingEvent event = (HousekeepingEvent) begun;
+		event.end();
+		if(!event.shouldCommit()) return;
+		event.phase = phase;
+		event.commit();
+	}
+
+	static Object beginLatch() {
+		if(!LATCH.isEnabled()) return null;
+		LatchWaitEvent event = new LatchWaitEvent();
+		event.begin();
+		return event;
+	}
+
+	static void endLatch(Object begun, String service, boolean ready) {
+		if(begun == null) return;
+		LatchWaitEvent event = (LatchWaitEvent) begun;
+		event.end();
+		if(!event.shouldCommit()) return;
+		event.service = service;
+		event.ready = ready;
+		event.commit();
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved 
+ */
+package digital.toke;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * JDK 21 version, packaged into META-INF/versions/21 of the multi-release jar.
+ * 
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ * @see DriverExecutors
+ */
+final class VirtualThreads {
+	
+	private VirtualThreads() {}
+
+	static boolean available() {
+		return true;
+	}
+
+	static ThreadFactory factory(String name) {
+		return Thread.ofVirtual().name(name + "-", 0).factory();
+	}
+
+	static ExecutorService newExecutor(String name) {
+		return Executors.newThreadPerTaskExecutor(factory(name));
+	}
+}
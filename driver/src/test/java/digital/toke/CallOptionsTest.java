@@ -0,0 +1,196 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.accessor.Toke;
+import digital.toke.exception.DeadlineExceededException;
+import digital.toke.exception.ReadException;
+
+/**
+ * Deadlines and cancellation through CallOptions
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class CallOptionsTest {
+
+	static long millisSince(long start) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	@Test
+	public void deadlineCoversTheReadinessWait() throws Exception {
+		try (StandInVault vault = StandInVault.secrets(0)) {
+			Networking net = new Networking();
+			net.tokenEvent(StandInVault.login());
+			// never told it is logged in, so latch() would wait its full 10 seconds
+			KVv1 kv = new KVv1(vault.config().build(), net);
+			long start = System.nanoTime();
+			ReadException x = assertThrows(ReadException.class, () -> kv.kvRead("app/db", Duration.ofMillis(200)));
+			assertTrue(x.getCause() instanceof DeadlineExceededException, x.toString());
+			assertTrue(millisSince(start) < 2000);
+			assertEquals(0, vault.requests());
+		}
+	}
+
+	@Test
+	public void deadlineCoversRetriesAndTheExchange() throws Exception {
+		try (StandInVault slow = StandInVault.secrets(2000);
+				StandInVault unavailable = new StandInVault(0, (method, path, query, body) -> new StandInVault.Reply(503, "{}"))) {
+			KVv2 kv = KVBulkReadTest.ready(new KVv2(slow.config().build(), new Networking()));
+			long start = System.nanoTime();
+			ReadException x = assertThrows(ReadException.class, () -> kv.kvRead("app/db", Duration.ofMillis(300)));
+			assertTrue(x.getCause() instanceof DeadlineExceededException, x.toString());
+			assertTrue(millisSince(start) < 1500, "took "+millisSince(start)+"ms");
+			// giving up is not the server's fault
+			assertTrue(kv.client.health().isAvailable());
+
+			// backoff up to 2 seconds between the default 3 attempts, unless the deadline is nearer
+			KVv2 retrying = KVBulkReadTest.ready(new KVv2(unavailable.config().build(), new Networking(NetworkingConfig.builder()
+					.retry(RetryConfig.builder().baseDelay(1000, TimeUnit.MILLISECONDS).maxDelay(2000, TimeUnit.MILLISECONDS).build()).build())));
+			start = System.nanoTime();
+			assertThrows(ReadException.class, () -> retrying.kvRead("app/db", Duration.ofMillis(300)));
+			assertTrue(millisSince(start) < 1000, "took "+millisSince(start)+"ms");
+		}
+	}
+
+	@Test
+	public void cancellingStopsABulkRead() throws Exception {
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+		try (StandInVault vault = StandInVault.secrets(500)) {
+			KVv2 kv = KVBulkReadTest.ready(new KVv2(vault.config().build(), new Networking(NetworkingConfig.builder()
+					.coalesceReads(false).build())));
+			Cancellation cancellation = new Cancellation();
+			CallOptions options = CallOptions.builder().cancellation(cancellation).build();
+			timer.schedule(cancellation::cancel, 200, TimeUnit.MILLISECONDS);
+
+			long start = System.nanoTime();
+			BulkReadResult result = options.call(() -> kv.kvReadAll(KVBulkReadTest.paths(100), 10, 30, TimeUnit.SECONDS));
+			assertTrue(millisSince(start) < 1000, "took "+millisSince(start)+"ms");
+			assertEquals(100, result.errors().size());
+			assertTrue(vault.requests() <= 10);
+
+			// and anything else made with it
+			assertThrows(ReadException.class, () -> kv.kvRead("app/db", options));
+		} finally {
+			timer.shutdownNow();
+		}
+	}
+
+	@Test
+	public void cancellingStopsATreeWalk() throws Exception {
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+		// an endless tree, each listing slow
+		try (StandInVault vault = new StandInVault(50, (method, path, query, body) -> KVTreeWalkTest.keys(5, "d", true))) {
+			KVv2 kv = KVBulkReadTest.ready(new KVv2(vault.config().build(), new Networking()));
+			Cancellation cancellation = new Cancellation();
+			timer.schedule(cancellation::cancel, 500, TimeUnit.MILLISECONDS);
+			AtomicLong leaves = new AtomicLong();
+
+			long start = System.nanoTime();
+			TreeWalk walk = CallOptions.builder().cancellation(cancellation).build()
+					.call(() -> kv.kvWalk("", path -> leaves.incrementAndGet(), 4, 30, TimeUnit.SECONDS));
+			assertTrue(millisSince(start) < 1000, "took "+millisSince(start)+"ms");
+			assertFalse(walk.isComplete());
+			int seen = vault.requests();
+			Thread.sleep(300);
+			// nothing more is listed after the walk returns
+			assertTrue(vault.requests() <= seen + 1);
+		} finally {
+			timer.shutdownNow();
+		}
+	}
+
+	@Test
+	public void listenersRunOnceWhenCancelledConcurrently() throws Exception {
+		ExecutorService threads = Executors.newFixedThreadPool(8);
+		try {
+			for(int round = 0; round < 200; round++) {
+				Cancellation cancellation = new Cancellation();
+				AtomicInteger early = new AtomicInteger();
+				AtomicInteger late = new AtomicInteger();
+				cancellation.onCancel(early::incrementAndGet);
+				CountDownLatch go = new CountDownLatch(1);
+				List<Future<?>> done = new ArrayList<Future<?>>();
+				for(int t = 0; t < 8; t++) {
+					final boolean registers = t == 0;
+					done.add(threads.submit(() -> {
+						go.await();
+						if(registers) cancellation.onCancel(late::incrementAndGet);
+						else cancellation.cancel();
+						return null;
+					}));
+				}
+				go.countDown();
+				for(Future<?> f : done) f.get();
+				assertEquals(1, early.get());
+				assertEquals(1, late.get());
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+
+	@Test
+	public void cancellingFailsACallQueuedForAHostSlot() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService threads = Executors.newFixedThreadPool(2);
+		try (StandInVault vault = new StandInVault(0, (method, path, query, body) -> {
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new StandInVault.Reply(200, "{\"data\":{}}");
+		})) {
+			Networking net = new Networking(NetworkingConfig.builder().maxRequestsPerHost(1).coalesceReads(false)
+					.retry(RetryConfig.none()).build());
+			net.tokenEvent(StandInVault.login());
+			Future<Toke> holder = threads.submit(() -> net.get(vault.url("/v1/secret/data/holder")));
+			while(vault.requests() == 0) Thread.sleep(5);
+
+			// no deadline, so only the cancel can end its wait
+			Cancellation cancellation = new Cancellation();
+			CallOptions options = CallOptions.builder().cancellation(cancellation).build();
+			Future<Toke> queued = threads.submit(() -> options.call(() -> net.get(vault.url("/v1/secret/data/queued"))));
+			Thread.sleep(100);
+			assertFalse(queued.isDone());
+
+			long start = System.nanoTime();
+			cancellation.cancel();
+			ExecutionException x = assertThrows(ExecutionException.class, () -> queued.get(2, TimeUnit.SECONDS));
+			assertTrue(x.getCause() instanceof IOException, x.toString());
+			assertTrue(millisSince(start) < 1000, "took "+millisSince(start)+"ms");
+			assertEquals(1, vault.requests());
+
+			release.countDown();
+			assertEquals(200, holder.get(5, TimeUnit.SECONDS).code);
+		} finally {
+			release.countDown();
+			threads.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class DriverExecutorsTest {
+
+	@Test
+	public void platformThreadsAreNamedDaemons() throws Exception {
+		Thread t = DriverExecutors.threadFactory(ExecutionMode.PLATFORM, "toke-housekeeping").newThread(() -> {});
+		assertTrue(t.getName().startsWith("toke-housekeeping-"), t.getName());
+		assertTrue(t.isDaemon());
+
+		// without the multi-release classes VIRTUAL falls back to the same
+		if(!DriverExecutors.virtualThreadsAvailable()) {
+			t = DriverExecutors.threadFactory(ExecutionMode.VIRTUAL, "toke-export").newThread(() -> {});
+			assertTrue(t.getName().startsWith("toke-export-"), t.getName());
+			assertTrue(t.isDaemon());
+		}
+	}
+
+	@Test
+	public void platformExecutorIsBounded() throws Exception {
+		ExecutorService pool = DriverExecutors.newExecutor(ExecutionMode.PLATFORM, 2, "toke-worker");
+		try {
+			AtomicInteger running = new AtomicInteger();
+			AtomicInteger widest = new AtomicInteger();
+			CountDownLatch done = new CountDownLatch(8);
+			for(int i = 0; i < 8; i++) {
+				pool.execute(() -> {
+					widest.accumulateAndGet(running.incrementAndGet(), Math::max);
+					try {
+						Thread.sleep(20);
+					} catch (InterruptedException e) {}
+					running.decrementAndGet();
+					done.countDown();
+				});
+			}
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertEquals(2, widest.get());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void driverPassesItsModeOnAndCloses() throws Exception {
+		TokeDriver driver = new TokeDriver(TokeDriverConfig.builder().executionMode(ExecutionMode.VIRTUAL).workerThreads(4).build());
+		assertEquals(ExecutionMode.VIRTUAL, driver.kv2().executionMode());
+		assertEquals(ExecutionMode.VIRTUAL, driver.kv().executionMode());
+
+		driver.close();
+		assertTrue(driver.networking().executor().isShutdown());
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import digital.toke.accessor.DataResponseDecorator;
+
+/**
+ * Benchmark and behaviour of kvReadAll() against a stand-in server: wall clock should fall as concurrency rises,
+ * failures and the deadline are reported per path.
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class KVBulkReadTest {
+
+	static final long LATENCY = 10; // ms per request on the stand-in server
+	static final int PATHS = 100;
+
+	static List<String> paths(int n) {
+		List<String> paths = new ArrayList<String>();
+		for (int i = 0; i < n; i++) {
+			paths.add("app/secret-" + i);
+		}
+		return paths;
+	}
+
+	static <T extends KV> T ready(T kv) {
+		kv.client.tokenEvent(StandInVault.login());
+		kv.tokenEvent(StandInVault.login());
+		return kv;
+	}
+
+	@Test
+	public void wallClockScalesWithConcurrency() throws Exception {
+		try (StandInVault vault = StandInVault.secrets(LATENCY)) {
+			Networking net = new Networking(NetworkingConfig.builder().coalesceReads(false).build());
+			KVv2 kv = ready(new KVv2(vault.config().build(), net));
+			List<String> paths = paths(PATHS);
+
+			kv.kvReadAll(paths, 8, 30, TimeUnit.SECONDS); // warm up the connection pool
+
+			long serial = 0, widest = 0;
+			StringBuilder millis = new StringBuilder("concurrency  millis for " + PATHS + " reads");
+			for (int concurrency : new int[] { 1, 4, 16, 64 }) {
+				BulkReadResult result = kv.kvReadAll(paths, concurrency, 30, TimeUnit.SECONDS);
+				assertEquals(PATHS, result.results().size(), result.toString());
+				millis.append(String.format("%n%11d  %6d", concurrency, result.elapsedMillis()));
+				if (concurrency == 1) serial = result.elapsedMillis();
+				widest = result.elapsedMillis();
+			}
+			assertTrue(widest * 4 < serial, "expected wall clock to fall with concurrency:\n" + millis);
+		}
+	}
+
+	@Test
+	public void failuresAreReportedPerPath() throws Exception {
+		try (StandInVault vault = new StandInVault(0, (method, path, query, body) -> path.contains("missing")
+				? new StandInVault.Reply(404, "{\"errors\":[]}")
+				: new StandInVault.Reply(200, new JSONObject().put("data", new JSONObject().put("path", path)).toString()))) {
+			KVv1 kv = ready(new KVv1(vault.config().build(), new Networking()));
+			List<String> paths = paths(20);
+			paths.add("app/missing-1");
+			paths.add("app/missing-2");
+
+			BulkReadResult result = kv.kvReadAll(paths);
+			assertEquals(20, result.results().size());
+			assertEquals(2, result.errors().size());
+			assertNotNull(result.error("app/missing-1"));
+			assertEquals("/v1/toke-kv1/app/secret-3", new DataResponseDecorator(result.get("app/secret-3")).map().get("path"));
+		}
+	}
+
+	@Test
+	public void deadlineBoundsTheBatch() throws Exception {
+		try (StandInVault vault = StandInVault.secrets(2000)) {
+			KVv2 kv = ready(new KVv2(vault.config().build(), new Networking()));
+			long start = System.nanoTime();
+			BulkReadResult result = kv.kvReadAll(paths(50), 10, 200, TimeUnit.MILLISECONDS);
+			long millis = (System.nanoTime() - start) / 1000000;
+			assertTrue(millis < 1500, "deadline not honoured: " + millis + "ms");
+			assertEquals(50, result.errors().size());
+			assertTrue(result.results().isEmpty());
+		}
+	}
+
+}
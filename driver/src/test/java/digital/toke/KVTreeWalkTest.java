@@ -0,0 +1,135 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import digital.toke.accessor.Toke;
+import okhttp3.HttpUrl;
+
+/**
+ * Walks a generated tree of 10 x 100 directories holding 100 secrets each, 100,000 leaves in all.
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class KVTreeWalkTest {
+
+	static StandInVault.Reply keys(int count, String prefix, boolean dirs) {
+		JSONArray keys = new JSONArray();
+		for (int i = 0; i < count; i++) {
+			keys.put(prefix + i + (dirs ? "/" : ""));
+		}
+		return new StandInVault.Reply(200, new JSONObject().put("data", new JSONObject().put("keys", keys)).toString());
+	}
+
+	static StandInVault tree() throws Exception {
+		return new StandInVault(0, (method, path, query, body) -> {
+			String rel = path.substring(path.indexOf("/metadata") + "/metadata".length());
+			int depth = rel.replaceAll("[^/]", "").length();
+			if (depth <= 1) return keys(10, "d", true); // "" or "/"
+			if (depth == 2) return keys(100, "e", true);
+			return keys(100, "secret-", false);
+		});
+	}
+
+	static KVv2 kv(StandInVault vault) {
+		Networking net = new Networking();
+		KVv2 kv = new KVv2(vault.config().build(), net);
+		net.tokenEvent(StandInVault.login());
+		kv.tokenEvent(StandInVault.login());
+		return kv;
+	}
+
+	@Test
+	public void walksWholeMount() throws Exception {
+		try (StandInVault vault = tree()) {
+			AtomicLong seen = new AtomicLong();
+			AtomicLong sample = new AtomicLong();
+			TreeWalk walk = kv(vault).kvWalk("", path -> {
+				seen.incrementAndGet();
+				if (path.equals("d3/e42/secret-7")) sample.incrementAndGet();
+			}, 32, 60, TimeUnit.SECONDS);
+
+			assertTrue(walk.isComplete());
+			assertTrue(walk.errors().isEmpty());
+			assertEquals(100000, seen.get());
+			assertEquals(100000, walk.leaves());
+			assertEquals(1 + 10 + 1000, walk.directories());
+			assertEquals(1, sample.get());
+		}
+	}
+
+	@Test
+	public void failedDirectoriesDoNotStopTheWalk() throws Exception {
+		try (StandInVault vault = new StandInVault(0, (method, path, query, body) -> {
+			if (path.endsWith("/broken/")) return new StandInVault.Reply(500, "{\"errors\":[\"boom\"]}");
+			if (path.endsWith("/app/")) return new StandInVault.Reply(200,
+					new JSONObject().put("data", new JSONObject().put("keys", new JSONArray().put("a").put("broken/").put("b"))).toString());
+			return new StandInVault.Reply(404, "{\"errors\":[]}");
+		})) {
+			AtomicLong seen = new AtomicLong();
+			TreeWalk walk = kv(vault).kvWalk("app", path -> seen.incrementAndGet());
+			assertTrue(walk.isComplete());
+			assertEquals(2, seen.get());
+			assertEquals(1, walk.errors().size());
+			assertTrue(walk.errors().containsKey("app/broken/"));
+		}
+	}
+
+	@Test
+	public void callsWhichCompleteAtOnceAndThrowingConsumersAreHandled() throws Exception {
+		// answers without a round trip, as for a call rejected before it is sent: the root holds 20000 empty 
+		// directories and three secrets
+		JSONArray rootKeys = new JSONArray().put("a").put("bad").put("b");
+		for (int i = 0; i < 20000; i++) rootKeys.put("d" + i + "/");
+		Toke root = new Toke(200, true, new JSONObject().put("data", new JSONObject().put("keys", rootKeys)).toString());
+		Networking net = new Networking() {
+			@Override
+			public CompletableFuture<Toke> listAsync(HttpUrl url) {
+				return CompletableFuture.completedFuture(url.encodedPath().endsWith("/metadata") ? root
+						: new Toke(404, false, "{\"errors\":[]}"));
+			}
+		};
+		KVv2 kv = new KVv2(TokeDriverConfig.builder().proto("http").host("127.0.0.1").port(8200).kv2Name("toke-kv2").build(), net);
+		kv.tokenEvent(StandInVault.login());
+
+		AtomicLong seen = new AtomicLong();
+		TreeWalk walk = kv.kvWalk("", path -> {
+			if (path.equals("bad")) throw new IllegalStateException("consumer failed");
+			seen.incrementAndGet();
+		}, 8, 30, TimeUnit.SECONDS);
+
+		assertTrue(walk.isComplete());
+		assertEquals(2, seen.get());
+		assertEquals(1 + 20000, walk.directories());
+		assertEquals(1, walk.errors().size());
+		assertTrue(walk.errors().containsKey("bad"));
+	}
+
+	@Test
+	public void kv1ListReturnsKeys() throws Exception {
+		try (StandInVault vault = new StandInVault(0, (method, path, query, body) -> keys(3, "k", false))) {
+			Networking net = new Networking();
+			KVv1 kv = new KVv1(vault.config().build(), net);
+			net.tokenEvent(StandInVault.login());
+			kv.tokenEvent(StandInVault.login());
+			List<String> keys = kv.list("app");
+			assertEquals(3, keys.size());
+			assertEquals("k0", keys.get(0));
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import digital.toke.accessor.DataResponseDecorator;
+import digital.toke.accessor.Toke;
+import digital.toke.exception.ReadException;
+
+public class KVv2AsyncTest {
+
+	@Test
+	public void manyReadsInFlight() throws Exception {
+		try (StandInVault vault = StandInVault.secrets(50)) {
+			Networking net = new Networking();
+			KVv2 kv = new KVv2(vault.config().build(), net);
+			net.tokenEvent(StandInVault.login());
+			kv.tokenEvent(StandInVault.login());
+
+			long start = System.nanoTime();
+			List<CompletableFuture<Toke>> reads = new ArrayList<CompletableFuture<Toke>>();
+			for (int i = 0; i < 200; i++) {
+				reads.add(kv.kvReadAsync("app/secret-" + i));
+			}
+			CompletableFuture.allOf(reads.toArray(new CompletableFuture[0])).get();
+			long millis = (System.nanoTime() - start) / 1000000;
+
+			assertEquals("/v1/toke-kv2/data/app/secret-7", new DataResponseDecorator(reads.get(7).get()).map().get("path"));
+			// 200 sequential calls would take 10 seconds against a 50ms server
+			assertTrue(millis < 5000, "reads were not overlapped: " + millis + "ms");
+		}
+	}
+
+	@Test
+	public void statusChecksCompleteExceptionally() throws Exception {
+		try (StandInVault vault = new StandInVault(0,
+				(method, path, query, body) -> new StandInVault.Reply(404, new JSONObject().put("errors", new String[0]).toString()))) {
+			Networking net = new Networking();
+			KVv2 kv = new KVv2(vault.config().build(), net);
+			net.tokenEvent(StandInVault.login());
+			kv.tokenEvent(StandInVault.login());
+			try {
+				kv.kvReadAsync("missing").get();
+				fail("expected a ReadException");
+			} catch (ExecutionException x) {
+				assertTrue(x.getCause() instanceof ReadException);
+			}
+		}
+	}
+
+}
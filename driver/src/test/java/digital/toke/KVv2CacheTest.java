@@ -0,0 +1,75 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.accessor.Toke;
+import digital.toke.cache.SecretCacheConfig;
+
+public class KVv2CacheTest {
+
+	KVv2 kv(StandInVault vault, SecretCacheConfig cacheConfig) {
+		Networking net = new Networking();
+		KVv2 kv = new KVv2(vault.config().kv2Cache(cacheConfig).build(), net);
+		net.tokenEvent(StandInVault.login());
+		kv.tokenEvent(StandInVault.login());
+		return kv;
+	}
+
+	@Test
+	public void servesStaleWhileVaultIsFailing() throws Exception {
+		try (StandInVault vault = StandInVault.secrets(0)) {
+			KVv2 kv = kv(vault, SecretCacheConfig.builder().ttl(50, TimeUnit.MILLISECONDS)
+					.maxStale(1, TimeUnit.MINUTES).build());
+			assertFalse(kv.kvRead("app/db").stale);
+
+			StandInVault.Responder good = vault.responder;
+			vault.responder = (method, path, query, body) -> new StandInVault.Reply(503, "{\"errors\":[\"Vault is sealed\"]}");
+			Thread.sleep(60);
+			Toke stale = kv.kvRead("app/db");
+			assertTrue(stale.stale);
+			assertTrue(stale.successful);
+			assertFalse(kv.client.health().isAvailable());
+
+			// while vault is known to be down, nothing more is sent
+			int sent = vault.requests();
+			assertTrue(kv.kvReadAsync("app/db").get().stale);
+			assertEquals(sent, vault.requests());
+			assertEquals(2, kv.cache().staleHits());
+
+			vault.responder = good;
+			kv.client.health().callSucceeded();
+			assertFalse(kv.kvRead("app/db").stale);
+		}
+	}
+
+	@Test
+	public void hotEntriesAreRefreshedAhead() throws Exception {
+		try (StandInVault vault = StandInVault.secrets(0)) {
+			KVv2 kv = kv(vault, SecretCacheConfig.builder().ttl(200, TimeUnit.MILLISECONDS).refreshAhead(0.5).build());
+			kv.kvRead("app/db");
+			assertEquals(1, vault.requests());
+			Thread.sleep(120);
+			kv.kvRead("app/db"); // a hit, which also triggers the refresh
+			long deadline = System.currentTimeMillis() + 2000;
+			while (vault.requests() < 2 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			assertEquals(2, vault.requests());
+			assertEquals(1, kv.cache().refreshes());
+			Thread.sleep(120); // past the original ttl, but the refreshed entry is still good
+			kv.kvRead("app/db");
+			assertEquals(2, vault.requests());
+		}
+	}
+
+}
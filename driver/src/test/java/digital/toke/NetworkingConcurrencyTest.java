@@ -0,0 +1,115 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.accessor.Toke;
+import digital.toke.net.SingleFlight;
+
+/**
+ * Benchmark for the request path in Networking: with a fixed server latency, throughput should grow with
+ * the number of calling threads instead of being capped at 1/RTT.
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class NetworkingConcurrencyTest {
+
+	static final long LATENCY = 10; // ms per request on the stand-in server
+	static final int REQUESTS_PER_THREAD = 25;
+
+	@Test
+	public void throughputScalesWithThreads() throws Exception {
+		try (StandInVault vault = StandInVault.secrets(LATENCY)) {
+			// coalescing off, every call must reach the server
+			Networking net = new Networking(NetworkingConfig.builder().maxRequestsPerHost(32).coalesceReads(false).build());
+			net.tokenEvent(StandInVault.login());
+			String url = vault.url("/v1/toke-kv2/data/bench");
+
+			run(net, url, 4); // warm up the connection pool
+
+			double single = 0, widest = 0;
+			StringBuilder rates = new StringBuilder("threads  requests/sec");
+			for (int threads : new int[] { 1, 2, 4, 8, 16 }) {
+				double rate = run(net, url, threads);
+				rates.append(String.format("%n%7d  %12.1f", threads, rate));
+				if (threads == 1) single = rate;
+				widest = rate;
+			}
+			// 16 threads against a 10ms server should approach 16x, allow plenty of head room for slow CI boxes
+			assertTrue(widest > single * 4, "expected throughput to scale with threads:\n" + rates);
+		}
+	}
+
+	@Test
+	public void identicalReadsAreCoalesced() throws Exception {
+		try (StandInVault vault = StandInVault.secrets(200)) {
+			Networking net = new Networking();
+			net.tokenEvent(StandInVault.login());
+			String url = vault.url("/v1/toke-kv2/data/herd");
+
+			int threads = 32;
+			CountDownLatch go = new CountDownLatch(1);
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
+			List<Future<Toke>> results = new ArrayList<Future<Toke>>();
+			for (int i = 0; i < threads; i++) {
+				results.add(pool.submit(() -> {
+					go.await();
+					return net.get(url);
+				}));
+			}
+			go.countDown();
+			for (Future<Toke> f : results) {
+				assertTrue(f.get().successful);
+			}
+			pool.shutdownNow();
+
+			SingleFlight<Toke> stats = net.coalescer();
+			assertEquals(threads, stats.calls());
+			assertEquals(vault.requests(), stats.executions());
+			assertTrue(stats.merged() > 0, "expected some calls to be merged: " + stats);
+			assertTrue(vault.requests() < threads / 2, "too many requests reached the server: " + vault.requests());
+		}
+	}
+
+	private double run(Networking net, String url, int threads) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			long start = System.nanoTime();
+			for (int i = 0; i < threads; i++) {
+				results.add(pool.submit(() -> {
+					int ok = 0;
+					for (int j = 0; j < REQUESTS_PER_THREAD; j++) {
+						Toke toke = net.get(url);
+						if (toke.successful) ok++;
+					}
+					return ok;
+				}));
+			}
+			int ok = 0;
+			for (Future<Integer> f : results) {
+				ok += f.get();
+			}
+			long elapsed = System.nanoTime() - start;
+			assertEquals(threads * REQUESTS_PER_THREAD, ok);
+			return ok / (elapsed / 1e9);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+}
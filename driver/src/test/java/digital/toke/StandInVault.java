@@ -0,0 +1,165 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+
+import digital.toke.event.EventEnum;
+import digital.toke.event.TokenEvent;
+
+/**
+ * A local stand-in for a vault server, used by the driver's unit tests and benchmarks. It answers every
+ * request after a fixed latency using a pluggable Responder, and counts what it has seen.
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ *
+ */
+public class StandInVault implements AutoCloseable {
+
+	static {
+		// otherwise Nagle and delayed ACKs add ~40ms to every exchange and swamp the configured latency
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	public interface Responder {
+		Reply respond(String method, String path, String query, String body);
+	}
+
+	public static class Reply {
+		final int code;
+		final String body;
+		final Map<String, String> headers = new LinkedHashMap<String, String>();
+
+		public Reply(int code, String body) {
+			this.code = code;
+			this.body = body;
+		}
+
+		public Reply header(String name, String value) {
+			headers.put(name, value);
+			return this;
+		}
+	}
+
+	final HttpServer server;
+	final ExecutorService pool;
+	final AtomicInteger requests = new AtomicInteger();
+	volatile long latencyMillis;
+	volatile Responder responder;
+	volatile Headers lastHeaders = new Headers();
+
+	public StandInVault(long latencyMillis, Responder responder) throws IOException {
+		this.latencyMillis = latencyMillis;
+		this.responder = responder;
+		pool = Executors.newCachedThreadPool();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 512);
+		server.setExecutor(pool);
+		server.createContext("/", exchange -> {
+			requests.incrementAndGet();
+			lastHeaders = exchange.getRequestHeaders();
+			String body;
+			try (InputStream in = exchange.getRequestBody()) {
+				body = readAll(in);
+			}
+			if (latencyMillis > 0) {
+				try {
+					Thread.sleep(latencyMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			Reply reply = this.responder.respond(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+					exchange.getRequestURI().getQuery(), body);
+			byte[] bytes = reply.body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			for (Map.Entry<String, String> header : reply.headers.entrySet()) {
+				exchange.getResponseHeaders().add(header.getKey(), header.getValue());
+			}
+			exchange.sendResponseHeaders(reply.code, reply.code == 204 ? -1 : bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				if (reply.code != 204) out.write(bytes);
+			}
+		});
+		server.start();
+	}
+
+	/**
+	 * Answers every request with a small KVv2-style secret
+	 */
+	public static StandInVault secrets(long latencyMillis) throws IOException {
+		return new StandInVault(latencyMillis, (method, path, query, body) -> new Reply(200,
+				new JSONObject().put("data", new JSONObject().put("data", new JSONObject().put("path", path))
+						.put("metadata", new JSONObject().put("version", 1))).toString()));
+	}
+
+	public int port() {
+		return server.getAddress().getPort();
+	}
+
+	public String url(String path) {
+		return "http://127.0.0.1:" + port() + path;
+	}
+
+	public int requests() {
+		return requests.get();
+	}
+
+	/**
+	 * @return the values of a header on the most recent request
+	 */
+	public List<String> lastHeader(String name) {
+		List<String> values = lastHeaders.get(name);
+		return values == null ? Collections.<String>emptyList() : values;
+	}
+
+	public TokeDriverConfig.Builder config() {
+		return TokeDriverConfig.builder().proto("http").host("127.0.0.1").port(port()).kvName("toke-kv1")
+				.kv2Name("toke-kv2");
+	}
+
+	/**
+	 * A token good enough to make the service classes and Networking ready for calls
+	 */
+	public static TokenEvent login() {
+		JSONObject auth = new JSONObject().put("client_token", "s.standin").put("accessor", "standin-accessor")
+				.put("policies", new JSONArray().put("default"));
+		Token token = new Token(new LoginConfig(AuthType.TOKEN), new JSONObject().put("auth", auth), true);
+		return new TokenEvent(StandInVault.class, token, EventEnum.LOGIN);
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		pool.shutdownNow();
+	}
+
+	private static String readAll(InputStream in) throws IOException {
+		StringBuilder buf = new StringBuilder();
+		byte[] chunk = new byte[4096];
+		int n;
+		while ((n = in.read(chunk)) != -1) {
+			buf.append(new String(chunk, 0, n, StandardCharsets.UTF_8));
+		}
+		return buf.toString();
+	}
+
+}
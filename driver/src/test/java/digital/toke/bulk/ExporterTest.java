@@ -0,0 +1,126 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.bulk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import digital.toke.DriverExecutors;
+import digital.toke.ExecutionMode;
+import digital.toke.HedgeConfig;
+import digital.toke.KVv2;
+import digital.toke.Networking;
+import digital.toke.NetworkingConfig;
+import digital.toke.StandInVault;
+
+public class ExporterTest {
+
+	static final int DIRS = 10, SECRETS = 200;
+
+	/**
+	 * A KVv2 mount of DIRS directories holding SECRETS secrets each
+	 */
+	static StandInVault mount() throws Exception {
+		return new StandInVault(2, (method, path, query, body) -> {
+			if (query != null && query.contains("list=true")) {
+				boolean root = path.endsWith("/metadata") || path.endsWith("/metadata/");
+				JSONArray keys = new JSONArray();
+				for (int i = 0; i < (root ? DIRS : SECRETS); i++) {
+					keys.put(root ? "dir" + i + "/" : "secret-" + i);
+				}
+				return new StandInVault.Reply(200, new JSONObject().put("data", new JSONObject().put("keys", keys)).toString());
+			}
+			JSONObject data = new JSONObject().put("data", new JSONObject().put("path", path))
+					.put("metadata", new JSONObject().put("version", 4).put("created_time", "2019-01-01T00:00:00Z"));
+			return new StandInVault.Reply(200, new JSONObject().put("data", data).toString());
+		});
+	}
+
+	static KVv2 kv(StandInVault vault) {
+		Networking net = new Networking();
+		KVv2 kv = new KVv2(vault.config().build(), net);
+		net.tokenEvent(StandInVault.login());
+		kv.tokenEvent(StandInVault.login());
+		return kv;
+	}
+
+	@Test
+	public void exportsGzippedNdjson() throws Exception {
+		try (StandInVault vault = mount()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ExportStats stats = new Exporter(kv(vault), ExportConfig.builder().concurrency(32).queueDepth(50).gzip(true).build())
+					.export("", out);
+
+			assertTrue(stats.isComplete());
+			assertEquals(DIRS * SECRETS, stats.exported());
+			assertEquals(0, stats.failed());
+
+			int lines = 0;
+			try (BufferedReader in = new BufferedReader(new InputStreamReader(
+					new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					JSONObject json = new JSONObject(line);
+					assertEquals(4, json.getInt("version"));
+					assertEquals("/v1/toke-kv2/data/" + json.getString("path"), json.getJSONObject("data").getString("path"));
+					assertEquals("2019-01-01T00:00:00Z", json.getJSONObject("metadata").getString("created_time"));
+					lines++;
+				}
+			}
+			assertEquals(DIRS * SECRETS, lines);
+		}
+	}
+
+	@Test
+	public void walkDoesNotTieUpTheWorkersTheReadsNeed() throws Exception {
+		try (StandInVault vault = mount()) {
+			// hedged reads run on the two worker threads, the same ones the walk's list calls complete on
+			Networking net = new Networking(NetworkingConfig.builder().hedge(HedgeConfig.builder().enabled(true).build()).build(),
+					DriverExecutors.newExecutor(ExecutionMode.PLATFORM, 2, "toke-worker"));
+			KVv2 kv = new KVv2(vault.config().build(), net);
+			net.tokenEvent(StandInVault.login());
+			kv.tokenEvent(StandInVault.login());
+
+			ExportStats stats = new Exporter(kv, ExportConfig.builder().concurrency(8).queueDepth(5)
+					.timeout(30, TimeUnit.SECONDS).build()).export("", new ByteArrayOutputStream());
+			assertTrue(stats.isComplete());
+			assertEquals(DIRS * SECRETS, stats.exported());
+			net.close();
+		}
+	}
+
+	@Test
+	public void exportsToAFileChannel() throws Exception {
+		Path file = Files.createTempFile("toke-export", ".ndjson");
+		try (StandInVault vault = mount();
+				FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			ExportStats stats = new Exporter(kv(vault), ExportConfig.builder().build()).export("dir3", channel);
+			assertEquals(SECRETS, stats.exported());
+			List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+			assertEquals(SECRETS, lines.size());
+			assertTrue(new JSONObject(lines.get(0)).getString("path").startsWith("dir3/secret-"));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+}
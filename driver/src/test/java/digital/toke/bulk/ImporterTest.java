@@ -0,0 +1,171 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.bulk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import digital.toke.KVv2;
+import digital.toke.Networking;
+import digital.toke.StandInVault;
+import digital.toke.accessor.Toke;
+import digital.toke.exception.WriteException;
+
+public class ImporterTest {
+
+	static final String DATA = "/v1/toke-kv2/data/";
+
+	final Map<String, JSONObject> stored = new ConcurrentHashMap<String, JSONObject>();
+	final AtomicBoolean failing = new AtomicBoolean();
+
+	/**
+	 * Stores KVv2 writes, honours cas=0, and fails writes of secret-700 while failing is set
+	 */
+	StandInVault mount() throws Exception {
+		return new StandInVault(1, (method, path, query, body) -> {
+			String key = path.substring(DATA.length());
+			if (!method.equals("POST")) return new StandInVault.Reply(404, "{\"errors\":[]}");
+			if (failing.get() && key.equals("secret-700")) return new StandInVault.Reply(500, "{\"errors\":[\"boom\"]}");
+			JSONObject json = new JSONObject(body);
+			JSONObject options = json.optJSONObject("options");
+			if (options != null && options.optInt("cas", -1) == 0 && stored.containsKey(key)) {
+				return new StandInVault.Reply(400, "{\"errors\":[\"check-and-set parameter did not match the current version\"]}");
+			}
+			stored.put(key, json.getJSONObject("data"));
+			return new StandInVault.Reply(200, "{\"data\":{\"version\":1}}");
+		});
+	}
+
+	static KVv2 kv(StandInVault vault) {
+		Networking net = new Networking();
+		KVv2 kv = new KVv2(vault.config().build(), net);
+		net.tokenEvent(StandInVault.login());
+		kv.tokenEvent(StandInVault.login());
+		return kv;
+	}
+
+	static ByteArrayInputStream records(int count) {
+		return records(count, 3);
+	}
+
+	static ByteArrayInputStream records(int count, int version) {
+		StringBuilder buf = new StringBuilder();
+		for (int i = 1; i <= count; i++) {
+			buf.append(new JSONObject().put("path", "secret-" + i).put("version", version)
+					.put("data", new JSONObject().put("n", i))).append('\n');
+		}
+		return new ByteArrayInputStream(buf.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void importsConcurrentlyAndHonoursCas() throws Exception {
+		try (StandInVault vault = mount()) {
+			ImportStats stats = new Importer(kv(vault), ImportConfig.builder().writers(16).build()).importFrom(records(1000));
+			assertEquals(1000, stats.written());
+			assertEquals(1000, stored.size());
+			assertEquals(42, stored.get("secret-42").getInt("n"));
+			assertEquals(1000, stats.checkpoint());
+
+			stored.put("secret-42", new JSONObject().put("n", -1));
+			stats = new Importer(kv(vault), ImportConfig.builder().cas(true).build()).importFrom(records(1000));
+			assertEquals(0, stats.written());
+			assertEquals(1000, stats.existing());
+			assertEquals(-1, stored.get("secret-42").getInt("n"));
+		}
+	}
+
+	@Test
+	public void resumesFromCheckpoint() throws Exception {
+		Path checkpoint = Files.createTempFile("toke-import", ".checkpoint");
+		Files.delete(checkpoint);
+		try (StandInVault vault = mount()) {
+			ImportConfig config = ImportConfig.builder().writers(8).checkpoint(checkpoint).checkpointEvery(50).build();
+
+			failing.set(true);
+			ImportStats first = new Importer(kv(vault), config).importFrom(records(1000));
+			assertEquals(1, first.failed());
+			assertEquals(699, first.checkpoint());
+			assertTrue(Files.exists(checkpoint));
+
+			failing.set(false);
+			stored.clear();
+			ImportStats second = new Importer(kv(vault), config).importFrom(records(1000));
+			assertEquals(699, second.resumedAfter());
+			assertEquals(301, second.written());
+			assertEquals(301, stored.size());
+			assertEquals(1000, second.checkpoint());
+		} finally {
+			Files.deleteIfExists(checkpoint);
+		}
+	}
+
+	@Test
+	public void writerExceptionsHoldTheCheckpointBack() throws Exception {
+		try (StandInVault vault = mount()) {
+			Networking net = new Networking();
+			KVv2 kv = new KVv2(vault.config().build(), net) {
+				@Override
+				public Toke kvWrite(String path, Map<String, Object> data) throws WriteException {
+					if (path.equals("secret-700")) throw new IllegalStateException("boom");
+					return super.kvWrite(path, data);
+				}
+			};
+			net.tokenEvent(StandInVault.login());
+			kv.tokenEvent(StandInVault.login());
+
+			ImportStats stats = new Importer(kv, ImportConfig.builder().writers(8).build()).importFrom(records(1000));
+			assertEquals(1, stats.failed());
+			assertEquals(999, stats.written());
+			assertEquals(699, stats.checkpoint());
+		}
+	}
+
+	@Test
+	public void refusesACheckpointWrittenForOtherInput() throws Exception {
+		Path checkpoint = Files.createTempFile("toke-import", ".checkpoint");
+		Files.delete(checkpoint);
+		try (StandInVault vault = mount()) {
+			ImportConfig config = ImportConfig.builder().checkpoint(checkpoint).build();
+
+			failing.set(true);
+			assertEquals(699, new Importer(kv(vault), config).importFrom(records(1000)).checkpoint());
+			failing.set(false);
+			stored.clear();
+
+			// same number of lines, different content; and fewer lines than the checkpoint covers
+			assertThrows(IOException.class, () -> new Importer(kv(vault), config).importFrom(records(1000, 4)));
+			assertThrows(IOException.class, () -> new Importer(kv(vault), config).importFrom(records(500)));
+			assertEquals(0, stored.size());
+
+			assertEquals(301, new Importer(kv(vault), config).importFrom(records(1000)).written());
+		} finally {
+			Files.deleteIfExists(checkpoint);
+		}
+	}
+
+	@Test
+	public void rateLimitSpacesWrites() throws Exception {
+		try (StandInVault vault = mount()) {
+			ImportStats stats = new Importer(kv(vault), ImportConfig.builder().ratePerSecond(200).build()).importFrom(records(60));
+			assertEquals(60, stats.written());
+			// 60 writes at 200/s cannot finish in under ~300ms
+			assertTrue(stats.elapsedMillis() >= 250, "rate limit not applied: " + stats);
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.accessor.Toke;
+
+public class SecretCacheTest {
+
+	final AtomicLong now = new AtomicLong(1000);
+
+	SecretCache cache(SecretCacheConfig config) {
+		return new SecretCache(config, now::get);
+	}
+
+	static Toke ok(String body) {
+		return new Toke(200, true, body);
+	}
+
+	@Test
+	public void latestExpiresButVersionsDoNot() {
+		SecretCache cache = cache(SecretCacheConfig.builder().ttl(10, TimeUnit.SECONDS).build());
+		cache.put("secret", "app/db", SecretCache.LATEST, ok("{}"), cache.epoch());
+		cache.put("secret", "app/db", 3, ok("{}"), cache.epoch());
+
+		assertNotNull(cache.get("/secret", "/app/db", SecretCache.LATEST));
+		now.addAndGet(10001);
+		assertNull(cache.get("secret", "app/db", SecretCache.LATEST));
+		assertNotNull(cache.get("secret", "app/db", 3));
+		assertEquals(1, cache.expirations());
+	}
+
+	@Test
+	public void writesInvalidateEveryVersion() {
+		SecretCache cache = cache(SecretCacheConfig.builder().build());
+		long epoch = cache.epoch();
+		cache.put("secret", "app/db", SecretCache.LATEST, ok("{}"), epoch);
+		cache.put("secret", "app/db", 1, ok("{}"), epoch);
+		cache.invalidate("secret", "app/db");
+		assertNull(cache.get("secret", "app/db", SecretCache.LATEST));
+		assertNull(cache.get("secret", "app/db", 1));
+		assertEquals(0, cache.size());
+
+		// a read which started before the write must not repopulate the cache
+		cache.put("secret", "app/db", SecretCache.LATEST, ok("{}"), epoch);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void writesToOtherPathsDoNotDiscardReadsInFlight() {
+		SecretCache cache = cache(SecretCacheConfig.builder().build());
+		long epoch = cache.epoch();
+		for(int i = 0; i < 100; i++) cache.invalidate("secret", "other/" + i);
+		cache.put("secret", "app/db", SecretCache.LATEST, ok("{}"), epoch);
+		assertNotNull(cache.get("secret", "app/db", SecretCache.LATEST));
+
+		// but clear() discards them all
+		epoch = cache.epoch();
+		cache.clear();
+		cache.put("secret", "app/db", SecretCache.LATEST, ok("{}"), epoch);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void leastRecentlyUsedPathIsEvicted() {
+		SecretCache cache = cache(SecretCacheConfig.builder().maxEntries(2).build());
+		cache.put("secret", "a", SecretCache.LATEST, ok("{}"), cache.epoch());
+		cache.put("secret", "b", SecretCache.LATEST, ok("{}"), cache.epoch());
+		cache.get("secret", "a", SecretCache.LATEST);
+		cache.put("secret", "c", SecretCache.LATEST, ok("{}"), cache.epoch());
+
+		assertNotNull(cache.get("secret", "a", SecretCache.LATEST));
+		assertNull(cache.get("secret", "b", SecretCache.LATEST));
+		assertNotNull(cache.get("secret", "c", SecretCache.LATEST));
+		assertEquals(1, cache.evictions());
+	}
+
+	@Test
+	public void notFoundIsCachedBriefly() {
+		SecretCache cache = cache(SecretCacheConfig.builder().negativeTtl(1, TimeUnit.SECONDS).build());
+		cache.putNotFound("secret", "gone", SecretCache.LATEST, new Toke(404, false, "{\"errors\":[]}"), cache.epoch());
+		SecretCache.Entry hit = cache.get("secret", "gone", SecretCache.LATEST);
+		assertTrue(hit.isNegative());
+		assertEquals(404, hit.toke().code);
+		now.addAndGet(1001);
+		assertNull(cache.get("secret", "gone", SecretCache.LATEST));
+		assertEquals(1, cache.negativeHits());
+	}
+
+}
@@ -0,0 +1,193 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.KVv1;
+import digital.toke.KVv2;
+import digital.toke.Networking;
+import digital.toke.NetworkingConfig;
+import digital.toke.RetryConfig;
+import digital.toke.StandInVault;
+import digital.toke.TokeDriverConfig;
+import digital.toke.accessor.Toke;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+public class VaultMetricsTest {
+
+	static final HttpUrl BASE = HttpUrl.parse("http://vault:8200/v1/");
+	static final RequestBody BODY = RequestBody.create(Networking.JSON, "{}");
+
+	@Test
+	public void bucketsAreWithinThreePercent() {
+		for(long micros = 0; micros < (1L << LatencyHistogram.MAX_BITS); micros = micros * 3 / 2 + 1) {
+			int index = LatencyHistogram.index(micros);
+			assertTrue(LatencyHistogram.lowest(index) <= micros && micros <= LatencyHistogram.highest(index), "bucket of "+micros);
+			assertTrue(LatencyHistogram.highest(index) - LatencyHistogram.lowest(index) <= micros / 32, "width at "+micros);
+		}
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(Long.MAX_VALUE / 1000));
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		for(int i = 1; i <= 1000; i++) histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+		assertEquals(1000, histogram.count());
+		assertEquals(500, histogram.percentileMillis(50), 500 * 0.035);
+		assertEquals(990, histogram.percentileMillis(99), 990 * 0.035);
+		assertEquals(1000, histogram.maxMillis(), 0.001);
+		assertEquals(500.5, histogram.meanMillis(), 0.001);
+	}
+
+	@Test
+	public void namesOperations() {
+		assertEquals("kv2.read", VaultMetrics.operation(get("secret/data/app")));
+		assertEquals("kv2.write", VaultMetrics.operation(post("secret/data/app")));
+		assertEquals("kv2.list", VaultMetrics.operation(get("secret/metadata/app/?list=true")));
+		assertEquals("kv2.destroy", VaultMetrics.operation(post("secret/destroy/app")));
+		assertEquals("kv1.read", VaultMetrics.operation(get("other/app")));
+		assertEquals("kv1.write", VaultMetrics.operation(post("other/app")));
+		assertEquals("kv1.list", VaultMetrics.operation(get("other/?list=true")));
+		assertEquals("auth.renew-self", VaultMetrics.operation(post("auth/token/renew-self")));
+		assertEquals("auth.userpass.login", VaultMetrics.operation(post("auth/userpass/login/bob")));
+		assertEquals("sys.capabilities", VaultMetrics.operation(post("sys/capabilities")));
+		// the same name object each time, nothing is built per call
+		assertTrue(VaultMetrics.operation(get("sys/health")) == VaultMetrics.operation(get("sys/health")));
+	}
+
+	@Test
+	public void namesCallsAfterTheConfiguredMounts() {
+		Networking net = new Networking();
+		TokeDriverConfig config = TokeDriverConfig.builder().kvName("secret").kv2Name("/team/kv").build();
+		new KVv1(config, net);
+		new KVv2(config, net);
+		VaultMetrics metrics = net.metrics();
+
+		// a KVv1 secret which happens to be called config or data is no KVv2 call
+		assertEquals("kv1.read", metrics.operationName(get("secret/config")));
+		assertEquals("kv1.write", metrics.operationName(post("secret/data/app")));
+		assertEquals("kv2.read", metrics.operationName(get("team/kv/data/app")));
+		assertEquals("kv2.read-config", metrics.operationName(get("team/kv/config")));
+		// mounts nobody configured are still guessed
+		assertEquals("kv2.read", metrics.operationName(get("other/data/app")));
+		assertEquals("kv1.read", metrics.operationName(get("other/app")));
+
+		// a mount configured as both cannot be told apart either
+		metrics.kvMount("secret/", 2);
+		assertEquals("kv2.read-config", metrics.operationName(get("secret/config")));
+	}
+
+	@Test
+	public void recordingAllocatesNothing() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		VaultMetrics metrics = new VaultMetrics();
+		Request read = get("secret/data/app");
+		Request renew = post("auth/token/renew-self");
+		for(int i = 0; i < 20000; i++) record(metrics, i % 2 == 0 ? read : renew, i);
+
+		long id = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(id);
+		for(int i = 0; i < 100000; i++) record(metrics, i % 2 == 0 ? read : renew, i);
+		long allocated = threads.getThreadAllocatedBytes(id) - before;
+
+		// an object per call would be 16 bytes or more each; allow some slack for the JIT and the measurement itself
+		assertTrue(allocated < 100000, "recording 100000 calls allocated "+allocated+" bytes");
+		assertEquals(60000, metrics.operation("kv2.read").requests());
+	}
+
+	private static void record(VaultMetrics metrics, Request request, long nanos) {
+		OperationMetrics operation = metrics.metrics(VaultMetrics.operation(request));
+		operation.started();
+		operation.finished(StatusClass.of(200), nanos);
+	}
+
+	@Test
+	public void countsCallsByOperationAndStatus() throws Exception {
+		try (StandInVault vault = new StandInVault(0, (method, path, query, body) ->
+				new StandInVault.Reply(path.contains("missing") ? 404 : 200, "{\"data\":{}}"))) {
+			Networking net = new Networking(NetworkingConfig.builder().coalesceReads(false).retry(RetryConfig.none()).build());
+			net.tokenEvent(StandInVault.login());
+
+			for(int i = 0; i < 5; i++) net.get(vault.url("/v1/secret/data/app"));
+			net.get(vault.url("/v1/secret/data/missing"));
+			net.post(vault.url("/v1/secret/data/app"), "{}");
+
+			VaultMetrics metrics = net.metrics();
+			OperationMetrics read = metrics.operation("kv2.read");
+			assertEquals(6, read.requests());
+			assertEquals(5, read.requests(StatusClass.SUCCESS));
+			assertEquals(1, read.errors());
+			assertEquals(0, read.inFlight());
+			assertNull(read.latency(StatusClass.SERVER_ERROR));
+			assertNotNull(metrics.operation("kv2.write"));
+			assertEquals(7, metrics.requests());
+
+			String text = metrics.prometheus();
+			assertTrue(text.contains("toke_requests_total{operation=\"kv2.read\",status=\"2xx\"} 5\n"), text);
+			assertTrue(text.contains("toke_requests_total{operation=\"kv2.read\",status=\"4xx\"} 1\n"), text);
+			assertTrue(text.contains("toke_request_errors_total{operation=\"kv2.read\"} 1\n"), text);
+			assertTrue(text.contains("toke_request_duration_seconds_bucket{operation=\"kv2.read\",status=\"2xx\",le=\"+Inf\"} 5\n"), text);
+			assertTrue(text.contains("toke_request_duration_seconds_count{operation=\"kv2.write\",status=\"2xx\"} 1\n"), text);
+			assertTrue(text.contains("# TYPE toke_requests_in_flight gauge\n"), text);
+		}
+	}
+
+	@Test
+	public void timesPhasesAndConnectionReuse() throws Exception {
+		try (StandInVault vault = StandInVault.secrets(20)) {
+			Networking net = new Networking(NetworkingConfig.builder().coalesceReads(false).retry(RetryConfig.none())
+					.timingSampleRate(1).build());
+			net.tokenEvent(StandInVault.login());
+
+			Toke first = net.get(vault.url("/v1/secret/data/app"));
+			Toke second = net.get(vault.url("/v1/secret/data/app"));
+			for(int i = 0; i < 3; i++) net.get(vault.url("/v1/secret/data/app"));
+
+			assertNotNull(first.timings);
+			assertEquals(1, first.timings.connections());
+			assertFalse(first.timings.isConnectionReused());
+			assertTrue(second.timings.isConnectionReused());
+			assertEquals(0, second.timings.nanos(Phase.CONNECT));
+			// the stand-in's latency is all server time
+			assertTrue(second.timings.millis(Phase.TTFB) >= 19, second.timings.toString());
+
+			VaultMetrics metrics = net.metrics();
+			assertEquals(1, metrics.connectionsOpened());
+			assertEquals(4, metrics.connectionsReused());
+			assertEquals(0.8, metrics.connectionReuseRatio(), 0.001);
+			assertEquals(1, metrics.phase(Phase.CONNECT).count());
+			assertEquals(5, metrics.phase(Phase.TTFB).count());
+			assertEquals(5, metrics.phase(Phase.BODY).count());
+			assertTrue(metrics.prometheus().contains("toke_http_connections_total{reused=\"true\"} 4\n"));
+
+			Networking unsampled = new Networking(NetworkingConfig.builder().coalesceReads(false).build());
+			unsampled.tokenEvent(StandInVault.login());
+			assertNull(unsampled.get(vault.url("/v1/secret/data/app")).timings);
+		}
+	}
+
+	private static Request get(String path) {
+		return new Request.Builder().url(BASE.resolve(path)).build();
+	}
+
+	private static Request post(String path) {
+		return new Request.Builder().url(BASE.resolve(path)).post(BODY).build();
+	}
+
+}
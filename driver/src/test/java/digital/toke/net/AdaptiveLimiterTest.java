@@ -0,0 +1,185 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.AdaptiveLimitConfig;
+import digital.toke.AdaptiveLimitConfig.Algorithm;
+import digital.toke.Networking;
+import digital.toke.NetworkingConfig;
+import digital.toke.RetryConfig;
+import digital.toke.StandInVault;
+import digital.toke.accessor.Toke;
+import digital.toke.exception.LimitExceededException;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+public class AdaptiveLimiterTest {
+
+	static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	static AdaptiveLimitConfig config(Algorithm algorithm) {
+		return AdaptiveLimitConfig.builder().enabled(true).algorithm(algorithm).initialLimit(20).build();
+	}
+
+	@Test
+	public void algorithmsGrowWhileFlatAndShrinkUnderLoad() {
+		for(Algorithm algorithm : new Algorithm[] {Algorithm.VEGAS, Algorithm.GRADIENT}) {
+			Limit limit = Limit.create(config(algorithm));
+			for(int i = 0; i < 200; i++) limit.update(10 * MS, limit.current(), false);
+			int grown = limit.current();
+			assertTrue(grown > 20, algorithm + " grew to " + grown);
+			// the long-term average catches up eventually, look at the first reaction
+			for(int i = 0; i < 30; i++) limit.update(40 * MS, limit.current(), false);
+			assertTrue(limit.current() < grown, algorithm + " shrank from " + grown + " to " + limit.current());
+		}
+
+		Limit aimd = Limit.create(config(Algorithm.AIMD));
+		aimd.update(10 * MS, 20, false);
+		assertEquals(21, aimd.current());
+		aimd.update(10 * MS, 20, true);
+		assertEquals(18, aimd.current());
+		// not using the limit, no reason to raise it
+		aimd.update(10 * MS, 2, false);
+		assertEquals(18, aimd.current());
+	}
+
+	/**
+	 * A chain whose proceed() makes the next of up to 48 calls through the limiter before answering, so the calls
+	 * are nested on one thread and their concurrency is exact. The server answers those over 16 at once with a 429
+	 */
+	static class Nested implements Interceptor.Chain {
+
+		final Interceptor limiter;
+		final int depth;
+		final AtomicInteger tooMany;
+		final Request request = new Request.Builder().url("http://127.0.0.1:8200/v1/secret/data/app").build();
+
+		Nested(Interceptor limiter, int depth, AtomicInteger tooMany) {
+			this.limiter = limiter;
+			this.depth = depth;
+			this.tooMany = tooMany;
+		}
+
+		@Override
+		public Request request() {
+			return request;
+		}
+
+		@Override
+		public Response proceed(Request request) throws IOException {
+			int concurrent = depth + 1;
+			if(concurrent < 48) {
+				try {
+					limiter.intercept(new Nested(limiter, concurrent, tooMany)).close();
+				} catch (LimitExceededException e) {
+					// turned away, and so are the calls after it
+				}
+			}
+			int code = 200;
+			if(concurrent > 16) {
+				tooMany.incrementAndGet();
+				code = 429;
+			}
+			return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(code).message("")
+					.body(ResponseBody.create(null, "")).build();
+		}
+
+		@Override
+		public Connection connection() {
+			return null;
+		}
+
+		@Override
+		public Call call() {
+			return null;
+		}
+
+		@Override
+		public int connectTimeoutMillis() {
+			return 0;
+		}
+
+		@Override
+		public Interceptor.Chain withConnectTimeout(int timeout, TimeUnit unit) {
+			return this;
+		}
+
+		@Override
+		public int readTimeoutMillis() {
+			return 0;
+		}
+
+		@Override
+		public Interceptor.Chain withReadTimeout(int timeout, TimeUnit unit) {
+			return this;
+		}
+
+		@Override
+		public int writeTimeoutMillis() {
+			return 0;
+		}
+
+		@Override
+		public Interceptor.Chain withWriteTimeout(int timeout, TimeUnit unit) {
+			return this;
+		}
+	}
+
+	/**
+	 * @return the 429s over 40 rounds of 48 calls at once
+	 */
+	static int offer(AdaptiveLimitConfig config) throws Exception {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(config);
+		AtomicInteger tooMany = new AtomicInteger();
+		for(int round = 0; round < 40; round++) {
+			limiter.intercept(new Nested(limiter, 0, tooMany)).close();
+		}
+		return tooMany.get();
+	}
+
+	@Test
+	public void backsOffFromA429Quota() throws Exception {
+		assertEquals(40 * 32, offer(AdaptiveLimitConfig.none()));
+		// without a queue the calls over the limit are turned away rather than sent, AIMD hovers just over the quota
+		int limited = offer(AdaptiveLimitConfig.builder().enabled(true).algorithm(Algorithm.AIMD).initialLimit(20)
+				.queueTimeout(0, TimeUnit.MILLISECONDS).build());
+		assertTrue(limited > 0 && limited < 40 * 32 / 4, "429s " + limited);
+	}
+
+	@Test
+	public void rejectsFastWhenNotQueueing() throws Exception {
+		try (StandInVault vault = new StandInVault(200, (method, path, query, body) -> new StandInVault.Reply(200, "{}"))) {
+			AdaptiveLimitConfig config = AdaptiveLimitConfig.builder().enabled(true).algorithm(Algorithm.AIMD)
+					.limits(1, 1).queueTimeout(0, TimeUnit.MILLISECONDS).build();
+			Networking net = new Networking(NetworkingConfig.builder().coalesceReads(false).retry(RetryConfig.none())
+					.adaptiveLimit(config).build());
+			net.tokenEvent(StandInVault.login());
+			CompletableFuture<Toke> slow = net.getAsync(vault.url("/v1/secret/data/a"));
+			Thread.sleep(50);
+			LimitExceededException x = assertThrows(LimitExceededException.class, () -> net.get(vault.url("/v1/secret/data/b")));
+			assertEquals(1, x.getLimit());
+			assertEquals(200, slow.get().code);
+			assertEquals(1, net.limiter().rejected());
+			// shedding is not held against the server
+			assertTrue(net.health().isAvailable());
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.CircuitBreakerConfig;
+import digital.toke.Networking;
+import digital.toke.NetworkingConfig;
+import digital.toke.RetryConfig;
+import digital.toke.StandInVault;
+import digital.toke.event.CircuitBreakerEvent;
+import digital.toke.exception.CircuitOpenException;
+import digital.toke.exception.DeadlineExceededException;
+import digital.toke.net.CircuitBreaker.State;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+public class CircuitBreakerTest {
+
+	static CircuitBreakerConfig small() {
+		return CircuitBreakerConfig.builder()
+				.windowSize(10)
+				.minimumCalls(4)
+				.failureRateThreshold(0.5)
+				.openDuration(100, TimeUnit.MILLISECONDS)
+				.halfOpenProbes(2)
+				.build();
+	}
+
+	@Test
+	public void opensHalfOpensAndCloses() throws Exception {
+		List<String> seen = new CopyOnWriteArrayList<String>();
+		CircuitBreaker breaker = new CircuitBreaker(small(), (from, to) -> seen.add(from + "->" + to));
+
+		for(int i = 0; i < 3; i++) breaker.record(breaker.acquire(), true, 1);
+		assertEquals(State.CLOSED, breaker.getState());
+		breaker.record(breaker.acquire(), true, 1);
+		assertEquals(State.OPEN, breaker.getState());
+		assertNull(breaker.acquire());
+
+		Thread.sleep(150);
+		State probe1 = breaker.acquire();
+		State probe2 = breaker.acquire();
+		assertEquals(State.HALF_OPEN, probe1);
+		assertEquals(State.HALF_OPEN, probe2);
+		assertNull(breaker.acquire()); // only two probes at a time
+		breaker.record(probe1, false, 1);
+		breaker.record(probe2, false, 1);
+		assertEquals(State.CLOSED, breaker.getState());
+		assertEquals("[CLOSED->OPEN, OPEN->HALF_OPEN, HALF_OPEN->CLOSED]", seen.toString());
+	}
+
+	@Test
+	public void failedProbeReopens() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(small(), null);
+		for(int i = 0; i < 4; i++) breaker.record(breaker.acquire(), true, 1);
+		Thread.sleep(150);
+		breaker.record(breaker.acquire(), true, 1);
+		assertEquals(State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void slowCallsOpen() {
+		CircuitBreakerConfig config = CircuitBreakerConfig.builder().windowSize(10).minimumCalls(4)
+				.slowCall(50, TimeUnit.MILLISECONDS, 0.75).build();
+		CircuitBreaker breaker = new CircuitBreaker(config, null);
+		breaker.record(breaker.acquire(), false, 1);
+		for(int i = 0; i < 3; i++) breaker.record(breaker.acquire(), false, 60);
+		assertEquals(State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void endpointClasses() {
+		assertEquals("auth", CircuitBreakerInterceptor.endpoint(HttpUrl.parse("http://h:8200/v1/auth/token/renew-self")));
+		assertEquals("sys", CircuitBreakerInterceptor.endpoint(HttpUrl.parse("http://h:8200/v1/sys/health")));
+		assertEquals("toke-kv2", CircuitBreakerInterceptor.endpoint(HttpUrl.parse("http://h:8200/v1/toke-kv2/data/app")));
+	}
+
+	@Test
+	public void openEndpointFailsFastOthersCarryOn() throws Exception {
+		try (StandInVault vault = new StandInVault(0, (method, path, query, body) -> path.startsWith("/v1/broken/")
+				? new StandInVault.Reply(503, "{\"errors\":[]}")
+				: new StandInVault.Reply(200, "{\"data\":{}}"))) {
+			Networking net = new Networking(NetworkingConfig.builder().coalesceReads(false)
+					.retry(RetryConfig.none()).circuitBreaker(small()).build());
+			net.tokenEvent(StandInVault.login());
+			List<CircuitBreakerEvent> events = new CopyOnWriteArrayList<CircuitBreakerEvent>();
+			net.addCircuitBreakerListener(events::add);
+
+			for(int i = 0; i < 4; i++) assertEquals(503, net.get(vault.url("/v1/broken/app")).code);
+			CircuitOpenException x = assertThrows(CircuitOpenException.class, () -> net.get(vault.url("/v1/broken/app")));
+			assertEquals("broken", x.getEndpoint());
+			assertEquals(4, vault.requests());
+			assertEquals(1, events.size());
+			assertEquals(State.OPEN, events.get(0).getTo());
+
+			// other mounts are unaffected, and a fast failure is not held against the server
+			assertEquals(200, net.get(vault.url("/v1/secret/app")).code);
+			assertEquals(State.CLOSED, net.breakers().state("secret"));
+		}
+	}
+
+	@Test
+	public void localDeadlinesAreNotHeldAgainstTheEndpoint() {
+		CircuitBreakerInterceptor breakers = new CircuitBreakerInterceptor(small());
+		// as when the caller's deadline passes while it is queued for a host slot: nothing was sent
+		OkHttpClient client = new OkHttpClient.Builder().addInterceptor(breakers).addInterceptor(chain -> {
+			throw new DeadlineExceededException("Deadline passed waiting for a connection slot");
+		}).build();
+		for(int i = 0; i < 4; i++) {
+			assertThrows(DeadlineExceededException.class, () -> client.newCall(new Request.Builder()
+					.url("http://127.0.0.1:8200/v1/secret/data/app").build()).execute());
+		}
+		assertEquals(State.CLOSED, breakers.state("secret"));
+	}
+
+	@Test
+	public void disabled() throws IOException {
+		try (StandInVault vault = new StandInVault(0, (method, path, query, body) -> new StandInVault.Reply(503, "{}"))) {
+			Networking net = new Networking(NetworkingConfig.builder().retry(RetryConfig.none())
+					.circuitBreaker(CircuitBreakerConfig.disabled()).build());
+			net.tokenEvent(StandInVault.login());
+			for(int i = 0; i < 30; i++) assertEquals(503, net.get(vault.url("/v1/secret/app")).code);
+		}
+	}
+}
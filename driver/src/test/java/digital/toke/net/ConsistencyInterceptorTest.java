@@ -0,0 +1,142 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.ClusterConfig;
+import digital.toke.ConsistencyMode;
+import digital.toke.Networking;
+import digital.toke.NetworkingConfig;
+import digital.toke.RetryConfig;
+import digital.toke.StandInVault;
+import digital.toke.accessor.Toke;
+
+public class ConsistencyInterceptorTest {
+
+	static String index(String cluster, long local, long replicated) {
+		return Base64.getEncoder().encodeToString(("v1:" + cluster + ":" + local + ":" + replicated + ":hmac")
+				.getBytes(StandardCharsets.UTF_8));
+	}
+
+	static Networking networking(ConsistencyMode mode) {
+		ClusterConfig cluster = ClusterConfig.builder().consistency(mode).maxIndexWait(200, TimeUnit.MILLISECONDS).build();
+		Networking net = new Networking(NetworkingConfig.builder().retry(RetryConfig.none()).cluster(cluster).build());
+		net.tokenEvent(StandInVault.login());
+		return net;
+	}
+
+	@Test
+	public void newestIndexPerClusterWins() {
+		ReplicationState state = new ReplicationState();
+		state.record(Arrays.asList(index("a", 5, 7)));
+		state.record(Arrays.asList(index("a", 9, 6), index("b", 1, 1)));
+		assertEquals(Arrays.asList(index("a", 5, 7), index("b", 1, 1)), state.headers());
+		state.record(Arrays.asList(index("a", 6, 7)));
+		assertEquals(index("a", 6, 7), state.headers().get(0));
+	}
+
+	@Test
+	public void readsCarryTheIndexOfEarlierWrites() throws Exception {
+		String written = index("c1", 3, 12);
+		try (StandInVault vault = new StandInVault(0, (method, path, query, body) -> "POST".equals(method)
+				? new StandInVault.Reply(200, "{}").header(ConsistencyInterceptor.X_VAULT_INDEX, written)
+				: new StandInVault.Reply(200, "{\"data\":{}}"))) {
+			Networking net = networking(ConsistencyMode.FORWARD);
+
+			net.get(vault.url("/v1/secret/data/app"));
+			assertTrue(vault.lastHeader(ConsistencyInterceptor.X_VAULT_INDEX).isEmpty());
+
+			net.post(vault.url("/v1/secret/data/app"), "{}");
+			net.get(vault.url("/v1/secret/data/app"));
+			assertEquals(Collections.singletonList(written), vault.lastHeader(ConsistencyInterceptor.X_VAULT_INDEX));
+			assertEquals(Collections.singletonList(ConsistencyInterceptor.FORWARD_ACTIVE_NODE),
+					vault.lastHeader(ConsistencyInterceptor.X_VAULT_INCONSISTENT));
+
+			// a session bound to the thread has its own index, empty until it writes, and its reads are not
+			// coalesced with anyone else's
+			long coalesced = net.coalescer().calls();
+			try (ReplicationState.Scope scope = new ReplicationState().bind()) {
+				net.get(vault.url("/v1/secret/data/app"));
+				assertTrue(vault.lastHeader(ConsistencyInterceptor.X_VAULT_INDEX).isEmpty());
+			}
+			assertEquals(coalesced, net.coalescer().calls());
+		}
+	}
+
+	@Test
+	public void readsAfterAWriteDoNotJoinReadsSentBeforeIt() throws Exception {
+		AtomicInteger reads = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		try (StandInVault vault = new StandInVault(0, (method, path, query, body) -> {
+			if("POST".equals(method)) return new StandInVault.Reply(200, "{}").header(ConsistencyInterceptor.X_VAULT_INDEX, index("c1", 1, 1));
+			if(reads.incrementAndGet() > 1) return new StandInVault.Reply(200, "{\"data\":{\"v\":\"new\"}}");
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new StandInVault.Reply(200, "{\"data\":{\"v\":\"old\"}}");
+		})) {
+			Networking net = networking(ConsistencyMode.FORWARD);
+			String url = vault.url("/v1/secret/data/app");
+			ExecutorService pool = Executors.newFixedThreadPool(2);
+			try {
+				// the first read is held by the server until the second has had its chance to join it
+				Future<Toke> before = pool.submit(() -> net.get(url));
+				while(reads.get() == 0) Thread.sleep(5);
+				net.post(url, "{}");
+				Future<Toke> after = pool.submit(() -> net.get(url));
+				long deadline = System.currentTimeMillis() + 2000;
+				while(reads.get() < 2 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+				release.countDown();
+
+				assertTrue(before.get(5, TimeUnit.SECONDS).response.contains("old"));
+				assertTrue(after.get(5, TimeUnit.SECONDS).response.contains("new"));
+				assertEquals(2, reads.get());
+			} finally {
+				release.countDown();
+				pool.shutdownNow();
+			}
+		}
+	}
+
+	@Test
+	public void waitModeRepeatsWhileTheStandbyIsBehind() throws Exception {
+		AtomicInteger behind = new AtomicInteger(2);
+		try (StandInVault vault = new StandInVault(0, (method, path, query, body) -> {
+			if("POST".equals(method)) return new StandInVault.Reply(200, "{}").header(ConsistencyInterceptor.X_VAULT_INDEX, index("c1", 1, 1));
+			return behind.getAndDecrement() > 0 ? new StandInVault.Reply(412, "{\"errors\":[]}") : new StandInVault.Reply(200, "{\"data\":{}}");
+		})) {
+			Networking net = networking(ConsistencyMode.WAIT);
+			net.post(vault.url("/v1/secret/data/app"), "{}");
+			assertEquals(200, net.get(vault.url("/v1/secret/data/app")).code);
+			assertEquals(2, net.consistency().waits());
+			assertEquals(0, net.consistency().forwarded());
+			assertTrue(vault.lastHeader(ConsistencyInterceptor.X_VAULT_INCONSISTENT).isEmpty());
+
+			// never catches up, so after the wait the read is forwarded
+			behind.set(1000);
+			net.get(vault.url("/v1/secret/data/app"));
+			assertEquals(1, net.consistency().forwarded());
+			assertEquals(Collections.singletonList(ConsistencyInterceptor.FORWARD_ACTIVE_NODE),
+					vault.lastHeader(ConsistencyInterceptor.X_VAULT_INCONSISTENT));
+		}
+	}
+}
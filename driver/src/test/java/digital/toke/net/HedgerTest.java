@@ -0,0 +1,148 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.HedgeConfig;
+import digital.toke.Networking;
+import digital.toke.NetworkingConfig;
+import digital.toke.RetryConfig;
+import digital.toke.StandInVault;
+
+public class HedgerTest {
+
+	static HedgeConfig hedging() {
+		return HedgeConfig.builder().enabled(true).percentile(0.9).window(100, 20).budget(0.2, 10).build();
+	}
+
+	/**
+	 * Every 10th request stalls for 300ms, the rest take 2ms
+	 */
+	static StandInVault stalling() throws Exception {
+		AtomicInteger seen = new AtomicInteger();
+		return new StandInVault(2, (method, path, query, body) -> {
+			if(seen.incrementAndGet() % 10 == 0) {
+				try {
+					Thread.sleep(300);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return new StandInVault.Reply(200, "{\"data\":{}}");
+		});
+	}
+
+	static long[] latencies(HedgeConfig hedge) throws Exception {
+		try (StandInVault vault = stalling()) {
+			Networking net = new Networking(NetworkingConfig.builder().coalesceReads(false).retry(RetryConfig.none())
+					.hedge(hedge).build());
+			net.tokenEvent(StandInVault.login());
+			long[] millis = new long[200];
+			for(int i = 0; i < millis.length; i++) {
+				long start = System.nanoTime();
+				assertEquals(200, net.get(vault.url("/v1/secret/data/app")).code);
+				millis[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			}
+			if(hedge.isEnabled()) {
+				assertTrue(net.hedger().hedges() > 0);
+				assertTrue(net.hedger().hedgeWins() > 0);
+				// never more than the budget allows
+				assertTrue(net.hedger().hedges() <= 10 + 0.2 * 200);
+			}
+			Arrays.sort(millis);
+			return millis;
+		}
+	}
+
+	@Test
+	public void hedgingCutsTheTail() throws Exception {
+		long[] plain = latencies(HedgeConfig.none());
+		long[] hedged = latencies(hedging());
+		assertTrue(plain[190] >= 300);
+		// once warmed up the stalled requests are hedged, only those before minSamples still stall
+		assertTrue(hedged[190] < 100);
+	}
+
+	@Test
+	public void cancellingCancelsBothAttempts() throws Exception {
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+		try {
+			Hedger hedger = new Hedger(HedgeConfig.builder().enabled(true).window(10, 1).build(), timer);
+			hedger.record(TimeUnit.MILLISECONDS.toNanos(1));
+			CompletableFuture<String> first = new CompletableFuture<String>();
+			CompletableFuture<String> second = new CompletableFuture<String>();
+			AtomicInteger attempts = new AtomicInteger();
+			CompletableFuture<String> result = hedger.execute(hint -> attempts.incrementAndGet() == 1 ? first : second);
+			long deadline = System.currentTimeMillis() + 2000;
+			while(attempts.get() < 2 && System.currentTimeMillis() < deadline) Thread.sleep(1);
+			assertEquals(2, attempts.get());
+
+			result.cancel(true);
+			assertTrue(first.isCancelled());
+			assertTrue(second.isCancelled());
+		} finally {
+			timer.shutdownNow();
+		}
+	}
+
+	@Test
+	public void onlyTheWinnersLatencyIsRecorded() throws Exception {
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+		try {
+			Hedger hedger = new Hedger(HedgeConfig.builder().enabled(true).window(10, 1).build(), timer);
+			hedger.record(TimeUnit.MILLISECONDS.toNanos(1));
+			CompletableFuture<String> first = new CompletableFuture<String>();
+			CompletableFuture<String> second = new CompletableFuture<String>();
+			AtomicInteger attempts = new AtomicInteger();
+			CompletableFuture<String> result = hedger.execute(hint -> attempts.incrementAndGet() == 1 ? first : second);
+			long deadline = System.currentTimeMillis() + 2000;
+			while(attempts.get() < 2 && System.currentTimeMillis() < deadline) Thread.sleep(1);
+			assertEquals(2, attempts.get());
+
+			second.complete("hedge");
+			assertEquals("hedge", result.get());
+			assertTrue(first.isCancelled());
+			assertEquals(2, hedger.recorded.get());
+		} finally {
+			timer.shutdownNow();
+		}
+	}
+
+	@Test
+	public void failedAttemptsAreNotRecorded() throws Exception {
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+		try {
+			Hedger hedger = new Hedger(HedgeConfig.builder().enabled(true).window(10, 1).build(), timer);
+			hedger.record(TimeUnit.MILLISECONDS.toNanos(1));
+			CompletableFuture<String> first = new CompletableFuture<String>();
+			CompletableFuture<String> second = new CompletableFuture<String>();
+			AtomicInteger attempts = new AtomicInteger();
+			CompletableFuture<String> result = hedger.execute(hint -> attempts.incrementAndGet() == 1 ? first : second);
+			long deadline = System.currentTimeMillis() + 2000;
+			while(attempts.get() < 2 && System.currentTimeMillis() < deadline) Thread.sleep(1);
+			assertEquals(2, attempts.get());
+
+			first.completeExceptionally(new IOException("connection refused"));
+			assertEquals(1, hedger.recorded.get());
+			second.complete("hedge");
+			assertEquals("hedge", result.get());
+			assertEquals(2, hedger.recorded.get());
+		} finally {
+			timer.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.Lane;
+import digital.toke.Networking;
+import digital.toke.NetworkingConfig;
+import digital.toke.PriorityConfig;
+import digital.toke.StandInVault;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+public class PriorityLanesTest {
+
+	static Map<Lane, LaneStats> stats() {
+		Map<Lane, LaneStats> stats = new EnumMap<Lane, LaneStats>(Lane.class);
+		for(Lane lane : Lane.values()) stats.put(lane, new LaneStats(lane));
+		return stats;
+	}
+
+	@Test
+	public void reservedSlotsAndPriorityOrder() throws Exception {
+		Map<Lane, LaneStats> stats = stats();
+		PriorityConfig config = PriorityConfig.builder().reserve(Lane.AUTH, 1).reserve(Lane.INTERACTIVE, 1).build();
+		// 2 shared slots
+		LaneSlots slots = new LaneSlots(4, config, stats);
+		slots.acquire(Lane.BULK);
+		slots.acquire(Lane.BULK);
+
+		ExecutorService threads = Executors.newCachedThreadPool();
+		try {
+			CountDownLatch bulk = new CountDownLatch(1);
+			threads.execute(() -> {
+				try {
+					slots.acquire(Lane.BULK);
+					bulk.countDown();
+				} catch (InterruptedException e) {}
+			});
+			// bulk cannot touch the reservations
+			assertTrue(!bulk.await(100, TimeUnit.MILLISECONDS));
+			assertEquals(1, stats.get(Lane.BULK).queueDepth());
+
+			slots.acquire(Lane.AUTH);
+			slots.acquire(Lane.INTERACTIVE);
+			assertEquals(0, stats.get(Lane.AUTH).waited());
+
+			CountDownLatch interactive = new CountDownLatch(1);
+			threads.execute(() -> {
+				try {
+					slots.acquire(Lane.INTERACTIVE);
+					interactive.countDown();
+				} catch (InterruptedException e) {}
+			});
+			Thread.sleep(100);
+			assertEquals(1, stats.get(Lane.INTERACTIVE).queueDepth());
+
+			// the freed shared slot goes to the interactive call, though the bulk one was waiting longer
+			slots.release(Lane.BULK);
+			assertTrue(interactive.await(1, TimeUnit.SECONDS));
+			assertTrue(!bulk.await(100, TimeUnit.MILLISECONDS));
+			slots.release(Lane.BULK);
+			assertTrue(bulk.await(1, TimeUnit.SECONDS));
+			assertEquals(4, slots.inFlight());
+			assertEquals(1, stats.get(Lane.BULK).waited());
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+
+	@Test
+	public void renewalIsNotStuckBehindBulkReads() throws Exception {
+		try (StandInVault vault = new StandInVault(50, (method, path, query, body) -> new StandInVault.Reply(200, "{\"data\":{}}"))) {
+			Networking net = new Networking(NetworkingConfig.builder().maxRequestsPerHost(4).coalesceReads(false)
+					.priorities(PriorityConfig.builder().reserve(Lane.AUTH, 1).reserve(Lane.INTERACTIVE, 0).build()).build());
+			net.tokenEvent(StandInVault.login());
+			// on a cold JVM loading the classes of the write path alone takes longer than the bound below
+			net.post(vault.url("/v1/auth/token/renew-self"), "{}");
+			ExecutorService bulk = Executors.newFixedThreadPool(40);
+			try {
+				for(int i = 0; i < 40; i++) {
+					final int n = i;
+					bulk.execute(() -> {
+						try (Lane.Scope scope = Lane.BULK.bind()) {
+							net.get(vault.url("/v1/secret/data/bulk"+n));
+						} catch (Exception e) {}
+					});
+				}
+				Thread.sleep(100);
+				assertTrue(net.lanes().stats(Lane.BULK).queueDepth() > 20);
+
+				long start = System.nanoTime();
+				net.post(vault.url("/v1/auth/token/renew-self"), "{}");
+				long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				// 40 reads through 3 slots take most of a second, the renewal does not wait for them
+				assertTrue(millis < 200, "renewal took "+millis+"ms");
+				assertEquals(0, net.lanes().stats(Lane.AUTH).waited());
+			} finally {
+				bulk.shutdown();
+				bulk.awaitTermination(5, TimeUnit.SECONDS);
+			}
+		}
+	}
+
+	@Test
+	public void interactiveReadsDoNotShareQueuedBulkReads() throws Exception {
+		try (StandInVault vault = new StandInVault(50, (method, path, query, body) -> new StandInVault.Reply(200, "{\"data\":{}}"))) {
+			Networking net = new Networking(NetworkingConfig.builder().maxRequestsPerHost(4)
+					.priorities(PriorityConfig.builder().reserve(Lane.AUTH, 1).reserve(Lane.INTERACTIVE, 0).build()).build());
+			net.tokenEvent(StandInVault.login());
+			net.get(vault.url("/v1/secret/data/shared"));
+			ExecutorService bulk = Executors.newFixedThreadPool(41);
+			try {
+				for(int i = 0; i < 41; i++) {
+					final String path = i < 40 ? "/v1/secret/data/bulk"+i : "/v1/secret/data/shared";
+					bulk.execute(() -> {
+						try (Lane.Scope scope = Lane.BULK.bind()) {
+							net.get(vault.url(path));
+						} catch (Exception e) {}
+					});
+					// the bulk read of the shared secret is last in the queue
+					if(i == 39) Thread.sleep(100);
+				}
+				Thread.sleep(50);
+
+				long start = System.nanoTime();
+				net.get(vault.url("/v1/secret/data/shared"));
+				long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				// joining the bulk read would mean waiting for most of the bulk queue
+				assertTrue(millis < 300, "interactive read took "+millis+"ms");
+			} finally {
+				bulk.shutdown();
+				bulk.awaitTermination(5, TimeUnit.SECONDS);
+			}
+		}
+	}
+
+	@Test
+	public void onlyTheAuthMountIsInTheAuthLane() {
+		HttpUrl base = HttpUrl.parse("http://vault:8200/v1/");
+		assertEquals(Lane.AUTH, HostConcurrencyInterceptor.lane(new Request.Builder().url(base.resolve("auth/approle/login")).build()));
+		assertEquals(Lane.INTERACTIVE, HostConcurrencyInterceptor.lane(new Request.Builder().url(base.resolve("authors/data/a")).build()));
+		assertEquals(Lane.INTERACTIVE, HostConcurrencyInterceptor.lane(new Request.Builder().url(base.resolve("authz-kv/a")).build()));
+	}
+
+	@Test
+	public void slotIsHeldUntilTheBodyIsClosed() throws Exception {
+		try (StandInVault vault = StandInVault.secrets(0)) {
+			HostConcurrencyInterceptor slots = new HostConcurrencyInterceptor(2);
+			OkHttpClient client = new OkHttpClient.Builder().addInterceptor(slots).build();
+			HttpUrl url = HttpUrl.get(vault.url("/v1/secret/data/app"));
+
+			Response response = client.newCall(new Request.Builder().url(url).build()).execute();
+			assertEquals(1, slots.inFlight(url.host()));
+			response.body().string();
+			assertEquals(0, slots.inFlight(url.host()));
+			// closing again does not hand the slot back twice
+			response.close();
+			assertEquals(0, slots.inFlight(url.host()));
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.Networking;
+import digital.toke.NetworkingConfig;
+import digital.toke.RateLimitConfig;
+import digital.toke.RateLimitConfig.Operation;
+import digital.toke.RetryConfig;
+import digital.toke.StandInVault;
+import digital.toke.exception.RateLimitedException;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+public class RateLimiterTest {
+
+	@Test
+	public void bucketGivesItsBurstThenPacesToTheRate() throws Exception {
+		TokenBucket bucket = new TokenBucket(20, 5);
+		for(int i = 0; i < 5; i++) assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+		// a token every 50ms, far longer than we will wait
+		assertFalse(bucket.tryAcquire(1, TimeUnit.MILLISECONDS));
+
+		long start = System.nanoTime();
+		for(int i = 0; i < 4; i++) assertTrue(bucket.tryAcquire(1, TimeUnit.SECONDS));
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue(millis >= 150, "4 tokens at 20/s took "+millis+"ms");
+		assertEquals(9, bucket.granted());
+		assertEquals(2, bucket.rejected());
+	}
+
+	@Test
+	public void classifiesCalls() {
+		HttpUrl base = HttpUrl.parse("http://vault:8200/v1/");
+		assertEquals("secret/data/app", RateLimiter.path(base.resolve("secret/data/app")));
+		assertEquals(Operation.READ, RateLimiter.operation(new Request.Builder().url(base.resolve("secret/data/app")).build()));
+		assertEquals(Operation.LIST, RateLimiter.operation(new Request.Builder().url(base.resolve("secret/metadata/?list=true")).build()));
+		RequestBody body = RequestBody.create(Networking.JSON, "{}");
+		assertEquals(Operation.WRITE, RateLimiter.operation(new Request.Builder().url(base.resolve("secret/data/app")).post(body).build()));
+		assertEquals(Operation.LOGIN, RateLimiter.operation(new Request.Builder().url(base.resolve("auth/approle/login")).post(body).build()));
+		assertEquals(Operation.LOGIN, RateLimiter.operation(new Request.Builder().url(base.resolve("auth/userpass/login/bob")).post(body).build()));
+		assertEquals(Operation.WRITE, RateLimiter.operation(new Request.Builder().url(base.resolve("secret/data/login")).post(body).build()));
+		assertEquals(Operation.READ, RateLimiter.operation(new Request.Builder().url(base.resolve("secret/login")).build()));
+		assertEquals(Operation.READ, RateLimiter.operation(new Request.Builder().url(base.resolve("sys/capabilities-self")).post(body).build()));
+	}
+
+	@Test
+	public void limitsApplyPerMountAndOperation() throws Exception {
+		RateLimitConfig limits = RateLimitConfig.builder()
+				.limit("secret", Operation.READ, 1, 2, 0, TimeUnit.MILLISECONDS)
+				.limit("/secret/", Operation.WRITE, 10, 1)
+				.build();
+		try (StandInVault vault = StandInVault.secrets(0)) {
+			Networking net = new Networking(NetworkingConfig.builder().coalesceReads(false).retry(RetryConfig.none())
+					.rateLimit(limits).build());
+			net.tokenEvent(StandInVault.login());
+
+			net.get(vault.url("/v1/secret/data/a"));
+			net.get(vault.url("/v1/secret/data/b"));
+			// reads never wait, the third fails before it is sent
+			RateLimitedException x = assertThrows(RateLimitedException.class, () -> net.get(vault.url("/v1/secret/data/c")));
+			assertEquals("secret", x.getPath());
+			assertTrue(x.getRetryAfterMillis() > 0);
+			assertEquals(2, vault.requests());
+			// another mount is not limited
+			net.get(vault.url("/v1/other/data/c"));
+
+			// writes have their own bucket, and wait for a token
+			long start = System.nanoTime();
+			for(int i = 0; i < 4; i++) net.post(vault.url("/v1/secret/data/w"+i), "{\"data\":{}}");
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+
+			assertEquals(1, net.rateLimiter().rejected());
+			assertTrue(net.health().isAvailable());
+			assertFalse(net.rateLimiter().tryAcquire("secret/data/d", Operation.READ));
+			assertTrue(net.rateLimiter().tryAcquire("secret/data/d", Operation.LIST));
+		}
+	}
+
+	@Test
+	public void interruptedWaitsGiveTheirTokensBack() throws Exception {
+		RateLimiter limiter = new RateLimiter(RateLimitConfig.builder()
+				.limit("", null, 1, 1)
+				.limit("secret", Operation.READ, 1, 1)
+				.build());
+		assertTrue(limiter.tryAcquire("secret/data/a", Operation.READ));
+
+		// each waiter reserves the next token of both buckets, then is interrupted before it is due
+		for(int i = 0; i < 5; i++) {
+			Thread waiter = new Thread(() -> {
+				try {
+					limiter.acquire("secret/data/a", Operation.READ, 10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {}
+			});
+			waiter.start();
+			Thread.sleep(20);
+			waiter.interrupt();
+			waiter.join();
+		}
+		for(TokenBucket bucket : limiter.buckets().values()) {
+			assertTrue(bucket.nanosUntilAvailable() <= TimeUnit.SECONDS.toNanos(1), bucket.toString());
+		}
+	}
+}
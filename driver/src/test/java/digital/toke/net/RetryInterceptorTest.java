@@ -0,0 +1,127 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.Networking;
+import digital.toke.NetworkingConfig;
+import digital.toke.RetryConfig;
+import digital.toke.StandInVault;
+import digital.toke.accessor.Toke;
+
+public class RetryInterceptorTest {
+
+	static Networking networking(RetryConfig retry) {
+		Networking net = new Networking(NetworkingConfig.builder().coalesceReads(false).retry(retry).build());
+		net.tokenEvent(StandInVault.login());
+		return net;
+	}
+
+	static RetryConfig fast() {
+		return RetryConfig.builder().maxAttempts(3).baseDelay(1, TimeUnit.MILLISECONDS).maxDelay(5, TimeUnit.MILLISECONDS).build();
+	}
+
+	/**
+	 * Answers 503 to the first failures requests, then 200
+	 */
+	static StandInVault flaky(int failures) throws IOException {
+		AtomicInteger seen = new AtomicInteger();
+		return new StandInVault(0, (method, path, query, body) -> seen.incrementAndGet() <= failures
+				? new StandInVault.Reply(503, "{\"errors\":[\"Vault is sealed\"]}")
+				: new StandInVault.Reply(200, "{\"data\":{}}"));
+	}
+
+	@Test
+	public void readsAreRetried() throws Exception {
+		try (StandInVault vault = flaky(2)) {
+			Networking net = networking(fast());
+			Toke toke = net.get(vault.url("/v1/secret/data/app"));
+			assertEquals(200, toke.code);
+			assertEquals(3, vault.requests());
+			assertEquals(2, net.retrier().retries());
+		}
+	}
+
+	@Test
+	public void writesAreNotRetriedOnceSent() throws Exception {
+		try (StandInVault vault = flaky(1)) {
+			Networking net = networking(fast());
+			assertEquals(503, net.post(vault.url("/v1/secret/data/app"), "{}").code);
+			assertEquals(1, vault.requests());
+		}
+	}
+
+	@Test
+	public void writesAreRetriedWhenTheConnectionFails() throws Exception {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		Networking net = networking(fast());
+		assertThrows(IOException.class, () -> net.post("http://127.0.0.1:" + port + "/v1/secret/data/app", "{}"));
+		assertEquals(2, net.retrier().retries());
+	}
+
+	@Test
+	public void retryAfterIsHonoured() throws Exception {
+		AtomicInteger seen = new AtomicInteger();
+		try (StandInVault vault = new StandInVault(0, (method, path, query, body) -> seen.incrementAndGet() == 1
+				? new StandInVault.Reply(429, "{\"errors\":[]}").header("Retry-After", "1")
+				: new StandInVault.Reply(200, "{\"data\":{}}"))) {
+			Networking net = networking(fast());
+			long start = System.nanoTime();
+			assertEquals(200, net.get(vault.url("/v1/secret/data/app")).code);
+			assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(1000));
+		}
+	}
+
+	@Test
+	public void enqueuedCallsDoNotWaitPastMaxAsyncWait() throws Exception {
+		AtomicInteger seen = new AtomicInteger();
+		try (StandInVault vault = new StandInVault(0, (method, path, query, body) -> seen.incrementAndGet() == 1
+				? new StandInVault.Reply(429, "{\"errors\":[]}").header("Retry-After", "1")
+				: new StandInVault.Reply(200, "{\"data\":{}}"))) {
+			Networking net = new Networking(NetworkingConfig.builder().coalesceReads(false).retry(fast()).maxAsyncWait(200).build());
+			net.tokenEvent(StandInVault.login());
+			long start = System.nanoTime();
+			assertEquals(429, net.getAsync(vault.url("/v1/secret/data/app")).get(5, TimeUnit.SECONDS).code);
+			assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+			assertEquals(1, vault.requests());
+			assertEquals(0, net.retrier().retries());
+
+			// short backoffs are still retried
+			try (StandInVault flaky = flaky(1)) {
+				assertEquals(200, net.getAsync(flaky.url("/v1/secret/data/app")).get(5, TimeUnit.SECONDS).code);
+				assertEquals(1, net.retrier().retries());
+			}
+		}
+	}
+
+	@Test
+	public void budgetLimitsRetries() throws Exception {
+		try (StandInVault vault = flaky(Integer.MAX_VALUE)) {
+			RetryConfig retry = RetryConfig.builder().maxAttempts(3).baseDelay(1, TimeUnit.MILLISECONDS)
+					.maxDelay(1, TimeUnit.MILLISECONDS).budget(0, 2).build();
+			Networking net = networking(retry);
+			for (int i = 0; i < 5; i++) {
+				assertEquals(503, net.get(vault.url("/v1/secret/data/app")).code);
+			}
+			// two retries in the burst, then no more since nothing is earned back at a ratio of 0
+			assertEquals(2, net.retrier().retries());
+			assertEquals(7, vault.requests());
+		}
+	}
+
+}
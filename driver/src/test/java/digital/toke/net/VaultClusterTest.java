@@ -0,0 +1,189 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import digital.toke.ClusterConfig;
+import digital.toke.Networking;
+import digital.toke.NetworkingConfig;
+import digital.toke.RetryConfig;
+import digital.toke.StandInVault;
+import digital.toke.exception.DeadlineExceededException;
+import digital.toke.net.VaultNode.Role;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+public class VaultClusterTest {
+
+	/**
+	 * A node which answers sys/health according to its role and counts the other requests it serves
+	 */
+	static class Node implements AutoCloseable {
+		volatile Role role;
+		final AtomicInteger served = new AtomicInteger();
+		final StandInVault vault;
+
+		Node(Role role) throws Exception {
+			this(role, 0);
+		}
+
+		Node(Role role, long latencyMillis) throws Exception {
+			this.role = role;
+			vault = new StandInVault(latencyMillis, (method, path, query, body) -> {
+				if(path.equals("/v1/sys/health")) {
+					JSONObject health = new JSONObject().put("initialized", true)
+							.put("sealed", this.role == Role.SEALED)
+							.put("standby", this.role == Role.STANDBY || this.role == Role.PERF_STANDBY)
+							.put("performance_standby", this.role == Role.PERF_STANDBY);
+					int code = this.role == Role.ACTIVE ? 200 : this.role == Role.SEALED ? 503 : 429;
+					return new StandInVault.Reply(code, health.toString());
+				}
+				served.incrementAndGet();
+				return new StandInVault.Reply(200, "{\"data\":{}}");
+			});
+		}
+
+		String base() {
+			return vault.url("");
+		}
+
+		@Override
+		public void close() {
+			vault.close();
+		}
+	}
+
+	static Networking networking(Node... nodes) {
+		return networking(false, nodes);
+	}
+
+	static Networking networking(boolean readRouting, Node... nodes) {
+		ClusterConfig.Builder cluster = ClusterConfig.builder().probeTimeout(500, TimeUnit.MILLISECONDS)
+				.readRouting(readRouting);
+		for(Node n : nodes) cluster.endpoint(n.base());
+		Networking net = new Networking(NetworkingConfig.builder().retry(RetryConfig.none()).cluster(cluster.build()).build());
+		net.tokenEvent(StandInVault.login());
+		return net;
+	}
+
+	@Test
+	public void roles() {
+		assertEquals(Role.ACTIVE, VaultCluster.role(200, "{\"initialized\":true,\"sealed\":false,\"standby\":false}"));
+		assertEquals(Role.PERF_STANDBY, VaultCluster.role(473, "{\"initialized\":true,\"standby\":true,\"performance_standby\":true}"));
+		assertEquals(Role.SEALED, VaultCluster.role(503, "not json"));
+		assertEquals(Role.UNINITIALIZED, VaultCluster.role(501, "{\"initialized\":false}"));
+	}
+
+	@Test
+	public void readOnlyCalls() {
+		assertTrue(RoutingInterceptor.isReadOnly(new Request.Builder().url("http://h/v1/secret/data/app").build()));
+		assertTrue(RoutingInterceptor.isReadOnly(new Request.Builder().url("http://h/v1/sys/capabilities-self")
+				.post(RequestBody.create(Networking.JSON, "{}")).build()));
+		assertFalse(RoutingInterceptor.isReadOnly(new Request.Builder().url("http://h/v1/auth/token/lookup-self").build()));
+		assertFalse(RoutingInterceptor.isReadOnly(new Request.Builder().url("http://h/v1/secret/data/app")
+				.post(RequestBody.create(Networking.JSON, "{}")).build()));
+	}
+
+	@Test
+	public void readsAreSpreadOverPerformanceStandbys() throws Exception {
+		try (Node active = new Node(Role.ACTIVE, 10); Node fast = new Node(Role.PERF_STANDBY, 10);
+				Node slow = new Node(Role.PERF_STANDBY, 60); Node standby = new Node(Role.STANDBY)) {
+			Networking net = networking(true, active, fast, slow, standby);
+			net.cluster().refresh();
+
+			for(int i = 0; i < 100; i++) net.get(active.vault.url("/v1/secret/data/app"));
+			for(int i = 0; i < 10; i++) net.post(active.vault.url("/v1/secret/data/app"), "{}");
+			net.get(fast.vault.url("/v1/auth/token/lookup-self"));
+
+			// the slow standby is tried, then mostly avoided; plain standbys and writes are left alone
+			assertEquals(0, standby.served.get());
+			assertTrue(slow.served.get() >= 1 && slow.served.get() < 15);
+			assertTrue(fast.served.get() > 30);
+			assertTrue(active.served.get() - 11 > 30);
+			assertEquals(100, (active.served.get() - 11) + fast.served.get() + slow.served.get());
+		}
+	}
+
+	@Test
+	public void callsGoToTheActiveNode() throws Exception {
+		try (Node a = new Node(Role.STANDBY); Node b = new Node(Role.ACTIVE); Node c = new Node(Role.STANDBY)) {
+			Networking net = networking(a, b, c);
+			net.cluster().refresh();
+			assertSame(net.cluster().nodes().get(1), net.cluster().active());
+
+			// the url names node a, the call still goes to b
+			for(int i = 0; i < 5; i++) net.get(a.vault.url("/v1/secret/app"));
+			net.post(a.vault.url("/v1/secret/app"), "{}");
+			assertEquals(0, a.served.get());
+			assertEquals(6, b.served.get());
+		}
+	}
+
+	@Test
+	public void failsOverWhenTheActiveNodeGoesAway() throws Exception {
+		try (Node a = new Node(Role.ACTIVE); Node b = new Node(Role.STANDBY)) {
+			Networking net = networking(a, b);
+			net.cluster().refresh();
+			net.get(b.vault.url("/v1/secret/app"));
+			assertEquals(1, a.served.get());
+
+			// a dies and b is promoted; the very next write lands on b without the caller seeing an error
+			a.close();
+			b.role = Role.ACTIVE;
+			assertEquals(200, net.post(b.vault.url("/v1/secret/app"), "{}").code);
+			assertEquals(1, b.served.get());
+
+			net.cluster().refresh();
+			assertSame(net.cluster().nodes().get(1), net.cluster().active());
+			assertEquals(Role.DOWN, net.cluster().nodes().get(0).getRole());
+		}
+	}
+
+	@Test
+	public void localDeadlinesDoNotMarkTheNodeDown() throws Exception {
+		try (Node a = new Node(Role.ACTIVE)) {
+			Networking net = networking(a);
+			net.cluster().refresh();
+			// as when the caller's deadline passes while it is queued for a host slot: nothing was sent
+			OkHttpClient client = new OkHttpClient.Builder().addInterceptor(new RoutingInterceptor(net.cluster()))
+					.addInterceptor(chain -> {
+						throw new DeadlineExceededException("Deadline passed waiting for a connection slot");
+					}).build();
+			assertThrows(DeadlineExceededException.class,
+					() -> client.newCall(new Request.Builder().url(a.vault.url("/v1/secret/app")).build()).execute());
+			assertEquals(Role.ACTIVE, net.cluster().nodes().get(0).getRole());
+			assertSame(net.cluster().nodes().get(0), net.cluster().active());
+		}
+	}
+
+	@Test
+	public void sealedActiveNodeTriggersReprobe() throws Exception {
+		try (Node a = new Node(Role.ACTIVE); Node b = new Node(Role.STANDBY)) {
+			Networking net = networking(a, b);
+			net.cluster().refresh();
+			a.role = Role.SEALED;
+			b.role = Role.ACTIVE;
+			net.get(a.vault.url("/v1/sys/health"));
+			long deadline = System.currentTimeMillis() + 5000;
+			while(net.cluster().active() != net.cluster().nodes().get(1) && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertSame(net.cluster().nodes().get(1), net.cluster().active());
+			assertEquals(1, net.cluster().failovers());
+		}
+	}
+}
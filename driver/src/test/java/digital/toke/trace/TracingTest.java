@@ -0,0 +1,113 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.trace;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.KVv2;
+import digital.toke.Networking;
+import digital.toke.NetworkingConfig;
+import digital.toke.RetryConfig;
+import digital.toke.StandInVault;
+import digital.toke.TraceConfig;
+import digital.toke.cache.SecretCacheConfig;
+
+public class TracingTest {
+
+	@Test
+	public void spansCallsAndTheirAttempts() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		try (StandInVault vault = new StandInVault(0, (method, path, query, body) -> calls.incrementAndGet() == 1
+				? new StandInVault.Reply(503, "{\"errors\":[]}")
+				: new StandInVault.Reply(200, "{\"request_id\":\"5e0f5b2a-vault\",\"data\":{}}"))) {
+			InMemorySpanExporter exporter = new InMemorySpanExporter();
+			Networking net = new Networking(NetworkingConfig.builder().coalesceReads(false)
+					.retry(RetryConfig.builder().baseDelay(1, TimeUnit.MILLISECONDS).build())
+					.tracing(TraceConfig.builder().exporter(exporter).build()).build());
+			net.tokenEvent(StandInVault.login());
+
+			Span parent = net.tracer().start("handle-request", null);
+			try (Span.Scope scope = parent.bind()) {
+				net.get(vault.url("/v1/secret/data/app"));
+			} finally {
+				parent.end();
+			}
+
+			Span call = exporter.spans("vault kv2.read").get(0);
+			assertEquals(parent.spanId(), call.parentId());
+			assertEquals(parent.traceId(), call.traceId());
+			assertEquals(200, call.attribute("http.status"));
+			assertEquals("5e0f5b2a-vault", call.attribute("vault.request_id"));
+			assertEquals("retry", call.annotations().get(0).name());
+			assertNull(call.error());
+
+			List<Span> attempts = exporter.children(call);
+			assertEquals(2, attempts.size());
+			assertEquals(503, attempts.get(0).attribute("http.status"));
+			assertEquals(200, attempts.get(1).attribute("http.status"));
+
+			// the call's id goes out as the request id, the last attempt's as the traceparent
+			assertEquals(call.spanId(), vault.lastHeader("X-Request-Id").get(0));
+			assertEquals(attempts.get(1).traceparent(), vault.lastHeader("traceparent").get(0));
+		}
+	}
+
+	@Test
+	public void coalescedWaitsAndCacheHitsAreAnnotated() throws Exception {
+		try (StandInVault vault = StandInVault.secrets(200)) {
+			InMemorySpanExporter exporter = new InMemorySpanExporter();
+			Networking net = new Networking(NetworkingConfig.builder()
+					.tracing(TraceConfig.builder().exporter(exporter).build()).build());
+			net.tokenEvent(StandInVault.login());
+
+			CountDownLatch start = new CountDownLatch(1);
+			CompletableFuture<?> first = CompletableFuture.runAsync(() -> read(net, vault, start));
+			CompletableFuture<?> second = CompletableFuture.runAsync(() -> read(net, vault, start));
+			start.countDown();
+			first.get();
+			second.get();
+
+			List<Span> coalesced = exporter.spans("coalesce");
+			assertEquals(2, coalesced.size());
+			Span leader = Boolean.TRUE.equals(coalesced.get(0).attribute("coalesce.leader")) ? coalesced.get(0) : coalesced.get(1);
+			Span follower = leader == coalesced.get(0) ? coalesced.get(1) : coalesced.get(0);
+			assertEquals(1, exporter.children(leader).size());
+			assertEquals(0, exporter.children(follower).size());
+			assertEquals("coalesced", follower.annotations().get(0).name());
+
+			KVv2 kv = new KVv2(vault.config().kv2Cache(SecretCacheConfig.builder().build()).build(), net);
+			kv.tokenEvent(StandInVault.login());
+			kv.kvRead("app/db");
+			Span span = net.tracer().start("handle-request");
+			try (Span.Scope scope = span.bind()) {
+				kv.kvRead("app/db");
+			} finally {
+				span.end();
+			}
+			assertEquals("kv2 cache hit", span.annotations().get(0).name());
+			assertTrue(exporter.children(span).isEmpty());
+		}
+	}
+
+	private static void read(Networking net, StandInVault vault, CountDownLatch start) {
+		try {
+			start.await();
+			net.get(vault.url("/v1/secret/data/app"));
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Runs only in the multi-release profile, on JDK 21 with META-INF/versions/21 ahead of the Java 8 classes
+ */
+public class FlightEventsTest {
+
+	static final String[] TYPES = { "digital.toke.VaultCall", "digital.toke.Token", "digital.toke.Housekeeping",
+			"digital.toke.LatchWait" };
+
+	// enough rounds that the allocation counter's own few bytes round to nothing per round
+	static final int ROUNDS = 1000000;
+
+	@Test
+	public void emitsEachEventWithItsFields() throws Exception {
+		Path file = Files.createTempFile("toke", ".jfr");
+		try (StandInVault vault = StandInVault.secrets(0); Recording recording = new Recording()) {
+			for(String type : TYPES) {
+				recording.enable(type).withThreshold(Duration.ZERO);
+			}
+			recording.start();
+
+			Networking net = new Networking(NetworkingConfig.builder().coalesceReads(false).build());
+			net.tokenEvent(StandInVault.login());
+			net.get(vault.url("/v1/secret/data/app"));
+
+			FlightEvents.endToken(FlightEvents.beginToken(), "login", "root", AuthType.USERPASS, true);
+			FlightEvents.endHousekeeping(FlightEvents.beginHousekeeping(), "renew");
+			ServiceBase service = new ServiceBase();
+			service.countDown();
+			service.latch();
+
+			recording.stop();
+			recording.dump(file);
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+			RecordedEvent call = only(events, "digital.toke.VaultCall");
+			assertEquals("GET", call.getString("method"));
+			assertEquals("127.0.0.1:" + vault.port(), call.getString("host"));
+			assertEquals("/v1/secret/data/app", call.getString("path"));
+			assertEquals("kv2.read", call.getString("operation"));
+			assertEquals(200, call.getInt("status"));
+			assertEquals(0, call.getLong("requestBytes"));
+			assertTrue(call.getLong("responseBytes") > 0);
+			assertNull(call.getString("error"));
+
+			RecordedEvent token = only(events, "digital.toke.Token");
+			assertEquals("login", token.getString("kind"));
+			assertEquals("root", token.getString("handle"));
+			assertEquals("USERPASS", token.getString("authType"));
+			assertTrue(token.getBoolean("succeeded"));
+
+			assertEquals("renew", only(events, "digital.toke.Housekeeping").getString("phase"));
+
+			RecordedEvent latch = only(events, "digital.toke.LatchWait");
+			assertEquals("ServiceBase", latch.getString("service"));
+			assertTrue(latch.getBoolean("ready"));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void disabledEventsAllocateNothing() throws Exception {
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		try (Recording recording = new Recording()) {
+			// a recording is running, but only for calls
+			recording.enable("digital.toke.VaultCall");
+			for(int i = 1; i < TYPES.length; i++) {
+				recording.disable(TYPES[i]);
+			}
+			recording.start();
+
+			assertNull(FlightEvents.beginToken());
+			assertNull(FlightEvents.beginHousekeeping());
+			assertNull(FlightEvents.beginLatch());
+
+			// warmed up, then less what the same loop costs doing nothing
+			allocatedBy(threads, FlightEventsTest::emitDisabled);
+			allocatedBy(threads, () -> {});
+			long baseline = allocatedBy(threads, () -> {});
+			long allocated = allocatedBy(threads, FlightEventsTest::emitDisabled);
+			assertEquals(0, (allocated - baseline) / ROUNDS,
+					"bytes per round of disabled events, " + allocated + " less " + baseline + " over " + ROUNDS + " rounds");
+		}
+	}
+
+	private static long allocatedBy(ThreadMXBean threads, Runnable round) {
+		long before = threads.getCurrentThreadAllocatedBytes();
+		for(int i = 0; i < ROUNDS; i++) {
+			round.run();
+		}
+		return threads.getCurrentThreadAllocatedBytes() - before;
+	}
+
+	private static void emitDisabled() {
+		FlightEvents.endToken(FlightEvents.beginToken(), "renew-periodic", "handle", null, true);
+		FlightEvents.endHousekeeping(FlightEvents.beginHousekeeping(), "renew");
+		FlightEvents.endLatch(FlightEvents.beginLatch(), "KVv2", true);
+	}
+
+	private static RecordedEvent only(List<RecordedEvent> events, String type) {
+		List<RecordedEvent> found = events.stream().filter(e -> e.getEventType().getName().equals(type))
+				.collect(Collectors.toList());
+		assertEquals(1, found.size(), type);
+		return found.get(0);
+	}
+
+}
@@ -0,0 +1,38 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Main class of benchmarks.jar. Takes the usual JMH command line, but runs with the GC profiler unless other
+ * profilers are asked for, so allocation per operation (gc.alloc.rate.norm) is always in the results:</p>
+ *
+ * <pre>
+ * java -jar toke-benchmarks/target/benchmarks.jar                     # everything
+ * java -jar toke-benchmarks/target/benchmarks.jar ResponseBenchmark -p keys=1024
+ * </pre>
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ */
+public class Benchmarks {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		if(cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListProfilers() || cmd.shouldListResultFormats()) {
+			Main.main(args);
+			return;
+		}
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+		if(cmd.getProfilers().isEmpty()) options.addProfiler(GCProfiler.class);
+		new Runner(options.build()).run();
+	}
+
+}
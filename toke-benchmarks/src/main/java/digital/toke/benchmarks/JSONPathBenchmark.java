@@ -0,0 +1,68 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import digital.toke.accessor.Toke;
+import digital.toke.jsonpath.JSONPathDecorator;
+
+/**
+ * The toke-path module's JSONPathDecorator, which parses the body a second time (with json-smart) when it is
+ * created, then evaluates expressions against that document
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSONPathBenchmark {
+
+	@Param({ "4", "64", "1024" })
+	int keys;
+
+	Toke toke;
+	JSONPathDecorator decorator;
+
+	@Setup
+	public void setup() {
+		toke = new Toke(200, true, Payloads.kv2Read(keys));
+		decorator = new JSONPathDecorator(toke);
+	}
+
+	/**
+	 * Create the decorator and read one value, the usual way it is used
+	 */
+	@Benchmark
+	public String readString() {
+		return new JSONPathDecorator(toke).readString("$.data.data.key0");
+	}
+
+	@Benchmark
+	public String readStringParsed() {
+		return decorator.readString("$.data.data.key0");
+	}
+
+	@Benchmark
+	public Object readWildcard() {
+		return decorator.get().read("$.data.data.*");
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Response bodies shaped like the ones vault sends, for the benchmarks to chew on. A KVv2 read of a secret holding
+ * a handful of keys (database credentials, say) is the common case; 64 and 1024 keys stand in for the config blobs
+ * some applications keep in a single secret.
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ */
+final class Payloads {
+
+	static final String EXPIRE_TIME = "2019-05-19T11:35:54.466476215-04:00";
+
+	private Payloads() {}
+
+	/**
+	 * @return the body of a KVv2 read of a secret with this many keys, mostly strings with a few numbers and flags
+	 */
+	static String kv2Read(int keys) {
+		StringBuilder buf = new StringBuilder(128 + keys * 64);
+		buf.append("{\"request_id\":\"5e0f5b2a-3c1d-4b6e-9f2a-8d7c6b5a4e3f\",\"lease_id\":\"\",\"renewable\":false,");
+		buf.append("\"lease_duration\":0,\"data\":{\"data\":{");
+		for(int i = 0; i < keys; i++) {
+			if(i > 0) buf.append(',');
+			buf.append("\"key").append(i).append("\":");
+			switch(i % 8) {
+			case 6:
+				buf.append(5432 + i);
+				break;
+			case 7:
+				buf.append(i % 16 == 7);
+				break;
+			default:
+				buf.append("\"value-").append(i).append("-c2VjcmV0LXZhbHVlLWZvci1iZW5jaG1hcmtz\"");
+			}
+		}
+		buf.append("},\"metadata\":{\"created_time\":\"2019-03-29T11:35:54.466476215Z\",\"deletion_time\":\"\",");
+		buf.append("\"destroyed\":false,\"version\":3}},\"wrap_info\":null,\"warnings\":null,\"auth\":null}");
+		return buf.toString();
+	}
+
+	/**
+	 * @return the body of a userpass login
+	 */
+	static JSONObject login() {
+		JSONObject auth = new JSONObject()
+				.put("client_token", "s.6Vn1Xx0pIXkYQz8yJb3cTzqe")
+				.put("accessor", "0e9e354a-520f-df04-6867-ee81cae3d42d")
+				.put("policies", new JSONArray().put("default").put("app-read"))
+				.put("token_policies", new JSONArray().put("default").put("app-read"))
+				.put("metadata", new JSONObject().put("username", "bob"))
+				.put("lease_duration", 2764800)
+				.put("renewable", true)
+				.put("entity_id", "f6a1b2c3-d4e5-4f60-8172-93a4b5c6d7e8");
+		return new JSONObject()
+				.put("request_id", "8f2c1e0d-4b3a-4c5d-9e6f-7a8b9c0d1e2f")
+				.put("lease_id", "")
+				.put("renewable", false)
+				.put("lease_duration", 0)
+				.put("auth", auth);
+	}
+
+	/**
+	 * @return the body of a lookup-self of the token from login()
+	 */
+	static JSONObject lookupSelf() {
+		JSONObject data = new JSONObject()
+				.put("accessor", "0e9e354a-520f-df04-6867-ee81cae3d42d")
+				.put("creation_time", 1552995354)
+				.put("creation_ttl", 2764800)
+				.put("display_name", "userpass-bob")
+				.put("expire_time", EXPIRE_TIME)
+				.put("explicit_max_ttl", 0)
+				.put("id", "s.6Vn1Xx0pIXkYQz8yJb3cTzqe")
+				.put("issue_time", "2019-03-19T11:35:54.466476215-04:00")
+				.put("num_uses", 0)
+				.put("path", "auth/userpass/login/bob")
+				.put("policies", new JSONArray().put("default").put("app-read"))
+				.put("renewable", true)
+				.put("ttl", 2764790)
+				.put("type", "service");
+		return new JSONObject().put("request_id", "1a2b3c4d-5e6f-4a7b-8c9d-0e1f2a3b4c5d").put("data", data);
+	}
+
+}
@@ -0,0 +1,82 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import digital.toke.accessor.DataResponseDecorator;
+import digital.toke.accessor.Toke;
+
+/**
+ * What it costs to turn a KVv2 read body into something an application can use: the Accessor's JSONObject parse,
+ * which happens once per Toke, and DataResponseDecorator.map(), which copies the secret out of it on every call.
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseBenchmark {
+
+	@Param({ "4", "64", "1024" })
+	int keys;
+
+	String body;
+
+	// parsed already, as it is once a Toke has been looked at
+	Toke parsed;
+
+	@Setup
+	public void setup() {
+		body = Payloads.kv2Read(keys);
+		parsed = new Toke(200, true, body);
+		parsed.accessor().json();
+	}
+
+	/**
+	 * A fresh Toke parsed, as for each response off the wire
+	 */
+	@Benchmark
+	public JSONObject json() {
+		return new Toke(200, true, body).accessor().json();
+	}
+
+	/**
+	 * The Accessor's cached object, as for a response served from the client-side cache or shared by coalesced
+	 * readers
+	 */
+	@Benchmark
+	public JSONObject jsonCached() {
+		return parsed.accessor().json();
+	}
+
+	@Benchmark
+	public Map<String, Object> map() {
+		return new DataResponseDecorator(new Toke(200, true, body)).map();
+	}
+
+	@Benchmark
+	public Map<String, Object> mapCached() {
+		return new DataResponseDecorator(parsed).map();
+	}
+
+}
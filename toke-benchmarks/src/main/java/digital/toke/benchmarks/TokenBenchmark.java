@@ -0,0 +1,68 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.benchmarks;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import digital.toke.AuthType;
+import digital.toke.LoginConfig;
+import digital.toke.Token;
+
+/**
+ * Token reads made on every call (clientToken() for the auth header) and on every housekeeping run (expireTime()
+ * to decide on renewal), plus building a Token after a login
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenBenchmark {
+
+	LoginConfig config;
+	JSONObject login;
+	JSONObject lookup;
+	Token token;
+
+	@Setup
+	public void setup() {
+		config = LoginConfig.builder(AuthType.USERPASS).username("bob").password("secret").build();
+		login = Payloads.login();
+		lookup = Payloads.lookupSelf();
+		token = new Token(config, login, true, lookup);
+	}
+
+	@Benchmark
+	public String clientToken() {
+		return token.clientToken();
+	}
+
+	@Benchmark
+	public ZonedDateTime expireTime() {
+		return token.expireTime();
+	}
+
+	@Benchmark
+	public Token create() {
+		return new Token(config, login, true, lookup);
+	}
+
+}
@@ -0,0 +1,62 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import digital.toke.TokeDriverConfig;
+import okhttp3.HttpUrl;
+
+/**
+ * The URLs built for every KVv2 call, with the default mount and with a named one
+ *
+ * @author David R. Smith &lt;davesmith.gbs@gmail.com&gt;
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlBenchmark {
+
+	@Param({ "", "kv-apps" })
+	String mount;
+
+	@Param({ "db", "apps/payments/prod/eu-west-1/db-credentials" })
+	String path;
+
+	TokeDriverConfig config;
+
+	@Setup
+	public void setup() {
+		TokeDriverConfig.Builder builder = TokeDriverConfig.builder().proto("https").host("vault.example.com").port(8200);
+		if(!mount.isEmpty()) builder.kv2Name(mount);
+		config = builder.build();
+	}
+
+	@Benchmark
+	public String kv2Path() {
+		return config.kv2Path("/data", path);
+	}
+
+	@Benchmark
+	public HttpUrl kv2List() {
+		return config.kv2List(path);
+	}
+
+}